@@ -0,0 +1,52 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * AlertReceiver model is a BroadcastReceiver for pass alert alarms ({@link AlertScheduler}).
+ * It also sets the alarm again after a reboot (alarms are not kept by the system).
+ * Note: it must be registered in the manifest, exported for the boot completed action only.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class AlertReceiver extends BroadcastReceiver {
+
+    private static final String ACTION_BOOT_COMPLETED = "android.intent.action.BOOT_COMPLETED";
+
+    /**
+     * Alarm (or boot) broadcast is received: alerts are posted and the next alarm is set in background.
+     * @param context receiver context
+     * @param intent broadcast intent
+     */
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        Log.d("ALERTS", "ON_RECEIVE " + action + " !"); // debug
+        if (!AlertScheduler.ACTION_ALERT.equals(action) && !ACTION_BOOT_COMPLETED.equals(action)) return;
+        AlertScheduler.get(context).onAlarm(goAsync()); // note: planning could take a while, not on the main thread
+    }
+
+}
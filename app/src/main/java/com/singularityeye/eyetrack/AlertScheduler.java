@@ -0,0 +1,370 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack;
+
+import android.app.AlarmManager;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+import android.util.Log;
+
+import com.singularityeye.eyetrack.cache.ElementStore;
+import com.singularityeye.eyetrack.model.Pass;
+import com.singularityeye.eyetrack.orbit.AlertPlanner;
+import com.singularityeye.eyetrack.orbit.Observer;
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AlertScheduler model: pass alerts for a watchlist over the observer location, without a running service.
+ * Upcoming passes are kept by an {@link AlertPlanner} (incremental predictions), and a single exact alarm
+ * (AlarmManager, wakes the device) is set for the next event, 5 minutes before AOS; the alarm is received by
+ * {@link AlertReceiver}, which posts the notifications and sets the alarm for the following event.
+ * If there are no upcoming passes the alarm only extends the prediction windows (twice per horizon),
+ * so nothing runs between events. Orbital elements come from the shared cache file (it is loaded again when it changes),
+ * the watchlist, observer location and fired alerts are persisted, so alarms survive process restarts.
+ * Note: thread safe, planning runs on a single background thread (one instance per process).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class AlertScheduler {
+
+    static final String ACTION_ALERT = "com.singularityeye.eyetrack.action.PASS_ALERT"; // alarm intent action
+    private static final String STATE_FILE = "alerts.bin"; // watchlist, observer and fired alerts
+    private static final int STATE_VERSION = 1;
+    private static final long LEAD = 5 * 60000L; // alert time before AOS (milliseconds)
+    private static final long HORIZON = 48 * 3600000L; // prediction window (milliseconds)
+    private static final long REPLAN = HORIZON / 2; // maximum time between alarms (milliseconds)
+    public static final double DEFAULT_MIN_ELEVATION = 10.0; // elevation mask (decimal degrees)
+
+    private static AlertScheduler instance; // guarded by class
+
+    private final Context context; // application context
+    private final AlertPlanner planner = new AlertPlanner(LEAD, HORIZON); // executor only
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(); // planning thread
+    private final AtomicBoolean schedule_pending = new AtomicBoolean(); // schedule task submitted and not yet run
+    private final File state_file;
+    private final File elements_file;
+    private ElementStore store; // orbital elements cache (read only, executor only)
+    private long elements_modified; // modification time of the loaded cache file (executor only)
+    private long alarm = Long.MAX_VALUE; // time of the current alarm (executor only)
+
+    private final Runnable schedule_task = new Runnable() {
+        @Override
+        public void run() {
+            schedule_pending.set(false);
+            schedule();
+        }
+    };
+
+    /**
+     * Get the scheduler of the process (the persisted state is loaded on first call).
+     * @param context any context
+     * @return alert scheduler
+     */
+    public static synchronized AlertScheduler get(Context context) {
+        if (null == instance) instance = new AlertScheduler(context.getApplicationContext());
+        return instance;
+    }
+
+    // constructor method for the scheduler
+    private AlertScheduler(Context context) {
+        this.context = context;
+        this.state_file = new File(context.getFilesDir(), STATE_FILE);
+        this.elements_file = new File(context.getFilesDir(), BoundService.ELEMENTS_FILE);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Set the observer location (passes are predicted again, alarms are rescheduled).
+     * @param latitude observer latitude (decimal degrees)
+     * @param longitude observer longitude (decimal degrees)
+     * @param altitude observer altitude (kilometers)
+     * @param minElevation elevation mask (decimal degrees)
+     */
+    public void setObserver(final double latitude, final double longitude, final double altitude, final double minElevation) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (planner.setObserver(new Observer(latitude, longitude, altitude), minElevation)) save();
+            }
+        });
+        refresh();
+    }
+
+    /**
+     * Set the watched platforms (alarms are rescheduled).
+     * @param ids NORAD IDs
+     */
+    public void setWatchlist(Collection<String> ids) {
+        final List<Integer> watchlist = new ArrayList<Integer>(ids.size());
+        for (String id : ids) {
+            try {
+                watchlist.add(Integer.parseInt(id.trim()));
+            } catch (NumberFormatException e) {
+                Log.e("ERROR", "Invalid NORAD ID: "+id);
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                planner.setWatchlist(watchlist);
+                save();
+            }
+        });
+        refresh();
+    }
+
+    /**
+     * Watch a platform (alarms are rescheduled).
+     * @param id NORAD ID
+     */
+    public void watch(final int id) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (planner.isWatched(id)) return;
+                planner.watch(id);
+                save();
+            }
+        });
+        refresh();
+    }
+
+    /**
+     * Stop watching a platform (alarms are rescheduled).
+     * @param id NORAD ID
+     */
+    public void unwatch(final int id) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!planner.isWatched(id)) return;
+                planner.unwatch(id);
+                save();
+            }
+        });
+        refresh();
+    }
+
+    /**
+     * Update passes and the alarm in background (e.g. after new orbital elements were cached).
+     * Only changed platforms are predicted again; calls are coalesced.
+     */
+    public void refresh() {
+        if (schedule_pending.compareAndSet(false, true)) executor.execute(schedule_task);
+    }
+
+    /**
+     * Handle an alarm: post due alerts and set the next alarm (in background).
+     * @param result pending broadcast result, finished when done (null if not asynchronous)
+     */
+    void onAlarm(final BroadcastReceiver.PendingResult result) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    alarm = Long.MAX_VALUE; // note: the alarm went off (or was lost on reboot)
+                    schedule();
+                } finally {
+                    if (null != result) result.finish();
+                }
+            }
+        });
+    }
+
+    // update propagators and passes, post due alerts and set the alarm for the next event (executor only)
+    private void schedule() {
+        long now = System.currentTimeMillis();
+        List<Integer> watchlist = planner.getWatchlist();
+        if (null == planner.getObserver() || watchlist.isEmpty()) {
+            cancelAlarm();
+            return;
+        }
+        loadElements();
+        for (int id : watchlist) {
+            TLE tle = (null == store) ? null : store.getUsable(id, now);
+            SGP4 current = planner.getPropagator(id);
+            if (null == tle) {
+                planner.setPropagator(id, null); // expired orbital elements
+                continue;
+            }
+            if (null != current && current.getTLE().getEpochJD() == tle.getEpochJD()) continue; // note: same elements keep their passes
+            try {
+                planner.setPropagator(id, new SGP4(tle));
+            } catch (IllegalArgumentException e) {
+                Log.e("ERROR", "ElementsException: "+id+" "+e.getMessage());
+            }
+        }
+        int predicted = planner.plan(now);
+        Log.d("ALERTS", "PREDICTED = " + predicted + "/" + watchlist.size()); // debug
+        List<Pass> due = planner.due(now);
+        if (!due.isEmpty()) {
+            for (Pass pass : due) notify(pass, now);
+            save();
+        }
+        setAlarm(Math.min(planner.nextAlert(), now + REPLAN));
+    }
+
+    // load the orbital elements cache file when it changed (executor only)
+    private void loadElements() {
+        long modified = elements_file.lastModified();
+        if (0 == modified || (null != store && modified == elements_modified)) return;
+        ElementStore loaded = new ElementStore(elements_file, BoundService.MAX_ELEMENTS);
+        if (!loaded.load()) return;
+        store = loaded; // note: read only, the service owns the cache file
+        elements_modified = modified;
+    }
+
+    // post a pass notification (one per platform, replaced by the next pass)
+    private void notify(Pass pass, long now) {
+        long minutes = Math.max(0, (pass.getAos() - now + 30000) / 60000);
+        String name = (null == pass.getShortname()) ? "NORAD ID " + pass.getNORAD_ID() : pass.getShortname();
+        String text = ((minutes > 0) ? "AOS in " + minutes + " min" : "Passing now")
+                + ", max elevation " + Math.round(pass.getMaxElevation()) + "°"
+                + ", azimuth " + Math.round(pass.getAosAzimuth()) + "°";
+        Log.d("ALERTS", name + ": " + text); // debug
+        PendingIntent content = PendingIntent.getActivity(context, 0, new Intent(context, MapsActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        Notification notification = new NotificationCompat.Builder(context)
+                .setSmallIcon(R.drawable.eye_icon)
+                .setContentTitle(name + " pass")
+                .setContentText(text)
+                .setWhen(pass.getAos())
+                .setContentIntent(content)
+                .setAutoCancel(true)
+                .build();
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        manager.notify(Integer.parseInt(pass.getNORAD_ID()), notification);
+    }
+
+    // set the exact alarm (replaces the current one)
+    private void setAlarm(long time) {
+        if (time == alarm) return;
+        alarm = time;
+        AlarmManager manager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent operation = alarmIntent();
+        if (Build.VERSION.SDK_INT >= 23) manager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, time, operation); // note: doze mode
+        else if (Build.VERSION.SDK_INT >= 19) manager.setExact(AlarmManager.RTC_WAKEUP, time, operation);
+        else manager.set(AlarmManager.RTC_WAKEUP, time, operation);
+        Log.d("ALERTS", "NEXT ALARM IN " + (time - System.currentTimeMillis()) / 1000 + " s"); // debug
+    }
+
+    // cancel the alarm (no watchlist or observer)
+    private void cancelAlarm() {
+        if (Long.MAX_VALUE == alarm) return;
+        alarm = Long.MAX_VALUE;
+        ((AlarmManager) context.getSystemService(Context.ALARM_SERVICE)).cancel(alarmIntent());
+    }
+
+    // alarm broadcast (same intent for every alarm, so a new one replaces the previous)
+    private PendingIntent alarmIntent() {
+        Intent intent = new Intent(context, AlertReceiver.class).setAction(ACTION_ALERT);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    // load persisted state: observer location, fired alerts watermark and watchlist (executor only)
+    private void load() {
+        if (!state_file.exists()) return;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(state_file));
+            if (STATE_VERSION != in.readInt()) return;
+            if (in.readBoolean()) {
+                double latitude = in.readDouble(), longitude = in.readDouble(), altitude = in.readDouble();
+                planner.setObserver(new Observer(latitude, longitude, altitude), in.readDouble());
+            }
+            planner.setAlerted(in.readLong());
+            for (int i = in.readInt(); i > 0; i--) planner.watch(in.readInt());
+        } catch (IOException e) {
+            Log.e("ERROR", "AlertsException: "+e.getMessage());
+        } finally {
+            close(in);
+        }
+    }
+
+    // persist state atomically (temporary file and rename) (executor only)
+    private void save() {
+        File tmp = new File(state_file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            FileOutputStream file = new FileOutputStream(tmp);
+            out = new DataOutputStream(file);
+            out.writeInt(STATE_VERSION);
+            Observer observer = planner.getObserver();
+            out.writeBoolean(null != observer);
+            if (null != observer) {
+                out.writeDouble(observer.getLatitude());
+                out.writeDouble(observer.getLongitude());
+                out.writeDouble(observer.getAltitude());
+                out.writeDouble(planner.getMinElevation());
+            }
+            out.writeLong(planner.getAlerted());
+            List<Integer> watchlist = planner.getWatchlist();
+            out.writeInt(watchlist.size());
+            for (int id : watchlist) out.writeInt(id);
+            out.flush();
+            file.getFD().sync(); // note: data must be on disk before rename
+            out.close();
+            out = null;
+            if (!tmp.renameTo(state_file)) throw new IOException("Alerts file not replaced: " + state_file);
+        } catch (IOException e) {
+            Log.e("ERROR", "AlertsException: "+e.getMessage());
+            tmp.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    // close a stream quietly
+    private static void close(Closeable stream) {
+        if (null == stream) return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            Log.e("ERROR", "AlertsException: "+e.getMessage());
+        }
+    }
+
+}
@@ -24,62 +24,241 @@ import android.app.Service;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.IBinder;
-import android.support.v4.content.LocalBroadcastManager;
+import android.os.SystemClock;
 import android.util.Log;
-
+import android.view.Choreographer;
+
+import com.singularityeye.eyetrack.cache.CatalogIndex;
+import com.singularityeye.eyetrack.cache.ElementStore;
+import com.singularityeye.eyetrack.cache.ElementsUpdater;
+import com.singularityeye.eyetrack.metrics.Metrics;
+import com.singularityeye.eyetrack.model.Conjunction;
+import com.singularityeye.eyetrack.model.Pass;
+import com.singularityeye.eyetrack.model.PositionBuffer;
+import com.singularityeye.eyetrack.model.PositionHistory;
 import com.singularityeye.eyetrack.model.Satellite;
-
-import org.ksoap2.SoapEnvelope;
-import org.ksoap2.SoapFault;
-import org.ksoap2.serialization.SoapObject;
-import org.ksoap2.serialization.SoapSerializationEnvelope;
-import org.ksoap2.transport.HttpTransportSE;
-
-import java.util.Vector;
+import com.singularityeye.eyetrack.model.SimulationClock;
+import com.singularityeye.eyetrack.orbit.ConjunctionScreener;
+import com.singularityeye.eyetrack.orbit.LookAngleStream;
+import com.singularityeye.eyetrack.orbit.Observer;
+import com.singularityeye.eyetrack.orbit.PassPredictor;
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.VisiblePassFinder;
+import com.singularityeye.eyetrack.tracking.TrackingPipeline;
+import com.singularityeye.eyetrack.ws.ElementsClient;
+import com.singularityeye.eyetrack.ws.HttpTransport;
+import com.singularityeye.eyetrack.ws.PositionsClient;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * BoundService model is a Service that includes a single background task/thread to execute soap requests and send local broadcasts (actions) to client.
+ * BoundService model is a Service that includes a single background task (scheduled poller) to execute soap requests and publish positions to client.
+ * The poller runs at a fixed rate on a single scheduler thread; only one poller runs for the tracked set, whatever the number of binds.
+ * The rate adapts to the map ({@link UpdatePolicy}): faster for low orbits on zoomed in maps, slower for geostationary platforms
+ * or zoomed out maps; the poller is paused while the client is not in foreground.
+ * Once orbital elements are available positions are propagated on device (SGP4), soap requests are only used as fallback.
+ * Orbital elements are cached on disk (memory mapped binary catalog): positions are shown from cache on cold start,
+ * and stale elements are revalidated in background.
+ * The service tracks a set of platforms (it could change at runtime); each tick publishes all of their positions
+ * in a double buffered primitive state ({@link PositionBuffer}) and notifies the client on the main thread;
+ * steady state ticks (propagated positions) do not allocate.
+ * The tick itself (orbital elements, batch propagation and soap fallback) is the {@link TrackingPipeline} shared with the
+ * headless server; the service adds scheduling, the simulation clock, position histories and client notifications.
+ * Notifications are delivered on display frames (at most one per frame, the latest positions), spaced out when the client
+ * work takes longer than a frame budget, and dropped while the client is paused (latest positions are delivered on resume).
+ * Stage latencies (soap request, parsing, propagation, broadcast) and failure counters are recorded in lock free
+ * histograms ({@link Metrics}); hot path debug logging is compiled out unless DEBUG is set.
  * @author Manuel Martin-Gonzalez
  * @version 1.0.0-alpha
  */
 public class BoundService extends Service {
 
     // soap web services communication
-    private static final String NAMESPACE = "urn:satwsdl"; // soap web services namespace
-    private static final String METHOD_NAME = "GetPositionsByIp"; // soap web service method name
-    private static final String SOAP_ACTION = NAMESPACE + "/" + METHOD_NAME; // soap web services action
-    private static final String URL = "http://www.n2yo.com/sat/satws.php"; // soap web services url (?wsdl)
-    private String param_id, param_ip, param_seconds, param_key; // properties/params for soap request method
+    static final boolean DEBUG = false; // hot path debug logging (compile time constant: disabled log lines are removed by the compiler)
 
-    // thread: executes soap requests and sends local broadcasts (actions) to client
-    private SOAPWSTask task;
+    private static final String URL = "http://www.n2yo.com/sat/satws.php"; // soap web services url (?wsdl)
 
-    // task model;
-    // send soap web services requests;
-    // send local broadcasts to client
-    private class SOAPWSTask extends Thread {
+    // tracked platforms (NORAD IDs); note: modified by clients, read by task (snapshot in the pipeline)
+    private final List<String> tracked_ids = new CopyOnWriteArrayList<String>();
+    private long last_tick; // elapsed time (milliseconds) of the last executed tick (task only)
+
+    // orbital elements (plain text two-line element sets)
+    private static final int TIMEOUT = 10000; // read timeout (milliseconds)
+    private static final int CONNECT_TIMEOUT = 5000; // connect timeout (milliseconds)
+    private static final int RETRIES = 2; // retries of failed http requests
+    private static final long RETRY_BACKOFF = 500; // base delay (milliseconds) between retries (jittered, exponential)
+    private final HttpTransport transport = new HttpTransport(CONNECT_TIMEOUT, TIMEOUT, RETRIES, RETRY_BACKOFF); // shared keep-alive connections
+    static final String ELEMENTS_FILE = "elements.bin"; // orbital elements cache file (binary catalog)
+    static final int MAX_ELEMENTS = 50000; // orbital elements cache size (whole public catalog)
+    private ElementStore store; // orbital elements cache (persistent)
+    private ElementsUpdater elements; // propagators of tracked platforms (shared pipeline stage, see server module)
+    private LookAngleStream pointing; // look angle stream of one platform (guarded by this)
+    private String pointing_id; // NORAD ID of the pointed platform (guarded by this)
+    private final PositionsClient soap_client = new PositionsClient(URL, transport); // soap positions client
+    private static final long REQUEST_INTERVAL = UpdatePolicy.DEFAULT_INTERVAL - UpdatePolicy.MIN_INTERVAL / 2; // milliseconds between rounds of soap requests
+    private TrackingPipeline pipeline; // tick pipeline: orbital elements, batch propagation and soap fallback (shared with the server)
+    private boolean recording; // live tick in history mode (task only)
+    // position histories (post-pass analysis and replay)
+    private static final int HISTORY_SIZE = 3600; // positions kept per platform
+    private static final long HISTORY_INTERVAL = 1000; // minimum time (milliseconds) between kept positions (one hour per history)
+    private static final int MAX_HISTORIES = 16; // platforms with history (first tracked ones)
+    private volatile boolean history_mode = true; // keep position histories (soap responses are streamed into them)
+    private final ConcurrentMap<String, PositionHistory> histories = new ConcurrentHashMap<String, PositionHistory>(); // position histories by NORAD ID
+
+    // simulation clock: positions are propagated at clock time (live: wall time)
+    private final SimulationClock clock = new SimulationClock();
+    private final AtomicBoolean run_now = new AtomicBoolean(); // next tick runs at once (no coalescing): clock changed or platforms added
+    private final SimulationClock.Listener clock_listener = new SimulationClock.Listener() {
+        @Override
+        public void onClockChanged(SimulationClock clock) {
+            tickNow();
+        }
+    };
+
+    // replay of position histories on the simulation clock (instead of propagated positions)
+    private static final long REPLAY_INTERVAL = UpdatePolicy.MIN_INTERVAL; // milliseconds between replay ticks
+    private volatile Replay replay; // running replay, null if not replaying
+    private final double[] lla = new double[3], w = new double[3]; // replay interpolation buffers (task only)
+
+    // replay model (immutable, replaced as a whole)
+    private static class Replay {
+        final long start, end; // history time range, utc (milliseconds since 1970-01-01)
+        Replay(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
 
-        private boolean flag; // task control tag
+    // positions published to client (double buffered) and main thread notification (display frames)
+    private static final long FRAME_BUDGET = 8000000; // client work per notification before notifications are spaced out (nanoseconds)
+    private static final long MAX_NOTIFY_DELAY = 500; // notification spacing bound (milliseconds)
+    private final PositionBuffer positions = new PositionBuffer(16);
+    private Choreographer choreographer; // main thread choreographer (frame callbacks can be posted from any thread)
+    private volatile PositionsListener listener; // client listener
+    private volatile boolean notify_paused; // client is not in foreground (notifications are dropped)
+    private final AtomicBoolean notify_pending = new AtomicBoolean(); // notification posted and not yet delivered
+    private volatile long notify_posted; // time (nanoseconds) the pending notification was posted
+    private volatile long notify_delay; // delay (milliseconds) of the next notification, client backpressure
+    private long notified_version = -1; // positions version of the last notification (main thread)
+    private final Choreographer.FrameCallback notify_frame = new Choreographer.FrameCallback() { // note: preallocated, posting it does not allocate
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            notify_pending.set(false);
+            PositionsListener current = listener;
+            if (null == current || notify_paused) return;
+            long version = positions.getVersion();
+            if (version == notified_version) return; // note: already delivered (e.g. resumed without new positions)
+            notified_version = version;
+            long started = System.nanoTime();
+            current.onPositions(positions);
+            long finished = System.nanoTime();
+            metrics.record(Metrics.BROADCAST, finished - notify_posted);
+            // note: a slow client gets notifications spaced out, so position updates take at most about half of the main thread
+            long busy = finished - started;
+            notify_delay = (busy <= FRAME_BUDGET) ? 0 : Math.min(MAX_NOTIFY_DELAY, busy / 1000000);
+        }
+    };
+
+    // metrics: stage latencies and failure counters (lock free, no allocations)
+    private final Metrics metrics = new Metrics();
+
+    // scheduler: executes soap requests and publishes positions to client (single thread, at most one poller)
+    private static final double RESCHEDULE = 0.25; // relative tick interval change to reschedule the poller
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> poller; // running poller, null if stopped or paused (guarded by this)
+    private boolean started; // task started by client (guarded by this)
+    private boolean paused; // client is not in foreground (guarded by this)
+    private volatile long tick_interval = UpdatePolicy.DEFAULT_INTERVAL; // milliseconds between ticks
+    private final UpdatePolicy policy = new UpdatePolicy(); // adaptive tick interval
+
+    // task model (first tick);
+    // load cached orbital elements: cold start positions from cache
+    private final Runnable load_task = new Runnable() {
+        @Override
+        public void run() {
+            last_tick = 0;
+            loadElements();
+        }
+    };
 
+    // task model (every tick);
+    // revalidate orbital elements in background (one batched request) and propagate positions
+    // (send soap web services requests as fallback);
+    // publish positions to client
+    private final Runnable tick_task = new Runnable() {
         @Override
         public void run() {
-            flag = true;
-            while (flag){
-                try {
-                    if(sendRequest()) sendBroadCast(); // execute soap request & send broadcast (action)
-                    Thread.sleep(1000);
-                } catch (InterruptedException e) {
-                    Log.e("ERROR", "ThreadInterruptedException: "+e.getMessage());
+            long now = SystemClock.elapsedRealtime();
+            // note: at fixed rate, ticks missed while a long tick runs (e.g. soap timeout) are fired back to back; coalesce them
+            if (now - last_tick < tick_interval / 2 && !run_now.getAndSet(false)) {
+                metrics.increment(Metrics.DROPPED_TICKS);
+                return;
+            }
+            last_tick = now;
+            metrics.increment(Metrics.TICKS);
+            try {
+                Replay current = replay;
+                if (null != current) {
+                    if (replay(current)) publish(); // interpolate histories & publish positions
+                    reschedule(REPLAY_INTERVAL);
+                    return;
                 }
+                long time = clock.now();
+                double rate = clock.getRate();
+                boolean live = clock.isLive();
+                recording = live && history_mode;
+                policy.reset(rate);
+                if(pipeline.update(time, rate, live)) publish(); // propagate (or execute soap request) & publish positions
+                reschedule(policy.interval()); // adapt rate to tracked platforms and map zoom
+            } catch (RuntimeException e) {
+                Log.e("ERROR", "TickException: "+e.getMessage()); // note: an uncaught exception would cancel next ticks
             }
-            Log.d("TASK", "TASK/THREAD HAS BEEN STOPPED ! (STOP SENDING REQUESTS)"); // debug
         }
+    };
 
-        public void stopTask(){
-            flag = false;
+    // pipeline callbacks: adaptive tick interval, position histories, pointing and alerts
+    private final TrackingPipeline.Listener pipeline_listener = new TrackingPipeline.Listener() {
+        @Override
+        public void onPropagated(String id, long time, double latitude, double longitude, double altitude, double angularVelocity) {
+            policy.add(angularVelocity, latitude);
+            if (!recording) return;
+            PositionHistory history = history(id);
+            if (null != history) history.add(time, latitude, longitude, altitude);
         }
 
-    }
+        @Override
+        public void onFallback(String id) {
+            policy.addFallback();
+        }
+
+        @Override
+        public PositionHistory getHistory(String id) {
+            return history_mode ? history(id) : null; // note: history mode streams every position of soap responses
+        }
+
+        @Override
+        public void onElementsChanged(int found, boolean saved) {
+            if (DEBUG) Log.d("ELEMENTS", "FOUND = " + found); // debug
+            refreshPointing();
+            if (saved) AlertScheduler.get(BoundService.this).refresh(); // note: watched platforms read the cache file
+        }
+
+        @Override
+        public void onError(String message) {
+            Log.e("ERROR", message);
+        }
+    };
 
     private final IBinder binder = new LocalBinder(); // binder: the programming interface that clients use to interact with the service
 
@@ -97,17 +276,34 @@ public class BoundService extends Service {
         }
     }
 
-    // last eye position
-    private Satellite last_eye;
-
     /**
-     * Given action definition for intent in sendBroadCast method (it has the same name as soap web services method).
+     * Client model: it is notified on the main thread when new positions are published.
+     * Notifications are coalesced (a notification not yet delivered is not posted again) and delivered on display frames,
+     * so the client reads the latest positions at most once per frame; slow clients are notified less often.
      */
-    public static final String ACTION_GETPOSITIONSBYIP = "com.singularityeye.eyetrack.action.GETPOSITIONSBYIP";
+    public interface PositionsListener {
+        /**
+         * New positions are published.
+         * @param positions positions buffer (read the front buffer, tracking order)
+         */
+        void onPositions(PositionBuffer positions);
+    }
+
     /**
-     * Given object definition for intent extra data in sendBroadCast method.
+     * Bound service is created.
+     * Create the orbital elements cache (it is loaded by the task).
      */
-    public static final String OBJECT_GETPOSITIONSBYIP = "LAST_EYE";
+    @Override
+    public void onCreate() {
+        Log.d("SERVICE", "ON_CREATE !"); // debug
+        super.onCreate();
+        choreographer = Choreographer.getInstance(); // note: main thread
+        clock.setListener(clock_listener);
+        store = new ElementStore(new File(getFilesDir(), ELEMENTS_FILE), MAX_ELEMENTS);
+        elements = new ElementsUpdater(store, new ElementsClient(transport));
+        pipeline = new TrackingPipeline(elements, soap_client, metrics, positions, pipeline_listener);
+        pipeline.setRequestInterval(REQUEST_INTERVAL);
+    }
 
     /**
      * Provides binding for the service.
@@ -141,104 +337,488 @@ public class BoundService extends Service {
     @Override
     public void onDestroy() {
         Log.d("SERVICE", "ON_DESTROY !"); // debug
+        listener = null;
+        choreographer.removeFrameCallback(notify_frame);
+        stopTask();
+        scheduler.shutdownNow(); // release scheduler thread
+        pipeline.shutdown(); // cancel orbital elements and soap requests
+        stopPointing();
         super.onDestroy();
     }
 
     /**
-     * Create new task/thread.
-     * It starts sending soap requests, and sending local broadcasts (actions) to client.
-     * @param id string that identifies the platform
+     * Set the client listener (notified on the main thread); a new listener gets the last published positions.
+     * Note: call it from the main thread.
+     * @param listener client listener, null to stop notifications
+     */
+    public void setPositionsListener(PositionsListener listener){
+        this.listener = listener;
+        if (null == listener) {
+            choreographer.removeFrameCallback(notify_frame);
+            notify_pending.set(false);
+            return;
+        }
+        notified_version = -1; // note: a new client gets the last positions (e.g. after a configuration change)
+        if (positions.getVersion() > 0) notifyClient();
+    }
+
+    /**
+     * Get the positions buffer (front buffer holds last published positions).
+     * @return positions buffer
+     */
+    public PositionBuffer getPositions(){
+        return positions;
+    }
+
+    /**
+     * Set the map zoom level of the client.
+     * Zooming out widens the tick interval from the next tick; zooming in shortens it at once
+     * (otherwise the next tick could be up to the maximum interval away).
+     * @param zoom zoom level (camera position)
+     */
+    public void setZoom(float zoom){
+        policy.setZoom(zoom);
+        if (null != replay) return; // note: replay ticks at its own interval
+        long interval = policy.interval(); // note: last tick speeds at the new zoom
+        if (interval < tick_interval) reschedule(interval);
+    }
+
+    /**
+     * Pause or resume the task (e.g. client is paused or resumed).
+     * While paused, no positions are propagated, no requests are sent and the client is not notified;
+     * positions published meanwhile (e.g. a running tick) are delivered on resume.
+     * @param paused true to pause
+     */
+    public synchronized void setPaused(boolean paused){
+        if (this.paused == paused) return;
+        this.paused = paused;
+        notify_paused = paused;
+        Log.d("TASK", paused ? "TASK PAUSED !" : "TASK RESUMED !"); // debug
+        if (paused) {
+            cancelPoller();
+            choreographer.removeFrameCallback(notify_frame);
+            notify_pending.set(false);
+        } else {
+            notifyClient(); // note: deferred positions (skipped if already delivered)
+            schedulePoller(0);
+        }
+    }
+
+    /**
+     * Start the task (scheduled poller).
+     * It starts sending soap requests, and publishing positions to client.
+     * If the poller is already running (e.g. client bound again after a configuration change),
+     * params and tracked platforms are updated and no new poller is created.
+     * @param ids strings that identify the tracked platforms
      * @param ip android device ip
      * @param seconds the last seconds for what we get the positions
      * @param key string that holds the soap web service license key
      */
-    public void initTask(String id, String ip, String seconds, String key){
-        Log.d("TASK", "INIT TASK: CREATE AND START NEW TASK !"); // debug
+    public synchronized void initTask(Collection<String> ids, String ip, String seconds, String key){
+        Log.d("TASK", "INIT TASK !"); // debug
 
         // set params for request
-        this.param_id = id;
-        this.param_ip = ip;
-        this.param_seconds = seconds;
-        this.param_key = key; // (.lic)
+        pipeline.setParams(ip, seconds, key); // (.lic)
 
-        // create and start new thread/task
-        this.task = new SOAPWSTask();
-        this.task.start();
+        // set tracked platforms
+        setTrackedIds(ids);
+
+        // schedule poller (only one)
+        if (this.started) {
+            Log.d("TASK", "TASK IS ALREADY RUNNING ! (PARAMS AND TRACKED PLATFORMS UPDATED)"); // debug
+            return;
+        }
+        this.started = true;
+        this.scheduler.execute(load_task);
+        schedulePoller(0);
     }
 
     /**
-     * Stop the main task/thread.
-     * It stops sending soap requests, and sending local broadcasts (actions) to client.
+     * Replace the set of tracked platforms.
+     * Positions for new platforms are included from the next tick.
+     * @param ids strings that identify the tracked platforms
      */
-    public void stopTask(){
-        this.task.stopTask();
+    public void setTrackedIds(Collection<String> ids){
+        List<String> normalized = new ArrayList<String>(ids.size());
+        for (String id : ids) {
+            String normalizedId = normalizeId(id);
+            if (null != normalizedId && !normalized.contains(normalizedId)) normalized.add(normalizedId);
+        }
+        tracked_ids.retainAll(normalized);
+        boolean added = false;
+        for (String id : normalized) {
+            if (tracked_ids.contains(id)) continue;
+            tracked_ids.add(id);
+            added = true;
+        }
+        trackedChanged(); // cached orbital elements, missing ones are requested on next tick
+        if (added) tickNow(); // note: new platforms could need a shorter tick interval
     }
 
-    // send soap request and set last eye position
-    // if no response return false
-    private boolean sendRequest(){
-        Log.d("SERVICE", "START_REQUEST !"); // debug
+    /**
+     * Start tracking a platform.
+     * @param id string that identifies the platform
+     */
+    public void track(String id){
+        String normalizedId = normalizeId(id);
+        if (null == normalizedId || tracked_ids.contains(normalizedId)) return;
+        tracked_ids.add(normalizedId);
+        trackedChanged(); // cached orbital elements, missing ones are requested on next tick
+        tickNow(); // note: the new platform could need a shorter tick interval
+    }
 
-        // create soap request
-        SoapObject request = new SoapObject(NAMESPACE, METHOD_NAME);
-        // set properties
-        request.addProperty("id", this.param_id);
-        request.addProperty("ip", this.param_ip);
-        request.addProperty("seconds", this.param_seconds);
-        request.addProperty("license", this.param_key);
+    /**
+     * Stop tracking a platform.
+     * @param id string that identifies the platform
+     */
+    public void untrack(String id){
+        String normalizedId = normalizeId(id);
+        if (null == normalizedId) return;
+        tracked_ids.remove(normalizedId);
+        trackedChanged();
+    }
 
-        // create envelope
-        SoapSerializationEnvelope envelope = new SoapSerializationEnvelope(SoapEnvelope.VER11);
-        envelope.dotNet = true;
-        // set soap object/request
-        envelope.setOutputSoapObject(request);
+    /**
+     * Search the orbital elements catalog by NORAD ID or name (prefix, or with typos), e.g. to pick a platform to track.
+     * Note: the search index is built on first use (and after the catalog is saved), do not call it from the main thread.
+     * @param query NORAD ID digits or name (case and punctuation are ignored)
+     * @param max maximum number of results
+     * @return platforms (NORAD ID and short name only), best matches first
+     */
+    public List<Satellite> searchCatalog(String query, int max){
+        CatalogIndex index = store.getIndex();
+        int[] records = new int[max];
+        int count = index.search(query, records);
+        List<Satellite> found = new ArrayList<Satellite>(count);
+        for (int i = 0; i < count; i++) {
+            Satellite eye = new Satellite();
+            eye.setNORAD_ID(String.valueOf(index.getNORAD_ID(records[i])));
+            eye.setShortname(index.getName(records[i]));
+            found.add(eye);
+        }
+        return found;
+    }
 
-        // send envelope (http)
-        HttpTransportSE httpTransport = new HttpTransportSE(URL);
-        try {
-            httpTransport.call(SOAP_ACTION, envelope);
-        } catch (Exception e) {
-            Log.e("ERROR", "HTTPTransportException: "+e.getMessage());
+    /**
+     * Get the tracked platforms.
+     * @return strings that identify the tracked platforms (tracking order)
+     */
+    public List<String> getTrackedIds(){
+        return new ArrayList<String>(tracked_ids);
+    }
+
+    /**
+     * Get the propagator of a tracked platform.
+     * Note: propagators are stateless, they can be used from any thread; the lookup does not allocate (every frame).
+     * @param id NORAD ID
+     * @return platform propagator, null if there are no orbital elements
+     */
+    public SGP4 getPropagator(int id){
+        return elements.get(id);
+    }
+
+    /**
+     * Enable or disable history mode (enabled by default): positions of the first tracked platforms are kept in a bounded
+     * history per platform (propagated positions, and every position of soap responses), instead of the last position only.
+     * @param enabled true to keep histories (existing histories are dropped when disabled)
+     */
+    public void setHistoryMode(boolean enabled){
+        history_mode = enabled;
+        if (!enabled) histories.clear();
+    }
+
+    /**
+     * Get the position history of a tracked platform (history mode).
+     * Note: histories are thread safe, they are written while tracking.
+     * @param id NORAD ID
+     * @return position history, null if there is none
+     */
+    public PositionHistory getHistory(String id){
+        return histories.get(id);
+    }
+
+    /**
+     * Get the simulation clock.
+     * Positions are propagated at clock time (see {@link PositionBuffer#getRate}); out of live mode,
+     * soap requests and history recording are suspended, and platforms without orbital elements are not published.
+     * @return simulation clock (thread safe)
+     */
+    public SimulationClock getClock(){
+        return clock;
+    }
+
+    /**
+     * Replay position histories instead of propagated positions (the simulation clock is set to the replay start and speed).
+     * Live tracking (propagation, requests and history recording) is suspended until the clock leaves the replay range,
+     * or the replay is stopped.
+     * @param start utc time (milliseconds since 1970-01-01), clamped to the oldest history position
+     * @param end utc time (milliseconds since 1970-01-01), clamped to the newest history position
+     * @param speed history time advance per elapsed time unit (e.g. 60: one minute per second)
+     * @return false if there are no history positions in the range (no replay)
+     */
+    public boolean startReplay(long start, long end, double speed){
+        if (speed <= 0.0) throw new IllegalArgumentException("speed " + speed);
+        long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+        for (PositionHistory history : histories.values()) {
+            first = Math.min(first, history.getStartTime());
+            last = Math.max(last, history.getEndTime());
+        }
+        start = Math.max(start, first);
+        end = Math.min(end, last);
+        if (start >= end) return false;
+        Log.d("TASK", "REPLAY x" + speed + " !"); // debug
+        replay = new Replay(start, end);
+        clock.set(start, speed);
+        return true;
+    }
+
+    /**
+     * Stop replaying position histories (the clock goes back to live mode).
+     */
+    public void stopReplay(){
+        if (null == replay) return;
+        replay = null;
+        clock.setLive();
+    }
+
+    /**
+     * Check if position histories are being replayed.
+     * @return true if replaying
+     */
+    public boolean isReplaying(){
+        return null != replay;
+    }
+
+    /**
+     * Get the pass alert scheduler (watchlist and observer location for alerts).
+     * Alerts do not need the service: exact alarms wake the device before each pass, even if the service is not running.
+     * @return alert scheduler of the process
+     */
+    public AlertScheduler getAlerts(){
+        return AlertScheduler.get(this);
+    }
+
+    /**
+     * Predict passes of the tracked platforms (only platforms with orbital elements) over an observer location.
+     * Note: it could take a while, do not call it from the main thread.
+     * @param latitude observer latitude (decimal degrees)
+     * @param longitude observer longitude (decimal degrees)
+     * @param altitude observer altitude (kilometers)
+     * @param minElevation elevation mask (decimal degrees)
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @return passes sorted by AOS
+     */
+    public List<Pass> predictPasses(double latitude, double longitude, double altitude, double minElevation, long start, long end){
+        PassPredictor predictor = new PassPredictor(new Observer(latitude, longitude, altitude), minElevation);
+        return predictor.predictAll(elements.getPropagators(), start, end);
+    }
+
+    /**
+     * Predict visible passes of the tracked platforms (only platforms with orbital elements) over an observer location:
+     * platform sunlit while the observer is in darkness (e.g. "visible passes tonight").
+     * Note: it could take a while, do not call it from the main thread.
+     * @param latitude observer latitude (decimal degrees)
+     * @param longitude observer longitude (decimal degrees)
+     * @param altitude observer altitude (kilometers)
+     * @param minElevation elevation mask (decimal degrees)
+     * @param twilight sun elevation for darkness (decimal degrees), e.g. {@link com.singularityeye.eyetrack.orbit.SunTable#CIVIL_TWILIGHT}
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @return annotated passes sorted by AOS (visible part, illumination and sun elevation)
+     */
+    public List<Pass> predictVisiblePasses(double latitude, double longitude, double altitude, double minElevation, double twilight, long start, long end){
+        PassPredictor predictor = new PassPredictor(new Observer(latitude, longitude, altitude), minElevation);
+        return new VisiblePassFinder(predictor, twilight).findAll(elements.getPropagators(), start, end);
+    }
+
+    /**
+     * Screen the tracked platforms (only platforms with orbital elements) for close approaches between them.
+     * Note: it could take a while, do not call it from the main thread.
+     * @param threshold miss distance threshold (kilometers)
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @return conjunctions sorted by TCA
+     */
+    public List<Conjunction> screenConjunctions(double threshold, long start, long end){
+        ConjunctionScreener screener = new ConjunctionScreener(threshold, ConjunctionScreener.DEFAULT_STEP);
+        return screener.screen(elements.getPropagators(), start, end);
+    }
+
+    /**
+     * Start a look angle stream for antenna pointing (azimuth, elevation, range, range rate and doppler shift),
+     * sampled from local propagation at a fixed rate on a dedicated thread; a running stream is replaced.
+     * The stream follows new orbital elements of the platform while it is tracked.
+     * @param id NORAD ID of a tracked platform
+     * @param latitude observer latitude (decimal degrees)
+     * @param longitude observer longitude (decimal degrees)
+     * @param altitude observer altitude (kilometers)
+     * @param frequency downlink frequency (Hz), 0 without doppler
+     * @param rate samples per second (see {@link LookAngleStream#MAX_RATE})
+     * @param listener consumer (stream thread, not the main thread)
+     * @return false if there are no orbital elements for the platform
+     */
+    public synchronized boolean startPointing(int id, double latitude, double longitude, double altitude, double frequency, int rate, LookAngleStream.Listener listener){
+        stopPointing();
+        SGP4 propagator = elements.get(id);
+        if (null == propagator) return false;
+        pointing = new LookAngleStream(propagator, new Observer(latitude, longitude, altitude), frequency);
+        pointing_id = String.valueOf(id);
+        pointing.start(rate, listener);
+        Log.d("POINTING", "START = " + id + " @ " + rate + " Hz"); // debug
+        return true;
+    }
+
+    /**
+     * Stop the look angle stream (if any).
+     */
+    public synchronized void stopPointing(){
+        if (null == pointing) return;
+        pointing.stop();
+        pointing = null;
+        pointing_id = null;
+    }
+
+    /**
+     * Get a snapshot of the tracking metrics: latency histograms (soap request, response parsing, propagation and broadcast
+     * to client) and counters (ticks, dropped ticks, failed requests, soap faults, propagation errors, failed elements requests).
+     * @return metrics snapshot (immutable)
+     */
+    public Metrics.Snapshot getMetrics(){
+        return metrics.snapshot();
+    }
+
+    /**
+     * Clear the tracking metrics.
+     */
+    public void resetMetrics(){
+        metrics.reset();
+    }
+
+    /**
+     * Stop the task (scheduled poller).
+     * It stops sending soap requests, and publishing positions to client (a tick in progress is completed).
+     */
+    public synchronized void stopTask(){
+        if (!this.started) return;
+        this.started = false;
+        cancelPoller();
+        Log.d("TASK", "TASK HAS BEEN STOPPED ! (STOP SENDING REQUESTS)"); // debug
+    }
+
+    // schedule the poller at current tick interval (if started, not paused and not already scheduled)
+    private synchronized void schedulePoller(long delay){
+        if (!started || paused || null != poller) return;
+        poller = scheduler.scheduleAtFixedRate(tick_task, delay, tick_interval, TimeUnit.MILLISECONDS);
+    }
+
+    // cancel the poller (a tick in progress is completed)
+    private synchronized void cancelPoller(){
+        if (null == poller) return;
+        poller.cancel(false);
+        poller = null;
+    }
+
+    // restart the poller with a tick at once (see tickNow)
+    private synchronized void kick(){
+        if (null == poller) return;
+        cancelPoller();
+        schedulePoller(0);
+    }
+
+    // run a tick at once, even right after another one (clock changed, or tracked platforms added)
+    private void tickNow(){
+        run_now.set(true);
+        kick();
+    }
+
+    // reschedule the poller if the tick interval has changed enough (called from a tick, or when the client zooms in)
+    private synchronized void reschedule(long interval){
+        if (Math.abs(interval - tick_interval) <= RESCHEDULE * tick_interval) return;
+        if (DEBUG) Log.d("TASK", "TICK INTERVAL = " + interval); // debug
+        tick_interval = interval;
+        if (null == poller) return;
+        cancelPoller();
+        schedulePoller(interval);
+    }
+
+    // fill the back buffer with history positions interpolated at clock time (tracking order)
+    // if no position has been interpolated return false
+    private boolean replay(Replay current){
+        long time = clock.now();
+        if (time > current.end || time < current.start) {
+            Log.d("TASK", "REPLAY END !"); // debug
+            stopReplay(); // note: next tick is live
             return false;
         }
+        positions.clear(time, clock.getRate());
+        for (String id : pipeline.getTracked()) {
+            PositionHistory history = histories.get(id);
+            if (null == history || !history.interpolate(time, lla)) continue;
+            history.velocity(time, w);
+            Satellite last_eye = pipeline.getLastEye(id);
+            SGP4 propagator = elements.get(id);
+            String name = (null != propagator) ? propagator.getTLE().getName() : (null != last_eye) ? last_eye.getShortname() : null;
+            positions.add(Integer.parseInt(id), name, lla[0], lla[1], lla[2], w);
+        }
+        return positions.pending() > 0;
+    }
+
+    // get (or create) the history of a tracked platform
+    // if the maximum number of histories is reached return null
+    private PositionHistory history(String id){
+        PositionHistory history = histories.get(id);
+        if (null != history || histories.size() >= MAX_HISTORIES) return history;
+        history = new PositionHistory(HISTORY_SIZE, HISTORY_INTERVAL);
+        PositionHistory previous = histories.putIfAbsent(id, history);
+        return (null != previous) ? previous : history;
+    }
 
-        // get response
-        Vector<SoapObject> response_array = null;
+    // load orbital elements cache file (once) and create propagators for tracked platforms
+    private void loadElements(){
+        if (pipeline.load()) Log.d("ELEMENTS", "CACHED = " + store.size()); // debug
+        refreshPointing();
+    }
+
+    // follow new orbital elements of the pointed platform
+    private synchronized void refreshPointing(){
+        if (null == pointing) return;
+        SGP4 propagator = elements.get(pointing_id);
+        if (null != propagator) pointing.setPropagator(propagator); // note: expired elements keep the last propagator
+    }
+
+    // push the tracked platforms snapshot to the pipeline (tick iterates it without allocating) and forget untracked histories
+    private void trackedChanged(){
+        pipeline.setTracked(tracked_ids.toArray(new String[0]));
+        histories.keySet().retainAll(tracked_ids);
+    }
+
+    // canonical NORAD ID (no padding zeros), null if not valid
+    private static String normalizeId(String id){
+        if (null == id) return null;
         try {
-            response_array = (Vector<SoapObject>) envelope.getResponse(); // list of satellite positions
-        } catch (SoapFault soapFault) {
-            Log.e("ERROR", "SoapFault: "+soapFault.faultstring);
-            return false;
+            return String.valueOf(Integer.parseInt(id.trim()));
+        } catch (NumberFormatException e) {
+            Log.e("ERROR", "Invalid NORAD ID: "+id);
+            return null;
         }
-        // get last eye position from response
-        if(null == response_array) return false;
-        SoapObject last_eye_position = response_array.get(response_array.size()-1); // get last eye position
-        last_eye = new Satellite();
-        last_eye.setNORAD_ID(last_eye_position.getPrimitivePropertyAsString("id"));
-        last_eye.setShortname(last_eye_position.getPrimitivePropertyAsString("shortname"));
-        last_eye.setLatitude(Double.parseDouble(last_eye_position.getPrimitivePropertyAsString("satlatitude")));
-        last_eye.setLongitude(Double.parseDouble(last_eye_position.getPrimitivePropertyAsString("satlongitude")));
-        last_eye.setAltitude(Double.parseDouble(last_eye_position.getPrimitivePropertyAsString("sataltitude")));
-        // show last position
-        Log.d("LAST_SATELLITE_POSITION", "ID = " + last_eye.getNORAD_ID()); // debug
-        Log.d("LAST_SATELLITE_POSITION", "SHORT_NAME = "+last_eye.getShortname()); // debug
-        Log.d("LAST_SATELLITE_POSITION", "SAT_LATITUDE = "+last_eye.getLatitude()); // debug
-        Log.d("LAST_SATELLITE_POSITION", "SAT_LONGITUDE = "+last_eye.getLongitude()); // debug
-        Log.d("LAST_SATELLITE_POSITION", "SAT_ALTITUDE = "+last_eye.getAltitude()); // debug
-        return true;
     }
 
-    // send object by local broadcast to client
-    private void sendBroadCast(){
-        Log.d("SERVICE", "SEND_BROADCAST !"); // debug
-        if(null != last_eye){
-            Intent intent = new Intent(ACTION_GETPOSITIONSBYIP);
-            intent.putExtra(OBJECT_GETPOSITIONSBYIP, last_eye);
-            // note: send broadcasts of intents to local objects within activity process
-            LocalBroadcastManager.getInstance(this).sendBroadcast(intent); // dispatch intent via LocalBroadcastManager
-        }else{
-            Log.e("ERROR", "Broadcast not sent (data not found)");
+    // publish the back buffer (every tracked platform) and notify client on the main thread (coalesced, display frames)
+    private void publish(){
+        positions.publish();
+        notifyClient();
+    }
+
+    // notify the client on a display frame (coalesced: at most one pending notification, it delivers the latest positions)
+    private void notifyClient(){
+        if (null == listener) return;
+        if (notify_paused || !notify_pending.compareAndSet(false, true)) {
+            metrics.increment(Metrics.COALESCED_NOTIFICATIONS);
+            return;
         }
+        notify_posted = System.nanoTime();
+        choreographer.postFrameCallbackDelayed(notify_frame, notify_delay);
     }
 
 }
@@ -20,19 +20,31 @@
 
 package com.singularityeye.eyetrack;
 
-import android.content.BroadcastReceiver;
+import android.app.AlertDialog;
+import android.app.DatePickerDialog;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.support.v4.app.FragmentActivity;
-import android.support.v4.content.LocalBroadcastManager;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.DatePicker;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ListView;
 import android.widget.TextView;
 
-import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
@@ -43,13 +55,23 @@ import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
 import com.singularityeye.eyetrack.license.License;
 import com.singularityeye.eyetrack.license.Serializer;
+import com.singularityeye.eyetrack.model.PositionBuffer;
 import com.singularityeye.eyetrack.model.Satellite;
+import com.singularityeye.eyetrack.model.SimulationClock;
+import com.singularityeye.eyetrack.model.SpatialIndex;
 
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * MapsActivity model is a fragment activity which can be considered as the main component of the application.
@@ -64,69 +86,142 @@ public class MapsActivity extends FragmentActivity implements OnMapReadyCallback
 
     // visual map properties
     private LatLng defaultPosition; // default marker position
-    private Marker eye_marker; // satellite marker
+    private Marker eye_marker; // followed satellite marker
+    private final SpatialIndex eye_index = new SpatialIndex(64); // platform positions (viewport queries)
+    private MarkerLayer layer; // markers of visible platforms (clusters when zoomed out)
     private CameraPosition cameraPosition; // camera position
+    private MarkerInterpolator interpolator; // moves markers on every frame between position fixes
+    private TrackOverlay overlay; // ground tracks and footprints
     private TextView textViewPosition; // textView position
-    private String position; // position
-
-    // updated marker properties
-    private Satellite last_eye; // last tracked eye from soap request
-    private LatLng current_position; // current eye position
+    private final StringBuilder position = new StringBuilder(128); // position text (reused)
+    private char[] position_chars = new char[128]; // position text characters (reused)
+    private char[] shown_chars = new char[128]; // shown text characters (unchanged text is not set again)
+    private int shown_length = -1;
+    private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC")); // simulated time text (reused)
 
     // IPC
-    private BroadcastReceiver receiver; // broadcast receiver
-    private LocalBroadcastManager localBroadcastManager; // helper to register local broadcast receiver
+    private PositionsListener listener; // positions listener (notified by bound service)
     private ServiceConnection connection; // service connection (binding)
     private BoundService service; // bound service
+    private boolean resumed; // activity is in foreground (service task runs only while resumed)
 
     // testing request params
-    private final String NORAD_ID = "27424";
+    private final String NORAD_ID = "27424"; // default followed platform (camera and text)
+    private final String[] NORAD_IDS = {"27424", "25544", "33591"}; // default tracked platforms (AQUA, ISS, NOAA 19)
+    private int followed_id; // followed platform (camera and text), a search pick is followed
+    private static final String PREFERENCES = "selection"; // selected platforms (they survive restarts)
+    private static final String PREF_TRACKED = "tracked_ids", PREF_FOLLOWED = "followed_id";
+    private SharedPreferences preferences;
     private String hostAddress; // device ip
     private final String SECONDS = "1";
+    private static final double OBSERVER_LATITUDE = 36.723888, OBSERVER_LONGITUDE = -2.177156; // pass alerts observer and default marker position (decimal degrees)
+    private static final double OBSERVER_ALTITUDE = 0.0; // pass alerts observer altitude (kilometers)
+    private static final long REPLAY_WINDOW = 3600000; // replayed history (milliseconds before now)
+    private static final double REPLAY_SPEED = 60.0; // replay speed (one minute per second)
+
+    // simulation clock menu
+    private static final int MENU_LIVE = 1, MENU_PAUSE = 2, MENU_X10 = 3, MENU_X100 = 4, MENU_X1000 = 5, MENU_REWIND = 6, MENU_DATE = 7;
+
+    // metrics debug overlay (below followed platform text)
+    private static final int MENU_METRICS = 8;
+    private static final long METRICS_INTERVAL = 1000; // milliseconds between metrics snapshots
+    private boolean metrics_overlay; // overlay shown
+    private long last_metrics; // uptime (milliseconds) of the last metrics snapshot
+    private final StringBuilder metrics_text = new StringBuilder(512); // metrics text (reused)
+    // catalog search menu (search as you type, the picked platform is tracked)
+    private static final int MENU_SEARCH = 9;
+    private static final int SEARCH_RESULTS = 20; // results shown
+    private final ExecutorService search_executor = Executors.newSingleThreadExecutor(); // catalog searches (index is built on first use)
+    private volatile String search_query; // latest query (older pending ones are skipped)
     private final String KEY = ((License) Serializer.readObject("manuel.lic")).SERIAL_NUMBER;
 
-    // Broadcast Receiver: receive intents sent by sendBroadcast method
-    private class BroadCastReceiver extends android.content.BroadcastReceiver {
+    // Positions Listener: read positions published by bound service (main thread)
+    private class PositionsListener implements BoundService.PositionsListener {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            switch (action){
-                case BoundService.ACTION_GETPOSITIONSBYIP:
-
-                    Log.d("BROADCASTRECEIVER", "REQUEST_RECEIVED ! :-)"); // debug
-
-                    // get last tracked eye from soap request
-                    last_eye = (Satellite) intent.getSerializableExtra(BoundService.OBJECT_GETPOSITIONSBYIP);
-
-                    // update position
-                    current_position = new LatLng(last_eye.getLatitude(), last_eye.getLongitude());
-                    position = "Short Name: "+last_eye.getShortname()+"\n"
-                            +"Latitude: "+current_position.latitude+" º\n"
-                            +"Longitude: "+current_position.longitude+" º\n"
-                            +"Altitude: "+last_eye.getAltitude()+" km\n";
-                    textViewPosition.setText(position);
-
-                    // update marker and camera
-                    eye_marker.setPosition(current_position);
-                    eye_marker.setTitle(last_eye.getShortname());
-                    eye_marker.setSnippet("NORAD ID: " + last_eye.getNORAD_ID());
-
-                    map.animateCamera(CameraUpdateFactory.newLatLng(current_position));
-
-                    break;
-                default:
-                    break;
+        public void onPositions(PositionBuffer positions) {
+            if (null == map) return; // map is not ready yet
+            interpolator.setClock(positions.getTime(), positions.getWallTime(), positions.getRate()); // note: replay runs on history time
+            // get last tracked eyes (all platforms, front buffer)
+            eye_index.begin();
+            positions.read(marker_updater);
+            eye_index.end(); // note: untracked platforms are removed
+            overlay.retain(eye_index); // note: ground tracks of untracked platforms too
+            layer.refresh(eye_index);
+            if (metrics_overlay && null != service) {
+                long now = SystemClock.uptimeMillis();
+                if (now - last_metrics < METRICS_INTERVAL) return;
+                last_metrics = now;
+                metrics_text.setLength(0);
+                service.getMetrics().format(metrics_text);
+                showText();
             }
         }
     }
 
+    // index front buffer records (no intermediate objects);
+    // note: markers are moved by the interpolator on every frame, records are position fixes
+    private final PositionBuffer.Reader marker_updater = new PositionBuffer.Reader() {
+        @Override
+        public void onPosition(int index, int id, String name, long time, double latitude, double longitude, double altitude, double[] w) {
+            // index position (markers are created for visible platforms only, see marker layer)
+            eye_index.put(id, name, time, latitude, longitude, altitude, w);
+            overlay.update(id, (null == service) ? null : service.getPropagator(id), time, latitude, longitude, altitude);
+
+            if (followed_id != id) return;
+
+            // update followed position (camera follows the interpolated marker)
+            position.setLength(0);
+            position.append("Short Name: ").append(name).append('\n');
+            position.append("Latitude: ");
+            appendDecimal(position, latitude, 6);
+            position.append(" º\nLongitude: ");
+            appendDecimal(position, longitude, 6);
+            position.append(" º\nAltitude: ");
+            appendDecimal(position, altitude, 3);
+            position.append(" km\n");
+            if (null != service && !service.getClock().isLive()) { // note: simulated time (utc)
+                position.append("Time: ");
+                appendTime(position, time);
+                position.append(" UTC x");
+                appendDecimal(position, service.getClock().getRate(), 0);
+                position.append('\n');
+            }
+            showText();
+        }
+    };
+
+    // show followed platform text and metrics overlay (reused characters)
+    // note: setting a text requests a layout pass, unchanged text (e.g. same fix delivered again) is skipped
+    private void showText() {
+        int length = position.length() + (metrics_overlay ? metrics_text.length() : 0);
+        if (length > position_chars.length) position_chars = new char[2 * length];
+        position.getChars(0, position.length(), position_chars, 0);
+        if (metrics_overlay) metrics_text.getChars(0, metrics_text.length(), position_chars, position.length());
+        if (length == shown_length) {
+            int i = 0;
+            while (i < length && position_chars[i] == shown_chars[i]) i++;
+            if (i == length) return;
+        }
+        if (length > shown_chars.length) shown_chars = new char[position_chars.length];
+        System.arraycopy(position_chars, 0, shown_chars, 0, length);
+        shown_length = length;
+        textViewPosition.setText(position_chars, 0, length);
+    }
+
     // Service Connection (binding/not_unbinding)
     private class ServiceConnection implements android.content.ServiceConnection{
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
             Log.d("SERVICECONECTION", "ON_SERVICE_CONNECTED !"); // debug
             MapsActivity.this.service = ((BoundService.LocalBinder) service).getService();
-            MapsActivity.this.service.initTask(NORAD_ID, hostAddress, SECONDS, KEY);
+            MapsActivity.this.service.setPositionsListener(listener);
+            MapsActivity.this.service.setPaused(!resumed);
+            if (null != cameraPosition) MapsActivity.this.service.setZoom(cameraPosition.zoom);
+            MapsActivity.this.service.initTask(getTrackedIds(), hostAddress, SECONDS, KEY);
+            // pass alerts: observer at the default position, the watchlist follows the tracked platforms
+            AlertScheduler alerts = MapsActivity.this.service.getAlerts();
+            alerts.setObserver(OBSERVER_LATITUDE, OBSERVER_LONGITUDE, OBSERVER_ALTITUDE, AlertScheduler.DEFAULT_MIN_ELEVATION); // note: unchanged location keeps the passes
+            alerts.setWatchlist(MapsActivity.this.service.getTrackedIds());
         }
 
         // the connection to the service is unexpectedly lost, such as when the service has crashed or has been killed
@@ -142,8 +237,7 @@ public class MapsActivity extends FragmentActivity implements OnMapReadyCallback
     /**
      * Instance map fragment and create main inter-process communication components.
      * Get notified when the map is ready to be used.
-     * Create BroadCast Receiver to receive intents sent by bound service.
-     * Create Local Broadcast Manager to register/unregister a receiver for any local broadcasts that match the given intent filter.
+     * Create Positions Listener to read positions published by bound service.
      * Create Service Connection (which monitors the connection with the service; binding).
      * @param savedInstanceState saved data that describes the state of the activity when it was destroyed.
      */
@@ -154,19 +248,20 @@ public class MapsActivity extends FragmentActivity implements OnMapReadyCallback
 
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_map);
+        textViewPosition = (TextView) findViewById(R.id.textViewPosition); // note: menu items can show text before the map is ready
 
         // Obtain the SupportMapFragment and get notified when the map is ready to be used.
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager().findFragmentById(R.id.map);
         mapFragment.getMapAsync(this); // note: it calls onMapReady method
 
+        preferences = getSharedPreferences(PREFERENCES, MODE_PRIVATE);
+        followed_id = preferences.getInt(PREF_FOLLOWED, Integer.parseInt(NORAD_ID));
+
         hostAddress = getHostAddress();
         Log.d("IP_ADDRESS", "HOST_ADDRESS: " + hostAddress); // debug
 
         // IPC
-        receiver = new BroadCastReceiver(); // create BroadCast Receiver
-        IntentFilter filter = new IntentFilter(BoundService.ACTION_GETPOSITIONSBYIP);
-        localBroadcastManager = LocalBroadcastManager.getInstance(this); // create localBroadcastManger
-        localBroadcastManager.registerReceiver(receiver, filter); // register a receiver for any local broadcasts that match the given intentFilter
+        listener = new PositionsListener(); // create Positions Listener (set on service connection)
         connection = new ServiceConnection(); // create Service Connection (monitors the connection with the service; binding)
     }
 
@@ -184,17 +279,236 @@ public class MapsActivity extends FragmentActivity implements OnMapReadyCallback
         this.map = googleMap;
         this.map.setMapType(GoogleMap.MAP_TYPE_HYBRID);
         this.map.getUiSettings().setMapToolbarEnabled(false);
+        // camera changes: update rate adapts to zoom level
+        this.map.setOnCameraChangeListener(new GoogleMap.OnCameraChangeListener() {
+            @Override
+            public void onCameraChange(CameraPosition position) {
+                cameraPosition = position;
+                if (null != service) service.setZoom(position.zoom);
+                overlay.setZoom(position.zoom);
+                layer.setZoom(position.zoom);
+                layer.onCameraChange(eye_index);
+            }
+        });
+
+        // long click: replay the last hour of position histories (or go back to live tracking)
+        this.map.setOnMapLongClickListener(new GoogleMap.OnMapLongClickListener() {
+            @Override
+            public void onMapLongClick(LatLng point) {
+                if (null == service) return;
+                if (service.isReplaying()) {
+                    service.stopReplay();
+                    Log.d("REPLAY", "LIVE !"); // debug
+                } else {
+                    long now = System.currentTimeMillis();
+                    if (!service.startReplay(now - REPLAY_WINDOW, now, REPLAY_SPEED)) Log.d("REPLAY", "NO HISTORY !"); // debug
+                }
+            }
+        });
 
         // visual components
-        defaultPosition = new LatLng(36.723888, -2.177156); // by default
+        defaultPosition = new LatLng(OBSERVER_LATITUDE, OBSERVER_LONGITUDE); // by default
 
         this.eye_marker = this.map.addMarker(new MarkerOptions()
                 .icon(BitmapDescriptorFactory.fromResource(R.drawable.eye_icon))
                 .rotation(0)
                 .position(defaultPosition)
                 .flat(true));
+        this.eye_marker.setSnippet("NORAD ID: " + followed_id);
+
+        this.overlay = new TrackOverlay(this.map, this.map.getCameraPosition().zoom);
+        this.interpolator = new MarkerInterpolator(this.map, followed_id);
+        this.layer = new MarkerLayer(this.map, this.interpolator, followed_id, this.eye_marker, this.map.getCameraPosition().zoom);
+        if (resumed) this.interpolator.start();
+    }
+
+    /**
+     * Create the simulation clock menu (and the metrics overlay toggle and catalog search).
+     * @param menu options menu
+     * @return true to show the menu
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_LIVE, 0, "Live");
+        menu.add(Menu.NONE, MENU_PAUSE, 1, "Pause");
+        menu.add(Menu.NONE, MENU_X10, 2, "Speed x10");
+        menu.add(Menu.NONE, MENU_X100, 3, "Speed x100");
+        menu.add(Menu.NONE, MENU_X1000, 4, "Speed x1000");
+        menu.add(Menu.NONE, MENU_REWIND, 5, "Rewind x100");
+        menu.add(Menu.NONE, MENU_DATE, 6, "Go to date");
+        menu.add(Menu.NONE, MENU_METRICS, 7, "Show metrics");
+        menu.add(Menu.NONE, MENU_SEARCH, 8, "Track satellite");
+        return true;
+    }
+
+    /**
+     * Update the simulation clock menu (pause or resume).
+     * @param menu options menu
+     * @return true to show the menu
+     */
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        boolean paused = null != service && service.getClock().isPaused();
+        menu.findItem(MENU_PAUSE).setTitle(paused ? "Resume" : "Pause");
+        menu.findItem(MENU_METRICS).setTitle(metrics_overlay ? "Hide metrics" : "Show metrics");
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    /**
+     * Change the simulation clock (positions are propagated at clock time, markers and camera follow it).
+     * @param item selected menu item
+     * @return true if handled
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (null == service) return super.onOptionsItemSelected(item);
+        SimulationClock clock = service.getClock();
+        switch (item.getItemId()) {
+            case MENU_LIVE:
+                service.stopReplay();
+                clock.setLive();
+                return true;
+            case MENU_PAUSE:
+                if (clock.isPaused()) clock.resume();
+                else clock.pause();
+                return true;
+            case MENU_X10:
+                clock.setSpeed(10.0);
+                return true;
+            case MENU_X100:
+                clock.setSpeed(100.0);
+                return true;
+            case MENU_X1000:
+                clock.setSpeed(1000.0);
+                return true;
+            case MENU_REWIND:
+                clock.setSpeed(-100.0);
+                return true;
+            case MENU_DATE:
+                showDatePicker(clock);
+                return true;
+            case MENU_METRICS:
+                metrics_overlay = !metrics_overlay;
+                last_metrics = 0; // note: shown on next positions
+                metrics_text.setLength(0);
+                showText();
+                return true;
+            case MENU_SEARCH:
+                showSearch();
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    // jump the clock to a date (same time of day, utc)
+    private void showDatePicker(final SimulationClock clock) {
+        calendar.setTimeInMillis(clock.now());
+        new DatePickerDialog(this, new DatePickerDialog.OnDateSetListener() {
+            @Override
+            public void onDateSet(DatePicker view, int year, int month, int dayOfMonth) {
+                calendar.setTimeInMillis(clock.now());
+                calendar.set(year, month, dayOfMonth);
+                clock.jump(calendar.getTimeInMillis());
+            }
+        }, calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH)).show();
+    }
+
+    // search the catalog as the user types (NORAD ID or name) and track the picked platform
+    private void showSearch() {
+        final EditText input = new EditText(this);
+        input.setSingleLine(true);
+        input.setHint("NORAD ID or name");
+        final ArrayAdapter<String> results = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1);
+        final List<String> ids = new ArrayList<String>(); // NORAD IDs of shown results
+        ListView list = new ListView(this);
+        list.setAdapter(results);
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(input);
+        layout.addView(list);
+        final AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle("Track satellite")
+                .setView(layout)
+                .setNegativeButton("Close", null)
+                .create();
+        input.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {}
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {}
+            @Override
+            public void afterTextChanged(Editable text) {
+                search(text.toString(), results, ids);
+            }
+        });
+        list.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                if (null != service) {
+                    int picked = Integer.parseInt(ids.get(position));
+                    service.track(ids.get(position)); // note: orbital elements are requested on next tick
+                    service.getAlerts().watch(picked); // pass alerts for the picked platform
+                    follow(picked);
+                    saveSelection();
+                }
+                Log.d("SEARCH", "TRACK = " + ids.get(position)); // debug
+                dialog.dismiss();
+            }
+        });
+        dialog.show();
+    }
+
+    // follow a platform: camera, followed marker and text (shown with its next position)
+    private void follow(int id) {
+        followed_id = id;
+        position.setLength(0);
+        position.append("NORAD ID: ").append(id).append('\n');
+        showText();
+        if (null == map) return; // note: map layers are created with the followed platform
+        eye_marker.setSnippet("NORAD ID: " + id);
+        interpolator.setFollowed(id);
+        layer.setFollowed(id);
+    }
 
-        this.textViewPosition = (TextView) findViewById(R.id.textViewPosition);
+    // tracked platforms of the last session (default platforms on first run)
+    private List<String> getTrackedIds() {
+        String ids = preferences.getString(PREF_TRACKED, null);
+        return (null == ids || ids.isEmpty()) ? Arrays.asList(NORAD_IDS) : Arrays.asList(TextUtils.split(ids, ","));
+    }
+
+    // persist the tracked and followed platforms (next binds and restarts start from them)
+    private void saveSelection() {
+        preferences.edit()
+                .putString(PREF_TRACKED, TextUtils.join(",", service.getTrackedIds()))
+                .putInt(PREF_FOLLOWED, followed_id)
+                .apply();
+    }
+
+    // search the catalog in background (latest query only) and show the results on the main thread
+    private void search(final String query, final ArrayAdapter<String> results, final List<String> ids) {
+        search_query = query;
+        final BoundService current = service;
+        if (null == current) return;
+        search_executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!query.equals(search_query)) return; // note: superseded while waiting
+                final List<Satellite> found = current.searchCatalog(query, SEARCH_RESULTS);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!query.equals(search_query)) return;
+                        results.clear();
+                        ids.clear();
+                        for (Satellite eye : found) {
+                            results.add(eye.getNORAD_ID() + "  " + ((null == eye.getShortname()) ? "" : eye.getShortname()));
+                            ids.add(eye.getNORAD_ID());
+                        }
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -228,22 +542,30 @@ public class MapsActivity extends FragmentActivity implements OnMapReadyCallback
     /**
      * The activity is visible and in action.
      * We should keep the processing that occurs at this transition to a minimum.
+     * Resume service task (propagation and requests).
      */
     // visible, in action;
     @Override
     protected void onResume() {
         Log.d("ONRESUME", "ON_RESUME !"); // debug
         super.onResume();
+        resumed = true;
+        if (null != service) service.setPaused(false);
+        if (null != interpolator) interpolator.start(); // move markers on every frame
     }
 
     /**
      * The activity is partially visible.
      * We should keep the processing that occurs at this transition to a minimum.
+     * Pause service task (propagation and requests).
      */
     // in cache, partially visible;
     @Override
     protected void onPause() {
         Log.d("ONPAUSE", "ON_PAUSE !"); // debug
+        resumed = false;
+        if (null != service) service.setPaused(true);
+        if (null != interpolator) interpolator.stop();
         super.onPause();
     }
 
@@ -256,6 +578,7 @@ public class MapsActivity extends FragmentActivity implements OnMapReadyCallback
     @Override
     protected void onStop() {
         Log.d("ONSTOP", "ON_STOP !"); // debug
+        if (null != service) service.setPositionsListener(null); // stop notifications
         // note: automatically destroy bound service
         unbindService(connection); // unbind service and stop sending soap requests
         super.onStop();
@@ -263,16 +586,50 @@ public class MapsActivity extends FragmentActivity implements OnMapReadyCallback
 
     /**
      * The activity is destroyed.
-     * Unregister (a previously registered) broadcast receiver.
      */
     // out of RAM
     @Override
     protected void onDestroy() {
         Log.d("ONDESTROY","ON_DESTROY !"); // debug
-        localBroadcastManager.unregisterReceiver(receiver); // unregister a previously registered broadcastReceiver
+        search_executor.shutdownNow();
         super.onDestroy();
     }
 
+    // append a decimal number with fixed decimals (no allocations, unlike string concatenation of doubles)
+    private static void appendDecimal(StringBuilder builder, double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            builder.append('-');
+            return;
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) scale *= 10;
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0.0 && 0 != scaled) builder.append('-');
+        builder.append(scaled / scale);
+        if (0 == decimals) return;
+        builder.append('.');
+        long fraction = scaled % scale;
+        for (long digit = scale / 10; digit > 1 && fraction < digit; digit /= 10) builder.append('0'); // leading zeros
+        builder.append(fraction);
+    }
+
+    // append a utc time (yyyy-MM-dd HH:mm:ss) without intermediate strings
+    private void appendTime(StringBuilder builder, long time) {
+        calendar.setTimeInMillis(time);
+        builder.append(calendar.get(Calendar.YEAR)).append('-');
+        appendTwoDigits(builder, calendar.get(Calendar.MONTH) + 1).append('-');
+        appendTwoDigits(builder, calendar.get(Calendar.DAY_OF_MONTH)).append(' ');
+        appendTwoDigits(builder, calendar.get(Calendar.HOUR_OF_DAY)).append(':');
+        appendTwoDigits(builder, calendar.get(Calendar.MINUTE)).append(':');
+        appendTwoDigits(builder, calendar.get(Calendar.SECOND));
+    }
+
+    // append a zero padded two digit number
+    private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+        if (value < 10) builder.append('0');
+        return builder.append(value);
+    }
+
     // get host address (needed for soap requests)
     private String getHostAddress() {
         try {
@@ -0,0 +1,254 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack;
+
+import android.util.SparseIntArray;
+import android.view.Choreographer;
+
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+
+import java.util.Arrays;
+
+/**
+ * Marker interpolator model.
+ * Markers are moved on every display frame (choreographer) between position fixes:
+ * positions are extrapolated along the great circle given by the ground angular velocity of the last fix,
+ * and a new fix is blended in over a short window (normalized interpolation of unit vectors), so markers do not jump.
+ * Positions are handled as unit vectors, so there are no artifacts at the antimeridian or near the poles.
+ * Note: main thread only.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class MarkerInterpolator implements Choreographer.FrameCallback {
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double RAD2DEG = 180.0 / Math.PI;
+    private static final long BLEND = 400; // new fix blending window (milliseconds)
+    private static final long MAX_EXTRAPOLATION = 20000; // extrapolation bound without new fixes (milliseconds)
+
+    private final GoogleMap map;
+    private int followed_id; // camera follows this platform
+    private boolean running; // frame callback posted
+
+    // markers state by slot
+    private final SparseIntArray slots = new SparseIntArray(); // slot by NORAD ID
+    private int count; // number of slots
+    private Marker[] markers = new Marker[8];
+    private int[] ids = new int[8];
+    private double[] fix = new double[3 * 8], fix_w = new double[3 * 8]; // last fix: unit vector and angular velocity
+    private long[] fix_time = new long[8];
+    private double[] prev = new double[3 * 8], prev_w = new double[3 * 8]; // displayed track when last fix arrived
+    private long[] prev_time = new long[8];
+    private final double[] u = new double[3], p = new double[3]; // frame buffers
+
+    // fix time clock (live: fix time is wall time)
+    private long clock_time, clock_wall; // fix time at a wall time (utc milliseconds)
+    private double clock_rate = 1.0; // fix time advance per wall time unit
+
+    /**
+     * Constructor method for the interpolator.
+     * @param map google map (camera)
+     * @param followedId NORAD ID of the platform followed by the camera
+     */
+    public MarkerInterpolator(GoogleMap map, int followedId) {
+        this.map = map;
+        this.followed_id = followedId;
+    }
+
+    /**
+     * Set the platform followed by the camera (from its next frame).
+     * @param followedId NORAD ID
+     */
+    public void setFollowed(int followedId) {
+        this.followed_id = followedId;
+    }
+
+    /**
+     * Set the fix time clock (e.g. replay of past positions at a higher speed).
+     * Markers are extrapolated to the clock time, blending windows run on wall time.
+     * @param time fix time at the wall time, utc (milliseconds since 1970-01-01)
+     * @param wall wall time, utc (milliseconds since 1970-01-01)
+     * @param rate fix time advance per wall time unit (1 live)
+     */
+    public void setClock(long time, long wall, double rate) {
+        clock_time = time;
+        clock_wall = wall;
+        clock_rate = rate;
+    }
+
+    /**
+     * Set a new position fix for a marker.
+     * The marker moves from its displayed position towards the new fix track.
+     * @param id NORAD ID
+     * @param marker platform marker
+     * @param time fix time, utc (milliseconds since 1970-01-01)
+     * @param latitude decimal degrees
+     * @param longitude decimal degrees
+     * @param w angular velocity of the sub-satellite point (earth fixed axes, rad/s; zeros if unknown)
+     */
+    public void setFix(int id, Marker marker, long time, double latitude, double longitude, double[] w) {
+        int slot = slots.get(id, -1);
+        long now = System.currentTimeMillis();
+        if (-1 == slot) {
+            slot = newSlot(id);
+            toVector(latitude, longitude, fix, 3 * slot);
+            System.arraycopy(fix, 3 * slot, prev, 3 * slot, 3); // note: no blending for first fix
+            prev_time[slot] = Long.MIN_VALUE;
+        } else {
+            // freeze displayed track as the blending origin
+            position(slot, now, prev, 3 * slot);
+            System.arraycopy(fix_w, 3 * slot, prev_w, 3 * slot, 3);
+            prev_time[slot] = now;
+            toVector(latitude, longitude, fix, 3 * slot);
+        }
+        markers[slot] = marker;
+        System.arraycopy(w, 0, fix_w, 3 * slot, 3);
+        fix_time[slot] = time;
+    }
+
+    /**
+     * Stop moving a marker (it keeps its last displayed position).
+     * @param id NORAD ID
+     */
+    public void remove(int id) {
+        int slot = slots.get(id, -1);
+        if (-1 == slot) return;
+        slots.delete(id);
+        int last = --count;
+        if (slot != last) {
+            // note: last slot takes the place of the removed one
+            markers[slot] = markers[last];
+            ids[slot] = ids[last];
+            System.arraycopy(fix, 3 * last, fix, 3 * slot, 3);
+            System.arraycopy(fix_w, 3 * last, fix_w, 3 * slot, 3);
+            fix_time[slot] = fix_time[last];
+            System.arraycopy(prev, 3 * last, prev, 3 * slot, 3);
+            System.arraycopy(prev_w, 3 * last, prev_w, 3 * slot, 3);
+            prev_time[slot] = prev_time[last];
+            slots.put(ids[slot], slot);
+        }
+        markers[last] = null;
+    }
+
+    /**
+     * Start moving markers on every frame.
+     */
+    public void start() {
+        if (running) return;
+        running = true;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stop moving markers.
+     */
+    public void stop() {
+        if (!running) return;
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    /**
+     * Move markers to their interpolated positions (display frame).
+     * @param frameTimeNanos frame time
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) return;
+        long now = System.currentTimeMillis(); // note: wall time, see clock
+        for (int slot = 0; slot < count; slot++) {
+            position(slot, now, u, 0);
+            // note: LatLng is immutable in maps api, one per marker and frame
+            LatLng eye_position = new LatLng(Math.asin(Math.max(-1.0, Math.min(1.0, u[2]))) * RAD2DEG, Math.atan2(u[1], u[0]) * RAD2DEG);
+            markers[slot].setPosition(eye_position);
+            if (followed_id == ids[slot]) map.moveCamera(CameraUpdateFactory.newLatLng(eye_position));
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    // displayed unit vector of a slot at given wall time
+    private void position(int slot, long now, double[] out, int offset) {
+        long max = (long) (MAX_EXTRAPOLATION * Math.max(1.0, Math.abs(clock_rate))); // note: bound in fix time
+        long time = clock_time + (long) ((now - clock_wall) * clock_rate);
+        extrapolate(fix, fix_w, 3 * slot, time - fix_time[slot], max, u);
+        long elapsed = now - prev_time[slot];
+        if (Long.MIN_VALUE != prev_time[slot] && elapsed >= 0 && elapsed < BLEND) {
+            extrapolate(prev, prev_w, 3 * slot, (long) (elapsed * clock_rate), max, p);
+            double x = (double) elapsed / BLEND;
+            double weight = x * x * (3.0 - 2.0 * x); // smoothstep
+            for (int i = 0; i < 3; i++) u[i] = (1.0 - weight) * p[i] + weight * u[i];
+            double norm = Math.sqrt(u[0] * u[0] + u[1] * u[1] + u[2] * u[2]);
+            for (int i = 0; i < 3; i++) u[i] /= norm;
+        }
+        if (out != u || 0 != offset) System.arraycopy(u, 0, out, offset, 3);
+    }
+
+    // rotate a unit vector around its angular velocity during dt milliseconds, bounded to max (rodrigues rotation)
+    private static void extrapolate(double[] vectors, double[] velocities, int offset, long dt, long max, double[] out) {
+        double x = vectors[offset], y = vectors[offset + 1], z = vectors[offset + 2];
+        double wx = velocities[offset], wy = velocities[offset + 1], wz = velocities[offset + 2];
+        double rate = Math.sqrt(wx * wx + wy * wy + wz * wz);
+        dt = Math.max(-max, Math.min(max, dt));
+        if (0.0 == rate || 0 == dt) {
+            out[0] = x;
+            out[1] = y;
+            out[2] = z;
+            return;
+        }
+        double kx = wx / rate, ky = wy / rate, kz = wz / rate;
+        double angle = rate * dt / 1000.0;
+        double c = Math.cos(angle), s = Math.sin(angle);
+        double dot = (kx * x + ky * y + kz * z) * (1.0 - c);
+        out[0] = x * c + (ky * z - kz * y) * s + kx * dot;
+        out[1] = y * c + (kz * x - kx * z) * s + ky * dot;
+        out[2] = z * c + (kx * y - ky * x) * s + kz * dot;
+    }
+
+    // unit vector for given latitude and longitude
+    private static void toVector(double latitude, double longitude, double[] out, int offset) {
+        double lat = latitude * DEG2RAD, lon = longitude * DEG2RAD;
+        out[offset] = Math.cos(lat) * Math.cos(lon);
+        out[offset + 1] = Math.cos(lat) * Math.sin(lon);
+        out[offset + 2] = Math.sin(lat);
+    }
+
+    // create a slot (arrays grow if needed)
+    private int newSlot(int id) {
+        if (count == ids.length) {
+            int capacity = 2 * count;
+            markers = Arrays.copyOf(markers, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            fix = Arrays.copyOf(fix, 3 * capacity);
+            fix_w = Arrays.copyOf(fix_w, 3 * capacity);
+            fix_time = Arrays.copyOf(fix_time, capacity);
+            prev = Arrays.copyOf(prev, 3 * capacity);
+            prev_w = Arrays.copyOf(prev_w, 3 * capacity);
+            prev_time = Arrays.copyOf(prev_time, capacity);
+        }
+        ids[count] = id;
+        slots.put(id, count);
+        return count++;
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.singularityeye.eyetrack.model.SpatialIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Marker layer model.
+ * Only platforms inside the map viewport get a marker (spatial index query); markers leaving the viewport are hidden and reused.
+ * When the map is zoomed out, or too many platforms are visible, nearby platforms are grouped into cluster markers
+ * (screen grid), so a large catalog does not create thousands of markers. The followed platform always has its own marker.
+ * Note: main thread only.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class MarkerLayer {
+
+    private static final float CLUSTER_ZOOM = 5.0f; // platforms are clustered below this zoom level
+    private static final int MAX_MARKERS = 300; // platforms are clustered above this number of visible platforms
+    private static final double CLUSTER_SIZE = 64.0; // cluster grid cell (dp)
+    private static final double DEGREES_PER_DP = 360.0 / 256.0; // map scale at zoom 0 (256 dp tiles)
+    private static final long CAMERA_INTERVAL = 250; // minimum time between refreshes on camera changes (milliseconds)
+
+    // shown platform marker
+    private static class Shown {
+        Marker marker;
+        long time; // fix time
+        long stamp; // last refresh where it was visible
+    }
+
+    private final GoogleMap map;
+    private final MarkerInterpolator interpolator;
+    private int followed_id; // platform with a marker at any zoom level
+    private final SparseArray<Shown> shown = new SparseArray<Shown>(); // platform markers by NORAD ID
+    private final List<Marker> pool = new ArrayList<Marker>(); // hidden platform markers
+    private final List<Marker> clusters = new ArrayList<Marker>(); // cluster markers (visible ones first)
+    private int visible_clusters;
+    private long stamp; // refresh counter
+    private long last_camera_refresh;
+    private float zoom;
+
+    // query and clustering buffers (reused)
+    private int[] found = new int[256];
+    private final SparseIntArray cluster_indexes = new SparseIntArray(); // cluster by grid cell
+    private int[] cluster_counts = new int[64];
+    private double[] cluster_latitudes = new double[64], cluster_longitudes = new double[64];
+    private final double[] w = new double[3];
+
+    /**
+     * Constructor method for the layer.
+     * @param map google map
+     * @param interpolator moves platform markers between fixes
+     * @param followedId NORAD ID of the followed platform
+     * @param followedMarker marker of the followed platform (never hidden)
+     * @param zoom initial zoom level
+     */
+    public MarkerLayer(GoogleMap map, MarkerInterpolator interpolator, int followedId, Marker followedMarker, float zoom) {
+        this.map = map;
+        this.interpolator = interpolator;
+        this.followed_id = followedId;
+        this.zoom = zoom;
+        Shown followed = new Shown();
+        followed.marker = followedMarker;
+        followed.time = Long.MIN_VALUE;
+        shown.put(followedId, followed);
+    }
+
+    /**
+     * Set the followed platform: the followed marker moves to it on next refresh (the previous platform gets a layer marker).
+     * @param followedId NORAD ID of the followed platform
+     */
+    public void setFollowed(int followedId) {
+        if (followedId == followed_id) return;
+        Shown followed = shown.get(followed_id);
+        shown.remove(followed_id);
+        interpolator.remove(followed_id);
+        Shown current = shown.get(followedId);
+        if (null != current) { // note: already shown with a layer marker, release it
+            interpolator.remove(followedId);
+            current.marker.setVisible(false);
+            pool.add(current.marker);
+        }
+        followed.time = Long.MIN_VALUE; // note: next fix is not blended from the previous platform
+        shown.put(followedId, followed);
+        followed_id = followedId;
+    }
+
+    /**
+     * Set the map zoom level.
+     * @param zoom zoom level (camera position)
+     */
+    public void setZoom(float zoom) {
+        this.zoom = zoom;
+    }
+
+    /**
+     * Refresh markers after a camera change (at most a few times per second, camera follows a platform on every frame).
+     * @param index platform positions
+     */
+    public void onCameraChange(SpatialIndex index) {
+        long now = SystemClock.uptimeMillis();
+        if (now - last_camera_refresh < CAMERA_INTERVAL) return;
+        last_camera_refresh = now;
+        refresh(index);
+    }
+
+    /**
+     * Refresh markers: show visible platforms (or clusters), hide the others.
+     * @param index platform positions
+     */
+    public void refresh(SpatialIndex index) {
+        stamp++;
+        LatLngBounds bounds = map.getProjection().getVisibleRegion().latLngBounds;
+        int count = index.queryBox(bounds.southwest.latitude, bounds.southwest.longitude, bounds.northeast.latitude, bounds.northeast.longitude, found);
+        if (count > found.length) {
+            found = new int[2 * count];
+            count = index.queryBox(bounds.southwest.latitude, bounds.southwest.longitude, bounds.northeast.latitude, bounds.northeast.longitude, found);
+        }
+        boolean clustered = zoom < CLUSTER_ZOOM || count > MAX_MARKERS;
+        visible_clusters = 0;
+        if (clustered) cluster(index, count);
+        else for (int i = 0; i < count; i++) show(index, found[i]);
+        int followed = index.find(followed_id);
+        if (-1 != followed) show(index, followed);
+        // hide platform markers out of the viewport (or clustered)
+        for (int i = shown.size() - 1; i >= 0; i--) {
+            Shown platform = shown.valueAt(i);
+            if (platform.stamp == stamp || followed_id == shown.keyAt(i)) continue;
+            interpolator.remove(shown.keyAt(i));
+            platform.marker.setVisible(false);
+            pool.add(platform.marker);
+            shown.removeAt(i);
+        }
+        for (int i = visible_clusters; i < clusters.size(); i++) clusters.get(i).setVisible(false);
+    }
+
+    // show a platform marker and feed its fix to the interpolator
+    private void show(SpatialIndex index, int slot) {
+        int id = index.getId(slot);
+        Shown platform = shown.get(id);
+        if (null == platform) {
+            platform = new Shown();
+            platform.time = Long.MIN_VALUE;
+            LatLng position = new LatLng(index.getLatitude(slot), index.getLongitude(slot));
+            if (pool.isEmpty()) {
+                platform.marker = map.addMarker(new MarkerOptions()
+                        .icon(BitmapDescriptorFactory.fromResource(R.drawable.eye_icon))
+                        .rotation(0)
+                        .position(position)
+                        .flat(true));
+            } else {
+                platform.marker = pool.remove(pool.size() - 1);
+                platform.marker.setPosition(position);
+                platform.marker.setVisible(true);
+            }
+            platform.marker.setSnippet("NORAD ID: " + id);
+            shown.put(id, platform);
+        }
+        platform.stamp = stamp;
+        String name = index.getName(slot);
+        if (null != name && !name.equals(platform.marker.getTitle())) platform.marker.setTitle(name);
+        if (platform.time == index.getTime(slot)) return; // note: same fix, keep blending
+        platform.time = index.getTime(slot);
+        index.getVelocity(slot, w);
+        interpolator.setFix(id, platform.marker, platform.time, index.getLatitude(slot), index.getLongitude(slot), w);
+    }
+
+    // group visible platforms into cluster grid cells (single platforms keep their own marker)
+    private void cluster(SpatialIndex index, int count) {
+        double size = CLUSTER_SIZE * DEGREES_PER_DP / Math.pow(2.0, zoom); // decimal degrees
+        int columns = (int) Math.ceil(360.0 / size);
+        cluster_indexes.clear();
+        int groups = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = found[i];
+            double latitude = index.getLatitude(slot), longitude = index.getLongitude(slot);
+            int key = (int) Math.floor((latitude + 90.0) / size) * columns + (int) Math.floor((longitude + 180.0) / size);
+            int group = cluster_indexes.get(key, -1);
+            if (-1 == group) {
+                if (groups == cluster_counts.length) {
+                    cluster_counts = Arrays.copyOf(cluster_counts, 2 * groups);
+                    cluster_latitudes = Arrays.copyOf(cluster_latitudes, 2 * groups);
+                    cluster_longitudes = Arrays.copyOf(cluster_longitudes, 2 * groups);
+                }
+                group = groups++;
+                cluster_indexes.put(key, group);
+                cluster_counts[group] = 0;
+                cluster_latitudes[group] = 0.0;
+                cluster_longitudes[group] = 0.0;
+            }
+            cluster_counts[group]++;
+            cluster_latitudes[group] += latitude;
+            cluster_longitudes[group] += longitude; // note: a cluster cell never crosses the antimeridian
+        }
+        for (int i = 0; i < count; i++) {
+            int slot = found[i];
+            int key = (int) Math.floor((index.getLatitude(slot) + 90.0) / size) * columns + (int) Math.floor((index.getLongitude(slot) + 180.0) / size);
+            int group = cluster_indexes.get(key, -1);
+            if (1 == cluster_counts[group]) show(index, slot);
+        }
+        for (int group = 0; group < groups; group++) {
+            int members = cluster_counts[group];
+            if (members < 2) continue;
+            LatLng position = new LatLng(cluster_latitudes[group] / members, cluster_longitudes[group] / members);
+            Marker marker;
+            if (visible_clusters == clusters.size()) {
+                marker = map.addMarker(new MarkerOptions()
+                        .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE))
+                        .position(position));
+                clusters.add(marker);
+            } else {
+                marker = clusters.get(visible_clusters);
+                marker.setPosition(position);
+                marker.setVisible(true);
+            }
+            marker.setTitle(members + " platforms");
+            visible_clusters++;
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+import com.singularityeye.eyetrack.model.SpatialIndex;
+import com.singularityeye.eyetrack.orbit.GroundTrack;
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.TrackGeometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Track overlay model.
+ * It draws the past and future ground tracks and the visibility footprint of tracked platforms (only platforms with orbital elements).
+ * Ground tracks are advanced incrementally (see {@link GroundTrack}), simplified for the current zoom level (Douglas-Peucker)
+ * and split at the antimeridian. Polylines are reused, lines are redrawn at most once per second and platform (or on zoom change),
+ * and the number of points per line is bounded (tolerance grows until the line fits), so dozens of tracks do not swamp the renderer.
+ * Note: main thread only.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class TrackOverlay {
+
+    private static final long UPDATE_INTERVAL = 1000; // minimum time between redraws of a platform (milliseconds)
+    private static final long MAX_WINDOW = 12 * 3600000L; // ground track window bound (milliseconds)
+    private static final double PIXELS = 1.5; // simplification tolerance (dp)
+    private static final int MAX_POINTS = 120; // points per line after simplification
+    private static final int MAX_TRACKS = 32; // platforms with ground tracks
+    private static final int FOOTPRINT_POINTS = 73; // footprint resolution (5 degrees)
+
+    private static final int PAST_COLOR = 0x80FFFFFF, FUTURE_COLOR = 0xFFFFD600, FOOTPRINT_COLOR = 0x60FFFFFF; // argb
+    private static final float PAST_WIDTH = 3f, FUTURE_WIDTH = 3f, FOOTPRINT_WIDTH = 2f; // pixels
+
+    // drawn line (one polyline per antimeridian segment)
+    private static class Line {
+        final int color;
+        final float width;
+        final List<Polyline> polylines = new ArrayList<Polyline>();
+        Line(int color, float width) {
+            this.color = color;
+            this.width = width;
+        }
+    }
+
+    // platform overlay
+    private static class Track {
+        final GroundTrack track;
+        final Line past = new Line(PAST_COLOR, PAST_WIDTH), future = new Line(FUTURE_COLOR, FUTURE_WIDTH), footprint = new Line(FOOTPRINT_COLOR, FOOTPRINT_WIDTH);
+        long drawn = Long.MIN_VALUE; // last redraw time
+        float zoom = Float.NaN; // zoom of last redraw
+        Track(GroundTrack track) {
+            this.track = track;
+        }
+    }
+
+    private final GoogleMap map;
+    private final SparseArray<Track> tracks = new SparseArray<Track>(); // platform overlays by NORAD ID
+    private float zoom; // map zoom level
+
+    // geometry buffers (shared by all platforms, grown on demand)
+    private double[] latitudes = new double[0], longitudes = new double[0], ordinates = new double[0];
+    private double[] out_latitudes = new double[0], out_longitudes = new double[0];
+    private int[] keep = new int[0], stack = new int[0];
+
+    /**
+     * Constructor method for the overlay.
+     * @param map google map
+     * @param zoom initial zoom level
+     */
+    public TrackOverlay(GoogleMap map, float zoom) {
+        this.map = map;
+        this.zoom = zoom;
+    }
+
+    /**
+     * Set the map zoom level (lines are simplified again on next update).
+     * @param zoom zoom level (camera position)
+     */
+    public void setZoom(float zoom) {
+        this.zoom = zoom;
+    }
+
+    /**
+     * Update the overlay of a platform with a new position fix.
+     * @param id NORAD ID
+     * @param propagator platform propagator, null if there are no orbital elements (overlay is removed)
+     * @param time fix time, utc (milliseconds since 1970-01-01)
+     * @param latitude decimal degrees
+     * @param longitude decimal degrees
+     * @param altitude kilometers
+     */
+    public void update(int id, SGP4 propagator, long time, double latitude, double longitude, double altitude) {
+        Track track = tracks.get(id);
+        if (null != track && track.track.getPropagator() != propagator) {
+            remove(id); // note: orbital elements replaced or expired
+            track = null;
+        }
+        if (null == propagator) return;
+        if (null == track) {
+            if (tracks.size() >= MAX_TRACKS) return;
+            long period = (long) (2.0 * Math.PI / propagator.getTLE().getMeanMotion() * 60000.0); // milliseconds
+            long future = Math.min(period, MAX_WINDOW);
+            track = new Track(new GroundTrack(propagator, future / 2, future));
+            tracks.put(id, track);
+        }
+        track.track.advance(time);
+        if (zoom == track.zoom && time >= track.drawn && time - track.drawn < UPDATE_INTERVAL) return;
+        track.drawn = time;
+        track.zoom = zoom;
+        draw(track, time, latitude, longitude, altitude);
+    }
+
+    /**
+     * Remove the overlay of a platform.
+     * @param id NORAD ID
+     */
+    public void remove(int id) {
+        Track track = tracks.get(id);
+        if (null == track) return;
+        clear(track.past);
+        clear(track.future);
+        clear(track.footprint);
+        tracks.remove(id);
+    }
+
+    /**
+     * Remove the overlays of platforms which are no longer indexed (untracked since the last tick).
+     * @param index platform positions of the last tick
+     */
+    public void retain(SpatialIndex index) {
+        for (int k = tracks.size() - 1; k >= 0; k--) { // note: backwards, removal compacts the following keys
+            int id = tracks.keyAt(k);
+            if (-1 == index.find(id)) remove(id);
+        }
+    }
+
+    /**
+     * Remove all overlays.
+     */
+    public void clear() {
+        while (tracks.size() > 0) remove(tracks.keyAt(0));
+    }
+
+    // draw lines of a platform
+    private void draw(Track track, long time, double latitude, double longitude, double altitude) {
+        GroundTrack samples = track.track;
+        ensureCapacity(Math.max(samples.size() + 1, FOOTPRINT_POINTS));
+        // past: samples before fix time and fix position
+        int count = 0;
+        for (int i = 0; i < samples.size() && samples.getTime(i) < time; i++) count = add(count, samples.getLatitude(i), samples.getLongitude(i));
+        int first = count;
+        count = add(count, latitude, longitude);
+        draw(track.past, count);
+        // future: fix position and samples after fix time
+        count = add(0, latitude, longitude);
+        for (int i = first; i < samples.size(); i++) if (samples.getTime(i) > time) count = add(count, samples.getLatitude(i), samples.getLongitude(i));
+        draw(track.future, count);
+        // footprint
+        TrackGeometry.footprint(latitude, longitude, altitude, FOOTPRINT_POINTS, latitudes, longitudes);
+        for (int i = 0; i < FOOTPRINT_POINTS; i++) keep[i] = i;
+        show(track.footprint, TrackGeometry.split(latitudes, longitudes, keep, FOOTPRINT_POINTS, out_latitudes, out_longitudes));
+    }
+
+    // simplify, split and draw a line from geometry buffers
+    private void draw(Line line, int count) {
+        TrackGeometry.unwrap(longitudes, count);
+        for (int i = 0; i < count; i++) ordinates[i] = TrackGeometry.mercator(latitudes[i]);
+        double tolerance = TrackGeometry.tolerance(zoom, PIXELS);
+        int kept = TrackGeometry.simplify(longitudes, ordinates, count, tolerance, keep, stack);
+        while (kept > MAX_POINTS) { // note: bounded points, coarser lines if needed
+            tolerance *= 2.0;
+            kept = TrackGeometry.simplify(longitudes, ordinates, count, tolerance, keep, stack);
+        }
+        show(line, TrackGeometry.split(latitudes, longitudes, keep, kept, out_latitudes, out_longitudes));
+    }
+
+    // set polylines points from split buffers (NaN separated segments); extra polylines are hidden
+    private void show(Line line, int count) {
+        int segment = 0;
+        for (int start = 0; start < count; ) {
+            int end = start;
+            while (end < count && !Double.isNaN(out_latitudes[end])) end++;
+            if (end - start >= 2) {
+                // note: LatLng is immutable in maps api, points are created on redraw only
+                List<LatLng> points = new ArrayList<LatLng>(end - start);
+                for (int i = start; i < end; i++) points.add(new LatLng(out_latitudes[i], out_longitudes[i]));
+                if (segment == line.polylines.size()) {
+                    line.polylines.add(map.addPolyline(new PolylineOptions()
+                            .color(line.color)
+                            .width(line.width)
+                            .geodesic(false)
+                            .addAll(points)));
+                } else {
+                    Polyline polyline = line.polylines.get(segment);
+                    polyline.setPoints(points);
+                    polyline.setVisible(true);
+                }
+                segment++;
+            }
+            start = end + 1;
+        }
+        for (int i = segment; i < line.polylines.size(); i++) line.polylines.get(i).setVisible(false);
+    }
+
+    // remove polylines of a line
+    private static void clear(Line line) {
+        for (Polyline polyline : line.polylines) polyline.remove();
+        line.polylines.clear();
+    }
+
+    // append a point to geometry buffers
+    private int add(int count, double latitude, double longitude) {
+        latitudes[count] = latitude;
+        longitudes[count] = longitude;
+        return count + 1;
+    }
+
+    // grow geometry buffers
+    private void ensureCapacity(int points) {
+        if (latitudes.length >= points) return;
+        latitudes = new double[points];
+        longitudes = new double[points];
+        ordinates = new double[points];
+        keep = new int[points];
+        stack = new int[2 * points];
+        out_latitudes = new double[4 * points];
+        out_longitudes = new double[4 * points];
+    }
+
+}
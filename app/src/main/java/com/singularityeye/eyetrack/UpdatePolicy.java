@@ -0,0 +1,132 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack;
+
+import com.singularityeye.eyetrack.orbit.Coordinates;
+
+/**
+ * Update rate policy model.
+ * The tick interval is the time the fastest tracked platform needs to move a few pixels on the map at the current zoom
+ * (ground track speed over map scale): low orbits tick faster when the map is zoomed in,
+ * geostationary platforms and zoomed out maps tick slower.
+ * Platforms positioned by soap requests (no orbital elements) are polled at least at the default interval.
+ * The interval follows the current zoom level without waiting for the next tick (speeds are scaled from the tick zoom).
+ * Note: a policy instance is filled by a single thread (tick), only the zoom level is set from other threads.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class UpdatePolicy {
+
+    /**
+     * Default tick interval (milliseconds), also used for soap requests.
+     */
+    public static final long DEFAULT_INTERVAL = 1000;
+    /**
+     * Minimum tick interval (milliseconds).
+     */
+    public static final long MIN_INTERVAL = 200;
+    /**
+     * Maximum tick interval (milliseconds).
+     */
+    public static final long MAX_INTERVAL = 10000;
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double PIXELS = 2.0; // map displacement between ticks (dp)
+    private static final double METERS_PER_DP = 156543.03392; // map scale at zoom 0 on the equator (256 dp tiles, web mercator)
+    private static final double MAX_LATITUDE = 85.0; // map scale bound near the poles (decimal degrees)
+    private static final float DEFAULT_ZOOM = 3.0f; // map zoom until camera is known
+
+    private volatile float zoom = DEFAULT_ZOOM; // map zoom level
+    private double rate = 1.0; // clock time advance per wall time unit (simulation clock)
+    private float tick_zoom = DEFAULT_ZOOM; // map zoom level of current tick speeds
+    private double max_speed; // fastest map speed of current tick (dp/s at tick zoom)
+    private boolean fallback; // a platform without orbital elements in current tick
+
+    /**
+     * Constructor method for the policy.
+     */
+    public UpdatePolicy() {}
+
+    /**
+     * Set the map zoom level.
+     * @param zoom zoom level (camera position)
+     */
+    public void setZoom(float zoom) {
+        this.zoom = zoom;
+    }
+
+    /**
+     * Get the map zoom level.
+     * @return zoom level
+     */
+    public float getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Start a new tick (forget platforms of previous tick).
+     */
+    public void reset() {
+        reset(1.0);
+    }
+
+    /**
+     * Start a new tick on a simulation clock (forget platforms of previous tick).
+     * Map speeds are scaled by the clock rate (e.g. x100 ticks a hundred times faster, bounded by the minimum interval).
+     * @param rate clock time advance per wall time unit (1 live)
+     */
+    public void reset(double rate) {
+        max_speed = 0.0;
+        fallback = false;
+        this.rate = Math.abs(rate);
+        tick_zoom = zoom;
+    }
+
+    /**
+     * Add a propagated platform.
+     * @param groundRate angular rate of the sub-satellite point (rad/s, see {@link Coordinates#groundAngularVelocity})
+     * @param latitude geodetic latitude (decimal degrees)
+     */
+    public void add(double groundRate, double latitude) {
+        double metersPerDp = METERS_PER_DP * Math.cos(Math.min(Math.abs(latitude), MAX_LATITUDE) * DEG2RAD) / Math.pow(2.0, tick_zoom);
+        double speed = rate * groundRate * Coordinates.WGS84_A * 1000.0 / metersPerDp; // dp/s (wall time)
+        if (speed > max_speed) max_speed = speed;
+    }
+
+    /**
+     * Add a platform without orbital elements (positioned by soap requests).
+     */
+    public void addFallback() {
+        fallback = true;
+    }
+
+    /**
+     * Get the tick interval for the platforms of current tick at the current zoom level.
+     * @return milliseconds
+     */
+    public long interval() {
+        double speed = max_speed * Math.pow(2.0, zoom - tick_zoom); // note: map scale halves per zoom level
+        long interval = (speed > 0.0) ? (long) (1000.0 * PIXELS / speed) : MAX_INTERVAL;
+        if (fallback) interval = Math.min(interval, DEFAULT_INTERVAL); // note: soap positions are polled at the default rate
+        return Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, interval));
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.cache;
+
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Orbital elements catalog (memory mapped, read only).
+ * The catalog file holds fixed-width records sorted by NORAD ID, followed by a side table of interned names:
+ * <pre>
+ * header:  int magic, int version, int records, int names, long names offset, long reserved
+ * record:  int NORAD ID, int name index (-1 if none), long fetched time,
+ *          double epoch (julian date), bstar, inclination, raan, eccentricity, argument of perigee, mean anomaly, mean motion,
+ *          line 1 (69 ascii bytes), line 2 (69 ascii bytes), padding
+ * names:   int offsets (one per name, relative to the first name), utf-8 bytes
+ * </pre>
+ * Opening a catalog maps the file without creating per record objects; fields are read from the mapped buffer by index,
+ * and names and element sets are only decoded on demand.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class Catalog {
+
+    static final int MAGIC = 0x45544331; // "ETC1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int LINE_SIZE = 69;
+    static final int RECORD_SIZE = 224;
+
+    // record field offsets
+    static final int ID = 0, NAME = 4, FETCHED = 8, EPOCH = 16, BSTAR = 24, INCLINATION = 32, RAAN = 40,
+            ECCENTRICITY = 48, ARG_PERIGEE = 56, MEAN_ANOMALY = 64, MEAN_MOTION = 72, LINE1 = 80, LINE2 = LINE1 + LINE_SIZE;
+
+    static final Charset ASCII = Charset.forName("US-ASCII");
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Catalog EMPTY = new Catalog(ByteBuffer.allocate(HEADER_SIZE), 0, 0, 0);
+
+    private final ByteBuffer buffer; // mapped file (absolute reads only, so it can be shared between threads)
+    private final int size; // number of records
+    private final int names; // number of names
+    private final int namesOffset; // names side table position
+
+    private Catalog(ByteBuffer buffer, int size, int names, int namesOffset) {
+        this.buffer = buffer;
+        this.size = size;
+        this.names = names;
+        this.namesOffset = namesOffset;
+    }
+
+    /**
+     * Get an empty catalog.
+     * @return catalog without records
+     */
+    public static Catalog empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Open (map) a catalog file.
+     * @param file catalog file
+     * @return catalog
+     * @throws IOException if the file can not be read or it is not a valid catalog
+     */
+    public static Catalog open(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // note: mapping outlives the channel
+            if (buffer.capacity() < HEADER_SIZE || MAGIC != buffer.getInt(0) || VERSION != buffer.getInt(4)) {
+                throw new IOException("Not a catalog file: " + file);
+            }
+            int size = buffer.getInt(8), names = buffer.getInt(12);
+            long namesOffset = buffer.getLong(16);
+            if (size < 0 || names < 0 || namesOffset != HEADER_SIZE + (long) size * RECORD_SIZE
+                    || namesOffset + 4L * names > buffer.capacity()) {
+                throw new IOException("Truncated catalog file: " + file);
+            }
+            return new Catalog(buffer, size, names, (int) namesOffset);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Get the number of records.
+     * @return number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find a record by NORAD ID (binary search).
+     * @param id NORAD ID
+     * @return record index, negative if not found
+     */
+    public int indexOf(int id) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = getNORAD_ID(middle);
+            if (value < id) low = middle + 1;
+            else if (value > id) high = middle - 1;
+            else return middle;
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Get the NORAD ID of a record.
+     * @param index record index
+     * @return NORAD ID
+     */
+    public int getNORAD_ID(int index) {
+        return buffer.getInt(position(index) + ID);
+    }
+
+    /**
+     * Get the name index (side table) of a record.
+     * @param index record index
+     * @return name index, -1 if the record has no name
+     */
+    public int getNameIndex(int index) {
+        return buffer.getInt(position(index) + NAME);
+    }
+
+    /**
+     * Get the time the element set of a record was fetched.
+     * @param index record index
+     * @return utc time (milliseconds since 1970-01-01)
+     */
+    public long getFetched(int index) {
+        return buffer.getLong(position(index) + FETCHED);
+    }
+
+    /**
+     * Get the element set epoch of a record.
+     * @param index record index
+     * @return julian date (utc)
+     */
+    public double getEpochJD(int index) {
+        return buffer.getDouble(position(index) + EPOCH);
+    }
+
+    /**
+     * Get the drag term of a record.
+     * @param index record index
+     * @return bstar (1/earth radii)
+     */
+    public double getBstar(int index) {
+        return buffer.getDouble(position(index) + BSTAR);
+    }
+
+    /**
+     * Get the inclination of a record.
+     * @param index record index
+     * @return radians
+     */
+    public double getInclination(int index) {
+        return buffer.getDouble(position(index) + INCLINATION);
+    }
+
+    /**
+     * Get the right ascension of ascending node of a record.
+     * @param index record index
+     * @return radians
+     */
+    public double getRaan(int index) {
+        return buffer.getDouble(position(index) + RAAN);
+    }
+
+    /**
+     * Get the eccentricity of a record.
+     * @param index record index
+     * @return eccentricity
+     */
+    public double getEccentricity(int index) {
+        return buffer.getDouble(position(index) + ECCENTRICITY);
+    }
+
+    /**
+     * Get the argument of perigee of a record.
+     * @param index record index
+     * @return radians
+     */
+    public double getArgPerigee(int index) {
+        return buffer.getDouble(position(index) + ARG_PERIGEE);
+    }
+
+    /**
+     * Get the mean anomaly of a record.
+     * @param index record index
+     * @return radians
+     */
+    public double getMeanAnomaly(int index) {
+        return buffer.getDouble(position(index) + MEAN_ANOMALY);
+    }
+
+    /**
+     * Get the mean motion of a record.
+     * @param index record index
+     * @return radians per minute
+     */
+    public double getMeanMotion(int index) {
+        return buffer.getDouble(position(index) + MEAN_MOTION);
+    }
+
+    /**
+     * Get the number of names in the side table.
+     * @return number of names
+     */
+    public int getNameCount() {
+        return names;
+    }
+
+    /**
+     * Decode a name of the side table.
+     * @param nameIndex name index
+     * @return name, null if the index is -1
+     */
+    public String getName(int nameIndex) {
+        if (-1 == nameIndex) return null;
+        if (nameIndex < 0 || nameIndex >= names) throw new IndexOutOfBoundsException("Name index: " + nameIndex);
+        int base = namesOffset + 4 * names; // first name byte
+        int start = base + buffer.getInt(namesOffset + 4 * nameIndex);
+        int end = (nameIndex + 1 < names) ? base + buffer.getInt(namesOffset + 4 * (nameIndex + 1)) : buffer.capacity();
+        return decode(start, end - start, UTF8);
+    }
+
+    /**
+     * Decode the element set of a record.
+     * @param index record index
+     * @param name platform name (e.g. a previously decoded name), could be null
+     * @return element set
+     * @throws IllegalArgumentException if the record lines are malformed
+     */
+    public TLE getTLE(int index, String name) {
+        int position = position(index);
+        return TLE.parse(name, decode(position + LINE1, LINE_SIZE, ASCII), decode(position + LINE2, LINE_SIZE, ASCII));
+    }
+
+    // copy the raw bytes of a record
+    void getRecord(int index, byte[] record) {
+        int position = position(index);
+        for (int i = 0; i < RECORD_SIZE; i++) record[i] = buffer.get(position + i);
+    }
+
+    // first byte of a record
+    private int position(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Record index: " + index);
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    // decode bytes at given position (absolute reads)
+    private String decode(int position, int length, Charset charset) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = buffer.get(position + i);
+        return new String(bytes, charset);
+    }
+
+}
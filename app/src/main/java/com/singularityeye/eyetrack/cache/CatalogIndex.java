@@ -0,0 +1,388 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.cache;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Catalog search index (search as you type).
+ * NORAD IDs are looked up on the catalog itself (records are sorted by NORAD ID, binary search), so id queries need no extra memory.
+ * Names of the side table are normalized (upper case, words separated by one space) into one char pool,
+ * and every word start is an entry of a sorted suffix array: a prefix query (e.g. "ZARYA" or "NOAA 1") is a binary search
+ * and a scan of the matching range. Fuzzy queries (typos) walk the same sorted array as a trie, computing edit distance rows
+ * incrementally over shared prefixes and skipping subtrees that can not match.
+ * Only primitive arrays are held (no per platform objects); names are decoded from the catalog on demand.
+ * Note: search is not reentrant (shared buffers), calls are serialized.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class CatalogIndex {
+
+    private static final int MAX_DIGITS = 9; // NORAD ID digits (catalog numbers are below 10^9)
+
+    private final Catalog catalog;
+    private final char[] pool; // normalized names (concatenated)
+    private final int[] name_starts; // first pool char of each name (names + 1 elements)
+    private final int[] suffixes; // pool positions of word starts, sorted by the text that follows them (until the name end)
+    private final int[] suffix_names; // name of each suffix
+    private final int[] record_starts; // first entry of each name in name_records (names + 1 elements)
+    private final int[] name_records; // record indexes grouped by name
+
+    // search buffers (guarded by this)
+    private final int[] marks; // search stamp of each record (duplicates)
+    private int stamp;
+    private int[][] rows = new int[0][]; // edit distance rows by depth
+    private int[] row_mins = new int[0]; // minimum of each row
+    private char[] query = new char[0];
+
+    private CatalogIndex(Catalog catalog, char[] pool, int[] nameStarts, int[] suffixes, int[] suffixNames, int[] recordStarts, int[] nameRecords) {
+        this.catalog = catalog;
+        this.pool = pool;
+        this.name_starts = nameStarts;
+        this.suffixes = suffixes;
+        this.suffix_names = suffixNames;
+        this.record_starts = recordStarts;
+        this.name_records = nameRecords;
+        this.marks = new int[catalog.size()];
+    }
+
+    /**
+     * Build the index of a catalog (names are decoded once).
+     * @param catalog orbital elements catalog
+     * @return search index
+     */
+    public static CatalogIndex build(Catalog catalog) {
+        int names = catalog.getNameCount();
+        // normalized names and word starts
+        StringBuilder text = new StringBuilder(names * 16);
+        int[] nameStarts = new int[names + 1];
+        int[] words = new int[names * 2];
+        int[] wordNames = new int[names * 2];
+        int count = 0;
+        for (int n = 0; n < names; n++) {
+            nameStarts[n] = text.length();
+            String name = catalog.getName(n);
+            boolean separator = true;
+            for (int i = 0; i < name.length(); i++) {
+                char c = Character.toUpperCase(name.charAt(i));
+                if (Character.isLetterOrDigit(c)) {
+                    if (separator) {
+                        if (text.length() > nameStarts[n]) text.append(' ');
+                        if (count == words.length) {
+                            words = Arrays.copyOf(words, 2 * count);
+                            wordNames = Arrays.copyOf(wordNames, 2 * count);
+                        }
+                        words[count] = text.length();
+                        wordNames[count++] = n;
+                    }
+                    text.append(c);
+                    separator = false;
+                } else {
+                    separator = true; // note: punctuation and spaces are word separators ("ISS (ZARYA)" is "ISS ZARYA")
+                }
+            }
+        }
+        nameStarts[names] = text.length();
+        final char[] pool = new char[text.length()];
+        text.getChars(0, pool.length, pool, 0);
+
+        // sorted suffixes (build time only boxing)
+        final int[] ends = new int[count];
+        for (int k = 0; k < count; k++) ends[k] = nameStarts[wordNames[k] + 1];
+        Integer[] order = new Integer[count];
+        for (int k = 0; k < count; k++) order[k] = k;
+        final int[] starts = words;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareText(pool, starts[a], ends[a], starts[b], ends[b]);
+            }
+        });
+        int[] suffixes = new int[count], suffixNames = new int[count];
+        for (int k = 0; k < count; k++) {
+            suffixes[k] = words[order[k]];
+            suffixNames[k] = wordNames[order[k]];
+        }
+
+        // records by name
+        int[] recordStarts = new int[names + 1];
+        for (int i = 0; i < catalog.size(); i++) {
+            int name = catalog.getNameIndex(i);
+            if (-1 != name) recordStarts[name + 1]++;
+        }
+        for (int n = 0; n < names; n++) recordStarts[n + 1] += recordStarts[n];
+        int[] nameRecords = new int[recordStarts[names]];
+        int[] next = Arrays.copyOf(recordStarts, names);
+        for (int i = 0; i < catalog.size(); i++) {
+            int name = catalog.getNameIndex(i);
+            if (-1 != name) nameRecords[next[name]++] = i;
+        }
+        return new CatalogIndex(catalog, pool, nameStarts, suffixes, suffixNames, recordStarts, nameRecords);
+    }
+
+    /**
+     * Get the indexed catalog.
+     * @return catalog (records are the ones returned by searches)
+     */
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Find a record by NORAD ID.
+     * @param id NORAD ID
+     * @return record index, -1 if not found
+     */
+    public int find(int id) {
+        int index = catalog.indexOf(id);
+        return (index < 0) ? -1 : index;
+    }
+
+    /**
+     * Search records by NORAD ID or name.
+     * Digits only queries match NORAD IDs (exact id first, then ids starting with the digits, ascending);
+     * other queries match names: names starting with the query first, then names with a word starting with it
+     * (both alphabetical), then names with a word starting with the query with typos (1 edit for 3-5 chars, 2 edits above).
+     * @param text query (case and punctuation are ignored)
+     * @param results output: record indexes, best matches first
+     * @return number of results (at most the results length)
+     */
+    public synchronized int search(String text, int[] results) {
+        if (0 == results.length) return 0;
+        int length = normalize(text);
+        if (0 == length) return 0;
+        if (++stamp == 0) { // note: stamp overflow, clear marks
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+        int count = 0;
+        boolean digits = length <= MAX_DIGITS;
+        for (int i = 0; i < length && digits; i++) digits = query[i] >= '0' && query[i] <= '9';
+        if (digits) count = searchIds(length, results, count);
+        // prefix matches: range of suffixes starting with the query
+        int low = lowerBound(length), high = low;
+        while (high < suffixes.length && startsWith(suffixes[high], suffix_names[high], length)) high++;
+        for (int k = low; k < high && count < results.length; k++) { // name starts first
+            if (suffixes[k] == name_starts[suffix_names[k]]) count = addName(suffix_names[k], results, count);
+        }
+        for (int k = low; k < high && count < results.length; k++) {
+            if (suffixes[k] != name_starts[suffix_names[k]]) count = addName(suffix_names[k], results, count);
+        }
+        if (!digits && count < results.length && length >= 3) count = searchFuzzy(length, (length <= 5) ? 1 : 2, results, count);
+        return count;
+    }
+
+    /**
+     * Get the NORAD ID of a record.
+     * @param record record index
+     * @return NORAD ID
+     */
+    public int getNORAD_ID(int record) {
+        return catalog.getNORAD_ID(record);
+    }
+
+    /**
+     * Decode the name of a record.
+     * @param record record index
+     * @return name, null if the record has no name
+     */
+    public String getName(int record) {
+        return catalog.getName(catalog.getNameIndex(record));
+    }
+
+    // exact NORAD ID, then ids with the query as decimal prefix (one id range per extra digit)
+    private int searchIds(int length, int[] results, int count) {
+        long id = 0;
+        for (int i = 0; i < length; i++) id = 10 * id + (query[i] - '0');
+        int exact = (id <= Integer.MAX_VALUE) ? find((int) id) : -1;
+        if (-1 != exact) count = addRecord(exact, results, count);
+        long low = id, high = id + 1;
+        for (int digits = length; digits < MAX_DIGITS && count < results.length; digits++) {
+            low *= 10;
+            high *= 10;
+            if (0 == id) break; // note: leading zeros are not NORAD ID prefixes
+            int index = catalog.indexOf((int) low);
+            if (index < 0) index = -(index + 1);
+            for (; index < catalog.size() && catalog.getNORAD_ID(index) < high && count < results.length; index++) {
+                count = addRecord(index, results, count);
+            }
+        }
+        return count;
+    }
+
+    // names with a word prefix within the edit distance (optimal string alignment: typos, missing, extra and swapped chars);
+    // sorted suffixes are walked as a trie: rows are shared by common prefixes, and pruned subtrees are skipped by binary search
+    private int searchFuzzy(int length, int distance, int[] results, int count) {
+        int depths = length + distance; // note: a matching prefix is at most this long
+        if (rows.length <= depths || rows[0].length <= length) {
+            rows = new int[depths + 1][length + 1];
+            row_mins = new int[depths + 1];
+        }
+        for (int j = 0; j <= length; j++) rows[0][j] = j;
+        row_mins[0] = 0;
+        int valid = 0; // rows computed for the previous suffix
+        int hit = Integer.MAX_VALUE; // depth of a matching prefix of the previous suffix
+        int previous = -1, previous_end = -1;
+        for (int k = 0; k < suffixes.length && count < results.length; k++) {
+            int start = suffixes[k], end = name_starts[suffix_names[k] + 1];
+            int common = 0; // common prefix with the previous suffix
+            if (previous >= 0) {
+                int limit = Math.min(Math.min(end - start, previous_end - previous), depths);
+                while (common < limit && pool[start + common] == pool[previous + common]) common++;
+            }
+            previous = start;
+            previous_end = end;
+            if (common >= hit) { // note: same matching subtree
+                count = addName(suffix_names[k], results, count);
+                continue;
+            }
+            hit = Integer.MAX_VALUE;
+            int depth = Math.min(common, valid);
+            int limit = Math.min(end - start, depths);
+            boolean match = false, dead = false;
+            while (depth < limit && !match && !dead) {
+                int[] above = rows[depth], row = rows[depth + 1];
+                char c = pool[start + depth];
+                row[0] = depth + 1;
+                int min = row[0];
+                for (int j = 1; j <= length; j++) {
+                    int value = Math.min(Math.min(above[j] + 1, row[j - 1] + 1), above[j - 1] + ((query[j - 1] == c) ? 0 : 1));
+                    if (depth > 0 && j > 1 && query[j - 1] == pool[start + depth - 1] && query[j - 2] == c) {
+                        value = Math.min(value, rows[depth - 1][j - 2] + 1); // note: swapped chars
+                    }
+                    row[j] = value;
+                    if (value < min) min = value;
+                }
+                row_mins[++depth] = min;
+                if (row[length] <= distance) match = true;
+                else if (min > distance && row_mins[depth - 1] >= distance) dead = true; // note: a swap reaches back two rows
+            }
+            valid = depth;
+            if (match) {
+                hit = depth;
+                count = addName(suffix_names[k], results, count);
+            } else if (dead) {
+                k = skip(k, depth) - 1; // note: no suffix with this prefix can match
+            }
+        }
+        return count;
+    }
+
+    // first suffix after k that does not share the first chars of suffix k (exponential and binary search)
+    private int skip(int k, int depth) {
+        int low = k, high = k + 1, step = 1;
+        while (high < suffixes.length && shares(high, suffixes[k], depth)) {
+            low = high;
+            step <<= 1;
+            high = k + step;
+        }
+        high = Math.min(high, suffixes.length);
+        while (low + 1 < high) {
+            int middle = (low + high) >>> 1;
+            if (shares(middle, suffixes[k], depth)) low = middle;
+            else high = middle;
+        }
+        return high;
+    }
+
+    // check whether a suffix starts with the given pool chars
+    private boolean shares(int k, int start, int depth) {
+        int other = suffixes[k];
+        if (name_starts[suffix_names[k] + 1] - other < depth) return false;
+        for (int i = 0; i < depth; i++) if (pool[other + i] != pool[start + i]) return false;
+        return true;
+    }
+
+    // first suffix not lower than the query
+    private int lowerBound(int length) {
+        int low = 0, high = suffixes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int start = suffixes[middle], end = name_starts[suffix_names[middle] + 1];
+            if (compareQuery(start, end, length) < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    // check whether a suffix starts with the query
+    private boolean startsWith(int start, int name, int length) {
+        if (name_starts[name + 1] - start < length) return false;
+        for (int i = 0; i < length; i++) if (pool[start + i] != query[i]) return false;
+        return true;
+    }
+
+    // compare a suffix with the query
+    private int compareQuery(int start, int end, int length) {
+        int n = Math.min(end - start, length);
+        for (int i = 0; i < n; i++) {
+            char a = pool[start + i], b = query[i];
+            if (a != b) return a - b;
+        }
+        return (end - start) - length;
+    }
+
+    // add the records of a name (not already added)
+    private int addName(int name, int[] results, int count) {
+        for (int i = record_starts[name]; i < record_starts[name + 1] && count < results.length; i++) {
+            count = addRecord(name_records[i], results, count);
+        }
+        return count;
+    }
+
+    // add a record (not already added)
+    private int addRecord(int record, int[] results, int count) {
+        if (marks[record] == stamp) return count;
+        marks[record] = stamp;
+        results[count] = record;
+        return count + 1;
+    }
+
+    // normalize the query into the query buffer (same rules as names)
+    private int normalize(String text) {
+        if (query.length < text.length()) query = new char[text.length()];
+        int length = 0;
+        boolean separator = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toUpperCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                if (separator && length > 0) query[length++] = ' ';
+                query[length++] = c;
+                separator = false;
+            } else {
+                separator = true;
+            }
+        }
+        return length;
+    }
+
+    // compare two pool texts
+    private static int compareText(char[] pool, int a, int aEnd, int b, int bEnd) {
+        int n = Math.min(aEnd - a, bEnd - b);
+        for (int i = 0; i < n; i++) {
+            char x = pool[a + i], y = pool[b + i];
+            if (x != y) return x - y;
+        }
+        return (aEnd - a) - (bEnd - b);
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.cache;
+
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Orbital elements catalog writer.
+ * Records must be added in ascending NORAD ID order (the reader searches them by binary search);
+ * names are interned, so platforms with the same name share one entry of the side table.
+ * The catalog file is written atomically (temporary file and rename).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class CatalogWriter {
+
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream names = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream offsets = new ByteArrayOutputStream();
+    private final DataOutputStream nameOffsets = new DataOutputStream(offsets); // name offsets (relative to the first name)
+    private final Map<String, Integer> nameIndexes = new HashMap<String, Integer>(); // interned names
+    private final ByteBuffer record = ByteBuffer.allocate(Catalog.RECORD_SIZE); // record buffer
+    private int size; // number of records
+    private int lastId = Integer.MIN_VALUE; // NORAD ID of the last record
+
+    /**
+     * Constructor method for the writer.
+     */
+    public CatalogWriter() {}
+
+    /**
+     * Add an element set.
+     * @param tle element set
+     * @param fetched utc time (milliseconds since 1970-01-01)
+     * @throws IllegalArgumentException if NORAD ID is not greater than the last one
+     */
+    public void add(TLE tle, long fetched) {
+        checkOrder(tle.getNORAD_ID());
+        record.clear();
+        record.putInt(tle.getNORAD_ID());
+        record.putInt(intern(tle.getName()));
+        record.putLong(fetched);
+        record.putDouble(tle.getEpochJD());
+        record.putDouble(tle.getBstar());
+        record.putDouble(tle.getInclination());
+        record.putDouble(tle.getRaan());
+        record.putDouble(tle.getEccentricity());
+        record.putDouble(tle.getArgPerigee());
+        record.putDouble(tle.getMeanAnomaly());
+        record.putDouble(tle.getMeanMotion());
+        putLine(tle.getLine1());
+        putLine(tle.getLine2());
+        while (record.hasRemaining()) record.put((byte) 0); // padding
+        records.write(record.array(), 0, Catalog.RECORD_SIZE);
+        size++;
+    }
+
+    /**
+     * Copy a record of another catalog (without decoding its element set).
+     * @param catalog source catalog
+     * @param index record index
+     * @throws IllegalArgumentException if NORAD ID is not greater than the last one
+     */
+    public void add(Catalog catalog, int index) {
+        checkOrder(catalog.getNORAD_ID(index));
+        catalog.getRecord(index, record.array());
+        record.putInt(Catalog.NAME, intern(catalog.getName(catalog.getNameIndex(index)))); // note: name index in this catalog
+        records.write(record.array(), 0, Catalog.RECORD_SIZE);
+        size++;
+    }
+
+    /**
+     * Get the number of records.
+     * @return number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Write the catalog file (atomic replacement).
+     * @param file catalog file
+     * @throws IOException if the file can not be written
+     */
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(Catalog.HEADER_SIZE);
+            header.putInt(Catalog.MAGIC);
+            header.putInt(Catalog.VERSION);
+            header.putInt(size);
+            header.putInt(nameIndexes.size());
+            header.putLong(Catalog.HEADER_SIZE + (long) size * Catalog.RECORD_SIZE);
+            header.putLong(0L); // reserved
+            out.write(header.array());
+            records.writeTo(out);
+            offsets.writeTo(out);
+            names.writeTo(out);
+            out.flush();
+            out.getFD().sync(); // note: data must be on disk before rename
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Catalog file not replaced: " + file);
+        }
+    }
+
+    // intern a name (side table index, -1 if null)
+    private int intern(String name) {
+        if (null == name) return -1;
+        Integer index = nameIndexes.get(name);
+        if (null != index) return index;
+        index = nameIndexes.size();
+        nameIndexes.put(name, index);
+        try {
+            nameOffsets.writeInt(names.size());
+            names.write(name.getBytes(Catalog.UTF8));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // note: in memory streams do not fail
+        }
+        return index;
+    }
+
+    // write an element line (fixed width, padded with spaces)
+    private void putLine(String line) {
+        for (int i = 0; i < Catalog.LINE_SIZE; i++) record.put((byte) ((i < line.length()) ? line.charAt(i) : ' '));
+    }
+
+    // NORAD IDs must be strictly ascending
+    private void checkOrder(int id) {
+        if (id <= lastId) throw new IllegalArgumentException("NORAD ID out of order: " + id);
+        lastId = id;
+    }
+
+}
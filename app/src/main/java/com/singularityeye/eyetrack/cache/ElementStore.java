@@ -0,0 +1,291 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.cache;
+
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Orbital elements store.
+ * Element sets are kept by NORAD ID with the time they were fetched, in a memory mapped binary catalog ({@link Catalog})
+ * plus the element sets received since the last save; element sets are only decoded when they are requested.
+ * Staleness depends on fetch time and element set epoch: low orbits are refreshed more often (drag),
+ * old epochs are revalidated, and very old epochs are not used at all.
+ * The catalog size is bounded (least recently fetched are dropped on save),
+ * and it is persisted atomically (temporary file and rename), so a crash never leaves a truncated file.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ElementStore {
+
+    private static final long HOUR = 3600000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long REFRESH_LOW = 6 * HOUR; // refresh interval for low orbits (more than 11 rev/day)
+    private static final long REFRESH_HIGH = DAY; // refresh interval for other orbits
+    private static final long STALE_EPOCH = 3 * DAY; // epoch age to revalidate
+    private static final long MIN_REFRESH = HOUR; // minimum interval between requests for the same platform
+    private static final long EXPIRED_EPOCH = 30 * DAY; // epoch age to stop using elements
+    private static final double LOW_ORBIT = 11.0 * 2.0 * Math.PI / 1440.0; // mean motion (rad/min)
+    private static final double JD_UNIX_EPOCH = 2440587.5; // julian date for 1970-01-01 00:00 utc
+    private static final int MAX_DECODED = 256; // decoded element sets kept in memory
+
+    private final File file; // persistence file
+    private final int maxEntries; // maximum number of element sets
+    private Catalog catalog = Catalog.empty(); // persisted element sets
+    private CatalogIndex index; // search index of the persisted catalog (built on demand)
+    private final Map<Integer, Record> updates = new TreeMap<Integer, Record>(); // element sets received since last save (NORAD ID order)
+    private final Map<Integer, TLE> decoded = new LinkedHashMap<Integer, TLE>(16, 0.75f, true) { // access ordered (least recently used first)
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TLE> eldest) {
+            return size() > MAX_DECODED;
+        }
+    };
+
+    // received element set
+    private static class Record {
+        final TLE tle;
+        final long fetched; // milliseconds (utc)
+
+        Record(TLE tle, long fetched) {
+            this.tle = tle;
+            this.fetched = fetched;
+        }
+    }
+
+    /**
+     * Constructor method for the store.
+     * @param file persistence file
+     * @param maxEntries maximum number of element sets
+     */
+    public ElementStore(File file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get an element set.
+     * @param id NORAD ID
+     * @return element set, null if not cached
+     */
+    public synchronized TLE get(int id) {
+        Record record = updates.get(id);
+        if (null != record) return record.tle;
+        TLE tle = decoded.get(id);
+        if (null != tle) return tle;
+        int index = catalog.indexOf(id);
+        if (index < 0) return null;
+        try {
+            tle = catalog.getTLE(index, catalog.getName(catalog.getNameIndex(index)));
+        } catch (IllegalArgumentException e) {
+            return null; // note: malformed record
+        }
+        decoded.put(id, tle);
+        return tle;
+    }
+
+    /**
+     * Get a usable element set (epoch is not too old to propagate).
+     * @param id NORAD ID
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return element set, null if not cached or expired
+     */
+    public synchronized TLE getUsable(int id, long now) {
+        Record record = updates.get(id);
+        if (null != record) return isExpired(record.tle, now) ? null : record.tle;
+        int index = catalog.indexOf(id);
+        if (index < 0 || Math.abs(now - epochMillis(catalog.getEpochJD(index))) >= EXPIRED_EPOCH) return null; // note: not decoded
+        return get(id);
+    }
+
+    /**
+     * Add or replace an element set.
+     * An older epoch never replaces a newer one (only the fetch time is updated).
+     * @param tle element set
+     * @param fetched utc time (milliseconds since 1970-01-01)
+     */
+    public synchronized void put(TLE tle, long fetched) {
+        TLE current = get(tle.getNORAD_ID());
+        if (null != current && current.getEpochJD() > tle.getEpochJD()) tle = current;
+        updates.put(tle.getNORAD_ID(), new Record(tle, fetched));
+        decoded.remove(tle.getNORAD_ID());
+    }
+
+    /**
+     * Check whether an element set should be requested again.
+     * @param id NORAD ID
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return true if not cached or stale
+     */
+    public synchronized boolean isStale(int id, long now) {
+        long fetched, epoch;
+        double meanMotion;
+        Record record = updates.get(id);
+        if (null != record) {
+            fetched = record.fetched;
+            epoch = record.tle.getEpochMillis();
+            meanMotion = record.tle.getMeanMotion();
+        } else {
+            int index = catalog.indexOf(id);
+            if (index < 0) return true;
+            fetched = catalog.getFetched(index);
+            epoch = epochMillis(catalog.getEpochJD(index));
+            meanMotion = catalog.getMeanMotion(index);
+        }
+        long age = now - fetched;
+        if (age < MIN_REFRESH) return false; // note: avoid request storms for platforms without new elements
+        long refresh = (meanMotion > LOW_ORBIT) ? REFRESH_LOW : REFRESH_HIGH;
+        return age >= refresh || now - epoch >= STALE_EPOCH;
+    }
+
+    /**
+     * Check whether an element set is too old to propagate.
+     * @param tle element set
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return true if epoch is too old
+     */
+    public static boolean isExpired(TLE tle, long now) {
+        return Math.abs(now - tle.getEpochMillis()) >= EXPIRED_EPOCH;
+    }
+
+    /**
+     * Get the number of element sets.
+     * @return number of element sets
+     */
+    public synchronized int size() {
+        int size = catalog.size();
+        for (Integer id : updates.keySet()) if (catalog.indexOf(id) < 0) size++;
+        return size;
+    }
+
+    /**
+     * Get the persisted catalog (read only, shared).
+     * Note: element sets received since the last save are not included.
+     * @return catalog
+     */
+    public synchronized Catalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Get the search index of the persisted catalog (built on first use, and again once the catalog changes).
+     * Note: building it takes a while on a large catalog, do not call it from the main thread.
+     * @return search index
+     */
+    public CatalogIndex getIndex() {
+        Catalog current;
+        synchronized (this) {
+            current = catalog;
+            if (null != index && index.getCatalog() == current) return index;
+        }
+        CatalogIndex built = CatalogIndex.build(current); // note: outside the lock, cache lookups are not blocked
+        synchronized (this) {
+            if (catalog == current) index = built;
+        }
+        return built;
+    }
+
+    /**
+     * Load (map) the persistence file (current element sets are replaced).
+     * @return false if the file does not exist or can not be read
+     */
+    public boolean load() {
+        if (!file.exists()) return false;
+        Catalog loaded;
+        try {
+            loaded = Catalog.open(file);
+        } catch (IOException e) {
+            return false;
+        }
+        synchronized (this) {
+            catalog = loaded;
+            updates.clear();
+            decoded.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Save element sets into the persistence file (atomic replacement).
+     * Persisted and received element sets are merged in NORAD ID order;
+     * if there are too many, the least recently fetched are dropped.
+     * @return false if the file can not be written
+     */
+    public boolean save() {
+        Catalog base;
+        Map<Integer, Record> snapshot;
+        synchronized (this) {
+            base = catalog;
+            snapshot = new TreeMap<Integer, Record>(updates);
+        }
+
+        // fetch time threshold to keep at most maxEntries element sets
+        long[] fetched = new long[base.size() + snapshot.size()];
+        int count = 0;
+        for (int i = 0; i < base.size(); i++) {
+            if (!snapshot.containsKey(base.getNORAD_ID(i))) fetched[count++] = base.getFetched(i);
+        }
+        for (Record record : snapshot.values()) fetched[count++] = record.fetched;
+        long threshold = Long.MIN_VALUE;
+        if (count > maxEntries) {
+            Arrays.sort(fetched, 0, count);
+            threshold = fetched[count - maxEntries]; // note: ties could keep a few more
+        }
+
+        // merge (both sources in NORAD ID order)
+        CatalogWriter writer = new CatalogWriter();
+        int i = 0;
+        for (Record record : snapshot.values()) {
+            int id = record.tle.getNORAD_ID();
+            for (; i < base.size() && base.getNORAD_ID(i) <= id; i++) {
+                if (base.getNORAD_ID(i) < id && base.getFetched(i) >= threshold) writer.add(base, i);
+            }
+            if (record.fetched >= threshold) writer.add(record.tle, record.fetched);
+        }
+        for (; i < base.size(); i++) if (base.getFetched(i) >= threshold) writer.add(base, i);
+
+        Catalog saved;
+        try {
+            writer.write(file);
+            saved = Catalog.open(file);
+        } catch (IOException e) {
+            return false;
+        }
+        synchronized (this) {
+            catalog = saved;
+            for (Map.Entry<Integer, Record> entry : snapshot.entrySet()) {
+                if (updates.get(entry.getKey()) == entry.getValue()) updates.remove(entry.getKey()); // note: not replaced meanwhile
+            }
+        }
+        return true;
+    }
+
+    // julian date to milliseconds since 1970-01-01
+    private static long epochMillis(double epochJD) {
+        return Math.round((epochJD - JD_UNIX_EPOCH) * 86400000.0);
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.cache;
+
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.TLE;
+import com.singularityeye.eyetrack.ws.ElementsClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Orbital elements updater: keeps the propagators of tracked platforms up to date.
+ * Propagators are created (or replaced when the element set epoch changes) from the cache ({@link ElementStore}),
+ * and missing or stale element sets are requested: the active platforms group when more than one is needed
+ * (once per tracked set), then single platform queries for the remaining ones (round robin).
+ * It is the orbital elements stage shared by the bound service and the headless server.
+ * Note: thread safe, propagators are stateless (they can be used from any thread).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ElementsUpdater {
+
+    /**
+     * Orbital elements url (single platform, NORAD ID appended).
+     */
+    public static final String ELEMENTS_URL = "http://celestrak.com/NORAD/elements/gp.php?FORMAT=TLE&CATNR=";
+    /**
+     * Orbital elements url (active platforms group).
+     */
+    public static final String ELEMENTS_GROUP_URL = "http://celestrak.com/NORAD/elements/gp.php?FORMAT=TLE&GROUP=active";
+
+    private final ElementStore store; // orbital elements cache (persistent)
+    private final ElementsClient client;
+    private final String url, group_url; // orbital elements endpoints
+    private final Map<String, SGP4> propagators = new ConcurrentHashMap<String, SGP4>(); // local propagators by NORAD ID (only platforms with orbital elements)
+    private volatile Snapshot snapshot = new Snapshot(new int[0], new SGP4[0]); // propagators by numeric NORAD ID (rebuilt on change)
+    private final Object snapshot_lock = new Object(); // note: not this, requests hold it while waiting for the network
+    private boolean loaded; // cache file already loaded (guarded by store)
+    private volatile boolean group_requested; // active platforms group already requested for current tracked platforms
+    private int elements_index; // round robin index over platforms not found in active platforms group (guarded by this)
+
+    /**
+     * Constructor method for the updater.
+     * @param store orbital elements cache
+     * @param client orbital elements client
+     */
+    public ElementsUpdater(ElementStore store, ElementsClient client) {
+        this(store, client, ELEMENTS_URL, ELEMENTS_GROUP_URL);
+    }
+
+    /**
+     * Constructor method for the updater with other endpoints (e.g. a mirror, or a local stub).
+     * @param store orbital elements cache
+     * @param client orbital elements client
+     * @param url single platform url (NORAD ID appended)
+     * @param groupUrl active platforms group url
+     */
+    public ElementsUpdater(ElementStore store, ElementsClient client, String url, String groupUrl) {
+        this.store = store;
+        this.client = client;
+        this.url = url;
+        this.group_url = groupUrl;
+    }
+
+    /**
+     * Get the orbital elements cache.
+     * @return orbital elements cache
+     */
+    public ElementStore getStore() {
+        return store;
+    }
+
+    /**
+     * Load the cache file (only the first call loads it).
+     * @return true if it was loaded by this call
+     */
+    public boolean load() {
+        synchronized (store) {
+            if (loaded) return false;
+            loaded = true;
+            return store.load();
+        }
+    }
+
+    /**
+     * Get the propagator of a platform.
+     * @param id NORAD ID
+     * @return platform propagator, null if there are no orbital elements
+     */
+    public SGP4 get(String id) {
+        return propagators.get(id);
+    }
+
+    /**
+     * Get the propagator of a platform by numeric NORAD ID (no allocation, e.g. from a drawing loop).
+     * @param id NORAD ID
+     * @return platform propagator, null if there are no orbital elements
+     */
+    public SGP4 get(int id) {
+        Snapshot current = snapshot;
+        int k = Arrays.binarySearch(current.ids, id);
+        return (k < 0) ? null : current.propagators[k];
+    }
+
+    /**
+     * Get the propagators of tracked platforms (live view).
+     * @return propagators (only platforms with orbital elements)
+     */
+    public Collection<SGP4> getPropagators() {
+        return propagators.values();
+    }
+
+    /**
+     * Drop the propagator of a platform (e.g. propagation failed, it is created again when new elements arrive).
+     * @param id NORAD ID
+     */
+    public void remove(String id) {
+        if (null != propagators.remove(id)) publish();
+    }
+
+    /**
+     * Set the tracked platforms: propagators of untracked platforms are dropped,
+     * and the active platforms group can be requested again for the new set.
+     * @param ids NORAD IDs (normalized)
+     */
+    public void setTracked(Collection<String> ids) {
+        if (propagators.keySet().retainAll(ids)) publish();
+        group_requested = false;
+    }
+
+    /**
+     * Create (or replace) propagators for tracked platforms from cached orbital elements.
+     * @param ids NORAD IDs (normalized)
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return NORAD IDs with invalid orbital elements (no propagator), empty if none
+     */
+    public List<String> refresh(Collection<String> ids, long now) {
+        List<String> invalid = new ArrayList<String>(0);
+        boolean changed = false;
+        for (String id : ids) {
+            TLE tle = store.getUsable(Integer.parseInt(id), now);
+            SGP4 propagator = propagators.get(id);
+            if (null == tle) {
+                if (null != propagator) {
+                    propagators.remove(id); // expired orbital elements
+                    changed = true;
+                }
+            } else if (null == propagator || propagator.getTLE().getEpochJD() != tle.getEpochJD()) {
+                try {
+                    propagators.put(id, new SGP4(tle));
+                    changed = true;
+                } catch (IllegalArgumentException e) {
+                    invalid.add(id);
+                }
+            }
+        }
+        if (changed) publish();
+        return invalid;
+    }
+
+    /**
+     * Get the tracked platforms without cached or with stale orbital elements.
+     * @param ids NORAD IDs (normalized)
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return NORAD IDs to request
+     */
+    public List<String> getStale(Collection<String> ids, long now) {
+        List<String> stale = new ArrayList<String>();
+        for (String id : ids) if (store.isStale(Integer.parseInt(id), now)) stale.add(id);
+        return stale;
+    }
+
+    /**
+     * Send one orbital elements request (active platforms group when more than one is needed,
+     * then single platform queries for the remaining ones); new element sets are cached, not saved.
+     * @param stale NORAD IDs to request (see {@link #getStale})
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return number of new element sets
+     * @throws IOException if the request fails
+     */
+    public synchronized int request(List<String> stale, long now) throws IOException {
+        if (stale.isEmpty()) return 0;
+        String request;
+        if (1 == stale.size() || group_requested) {
+            request = url + stale.get(elements_index++ % stale.size());
+        } else {
+            request = group_url;
+            group_requested = true;
+        }
+        int found = 0;
+        for (TLE tle : client.request(request)) {
+            if (stale.contains(String.valueOf(tle.getNORAD_ID()))) {
+                store.put(tle, now);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    // rebuild the numeric NORAD ID view of propagators (after every change, readers never lock)
+    private void publish() {
+        synchronized (snapshot_lock) {
+            List<Map.Entry<String, SGP4>> entries = new ArrayList<Map.Entry<String, SGP4>>(propagators.entrySet());
+            int[] ids = new int[entries.size()];
+            for (int k = 0; k < ids.length; k++) ids[k] = Integer.parseInt(entries.get(k).getKey());
+            Arrays.sort(ids);
+            SGP4[] sorted = new SGP4[ids.length];
+            for (Map.Entry<String, SGP4> entry : entries) sorted[Arrays.binarySearch(ids, Integer.parseInt(entry.getKey()))] = entry.getValue();
+            snapshot = new Snapshot(ids, sorted);
+        }
+    }
+
+    // propagators sorted by numeric NORAD ID (immutable)
+    private static final class Snapshot {
+
+        final int[] ids;
+        final SGP4[] propagators;
+
+        Snapshot(int[] ids, SGP4[] propagators) {
+            this.ids = ids;
+            this.propagators = propagators;
+        }
+    }
+
+}
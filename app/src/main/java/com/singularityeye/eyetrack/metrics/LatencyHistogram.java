@@ -0,0 +1,157 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram model (HdrHistogram style, log-linear buckets).
+ * Latencies are recorded in microseconds: values under 16 have their own bucket, larger values are grouped
+ * in 16 linear sub-buckets per power of two (about 6% relative error), up to about one hour.
+ * Recording is lock free and does not allocate (atomic counters), so it can be used on hot paths from any thread;
+ * snapshots copy the counters and compute percentiles off the hot path.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4; // linear sub-buckets per power of two (2^SUB_BITS)
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_MAGNITUDE = 31; // highest power of two (values up to 2^32 microseconds, about 71 minutes)
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong(); // microseconds
+    private final AtomicLong max = new AtomicLong(); // microseconds
+
+    /**
+     * Record a latency.
+     * @param nanos elapsed time (nanoseconds, e.g. difference of System.nanoTime values)
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) current = max.get();
+    }
+
+    /**
+     * Get a copy of the histogram.
+     * Note: counters are copied one by one, a snapshot taken while recording could be off by the latencies in flight.
+     * @return histogram snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new Snapshot(copy, count.get(), sum.get(), max.get());
+    }
+
+    /**
+     * Clear the histogram.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    // bucket of a value (microseconds)
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros); // floor(log2)
+        if (magnitude > MAX_MAGNITUDE) return BUCKETS - 1;
+        int sub = (int) (micros >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (magnitude - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    // highest value of a bucket (microseconds)
+    static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int magnitude = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (magnitude - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Histogram snapshot (immutable).
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count, sum, max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Get the number of recorded latencies.
+         * @return number of latencies
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the mean latency.
+         * @return microseconds, 0 if empty
+         */
+        public double getMean() {
+            return (0 == count) ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * Get the maximum latency.
+         * @return microseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Get a latency percentile (highest value of the bucket, never over the maximum).
+         * @param percentile 0 to 100 (e.g. 99.9)
+         * @return microseconds, 0 if empty
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long c : counts) total += c;
+            if (0 == total) return 0;
+            long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(highest(i), max);
+            }
+            return max;
+        }
+
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracking metrics model: latency histograms of the tracking stages and event counters.
+ * Stages and counters are fixed (indexed by constants), so recording is a lock free array update without lookups or allocations.
+ * Snapshots are immutable copies for clients (e.g. a debug overlay), taken off the hot path.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class Metrics {
+
+    /**
+     * Stage: soap request round trip (request sent to response streamed).
+     */
+    public static final int REQUEST = 0;
+    /**
+     * Stage: soap response parsing (streamed, it includes reading the response body).
+     */
+    public static final int PARSE = 1;
+    /**
+     * Stage: batch propagation of tracked platforms (one tick).
+     */
+    public static final int PROPAGATE = 2;
+    /**
+     * Stage: positions broadcast (published to client notified on the main thread, on the next display frame).
+     */
+    public static final int BROADCAST = 3;
+    static final int STAGES = 4;
+    private static final String[] STAGE_NAMES = {"request", "parse", "propagate", "broadcast"};
+
+    /**
+     * Counter: executed ticks.
+     */
+    public static final int TICKS = 0;
+    /**
+     * Counter: dropped ticks (coalesced after a long tick, or fired while the previous one was running).
+     */
+    public static final int DROPPED_TICKS = 1;
+    /**
+     * Counter: failed soap requests (network errors, error status, malformed responses).
+     */
+    public static final int REQUEST_FAILURES = 2;
+    /**
+     * Counter: soap faults.
+     */
+    public static final int SOAP_FAULTS = 3;
+    /**
+     * Counter: failed propagations.
+     */
+    public static final int PROPAGATION_ERRORS = 4;
+    /**
+     * Counter: failed orbital elements requests.
+     */
+    public static final int ELEMENTS_FAILURES = 5;
+    /**
+     * Counter: coalesced notifications (positions superseded before the client was notified, or published while it was paused).
+     */
+    public static final int COALESCED_NOTIFICATIONS = 6;
+    static final int COUNTERS = 7;
+    private static final String[] COUNTER_NAMES = {"ticks", "dropped ticks", "request failures", "soap faults", "propagation errors", "elements failures", "coalesced notifications"};
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES];
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+    private volatile long since = System.currentTimeMillis(); // time of last reset (utc milliseconds)
+
+    /**
+     * Constructor method for the metrics.
+     */
+    public Metrics() {
+        for (int i = 0; i < STAGES; i++) histograms[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Record the latency of a stage.
+     * @param stage stage (REQUEST, PARSE, PROPAGATE or BROADCAST)
+     * @param nanos elapsed time (nanoseconds)
+     */
+    public void record(int stage, long nanos) {
+        histograms[stage].record(nanos);
+    }
+
+    /**
+     * Increment a counter.
+     * @param counter counter (TICKS, DROPPED_TICKS, REQUEST_FAILURES, SOAP_FAULTS, PROPAGATION_ERRORS, ELEMENTS_FAILURES or COALESCED_NOTIFICATIONS)
+     */
+    public void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    /**
+     * Get a copy of every histogram and counter.
+     * @return metrics snapshot
+     */
+    public Snapshot snapshot() {
+        LatencyHistogram.Snapshot[] latencies = new LatencyHistogram.Snapshot[STAGES];
+        for (int i = 0; i < STAGES; i++) latencies[i] = histograms[i].snapshot();
+        long[] values = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++) values[i] = counters.get(i);
+        return new Snapshot(since, System.currentTimeMillis(), latencies, values);
+    }
+
+    /**
+     * Clear every histogram and counter.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) histogram.reset();
+        for (int i = 0; i < COUNTERS; i++) counters.set(i, 0);
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * Metrics snapshot (immutable).
+     */
+    public static class Snapshot {
+
+        private final long since, time;
+        private final LatencyHistogram.Snapshot[] latencies;
+        private final long[] counters;
+
+        Snapshot(long since, long time, LatencyHistogram.Snapshot[] latencies, long[] counters) {
+            this.since = since;
+            this.time = time;
+            this.latencies = latencies;
+            this.counters = counters;
+        }
+
+        /**
+         * Get the start of the measured period (service start or last reset).
+         * @return utc time (milliseconds since 1970-01-01)
+         */
+        public long getSince() {
+            return since;
+        }
+
+        /**
+         * Get the snapshot time.
+         * @return utc time (milliseconds since 1970-01-01)
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Get the latency histogram of a stage.
+         * @param stage stage (REQUEST, PARSE, PROPAGATE or BROADCAST)
+         * @return histogram snapshot
+         */
+        public LatencyHistogram.Snapshot getLatency(int stage) {
+            return latencies[stage];
+        }
+
+        /**
+         * Get a counter.
+         * @param counter counter (TICKS, DROPPED_TICKS, REQUEST_FAILURES, SOAP_FAULTS, PROPAGATION_ERRORS, ELEMENTS_FAILURES or COALESCED_NOTIFICATIONS)
+         * @return counter value
+         */
+        public long getCounter(int counter) {
+            return counters[counter];
+        }
+
+        /**
+         * Append a text summary (one line per stage with count, p50, p99 and max in milliseconds; counters in one line).
+         * @param builder output text
+         * @return output text
+         */
+        public StringBuilder format(StringBuilder builder) {
+            for (int i = 0; i < STAGES; i++) {
+                LatencyHistogram.Snapshot latency = latencies[i];
+                builder.append(STAGE_NAMES[i]).append(": n=").append(latency.getCount());
+                builder.append(" p50=");
+                millis(builder, latency.getPercentile(50.0));
+                builder.append(" p99=");
+                millis(builder, latency.getPercentile(99.0));
+                builder.append(" max=");
+                millis(builder, latency.getMax());
+                builder.append(" ms\n");
+            }
+            for (int i = 0; i < COUNTERS; i++) {
+                if (i > 0) builder.append(", ");
+                builder.append(COUNTER_NAMES[i]).append(": ").append(counters[i]);
+            }
+            return builder.append('\n');
+        }
+
+        // append microseconds as milliseconds (two decimals)
+        private static void millis(StringBuilder builder, long micros) {
+            long hundredths = (micros + 5) / 10;
+            builder.append(hundredths / 100).append('.');
+            long fraction = hundredths % 100;
+            if (fraction < 10) builder.append('0');
+            builder.append(fraction);
+        }
+
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.model;
+
+import java.io.Serializable;
+
+/**
+ * Satellite conjunction wrapper.
+ * This class includes a close approach between two satellites: time of closest approach (TCA), miss distance,
+ * relative speed, and the positions of both satellites at TCA.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class Conjunction implements Serializable {
+
+    private Satellite primary; // lower NORAD ID satellite at TCA
+    private Satellite secondary; // higher NORAD ID satellite at TCA
+    private long tca; // milliseconds (utc)
+    private double missDistance; // kilometers
+    private double relativeSpeed; // kilometers per second
+
+    /**
+     * Constructor method for a conjunction model.
+     */
+    public Conjunction() {}
+
+    /**
+     * Get the primary satellite (lower NORAD ID) at time of closest approach.
+     * @return satellite position
+     */
+    public Satellite getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Set the primary satellite (lower NORAD ID) at time of closest approach.
+     * @param primary satellite position
+     */
+    public void setPrimary(Satellite primary) {
+        this.primary = primary;
+    }
+
+    /**
+     * Get the secondary satellite (higher NORAD ID) at time of closest approach.
+     * @return satellite position
+     */
+    public Satellite getSecondary() {
+        return secondary;
+    }
+
+    /**
+     * Set the secondary satellite (higher NORAD ID) at time of closest approach.
+     * @param secondary satellite position
+     */
+    public void setSecondary(Satellite secondary) {
+        this.secondary = secondary;
+    }
+
+    /**
+     * Get the time of closest approach.
+     * @return milliseconds since 1970-01-01 (utc)
+     */
+    public long getTca() {
+        return tca;
+    }
+
+    /**
+     * Set the time of closest approach.
+     * @param tca milliseconds since 1970-01-01 (utc)
+     */
+    public void setTca(long tca) {
+        this.tca = tca;
+    }
+
+    /**
+     * Get the miss distance (distance at time of closest approach).
+     * @return kilometers
+     */
+    public double getMissDistance() {
+        return missDistance;
+    }
+
+    /**
+     * Set the miss distance (distance at time of closest approach).
+     * @param missDistance kilometers
+     */
+    public void setMissDistance(double missDistance) {
+        this.missDistance = missDistance;
+    }
+
+    /**
+     * Get the relative speed at time of closest approach.
+     * @return kilometers per second
+     */
+    public double getRelativeSpeed() {
+        return relativeSpeed;
+    }
+
+    /**
+     * Set the relative speed at time of closest approach.
+     * @param relativeSpeed kilometers per second
+     */
+    public void setRelativeSpeed(double relativeSpeed) {
+        this.relativeSpeed = relativeSpeed;
+    }
+
+}
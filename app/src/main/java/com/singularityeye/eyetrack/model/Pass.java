@@ -0,0 +1,279 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.model;
+
+import java.io.Serializable;
+
+/**
+ * Satellite pass wrapper.
+ * This class includes a visibility window of a satellite over an observer location:
+ * acquisition of signal (AOS), time of closest approach (TCA) and loss of signal (LOS).
+ * Annotated passes (see VisiblePassFinder) also include illumination and observer twilight.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class Pass implements Serializable {
+
+    private String NORAD_ID; // id
+    private String shortname; // platform name
+    private long aos; // milliseconds (utc)
+    private long tca; // milliseconds (utc)
+    private long los; // milliseconds (utc)
+    private double maxElevation; // decimal degrees
+    private double aosAzimuth; // decimal degrees
+    private double tcaAzimuth; // decimal degrees
+    private double losAzimuth; // decimal degrees
+    private double illumination = Double.NaN; // sunlit fraction at closest approach (NaN if not annotated)
+    private double sunElevation = Double.NaN; // decimal degrees over the observer at closest approach (NaN if not annotated)
+    private boolean visible; // satellite sunlit while the observer is in darkness
+    private long visibleStart = -1; // milliseconds (utc), -1 if not visible
+    private long visibleEnd = -1; // milliseconds (utc), -1 if not visible
+
+    /**
+     * Constructor method for a pass model.
+     */
+    public Pass() {}
+
+    /**
+     * Get the unique identifier for the satellite.
+     * @return string that holds the unique identifier for the satellite
+     */
+    public String getNORAD_ID() {
+        return NORAD_ID;
+    }
+
+    /**
+     * Set the unique identifier for the satellite.
+     * @param NORAD_ID string that holds the unique identifier for the satellite
+     */
+    public void setNORAD_ID(String NORAD_ID) {
+        this.NORAD_ID = NORAD_ID;
+    }
+
+    /**
+     * Get the name of the satellite.
+     * @return string that holds the name of the satellite
+     */
+    public String getShortname() {
+        return shortname;
+    }
+
+    /**
+     * Set the name of the satellite.
+     * @param shortname string that holds the name of the satellite
+     */
+    public void setShortname(String shortname) {
+        this.shortname = shortname;
+    }
+
+    /**
+     * Get the acquisition of signal time (satellite rises over the elevation mask).
+     * @return utc time (milliseconds since 1970-01-01)
+     */
+    public long getAos() {
+        return aos;
+    }
+
+    /**
+     * Set the acquisition of signal time.
+     * @param aos utc time (milliseconds since 1970-01-01)
+     */
+    public void setAos(long aos) {
+        this.aos = aos;
+    }
+
+    /**
+     * Get the time of closest approach (maximum elevation).
+     * @return utc time (milliseconds since 1970-01-01)
+     */
+    public long getTca() {
+        return tca;
+    }
+
+    /**
+     * Set the time of closest approach.
+     * @param tca utc time (milliseconds since 1970-01-01)
+     */
+    public void setTca(long tca) {
+        this.tca = tca;
+    }
+
+    /**
+     * Get the loss of signal time (satellite sets under the elevation mask).
+     * @return utc time (milliseconds since 1970-01-01)
+     */
+    public long getLos() {
+        return los;
+    }
+
+    /**
+     * Set the loss of signal time.
+     * @param los utc time (milliseconds since 1970-01-01)
+     */
+    public void setLos(long los) {
+        this.los = los;
+    }
+
+    /**
+     * Get the maximum elevation degrees of the pass.
+     * @return decimal number that represents elevation degrees at closest approach
+     */
+    public double getMaxElevation() {
+        return maxElevation;
+    }
+
+    /**
+     * Set the maximum elevation degrees of the pass.
+     * @param maxElevation decimal number that represents elevation degrees at closest approach
+     */
+    public void setMaxElevation(double maxElevation) {
+        this.maxElevation = maxElevation;
+    }
+
+    /**
+     * Get azimuth degrees at acquisition of signal.
+     * @return decimal number that represents azimuth degrees (clockwise from north)
+     */
+    public double getAosAzimuth() {
+        return aosAzimuth;
+    }
+
+    /**
+     * Set azimuth degrees at acquisition of signal.
+     * @param aosAzimuth decimal number that represents azimuth degrees (clockwise from north)
+     */
+    public void setAosAzimuth(double aosAzimuth) {
+        this.aosAzimuth = aosAzimuth;
+    }
+
+    /**
+     * Get azimuth degrees at closest approach.
+     * @return decimal number that represents azimuth degrees (clockwise from north)
+     */
+    public double getTcaAzimuth() {
+        return tcaAzimuth;
+    }
+
+    /**
+     * Set azimuth degrees at closest approach.
+     * @param tcaAzimuth decimal number that represents azimuth degrees (clockwise from north)
+     */
+    public void setTcaAzimuth(double tcaAzimuth) {
+        this.tcaAzimuth = tcaAzimuth;
+    }
+
+    /**
+     * Get azimuth degrees at loss of signal.
+     * @return decimal number that represents azimuth degrees (clockwise from north)
+     */
+    public double getLosAzimuth() {
+        return losAzimuth;
+    }
+
+    /**
+     * Set azimuth degrees at loss of signal.
+     * @param losAzimuth decimal number that represents azimuth degrees (clockwise from north)
+     */
+    public void setLosAzimuth(double losAzimuth) {
+        this.losAzimuth = losAzimuth;
+    }
+
+    /**
+     * Get the illuminated fraction of the solar disk seen from the satellite at closest approach.
+     * @return 1 sunlit, 0 earth shadow (umbra), in between penumbra; NaN if the pass is not annotated
+     */
+    public double getIllumination() {
+        return illumination;
+    }
+
+    /**
+     * Set the illuminated fraction of the solar disk seen from the satellite at closest approach.
+     * @param illumination decimal number from 0 (umbra) to 1 (sunlit)
+     */
+    public void setIllumination(double illumination) {
+        this.illumination = illumination;
+    }
+
+    /**
+     * Get the sun elevation degrees over the observer at closest approach (twilight).
+     * @return decimal number that represents sun elevation degrees, NaN if the pass is not annotated
+     */
+    public double getSunElevation() {
+        return sunElevation;
+    }
+
+    /**
+     * Set the sun elevation degrees over the observer at closest approach.
+     * @param sunElevation decimal number that represents sun elevation degrees
+     */
+    public void setSunElevation(double sunElevation) {
+        this.sunElevation = sunElevation;
+    }
+
+    /**
+     * Check if the satellite can be seen by eye during the pass (sunlit while the observer is in darkness).
+     * @return true if visible
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Set if the satellite can be seen by eye during the pass.
+     * @param visible true if visible
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
+    /**
+     * Get the start of the visible part of the pass.
+     * @return utc time (milliseconds since 1970-01-01), -1 if not visible
+     */
+    public long getVisibleStart() {
+        return visibleStart;
+    }
+
+    /**
+     * Set the start of the visible part of the pass.
+     * @param visibleStart utc time (milliseconds since 1970-01-01)
+     */
+    public void setVisibleStart(long visibleStart) {
+        this.visibleStart = visibleStart;
+    }
+
+    /**
+     * Get the end of the visible part of the pass.
+     * @return utc time (milliseconds since 1970-01-01), -1 if not visible
+     */
+    public long getVisibleEnd() {
+        return visibleEnd;
+    }
+
+    /**
+     * Set the end of the visible part of the pass.
+     * @param visibleEnd utc time (milliseconds since 1970-01-01)
+     */
+    public void setVisibleEnd(long visibleEnd) {
+        this.visibleEnd = visibleEnd;
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Satellite positions buffer (double buffered primitive state).
+ * A single producer fills the back buffer (NORAD ID, name index, latitude, longitude, altitude and ground angular velocity per record,
+ * one fix time and clock rate per buffer) and publishes it; consumers read the front buffer. Names are interned in an append-only side table.
+ * Arrays are preallocated and only grow when more platforms are tracked, so steady state updates do not allocate.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PositionBuffer {
+
+    /**
+     * Consumer model: it receives the records of the front buffer.
+     */
+    public interface Reader {
+        /**
+         * Receive a record.
+         * @param index record index (tracking order)
+         * @param id NORAD ID
+         * @param name platform name, could be null
+         * @param time fix time, utc (milliseconds since 1970-01-01)
+         * @param latitude decimal degrees
+         * @param longitude decimal degrees
+         * @param altitude kilometers
+         * @param w angular velocity of the sub-satellite point (earth fixed axes, rad/s; zeros if unknown),
+         *          only valid during the call
+         */
+        void onPosition(int index, int id, String name, long time, double latitude, double longitude, double altitude, double[] w);
+    }
+
+    private static final int STRIDE = 6; // latitude, longitude, altitude, angular velocity (x, y, z)
+
+    private final int[][] ids = new int[2][];
+    private final int[][] names = new int[2][];
+    private final double[][] states = new double[2][];
+    private final int[] counts = new int[2];
+    private final long[] times = new long[2]; // fix times
+    private final long[] walls = new long[2]; // wall times (utc milliseconds) when fix times were taken
+    private final double[] rates = new double[2]; // fix time rates (1 live, replay speed otherwise)
+    private final double[] w = new double[3]; // reader angular velocity (guarded by this)
+    private int back; // buffer written by the producer (the other one is the front buffer)
+    private long version; // number of publications
+
+    private volatile String[] name_table = new String[16]; // interned names (append only)
+    private int name_count;
+    private final Map<String, Integer> name_indexes = new HashMap<String, Integer>();
+
+    /**
+     * Constructor method for the buffer.
+     * @param capacity expected number of records (arrays grow if needed)
+     */
+    public PositionBuffer(int capacity) {
+        for (int i = 0; i < 2; i++) {
+            ids[i] = new int[capacity];
+            names[i] = new int[capacity];
+            states[i] = new double[capacity * STRIDE];
+            rates[i] = 1.0;
+        }
+    }
+
+    /**
+     * Start filling the back buffer with live positions (producer only).
+     * @param time fix time, utc (milliseconds since 1970-01-01)
+     */
+    public void clear(long time) {
+        clear(time, 1.0);
+    }
+
+    /**
+     * Start filling the back buffer (producer only).
+     * @param time fix time, utc (milliseconds since 1970-01-01)
+     * @param rate fix time advance per wall time unit (1 live, replay speed otherwise)
+     */
+    public void clear(long time, double rate) {
+        counts[back] = 0;
+        times[back] = time;
+        walls[back] = System.currentTimeMillis();
+        rates[back] = rate;
+    }
+
+    /**
+     * Append a record to the back buffer (producer only).
+     * @param id NORAD ID
+     * @param name platform name, could be null
+     * @param latitude decimal degrees
+     * @param longitude decimal degrees
+     * @param altitude kilometers
+     * @param w angular velocity of the sub-satellite point (earth fixed axes, rad/s), null if unknown
+     */
+    public void add(int id, String name, double latitude, double longitude, double altitude, double[] w) {
+        int count = counts[back];
+        if (count == ids[back].length) {
+            int capacity = Math.max(4, 2 * count);
+            ids[back] = Arrays.copyOf(ids[back], capacity);
+            names[back] = Arrays.copyOf(names[back], capacity);
+            states[back] = Arrays.copyOf(states[back], capacity * STRIDE);
+        }
+        ids[back][count] = id;
+        names[back][count] = intern(name);
+        double[] state = states[back];
+        state[STRIDE * count] = latitude;
+        state[STRIDE * count + 1] = longitude;
+        state[STRIDE * count + 2] = altitude;
+        for (int i = 0; i < 3; i++) state[STRIDE * count + 3 + i] = (null == w) ? 0.0 : w[i];
+        counts[back] = count + 1;
+    }
+
+    /**
+     * Get the number of records in the back buffer (producer only).
+     * @return number of records
+     */
+    public int pending() {
+        return counts[back];
+    }
+
+    /**
+     * Publish the back buffer: it becomes the front buffer (producer only).
+     */
+    public synchronized void publish() {
+        back = 1 - back;
+        version++;
+    }
+
+    /**
+     * Read the front buffer.
+     * Note: the producer can not publish while records are being read, so keep the reader short.
+     * @param reader consumer
+     * @return number of records
+     */
+    public synchronized int read(Reader reader) {
+        int front = 1 - back;
+        String[] table = name_table;
+        int[] frontIds = ids[front], frontNames = names[front];
+        double[] state = states[front];
+        for (int i = 0; i < counts[front]; i++) {
+            int name = frontNames[i];
+            w[0] = state[STRIDE * i + 3];
+            w[1] = state[STRIDE * i + 4];
+            w[2] = state[STRIDE * i + 5];
+            reader.onPosition(i, frontIds[i], (name < 0) ? null : table[name], times[front],
+                    state[STRIDE * i], state[STRIDE * i + 1], state[STRIDE * i + 2], w);
+        }
+        return counts[front];
+    }
+
+    /**
+     * Get the fix time of the front buffer.
+     * @return utc (milliseconds since 1970-01-01)
+     */
+    public synchronized long getTime() {
+        return times[1 - back];
+    }
+
+    /**
+     * Get the wall time when the fix time of the front buffer was taken.
+     * @return utc (milliseconds since 1970-01-01)
+     */
+    public synchronized long getWallTime() {
+        return walls[1 - back];
+    }
+
+    /**
+     * Get the fix time rate of the front buffer (clients extrapolate fixes with it).
+     * @return fix time advance per wall time unit (1 live)
+     */
+    public synchronized double getRate() {
+        return rates[1 - back];
+    }
+
+    /**
+     * Get the number of publications.
+     * @return version of the front buffer
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    // intern a name (side table index, -1 if null)
+    private int intern(String name) {
+        if (null == name) return -1;
+        Integer index = name_indexes.get(name);
+        if (null != index) return index;
+        String[] table = name_table;
+        if (name_count == table.length) table = Arrays.copyOf(table, 2 * table.length);
+        table[name_count] = name;
+        name_table = table; // note: published before the records that use it
+        name_indexes.put(name, name_count);
+        return name_count++;
+    }
+
+}
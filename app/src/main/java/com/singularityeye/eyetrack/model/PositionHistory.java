@@ -0,0 +1,309 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.model;
+
+/**
+ * Satellite position history (bounded ring buffer of primitive samples).
+ * Samples are kept in time order; a sample not newer than the last one (or closer than the minimum interval) is ignored,
+ * so overlapping response windows can be streamed again without duplicates.
+ * When the buffer is full the oldest sample is overwritten (memory does not grow with the session).
+ * Time lookups are binary searches (O(log n)); positions between samples are interpolated along the great circle
+ * (unit vectors), so there are no artifacts at the antimeridian or near the poles.
+ * Note: thread safe (a writer and any number of readers).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PositionHistory {
+
+    /**
+     * Consumer model: it receives the samples of a time range.
+     */
+    public interface Reader {
+        /**
+         * Receive a sample.
+         * @param time utc (milliseconds since 1970-01-01)
+         * @param latitude decimal degrees
+         * @param longitude decimal degrees
+         * @param altitude kilometers
+         */
+        void onSample(long time, double latitude, double longitude, double altitude);
+    }
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double RAD2DEG = 180.0 / Math.PI;
+
+    private final long[] times;
+    private final double[] latitudes, longitudes, altitudes;
+    private final long interval; // minimum time between samples (milliseconds)
+    private int head; // oldest sample
+    private int count;
+    private final double[] a = new double[3], b = new double[3]; // interpolation buffers (guarded by this)
+
+    /**
+     * Constructor method for the history.
+     * @param capacity maximum number of samples
+     */
+    public PositionHistory(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * Constructor method for the history.
+     * @param capacity maximum number of samples
+     * @param interval minimum time between samples (milliseconds); it bounds the time span of a full history
+     */
+    public PositionHistory(int capacity, long interval) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity " + capacity);
+        times = new long[capacity];
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        altitudes = new double[capacity];
+        this.interval = Math.max(1, interval);
+    }
+
+    /**
+     * Append a sample (overwrites the oldest one if full).
+     * @param time utc (milliseconds since 1970-01-01)
+     * @param latitude decimal degrees
+     * @param longitude decimal degrees
+     * @param altitude kilometers
+     * @return false if the sample is not newer than the last one plus the minimum interval (ignored)
+     */
+    public synchronized boolean add(long time, double latitude, double longitude, double altitude) {
+        if (count > 0 && time - times[slot(count - 1)] < interval) return false;
+        int slot;
+        if (count < times.length) {
+            slot = (head + count++) % times.length;
+        } else {
+            slot = head; // note: overwrite oldest sample
+            head = (head + 1) % times.length;
+        }
+        times[slot] = time;
+        latitudes[slot] = latitude;
+        longitudes[slot] = longitude;
+        altitudes[slot] = altitude;
+        return true;
+    }
+
+    /**
+     * Remove all samples.
+     */
+    public synchronized void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    /**
+     * Get the number of samples.
+     * @return number of samples
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Get the maximum number of samples.
+     * @return capacity
+     */
+    public int capacity() {
+        return times.length;
+    }
+
+    /**
+     * Get the time of the oldest sample.
+     * @return utc (milliseconds since 1970-01-01), Long.MAX_VALUE if empty
+     */
+    public synchronized long getStartTime() {
+        return (0 == count) ? Long.MAX_VALUE : times[head];
+    }
+
+    /**
+     * Get the time of the newest sample.
+     * @return utc (milliseconds since 1970-01-01), Long.MIN_VALUE if empty
+     */
+    public synchronized long getEndTime() {
+        return (0 == count) ? Long.MIN_VALUE : times[slot(count - 1)];
+    }
+
+    /**
+     * Get the time of a sample.
+     * @param index sample index (0 is the oldest)
+     * @return utc (milliseconds since 1970-01-01)
+     */
+    public synchronized long getTime(int index) {
+        return times[checked(index)];
+    }
+
+    /**
+     * Get the latitude of a sample.
+     * @param index sample index (0 is the oldest)
+     * @return decimal degrees
+     */
+    public synchronized double getLatitude(int index) {
+        return latitudes[checked(index)];
+    }
+
+    /**
+     * Get the longitude of a sample.
+     * @param index sample index (0 is the oldest)
+     * @return decimal degrees
+     */
+    public synchronized double getLongitude(int index) {
+        return longitudes[checked(index)];
+    }
+
+    /**
+     * Get the altitude of a sample.
+     * @param index sample index (0 is the oldest)
+     * @return kilometers
+     */
+    public synchronized double getAltitude(int index) {
+        return altitudes[checked(index)];
+    }
+
+    /**
+     * Find the first sample at or after a time (binary search).
+     * @param time utc (milliseconds since 1970-01-01)
+     * @return sample index, size if every sample is older
+     */
+    public synchronized int search(long time) {
+        int low = 0, high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[slot(middle)] < time) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Read the samples of a time range (both ends included).
+     * Note: the writer can not add samples while they are being read, so keep the reader short.
+     * @param start utc (milliseconds since 1970-01-01)
+     * @param end utc (milliseconds since 1970-01-01)
+     * @param reader consumer
+     * @return number of samples read
+     */
+    public synchronized int read(long start, long end, Reader reader) {
+        int first = search(start), read = 0;
+        for (int i = first; i < count; i++) {
+            int slot = slot(i);
+            if (times[slot] > end) break;
+            reader.onSample(times[slot], latitudes[slot], longitudes[slot], altitudes[slot]);
+            read++;
+        }
+        return read;
+    }
+
+    /**
+     * Interpolate the position at a time (between the two surrounding samples).
+     * @param time utc (milliseconds since 1970-01-01)
+     * @param lla output: latitude (decimal degrees), longitude (decimal degrees) and altitude (kilometers)
+     * @return false if the time is out of the history (no output)
+     */
+    public synchronized boolean interpolate(long time, double[] lla) {
+        int next = search(time);
+        if (next == count) return false;
+        int j = slot(next);
+        if (times[j] == time) {
+            lla[0] = latitudes[j];
+            lla[1] = longitudes[j];
+            lla[2] = altitudes[j];
+            return true;
+        }
+        if (0 == next) return false;
+        int i = slot(next - 1);
+        double f = (double) (time - times[i]) / (times[j] - times[i]);
+        toVector(latitudes[i], longitudes[i], a);
+        toVector(latitudes[j], longitudes[j], b);
+        slerp(a, b, f, a);
+        lla[0] = Math.asin(Math.max(-1.0, Math.min(1.0, a[2]))) * RAD2DEG;
+        lla[1] = Math.atan2(a[1], a[0]) * RAD2DEG;
+        lla[2] = altitudes[i] + f * (altitudes[j] - altitudes[i]);
+        return true;
+    }
+
+    /**
+     * Estimate the angular velocity of the sub-satellite point at a time (from the two surrounding samples).
+     * @param time utc (milliseconds since 1970-01-01)
+     * @param w output: angular velocity (earth fixed axes, rad/s)
+     * @return false if the time is out of the history (zeros)
+     */
+    public synchronized boolean velocity(long time, double[] w) {
+        w[0] = w[1] = w[2] = 0.0;
+        if (count < 2) return false;
+        int next = search(time);
+        if (next == count || (0 == next && times[head] != time)) return false;
+        if (0 == next) next = 1;
+        int i = slot(next - 1), j = slot(next);
+        toVector(latitudes[i], longitudes[i], a);
+        toVector(latitudes[j], longitudes[j], b);
+        double x = a[1] * b[2] - a[2] * b[1], y = a[2] * b[0] - a[0] * b[2], z = a[0] * b[1] - a[1] * b[0];
+        double sin = Math.sqrt(x * x + y * y + z * z);
+        if (0.0 == sin) return true;
+        double rate = Math.atan2(sin, a[0] * b[0] + a[1] * b[1] + a[2] * b[2]) / ((times[j] - times[i]) / 1000.0); // rad/s
+        w[0] = x / sin * rate;
+        w[1] = y / sin * rate;
+        w[2] = z / sin * rate;
+        return true;
+    }
+
+    // ring slot of a sample index (no checks)
+    private int slot(int index) {
+        return (head + index) % times.length;
+    }
+
+    // ring slot of a sample index
+    private int checked(int index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("index " + index + ", size " + count);
+        return slot(index);
+    }
+
+    // unit vector (earth fixed axes) of a geodetic position (spherical)
+    private static void toVector(double latitude, double longitude, double[] out) {
+        double lat = latitude * DEG2RAD, lon = longitude * DEG2RAD;
+        double c = Math.cos(lat);
+        out[0] = c * Math.cos(lon);
+        out[1] = c * Math.sin(lon);
+        out[2] = Math.sin(lat);
+    }
+
+    // spherical linear interpolation of unit vectors (out can be a or b)
+    private static void slerp(double[] a, double[] b, double f, double[] out) {
+        double dot = Math.max(-1.0, Math.min(1.0, a[0] * b[0] + a[1] * b[1] + a[2] * b[2]));
+        double angle = Math.acos(dot);
+        double wa, wb;
+        if (angle < 1e-9) {
+            wa = 1.0 - f;
+            wb = f;
+        } else {
+            double sin = Math.sin(angle);
+            wa = Math.sin((1.0 - f) * angle) / sin;
+            wb = Math.sin(f * angle) / sin;
+        }
+        double x = wa * a[0] + wb * b[0], y = wa * a[1] + wb * b[1], z = wa * a[2] + wb * b[2];
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+    }
+
+}
@@ -24,7 +24,7 @@ import java.io.Serializable;
 
 /**
  * Satellite wrapper.
- * This class includes last satellite position.
+ * This class includes last satellite position (and illumination, if known).
  * @author Manuel Martin-Gonzalez
  * @version 1.0.0-alpha
  */
@@ -35,6 +35,7 @@ public class Satellite implements Serializable{
     private double latitude; // decimal degrees
     private double longitude; // decimal degrees
     private double altitude; // kilometers
+    private double illumination = Double.NaN; // sunlit fraction (NaN if unknown)
 
     /**
      * Constructor method for a satellite model.
@@ -121,4 +122,20 @@ public class Satellite implements Serializable{
         this.altitude = altitude;
     }
 
+    /**
+     * Get the illuminated fraction of the solar disk seen from the satellite (earth shadow).
+     * @return 1 sunlit, 0 earth shadow (umbra), in between penumbra; NaN if unknown
+     */
+    public double getIllumination() {
+        return illumination;
+    }
+
+    /**
+     * Set the illuminated fraction of the solar disk seen from the satellite.
+     * @param illumination decimal number from 0 (umbra) to 1 (sunlit)
+     */
+    public void setIllumination(double illumination) {
+        this.illumination = illumination;
+    }
+
 }
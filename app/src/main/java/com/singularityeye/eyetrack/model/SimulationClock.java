@@ -0,0 +1,194 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.model;
+
+/**
+ * Simulation clock model.
+ * In live mode it follows wall time; otherwise time runs from an origin at a given speed (paused, x N, negative to rewind),
+ * and it can jump to any date. Clock time is always derived from wall time (utc), so readers on any thread agree.
+ * Note: thread safe; listeners are notified on the thread that changed the clock.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class SimulationClock {
+
+    /**
+     * Listener model: it is notified when the clock is changed (mode, speed, pause or jump).
+     */
+    public interface Listener {
+        /**
+         * Clock changed.
+         * @param clock changed clock
+         */
+        void onClockChanged(SimulationClock clock);
+    }
+
+    private boolean live = true;
+    private boolean paused;
+    private double speed = 1.0; // clock time advance per wall time unit
+    private long time_origin, wall_origin; // clock time at a wall time, utc (milliseconds since 1970-01-01)
+    private volatile Listener listener;
+
+    /**
+     * Set the listener.
+     * @param listener clock listener, null to stop notifications
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Get the clock time now.
+     * @return utc (milliseconds since 1970-01-01)
+     */
+    public long now() {
+        return now(System.currentTimeMillis());
+    }
+
+    /**
+     * Get the clock time at a wall time.
+     * @param wall utc (milliseconds since 1970-01-01)
+     * @return utc (milliseconds since 1970-01-01)
+     */
+    public synchronized long now(long wall) {
+        if (live) return wall;
+        return time_origin + (long) ((wall - wall_origin) * getRate());
+    }
+
+    /**
+     * Get the clock rate.
+     * @return clock time advance per wall time unit (1 live, 0 paused)
+     */
+    public synchronized double getRate() {
+        return live ? 1.0 : paused ? 0.0 : speed;
+    }
+
+    /**
+     * Get the clock speed (kept while paused).
+     * @return clock time advance per wall time unit
+     */
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Check if the clock follows wall time.
+     * @return true if live
+     */
+    public synchronized boolean isLive() {
+        return live;
+    }
+
+    /**
+     * Check if the clock is paused.
+     * @return true if paused
+     */
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Follow wall time again (speed 1, not paused).
+     */
+    public void setLive() {
+        synchronized (this) {
+            if (live) return;
+            live = true;
+            paused = false;
+            speed = 1.0;
+        }
+        notifyListener();
+    }
+
+    /**
+     * Stop the clock (it leaves live mode).
+     */
+    public void pause() {
+        synchronized (this) {
+            if (paused) return;
+            rebase();
+            paused = true;
+        }
+        notifyListener();
+    }
+
+    /**
+     * Restart a paused clock at its speed.
+     */
+    public void resume() {
+        synchronized (this) {
+            if (!paused) return;
+            rebase();
+            paused = false;
+        }
+        notifyListener();
+    }
+
+    /**
+     * Set the clock speed (it leaves live mode, clock time is kept).
+     * @param speed clock time advance per wall time unit (negative to rewind)
+     */
+    public void setSpeed(double speed) {
+        synchronized (this) {
+            rebase();
+            this.speed = speed;
+        }
+        notifyListener();
+    }
+
+    /**
+     * Jump to a time (it leaves live mode, speed and pause are kept).
+     * @param time utc (milliseconds since 1970-01-01)
+     */
+    public void jump(long time) {
+        set(time, speed);
+    }
+
+    /**
+     * Jump to a time and set the clock speed at once (it leaves live mode, pause is kept).
+     * @param time utc (milliseconds since 1970-01-01)
+     * @param speed clock time advance per wall time unit (negative to rewind)
+     */
+    public void set(long time, double speed) {
+        synchronized (this) {
+            rebase();
+            time_origin = time;
+            this.speed = speed;
+        }
+        notifyListener();
+    }
+
+    // move the origin to now (leaving live mode), so a rate change does not move clock time
+    private void rebase() {
+        long wall = System.currentTimeMillis();
+        time_origin = now(wall);
+        wall_origin = wall;
+        live = false;
+    }
+
+    // notify the listener (outside the lock)
+    private void notifyListener() {
+        Listener current = listener;
+        if (null != current) current.onClockChanged(this);
+    }
+
+}
@@ -0,0 +1,430 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.model;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index of platform positions (latitude/longitude grid).
+ * Each platform has a slot; slots are linked in per-cell lists, so a position update only relinks the slot when
+ * the platform crosses to another cell (incremental rebuild on every tick, no allocation in steady state).
+ * Queries (viewport box, observer horizon) only visit the cells that overlap the query area.
+ * A tick is delimited by {@link #begin} and {@link #end}: platforms not updated during the tick are removed.
+ * Note: not thread safe (one instance per thread).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class SpatialIndex {
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double RAD2DEG = 180.0 / Math.PI;
+    private static final double EARTH_RADIUS = 6378.137; // kilometers (spherical earth is enough for queries)
+    private static final double CELL_SIZE = 2.0; // decimal degrees
+    private static final int ROWS = (int) (180.0 / CELL_SIZE), COLUMNS = (int) (360.0 / CELL_SIZE);
+
+    private final int[] heads = new int[ROWS * COLUMNS]; // first slot by cell (-1 if empty)
+    private final SlotTable slots; // slot by NORAD ID
+
+    // slots state
+    private int[] ids, cells, next, previous;
+    private long[] stamps, times;
+    private double[] latitudes, longitudes, altitudes, velocities;
+    private String[] names;
+    private int used; // slots high water mark
+    private int free = -1; // first free slot (linked by next)
+    private int size; // number of platforms
+    private long stamp; // current tick
+    private double max_altitude, tick_max_altitude; // highest platform (kilometers)
+
+    /**
+     * Constructor method for the index.
+     * @param capacity expected number of platforms (arrays grow if needed)
+     */
+    public SpatialIndex(int capacity) {
+        Arrays.fill(heads, -1);
+        allocate(Math.max(4, capacity));
+        slots = new SlotTable(Math.max(4, capacity));
+    }
+
+    /**
+     * Start a new tick.
+     */
+    public void begin() {
+        stamp++;
+        tick_max_altitude = 0.0;
+    }
+
+    /**
+     * Add or move a platform.
+     * @param id NORAD ID
+     * @param name platform name, could be null
+     * @param time fix time, utc (milliseconds since 1970-01-01)
+     * @param latitude decimal degrees
+     * @param longitude decimal degrees
+     * @param altitude kilometers
+     * @param w angular velocity of the sub-satellite point (earth fixed axes, rad/s), null if unknown
+     * @return platform slot
+     */
+    public int put(int id, String name, long time, double latitude, double longitude, double altitude, double[] w) {
+        int slot = slots.get(id);
+        int cell = cell(latitude, longitude);
+        if (-1 == slot) {
+            slot = newSlot(id);
+            link(slot, cell);
+        } else if (cells[slot] != cell) {
+            unlink(slot);
+            link(slot, cell);
+        }
+        names[slot] = name;
+        times[slot] = time;
+        latitudes[slot] = latitude;
+        longitudes[slot] = longitude;
+        altitudes[slot] = altitude;
+        for (int i = 0; i < 3; i++) velocities[3 * slot + i] = (null == w) ? 0.0 : w[i];
+        stamps[slot] = stamp;
+        if (altitude > tick_max_altitude) tick_max_altitude = altitude;
+        return slot;
+    }
+
+    /**
+     * End the tick: remove platforms which have not been updated.
+     * @return number of removed platforms
+     */
+    public int end() {
+        int removed = 0;
+        for (int slot = 0; slot < used; slot++) {
+            if (-1 == cells[slot] || stamps[slot] == stamp) continue;
+            slots.delete(ids[slot]);
+            unlink(slot);
+            names[slot] = null;
+            next[slot] = free;
+            free = slot;
+            size--;
+            removed++;
+        }
+        max_altitude = tick_max_altitude;
+        return removed;
+    }
+
+    /**
+     * Get the number of platforms.
+     * @return number of platforms
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the slot of a platform.
+     * @param id NORAD ID
+     * @return platform slot, -1 if not found
+     */
+    public int find(int id) {
+        return slots.get(id);
+    }
+
+    /**
+     * Find platforms inside a map viewport.
+     * @param south south latitude (decimal degrees)
+     * @param west west longitude (decimal degrees)
+     * @param north north latitude (decimal degrees)
+     * @param east east longitude (decimal degrees; lower than west if the box crosses the antimeridian)
+     * @param out output: platform slots (filled up to its length)
+     * @return number of platforms inside the box (could be greater than out length)
+     */
+    public int queryBox(double south, double west, double north, double east, int[] out) {
+        int firstRow = row(south), lastRow = row(north);
+        int firstColumn = column(west), lastColumn = column(east);
+        boolean wraps = west > east;
+        // note: east at the antimeridian (180) falls in the first column, the box ends there without wrapping
+        int columns = (wraps || lastColumn < firstColumn) ? (COLUMNS - firstColumn + lastColumn + 1) : (lastColumn - firstColumn + 1);
+        boolean world = east - west >= 360.0;
+        if (world || columns > COLUMNS) columns = COLUMNS;
+        int found = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int k = 0; k < columns; k++) {
+                int column = (firstColumn + k) % COLUMNS;
+                for (int slot = heads[row * COLUMNS + column]; -1 != slot; slot = next[slot]) {
+                    double lat = latitudes[slot], lon = longitudes[slot];
+                    if (lat < south || lat > north) continue;
+                    if (!world && (wraps ? (lon < west && lon > east) : (lon < west || lon > east))) continue;
+                    if (found < out.length) out[found] = slot;
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find platforms above the horizon of an observer (spherical earth).
+     * @param latitude observer latitude (decimal degrees)
+     * @param longitude observer longitude (decimal degrees)
+     * @param minElevation elevation mask (decimal degrees)
+     * @param out output: platform slots (filled up to its length)
+     * @return number of platforms above the elevation mask (could be greater than out length)
+     */
+    public int queryHorizon(double latitude, double longitude, double minElevation, int[] out) {
+        double elevation = minElevation * DEG2RAD;
+        double cap = centralAngle(max_altitude, elevation) * RAD2DEG; // note: widest visibility circle of indexed platforms
+        double south = latitude - cap, north = latitude + cap;
+        int firstColumn = 0, columns = COLUMNS;
+        if (south > -90.0 && north < 90.0) {
+            // note: longitude span of the cap (no pole inside)
+            double span = Math.asin(Math.min(1.0, Math.sin(cap * DEG2RAD) / Math.cos(latitude * DEG2RAD))) * RAD2DEG;
+            if (span < 180.0 - CELL_SIZE) {
+                firstColumn = column(longitude - span);
+                columns = Math.min(COLUMNS, (int) Math.ceil(2.0 * span / CELL_SIZE) + 2);
+            }
+        }
+        double lat = latitude * DEG2RAD, lon = longitude * DEG2RAD;
+        double ox = Math.cos(lat) * Math.cos(lon), oy = Math.cos(lat) * Math.sin(lon), oz = Math.sin(lat);
+        double sinElevation = Math.sin(elevation);
+        int found = 0;
+        for (int row = row(south); row <= row(north); row++) {
+            for (int k = 0; k < columns; k++) {
+                int column = (firstColumn + k) % COLUMNS;
+                for (int slot = heads[row * COLUMNS + column]; -1 != slot; slot = next[slot]) {
+                    double sl = latitudes[slot] * DEG2RAD, sn = longitudes[slot] * DEG2RAD;
+                    double r = EARTH_RADIUS + altitudes[slot];
+                    double sx = r * Math.cos(sl) * Math.cos(sn) - EARTH_RADIUS * ox;
+                    double sy = r * Math.cos(sl) * Math.sin(sn) - EARTH_RADIUS * oy;
+                    double sz = r * Math.sin(sl) - EARTH_RADIUS * oz;
+                    double range = Math.sqrt(sx * sx + sy * sy + sz * sz);
+                    if (sx * ox + sy * oy + sz * oz < sinElevation * range) continue; // below elevation mask
+                    if (found < out.length) out[found] = slot;
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the NORAD ID of a platform.
+     * @param slot platform slot
+     * @return NORAD ID
+     */
+    public int getId(int slot) {
+        return ids[slot];
+    }
+
+    /**
+     * Get the name of a platform.
+     * @param slot platform slot
+     * @return platform name, could be null
+     */
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Get the fix time of a platform.
+     * @param slot platform slot
+     * @return utc time (milliseconds since 1970-01-01)
+     */
+    public long getTime(int slot) {
+        return times[slot];
+    }
+
+    /**
+     * Get the latitude of a platform.
+     * @param slot platform slot
+     * @return decimal degrees
+     */
+    public double getLatitude(int slot) {
+        return latitudes[slot];
+    }
+
+    /**
+     * Get the longitude of a platform.
+     * @param slot platform slot
+     * @return decimal degrees
+     */
+    public double getLongitude(int slot) {
+        return longitudes[slot];
+    }
+
+    /**
+     * Get the altitude of a platform.
+     * @param slot platform slot
+     * @return kilometers
+     */
+    public double getAltitude(int slot) {
+        return altitudes[slot];
+    }
+
+    /**
+     * Get the ground angular velocity of a platform.
+     * @param slot platform slot
+     * @param w output: angular velocity of the sub-satellite point (earth fixed axes, rad/s; zeros if unknown)
+     */
+    public void getVelocity(int slot, double[] w) {
+        System.arraycopy(velocities, 3 * slot, w, 0, 3);
+    }
+
+    // central angle of the visibility circle for an altitude and elevation mask (radians)
+    private static double centralAngle(double altitude, double elevation) {
+        return Math.acos(EARTH_RADIUS / (EARTH_RADIUS + Math.max(0.0, altitude)) * Math.cos(elevation)) - elevation;
+    }
+
+    // grid cell of a position
+    private static int cell(double latitude, double longitude) {
+        return row(latitude) * COLUMNS + column(longitude);
+    }
+
+    // grid row of a latitude
+    private static int row(double latitude) {
+        return Math.max(0, Math.min(ROWS - 1, (int) ((latitude + 90.0) / CELL_SIZE)));
+    }
+
+    // grid column of a longitude (wrapped)
+    private static int column(double longitude) {
+        int column = (int) Math.floor((longitude + 180.0) / CELL_SIZE) % COLUMNS;
+        return (column < 0) ? column + COLUMNS : column;
+    }
+
+    // insert a slot at the head of a cell list
+    private void link(int slot, int cell) {
+        cells[slot] = cell;
+        previous[slot] = -1;
+        next[slot] = heads[cell];
+        if (-1 != heads[cell]) previous[heads[cell]] = slot;
+        heads[cell] = slot;
+    }
+
+    // remove a slot from its cell list
+    private void unlink(int slot) {
+        int cell = cells[slot];
+        if (-1 == previous[slot]) heads[cell] = next[slot];
+        else next[previous[slot]] = next[slot];
+        if (-1 != next[slot]) previous[next[slot]] = previous[slot];
+        cells[slot] = -1;
+    }
+
+    // take a free slot (arrays grow if needed)
+    private int newSlot(int id) {
+        int slot;
+        if (-1 != free) {
+            slot = free;
+            free = next[slot];
+        } else {
+            if (used == ids.length) allocate(2 * used);
+            slot = used++;
+        }
+        ids[slot] = id;
+        slots.put(id, slot);
+        size++;
+        return slot;
+    }
+
+    // allocate (or grow) slot arrays
+    private void allocate(int capacity) {
+        int old = (null == ids) ? 0 : ids.length;
+        ids = (null == ids) ? new int[capacity] : Arrays.copyOf(ids, capacity);
+        cells = (null == cells) ? new int[capacity] : Arrays.copyOf(cells, capacity);
+        next = (null == next) ? new int[capacity] : Arrays.copyOf(next, capacity);
+        previous = (null == previous) ? new int[capacity] : Arrays.copyOf(previous, capacity);
+        stamps = (null == stamps) ? new long[capacity] : Arrays.copyOf(stamps, capacity);
+        times = (null == times) ? new long[capacity] : Arrays.copyOf(times, capacity);
+        latitudes = (null == latitudes) ? new double[capacity] : Arrays.copyOf(latitudes, capacity);
+        longitudes = (null == longitudes) ? new double[capacity] : Arrays.copyOf(longitudes, capacity);
+        altitudes = (null == altitudes) ? new double[capacity] : Arrays.copyOf(altitudes, capacity);
+        velocities = (null == velocities) ? new double[3 * capacity] : Arrays.copyOf(velocities, 3 * capacity);
+        names = (null == names) ? new String[capacity] : Arrays.copyOf(names, capacity);
+        Arrays.fill(cells, old, capacity, -1); // note: -1 marks free slots
+    }
+
+    /**
+     * Slot by NORAD ID: open addressing hash table (linear probing, backward shift deletion).
+     * Plain int arrays, no boxing: lookups and updates do not allocate (the table only grows).
+     */
+    private static final class SlotTable {
+
+        private int[] keys, values; // NORAD IDs and slots (-1 marks empty entries)
+        private int count;
+
+        SlotTable(int capacity) {
+            int length = 16;
+            while (length < 2 * capacity) length <<= 1;
+            keys = new int[length];
+            values = new int[length];
+            Arrays.fill(values, -1);
+        }
+
+        // slot of a NORAD ID (-1 if not found)
+        int get(int id) {
+            int mask = keys.length - 1;
+            for (int i = index(id, mask); -1 != values[i]; i = (i + 1) & mask) {
+                if (keys[i] == id) return values[i];
+            }
+            return -1;
+        }
+
+        // add or replace the slot of a NORAD ID
+        void put(int id, int slot) {
+            if (2 * (count + 1) > keys.length) grow();
+            int mask = keys.length - 1;
+            int i = index(id, mask);
+            while (-1 != values[i] && keys[i] != id) i = (i + 1) & mask;
+            if (-1 == values[i]) count++;
+            keys[i] = id;
+            values[i] = slot;
+        }
+
+        // remove a NORAD ID (following entries of the probe sequence shift back, no tombstones)
+        void delete(int id) {
+            int mask = keys.length - 1;
+            int i = index(id, mask);
+            while (-1 != values[i] && keys[i] != id) i = (i + 1) & mask;
+            if (-1 == values[i]) return;
+            for (int j = (i + 1) & mask; -1 != values[j]; j = (j + 1) & mask) {
+                int home = index(keys[j], mask);
+                // note: the entry stays if its home is cyclically in (i, j]
+                if ((i <= j) ? (i < home && home <= j) : (i < home || home <= j)) continue;
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+            values[i] = -1;
+            count--;
+        }
+
+        // double the table (rehash every entry)
+        private void grow() {
+            int[] oldKeys = keys, oldValues = values;
+            keys = new int[2 * oldKeys.length];
+            values = new int[2 * oldValues.length];
+            Arrays.fill(values, -1);
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (-1 != oldValues[i]) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        // home entry of a NORAD ID (multiplicative hash, consecutive IDs are spread)
+        private static int index(int id, int mask) {
+            int h = id * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+
+}
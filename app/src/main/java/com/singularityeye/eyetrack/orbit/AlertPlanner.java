@@ -0,0 +1,278 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import com.singularityeye.eyetrack.model.Pass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pass alert planner model.
+ * It keeps the upcoming passes of a watchlist over an observer location, and the alert events (a lead time before AOS).
+ * Passes are recomputed incrementally: each platform keeps the passes found so far and the end of its prediction window,
+ * planning only drops past passes and extends the window up to the horizon; a platform is predicted again from scratch
+ * when its orbital elements change (new epoch), and every platform when the observer location changes.
+ * Alerts are fired once: a watermark keeps the time of the last fired events.
+ * Note: not thread safe (a single planning thread).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class AlertPlanner {
+
+    private final long lead; // alert time before AOS (milliseconds)
+    private final long horizon; // prediction window (milliseconds)
+    private Observer observer; // null until the observer location is set
+    private double minElevation; // decimal degrees
+    private PassPredictor predictor; // null until the observer location is set
+    private final Map<Integer, Entry> entries = new TreeMap<Integer, Entry>(); // watched platforms by NORAD ID
+    private long alerted; // alert events up to this time (utc milliseconds) were already fired
+
+    // watched platform
+    private static class Entry {
+        SGP4 propagator; // null if there are no orbital elements
+        long until = Long.MIN_VALUE; // end of prediction window (utc milliseconds)
+        final List<Pass> passes = new ArrayList<Pass>(); // upcoming passes sorted by AOS
+    }
+
+    /**
+     * Constructor method for a planner.
+     * @param lead alert time before AOS (milliseconds)
+     * @param horizon prediction window (milliseconds)
+     */
+    public AlertPlanner(long lead, long horizon) {
+        if (lead < 0 || horizon <= 0) throw new IllegalArgumentException("lead " + lead + ", horizon " + horizon);
+        this.lead = lead;
+        this.horizon = horizon;
+    }
+
+    /**
+     * Set the observer location (passes of every platform are predicted again if it changed).
+     * @param observer ground observer
+     * @param minElevation elevation mask (decimal degrees)
+     * @return false if the location did not change
+     */
+    public boolean setObserver(Observer observer, double minElevation) {
+        if (null != this.observer && this.minElevation == minElevation
+                && this.observer.getLatitude() == observer.getLatitude()
+                && this.observer.getLongitude() == observer.getLongitude()
+                && this.observer.getAltitude() == observer.getAltitude()) return false;
+        this.observer = observer;
+        this.minElevation = minElevation;
+        this.predictor = new PassPredictor(observer, minElevation);
+        for (Entry entry : entries.values()) invalidate(entry);
+        return true;
+    }
+
+    /**
+     * Get the observer location.
+     * @return ground observer, null if not set
+     */
+    public Observer getObserver() {
+        return observer;
+    }
+
+    /**
+     * Get the elevation mask.
+     * @return decimal degrees
+     */
+    public double getMinElevation() {
+        return minElevation;
+    }
+
+    /**
+     * Watch a platform (no passes until it has orbital elements).
+     * @param id NORAD ID
+     */
+    public void watch(int id) {
+        if (!entries.containsKey(id)) entries.put(id, new Entry());
+    }
+
+    /**
+     * Stop watching a platform.
+     * @param id NORAD ID
+     */
+    public void unwatch(int id) {
+        entries.remove(id);
+    }
+
+    /**
+     * Keep only the given platforms (new ones are watched).
+     * @param ids NORAD IDs
+     */
+    public void setWatchlist(Collection<Integer> ids) {
+        entries.keySet().retainAll(ids);
+        for (Integer id : ids) watch(id);
+    }
+
+    /**
+     * Check whether a platform is watched.
+     * @param id NORAD ID
+     * @return true if watched
+     */
+    public boolean isWatched(int id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * Get the propagator of a watched platform.
+     * @param id NORAD ID
+     * @return platform propagator, null if not watched or without orbital elements
+     */
+    public SGP4 getPropagator(int id) {
+        Entry entry = entries.get(id);
+        return (null == entry) ? null : entry.propagator;
+    }
+
+    /**
+     * Get the watched platforms.
+     * @return NORAD IDs (ascending)
+     */
+    public List<Integer> getWatchlist() {
+        return new ArrayList<Integer>(entries.keySet());
+    }
+
+    /**
+     * Set the propagator of a watched platform (passes are predicted again only if the element set epoch changed).
+     * @param id NORAD ID
+     * @param propagator platform propagator, null if there are no orbital elements
+     * @return false if the platform is not watched or its orbital elements did not change
+     */
+    public boolean setPropagator(int id, SGP4 propagator) {
+        Entry entry = entries.get(id);
+        if (null == entry) return false;
+        if (null == propagator ? null == entry.propagator
+                : null != entry.propagator && entry.propagator.getTLE().getEpochJD() == propagator.getTLE().getEpochJD()) return false;
+        entry.propagator = propagator;
+        invalidate(entry);
+        return true;
+    }
+
+    /**
+     * Update upcoming passes: past passes are dropped and prediction windows are extended up to the horizon.
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return number of platforms predicted (zero if every window already covered the horizon)
+     */
+    public int plan(long now) {
+        if (null == predictor) return 0;
+        long end = now + horizon;
+        int predicted = 0;
+        for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            for (Iterator<Pass> it = entry.passes.iterator(); it.hasNext(); ) {
+                if (it.next().getLos() <= now) it.remove();
+                else break; // note: sorted by AOS, passes of a platform do not overlap
+            }
+            if (null == entry.propagator || entry.until >= end) continue;
+            long start = Math.max(now, entry.until);
+            int last = entry.passes.size() - 1;
+            if (last >= 0 && entry.passes.get(last).getLos() >= entry.until) {
+                start = Math.max(now, entry.passes.remove(last).getAos()); // note: pass clipped by the old window, predicted again
+            }
+            try {
+                entry.passes.addAll(predictor.predict(entry.propagator, start, end));
+            } catch (RuntimeException ex) {
+                entry.propagator = null; // note: decayed or invalid orbital elements, no more alerts until new ones
+                entry.passes.clear();
+                continue;
+            }
+            entry.until = end;
+            predicted++;
+        }
+        return predicted;
+    }
+
+    /**
+     * Get the time of the next alert event (not fired yet).
+     * @return utc time (milliseconds since 1970-01-01), Long.MAX_VALUE if there are no upcoming passes
+     */
+    public long nextAlert() {
+        long next = Long.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            for (Pass pass : entry.passes) {
+                long time = pass.getAos() - lead;
+                if (time > alerted) {
+                    next = Math.min(next, time);
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Get the passes whose alert events are due (not fired yet and not over), and mark them as fired.
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return due passes sorted by AOS
+     */
+    public List<Pass> due(long now) {
+        List<Pass> due = new ArrayList<Pass>();
+        for (Entry entry : entries.values()) {
+            for (Pass pass : entry.passes) {
+                long time = pass.getAos() - lead;
+                if (time > now) break;
+                if (time > alerted && pass.getLos() > now) due.add(pass);
+            }
+        }
+        if (now > alerted) alerted = now;
+        Collections.sort(due, PassPredictor.AOS_ORDER);
+        return due;
+    }
+
+    /**
+     * Get the upcoming passes of the watchlist.
+     * @return passes sorted by AOS
+     */
+    public List<Pass> getPasses() {
+        List<Pass> passes = new ArrayList<Pass>();
+        for (Entry entry : entries.values()) passes.addAll(entry.passes);
+        Collections.sort(passes, PassPredictor.AOS_ORDER);
+        return passes;
+    }
+
+    /**
+     * Get the alert watermark.
+     * @return alert events up to this utc time (milliseconds since 1970-01-01) were already fired
+     */
+    public long getAlerted() {
+        return alerted;
+    }
+
+    /**
+     * Set the alert watermark (e.g. restored after a restart): earlier alert events are not fired.
+     * @param alerted utc time (milliseconds since 1970-01-01)
+     */
+    public void setAlerted(long alerted) {
+        this.alerted = alerted;
+    }
+
+    // drop passes of a platform (predicted again on next plan)
+    private static void invalidate(Entry entry) {
+        entry.passes.clear();
+        entry.until = Long.MIN_VALUE;
+    }
+
+}
@@ -0,0 +1,452 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Batch orbit propagator (structure of arrays).
+ * Near earth model constants of a whole catalog are held in primitive parallel arrays (one array per constant),
+ * and the batch is propagated stage by stage: simple counted loops with plain arithmetic over the arrays
+ * (secular terms, semimajor axis, eccentricity) can be auto-vectorized by the JIT compiler,
+ * transcendental stages (kepler equation, orientation, geodetic conversion) run without virtual calls or scattered reads.
+ * Deep space platforms (SDP4) are placed after near earth ones and propagated by their own {@link SGP4} instance.
+ * Large batches are partitioned into contiguous ranges propagated in parallel.
+ * Outputs (TEME position and velocity, geodetic latitude, longitude and altitude, error code) are parallel arrays too.
+ * Throughput target: 1,000,000 near earth platforms per second and core (tracked by the batch propagation benchmark).
+ * Note: one propagation at a time per instance (output arrays are shared); instances are rebuilt when the catalog changes.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class BatchPropagator {
+
+    // near earth constants layout (see SGP4#getNearEarthCoefficients)
+    static final int MO = 0, MDOT = 1, ARGPO = 2, ARGPDOT = 3, NODEO = 4, NODEDOT = 5, NODECF = 6, CC1 = 7, BSTAR_CC4 = 8,
+            T2COF = 9, OMGCOF = 10, ETA = 11, XMCOF = 12, DELMO = 13, D2 = 14, D3 = 15, D4 = 16, BSTAR_CC5 = 17, SINMAO = 18,
+            T3COF = 19, T4COF = 20, T5COF = 21, NO = 22, A0 = 23, ECCO = 24, INCLO = 25, SINIO = 26, COSIO = 27, AYCOF = 28,
+            XLCOF = 29, CON41 = 30, X1MTH2 = 31, X7THM1 = 32;
+    static final int COEFFICIENTS = 33;
+
+    /**
+     * Minimum number of platforms per parallel range.
+     */
+    public static final int MIN_RANGE = 2048;
+
+    private static final double TWOPI = 2.0 * Math.PI;
+    private static final double RAD2DEG = 180.0 / Math.PI;
+    private static final double MINUTES_PER_DAY = 1440.0;
+    private static final double JD_UNIX_EPOCH = 2440587.5; // julian date for 1970-01-01 00:00 utc
+    private static final double XKE = SGP4.XKE, J2 = SGP4.J2, RADIUS = SGP4.RADIUS_EARTH_KM, VKMPERSEC = SGP4.VKMPERSEC;
+    private static final double A = Coordinates.WGS84_A, E2 = Coordinates.WGS84_F * (2.0 - Coordinates.WGS84_F);
+    private static final double B = A * (1.0 - Coordinates.WGS84_F), EP2 = (A * A - B * B) / (B * B);
+
+    private final int size, near; // number of platforms, number of near earth platforms (first ones)
+    private final SGP4[] propagators; // batch order
+    private final int[] ids; // NORAD IDs
+
+    // near earth constants (structure of arrays)
+    private final double[] epoch, mo, mdot, argpo, argpdot, nodeo, nodedot, nodecf, cc1, bstarcc4, t2cof, omgcof, eta, xmcof,
+            delmo, d2, d3, d4, bstarcc5, sinmao, t3cof, t4cof, t5cof, no, a0, ecco, inclo, sinio, cosio, aycof, xlcof, con41, x1mth2, x7thm1;
+
+    // stage buffers (one element per near earth platform, ranges do not overlap)
+    private final double[] tsince, xmdf, argpm, nodem, tempa, tempe, templ, am, em, mm;
+
+    // outputs
+    private final double[] x, y, z, vx, vy, vz, latitudes, longitudes, altitudes;
+    private final int[] errors;
+
+    private final List<Range> ranges = new ArrayList<Range>(); // parallel ranges (reused)
+
+    // propagation range
+    private class Range implements Callable<Void> {
+        int from, to;
+        double jd, gmst;
+        final double[] r = new double[3], v = new double[3]; // deep space buffers
+        @Override
+        public Void call() {
+            propagate(from, to, jd, gmst, r, v);
+            return null;
+        }
+    }
+
+    /**
+     * Constructor method for a batch.
+     * @param propagators platform propagators (near earth constants are copied)
+     */
+    public BatchPropagator(Collection<SGP4> propagators) {
+        size = propagators.size();
+        this.propagators = new SGP4[size];
+        int count = 0;
+        for (SGP4 propagator : propagators) if (!propagator.isDeepSpace()) this.propagators[count++] = propagator;
+        near = count;
+        for (SGP4 propagator : propagators) if (propagator.isDeepSpace()) this.propagators[count++] = propagator;
+        ids = new int[size];
+        for (int i = 0; i < size; i++) ids[i] = this.propagators[i].getTLE().getNORAD_ID();
+
+        epoch = new double[near]; mo = new double[near]; mdot = new double[near]; argpo = new double[near];
+        argpdot = new double[near]; nodeo = new double[near]; nodedot = new double[near]; nodecf = new double[near];
+        cc1 = new double[near]; bstarcc4 = new double[near]; t2cof = new double[near]; omgcof = new double[near];
+        eta = new double[near]; xmcof = new double[near]; delmo = new double[near]; d2 = new double[near];
+        d3 = new double[near]; d4 = new double[near]; bstarcc5 = new double[near]; sinmao = new double[near];
+        t3cof = new double[near]; t4cof = new double[near]; t5cof = new double[near]; no = new double[near];
+        a0 = new double[near]; ecco = new double[near]; inclo = new double[near]; sinio = new double[near]; cosio = new double[near];
+        aycof = new double[near]; xlcof = new double[near]; con41 = new double[near]; x1mth2 = new double[near];
+        x7thm1 = new double[near];
+        double[] c = new double[COEFFICIENTS];
+        for (int i = 0; i < near; i++) {
+            SGP4 propagator = this.propagators[i];
+            propagator.getNearEarthCoefficients(c);
+            epoch[i] = propagator.getTLE().getEpochJD();
+            mo[i] = c[MO]; mdot[i] = c[MDOT]; argpo[i] = c[ARGPO]; argpdot[i] = c[ARGPDOT];
+            nodeo[i] = c[NODEO]; nodedot[i] = c[NODEDOT]; nodecf[i] = c[NODECF]; cc1[i] = c[CC1];
+            bstarcc4[i] = c[BSTAR_CC4]; t2cof[i] = c[T2COF]; omgcof[i] = c[OMGCOF]; eta[i] = c[ETA];
+            xmcof[i] = c[XMCOF]; delmo[i] = c[DELMO]; d2[i] = c[D2]; d3[i] = c[D3]; d4[i] = c[D4];
+            bstarcc5[i] = c[BSTAR_CC5]; sinmao[i] = c[SINMAO]; t3cof[i] = c[T3COF]; t4cof[i] = c[T4COF];
+            t5cof[i] = c[T5COF]; no[i] = c[NO]; a0[i] = c[A0]; ecco[i] = c[ECCO]; inclo[i] = c[INCLO]; sinio[i] = c[SINIO];
+            cosio[i] = c[COSIO]; aycof[i] = c[AYCOF]; xlcof[i] = c[XLCOF]; con41[i] = c[CON41];
+            x1mth2[i] = c[X1MTH2]; x7thm1[i] = c[X7THM1];
+        }
+
+        tsince = new double[near]; xmdf = new double[near]; argpm = new double[near]; nodem = new double[near];
+        tempa = new double[near]; tempe = new double[near]; templ = new double[near]; am = new double[near];
+        em = new double[near]; mm = new double[near];
+
+        x = new double[size]; y = new double[size]; z = new double[size];
+        vx = new double[size]; vy = new double[size]; vz = new double[size];
+        latitudes = new double[size]; longitudes = new double[size]; altitudes = new double[size];
+        errors = new int[size];
+    }
+
+    /**
+     * Get the number of platforms.
+     * @return number of platforms
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the NORAD ID of a platform.
+     * @param index batch index (near earth platforms first)
+     * @return NORAD ID
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Get the propagator of a platform.
+     * @param index batch index
+     * @return platform propagator
+     */
+    public SGP4 getPropagator(int index) {
+        return propagators[index];
+    }
+
+    /**
+     * Propagate the whole batch on the calling thread.
+     * @param timeMillis utc time (milliseconds since 1970-01-01)
+     */
+    public void propagate(long timeMillis) {
+        Range range = range(0);
+        range.from = 0;
+        range.to = size;
+        range.jd = JD_UNIX_EPOCH + timeMillis / 86400000.0;
+        range.gmst = Coordinates.gmst(timeMillis);
+        range.call();
+    }
+
+    /**
+     * Propagate the whole batch, partitioned into parallel ranges when it is large enough.
+     * @param timeMillis utc time (milliseconds since 1970-01-01)
+     * @param executor executor that runs the ranges, null to propagate on the calling thread
+     * @param threads maximum number of parallel ranges (usually the number of cores)
+     * @return false if the calling thread was interrupted (outputs are not complete)
+     */
+    public boolean propagate(long timeMillis, ExecutorService executor, int threads) {
+        int count = Math.min(threads, size / MIN_RANGE);
+        if (null == executor || count < 2) {
+            propagate(timeMillis);
+            return true;
+        }
+        double jd = JD_UNIX_EPOCH + timeMillis / 86400000.0, gmst = Coordinates.gmst(timeMillis);
+        for (int k = 0; k < count; k++) {
+            Range range = range(k);
+            range.from = (int) ((long) size * k / count);
+            range.to = (int) ((long) size * (k + 1) / count);
+            range.jd = jd;
+            range.gmst = gmst;
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(ranges.subList(0, count))) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // note: ranges do not throw checked exceptions
+        }
+        return true;
+    }
+
+    /**
+     * Get the error code of a platform (last propagation).
+     * @param index batch index
+     * @return SGP4 error code (ERROR_NONE on success)
+     */
+    public int getError(int index) {
+        return errors[index];
+    }
+
+    /**
+     * Get the geodetic latitude of a platform (last propagation).
+     * @param index batch index
+     * @return decimal degrees
+     */
+    public double getLatitude(int index) {
+        return latitudes[index];
+    }
+
+    /**
+     * Get the geodetic longitude of a platform (last propagation).
+     * @param index batch index
+     * @return decimal degrees (-180 to 180)
+     */
+    public double getLongitude(int index) {
+        return longitudes[index];
+    }
+
+    /**
+     * Get the altitude of a platform (last propagation).
+     * @param index batch index
+     * @return kilometers
+     */
+    public double getAltitude(int index) {
+        return altitudes[index];
+    }
+
+    /**
+     * Get the position of a platform (last propagation).
+     * @param index batch index
+     * @param r output position (TEME, km)
+     */
+    public void getPosition(int index, double[] r) {
+        r[0] = x[index];
+        r[1] = y[index];
+        r[2] = z[index];
+    }
+
+    /**
+     * Get the velocity of a platform (last propagation).
+     * @param index batch index
+     * @param v output velocity (TEME, km/s)
+     */
+    public void getVelocity(int index, double[] v) {
+        v[0] = vx[index];
+        v[1] = vy[index];
+        v[2] = vz[index];
+    }
+
+    // get (or create) a parallel range
+    private Range range(int k) {
+        while (ranges.size() <= k) ranges.add(new Range());
+        return ranges.get(k);
+    }
+
+    // propagate a range of platforms
+    private void propagate(int from, int to, double jd, double gmst, double[] r, double[] v) {
+        int end = Math.min(to, near);
+        if (from < end) {
+            secular(from, end, jd);
+            drag(from, end);
+            periodics(from, end);
+        }
+        for (int i = Math.max(from, near); i < to; i++) {
+            // deep space platforms (resonance integration is not batched)
+            SGP4 propagator = propagators[i];
+            errors[i] = propagator.propagateMinutes((jd - propagator.getTLE().getEpochJD()) * MINUTES_PER_DAY, r, v);
+            x[i] = r[0];
+            y[i] = r[1];
+            z[i] = r[2];
+            vx[i] = v[0];
+            vy[i] = v[1];
+            vz[i] = v[2];
+        }
+        geodetic(from, to, gmst);
+    }
+
+    // secular gravity and atmospheric drag polynomials (plain arithmetic, vectorizable)
+    private void secular(int from, int to, double jd) {
+        for (int i = from; i < to; i++) {
+            double t = (jd - epoch[i]) * MINUTES_PER_DAY;
+            double t2 = t * t, t3 = t2 * t, t4 = t3 * t;
+            tsince[i] = t;
+            xmdf[i] = mo[i] + mdot[i] * t;
+            argpm[i] = argpo[i] + argpdot[i] * t;
+            nodem[i] = nodeo[i] + nodedot[i] * t + nodecf[i] * t2;
+            tempa[i] = 1.0 - cc1[i] * t - d2[i] * t2 - d3[i] * t3 - d4[i] * t4;
+            tempe[i] = bstarcc4[i] * t;
+            templ[i] = t2cof[i] * t2 + t3cof[i] * t3 + t4 * (t4cof[i] + t * t5cof[i]);
+        }
+    }
+
+    // drag terms on mean anomaly and argument of perigee, then semimajor axis and eccentricity
+    private void drag(int from, int to) {
+        for (int i = from; i < to; i++) {
+            // note: zero for simplified model platforms (no branch)
+            double delmtemp = 1.0 + eta[i] * Math.cos(xmdf[i]);
+            double temp = omgcof[i] * tsince[i] + xmcof[i] * (delmtemp * delmtemp * delmtemp - delmo[i]);
+            double m = xmdf[i] + temp;
+            mm[i] = m;
+            argpm[i] = argpm[i] - temp;
+            tempe[i] = tempe[i] + bstarcc5[i] * (Math.sin(m) - sinmao[i]);
+        }
+        for (int i = from; i < to; i++) {
+            // plain arithmetic, vectorizable
+            am[i] = a0[i] * tempa[i] * tempa[i];
+            em[i] = ecco[i] - tempe[i];
+            mm[i] = mm[i] + no[i] * templ[i];
+        }
+    }
+
+    // periodics, kepler equation and orientation (one platform at a time)
+    private void periodics(int from, int to) {
+        for (int i = from; i < to; i++) {
+            double e = em[i];
+            if (e >= 1.0 || e < -0.001) {
+                fail(i, SGP4.ERROR_MEAN_ECCENTRICITY);
+                continue;
+            }
+            if (e < 1.0e-6) e = 1.0e-6;
+            double a = am[i];
+            double n = XKE / (a * Math.sqrt(a));
+            double node = nodem[i], argp = argpm[i];
+            double xlm = (mm[i] + argp + node) % TWOPI;
+            node = node % TWOPI;
+            argp = argp % TWOPI;
+            double m = (xlm - argp - node) % TWOPI;
+
+            // long period periodics
+            double axnl = e * Math.cos(argp);
+            double temp = 1.0 / (a * (1.0 - e * e));
+            double aynl = e * Math.sin(argp) + temp * aycof[i];
+            double xl = m + argp + node + temp * xlcof[i] * axnl;
+
+            // solve kepler's equation
+            double u = (xl - node) % TWOPI;
+            double eo1 = u;
+            double tem5 = 9999.9;
+            double sineo1 = 0.0, coseo1 = 0.0;
+            for (int ktr = 1; Math.abs(tem5) >= 1.0e-12 && ktr <= 10; ktr++) {
+                sineo1 = Math.sin(eo1);
+                coseo1 = Math.cos(eo1);
+                tem5 = 1.0 - coseo1 * axnl - sineo1 * aynl;
+                tem5 = (u - aynl * coseo1 + axnl * sineo1 - eo1) / tem5;
+                if (Math.abs(tem5) >= 0.95) tem5 = tem5 > 0.0 ? 0.95 : -0.95;
+                eo1 = eo1 + tem5;
+            }
+
+            // short period preliminary quantities
+            double ecose = axnl * coseo1 + aynl * sineo1;
+            double esine = axnl * sineo1 - aynl * coseo1;
+            double el2 = axnl * axnl + aynl * aynl;
+            double pl = a * (1.0 - el2);
+            if (pl < 0.0) {
+                fail(i, SGP4.ERROR_SEMI_LATUS_RECTUM);
+                continue;
+            }
+            double rl = a * (1.0 - ecose);
+            double rdotl = Math.sqrt(a) * esine / rl;
+            double rvdotl = Math.sqrt(pl) / rl;
+            double betal = Math.sqrt(1.0 - el2);
+            temp = esine / (1.0 + betal);
+            double sinu = a / rl * (sineo1 - aynl - axnl * temp);
+            double cosu = a / rl * (coseo1 - axnl + aynl * temp);
+            double su = Math.atan2(sinu, cosu);
+            double sin2u = (cosu + cosu) * sinu;
+            double cos2u = 1.0 - 2.0 * sinu * sinu;
+            temp = 1.0 / pl;
+            double temp1 = 0.5 * J2 * temp;
+            double temp2 = temp1 * temp;
+
+            // update for short period periodics
+            double sinip = sinio[i], cosip = cosio[i];
+            double mrt = rl * (1.0 - 1.5 * temp2 * betal * con41[i]) + 0.5 * temp1 * x1mth2[i] * cos2u;
+            su = su - 0.25 * temp2 * x7thm1[i] * sin2u;
+            double xnode = node + 1.5 * temp2 * cosip * sin2u;
+            double xinc = inclo[i] + 1.5 * temp2 * cosip * sinip * cos2u;
+            double mvt = rdotl - n * temp1 * x1mth2[i] * sin2u / XKE;
+            double rvdot = rvdotl + n * temp1 * (x1mth2[i] * cos2u + 1.5 * con41[i]) / XKE;
+
+            // orientation vectors
+            double sinsu = Math.sin(su), cossu = Math.cos(su);
+            double snod = Math.sin(xnode), cnod = Math.cos(xnode);
+            double sini = Math.sin(xinc), cosi = Math.cos(xinc);
+            double xmx = -snod * cosi, xmy = cnod * cosi;
+            double ux = xmx * sinsu + cnod * cossu;
+            double uy = xmy * sinsu + snod * cossu;
+            double uz = sini * sinsu;
+            double wx = xmx * cossu - cnod * sinsu;
+            double wy = xmy * cossu - snod * sinsu;
+            double wz = sini * cossu;
+
+            // position and velocity (km and km/s)
+            x[i] = mrt * ux * RADIUS;
+            y[i] = mrt * uy * RADIUS;
+            z[i] = mrt * uz * RADIUS;
+            vx[i] = (mvt * ux + rvdot * wx) * VKMPERSEC;
+            vy[i] = (mvt * uy + rvdot * wy) * VKMPERSEC;
+            vz[i] = (mvt * uz + rvdot * wz) * VKMPERSEC;
+            errors[i] = (mrt < 1.0) ? SGP4.ERROR_DECAYED : SGP4.ERROR_NONE;
+        }
+    }
+
+    // earth fixed rotation and geodetic coordinates (bowring's closed form, no iterations)
+    private void geodetic(int from, int to, double gmst) {
+        double c = Math.cos(gmst), s = Math.sin(gmst);
+        for (int i = from; i < to; i++) {
+            double ex = c * x[i] + s * y[i];
+            double ey = -s * x[i] + c * y[i];
+            double ez = z[i];
+            double p = Math.sqrt(ex * ex + ey * ey);
+            double theta = Math.atan2(ez * A, p * B);
+            double sinTheta = Math.sin(theta), cosTheta = Math.cos(theta);
+            double lat = Math.atan2(ez + EP2 * B * sinTheta * sinTheta * sinTheta, p - E2 * A * cosTheta * cosTheta * cosTheta);
+            double sinLat = Math.sin(lat), cosLat = Math.cos(lat);
+            double n = A / Math.sqrt(1.0 - E2 * sinLat * sinLat);
+            latitudes[i] = lat * RAD2DEG;
+            longitudes[i] = Math.atan2(ey, ex) * RAD2DEG;
+            altitudes[i] = (Math.abs(cosLat) > 1.0e-10) ? p / cosLat - n : Math.abs(ez) - B; // note: polar
+        }
+    }
+
+    // mark a failed platform
+    private void fail(int i, int error) {
+        errors[i] = error;
+        x[i] = y[i] = z[i] = vx[i] = vy[i] = vz[i] = Double.NaN;
+    }
+
+}
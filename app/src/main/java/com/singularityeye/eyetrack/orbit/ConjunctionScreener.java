@@ -0,0 +1,402 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import com.singularityeye.eyetrack.model.Conjunction;
+import com.singularityeye.eyetrack.model.Satellite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Conjunction screener model.
+ * It searches close approaches (miss distance under a threshold) between satellites of a catalog, without checking all pairs:
+ * <ol>
+ * <li>apogee/perigee filter: satellites whose radial shell (perigee to apogee) does not overlap any other one are dropped;</li>
+ * <li>spatial hash sieve: the catalog is propagated at fixed time steps (batch propagation) and positions are hashed
+ * into a grid (cell size: threshold plus the relative motion bound over half a step), so only satellites in
+ * neighbour cells are compared; pairs whose sampled distance is a local minimum under the cell size are candidates;</li>
+ * <li>refinement: time of closest approach of each candidate is searched (golden section) within one step around the sample.</li>
+ * </ol>
+ * Time steps are split into fork-join tasks (one batch propagator and grid per task), so screening scales across cores.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ConjunctionScreener {
+
+    /**
+     * Default time step (milliseconds).
+     */
+    public static final long DEFAULT_STEP = 20000;
+
+    private static final double MAX_RELATIVE_SPEED = 16.0; // relative speed bound between earth satellites (km/s)
+    private static final double SHELL_MARGIN = 50.0; // apogee/perigee filter margin (km): mean elements, drag and perturbations
+    private static final long TOLERANCE = 5; // refinement tolerance (milliseconds)
+    private static final int MIN_STEPS = 16; // time steps per leaf task
+    private static final long CELL_MASK = (1L << 21) - 1; // grid cell coordinate bits (wrapped cells only add candidates)
+
+    private final double threshold; // kilometers
+    private final long step; // milliseconds
+    private final double cell; // grid cell size and candidate distance at sampled times (kilometers)
+
+    /**
+     * Constructor method for a conjunction screener.
+     * @param threshold miss distance threshold (kilometers)
+     * @param step time step (milliseconds), shorter steps mean smaller grid cells and fewer candidates
+     */
+    public ConjunctionScreener(double threshold, long step) {
+        if (threshold <= 0.0 || step <= 0) throw new IllegalArgumentException("threshold " + threshold + ", step " + step);
+        this.threshold = threshold;
+        this.step = step;
+        this.cell = threshold + MAX_RELATIVE_SPEED * step / 2000.0; // note: closest approach is at most half a step away from a sample
+    }
+
+    /**
+     * Screen a catalog in parallel (shared fork-join pool, one worker per core).
+     * @param propagators satellite propagators
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @return conjunctions sorted by TCA
+     */
+    public List<Conjunction> screen(Collection<SGP4> propagators, long start, long end) {
+        return screen(propagators, start, end, DefaultPool.POOL);
+    }
+
+    /**
+     * Screen a catalog in parallel.
+     * @param propagators satellite propagators
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @param pool fork-join pool
+     * @return conjunctions sorted by TCA
+     */
+    public List<Conjunction> screen(Collection<SGP4> propagators, long start, long end, ForkJoinPool pool) {
+        List<SGP4> screened = filter(propagators);
+        if (screened.size() < 2 || end <= start) return new ArrayList<Conjunction>();
+        // note: batch order (near earth first) is the satellite index of every task
+        SGP4[] order = new SGP4[screened.size()];
+        BatchPropagator batch = new BatchPropagator(screened);
+        for (int i = 0; i < order.length; i++) order[i] = batch.getPropagator(i);
+        int steps = (int) ((end - start + step - 1) / step) + 1; // samples covering start to end
+        int grain = Math.max(MIN_STEPS, steps / (4 * pool.getParallelism()));
+        List<Conjunction> conjunctions = pool.invoke(new SieveTask(Arrays.asList(order), start, end, 0, steps, grain));
+        Collections.sort(conjunctions, TCA_ORDER);
+        return conjunctions;
+    }
+
+    /**
+     * Apogee/perigee filter: keep satellites whose radial shell overlaps the shell of another satellite.
+     * @param propagators satellite propagators
+     * @return satellites that could approach another one (input order)
+     */
+    public List<SGP4> filter(Collection<SGP4> propagators) {
+        int n = propagators.size();
+        final SGP4[] sorted = propagators.toArray(new SGP4[n]);
+        final double[] perigees = new double[n], apogees = new double[n];
+        Integer[] indexes = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            TLE tle = sorted[i].getTLE();
+            double mm = tle.getMeanMotion() / 60.0; // rad/s
+            double a = Math.cbrt(SGP4.MU / (mm * mm)); // km
+            perigees[i] = a * (1.0 - tle.getEccentricity());
+            apogees[i] = a * (1.0 + tle.getEccentricity());
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(perigees[i1], perigees[i2]);
+            }
+        });
+        // note: sorted by perigee, a shell overlaps an earlier one if its perigee is under their highest apogee,
+        // and a later one if the next perigee is under its apogee
+        double margin = threshold + SHELL_MARGIN;
+        boolean[] kept = new boolean[n];
+        double highest = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < n; k++) {
+            int i = indexes[k];
+            if (perigees[i] <= highest + margin) kept[i] = true;
+            if (k + 1 < n && perigees[indexes[k + 1]] <= apogees[i] + margin) kept[i] = true;
+            highest = Math.max(highest, apogees[i]);
+        }
+        List<SGP4> screened = new ArrayList<SGP4>();
+        for (int i = 0; i < n; i++) if (kept[i]) screened.add(sorted[i]);
+        return screened;
+    }
+
+    // shared pool, lazily created on first screening
+    private static class DefaultPool {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    // fork-join task: splits time steps until a few steps per task
+    private class SieveTask extends RecursiveTask<List<Conjunction>> {
+
+        private final List<SGP4> propagators; // batch order
+        private final long start, end;
+        private final int from, to, grain; // time steps
+
+        SieveTask(List<SGP4> propagators, long start, long end, int from, int to, int grain) {
+            this.propagators = propagators;
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected List<Conjunction> compute() {
+            if (to - from <= grain) return new Sieve(propagators, start, end).run(from, to);
+            int middle = (from + to) >>> 1;
+            SieveTask left = new SieveTask(propagators, start, end, from, middle, grain);
+            left.fork();
+            List<Conjunction> conjunctions = new SieveTask(propagators, start, end, middle, to, grain).compute();
+            conjunctions.addAll(left.join());
+            return conjunctions;
+        }
+
+    }
+
+    // spatial hash sieve and refinement over a range of time steps (one per leaf task)
+    private class Sieve {
+
+        private final BatchPropagator batch;
+        private final long start, end;
+        private final int n;
+        private double[] x, y, z, px, py, pz; // current and previous positions (TEME, km), NaN on propagation errors
+        private final long[] keys; // grid cells (open addressing)
+        private final int[] heads; // first satellite of each grid cell, -1 if empty slot
+        private final int[] next; // next satellite of the same grid cell, -1 at the end
+        private final int mask;
+        private int[] pending = new int[64]; // candidate pairs of the previous step (two indexes per pair)
+        private double[] pending_distances = new double[32];
+        private int pending_count;
+        private int[] found = new int[64]; // candidate pairs of the current step
+        private double[] found_distances = new double[32];
+        private int found_count;
+        private final double[] r1 = new double[3], v1 = new double[3], r2 = new double[3], v2 = new double[3];
+
+        Sieve(List<SGP4> propagators, long start, long end) {
+            this.batch = new BatchPropagator(propagators);
+            this.start = start;
+            this.end = end;
+            this.n = batch.size();
+            x = new double[n]; y = new double[n]; z = new double[n];
+            px = new double[n]; py = new double[n]; pz = new double[n];
+            int capacity = Integer.highestOneBit(Math.max(8, n)) << 2; // note: load factor under one half
+            keys = new long[capacity];
+            heads = new int[capacity];
+            next = new int[n];
+            mask = capacity - 1;
+        }
+
+        // sieve steps from..to-1 (samples one step before and after the range find local minima at range bounds)
+        List<Conjunction> run(int from, int to) {
+            List<Conjunction> conjunctions = new ArrayList<Conjunction>();
+            for (int k = from - 1; k <= to; k++) {
+                swap();
+                propagate(time(k));
+                // previous step candidates: local minimum if closer than both neighbour samples
+                for (int c = 0; c < pending_count; c++) {
+                    int a = pending[2 * c], b = pending[2 * c + 1];
+                    if (pending_distances[c] < distance(x, y, z, a, b)) refine(a, b, time(k - 1), conjunctions);
+                }
+                pending_count = 0;
+                if (k < from || k == to) continue;
+                found_count = 0;
+                sieve();
+                for (int c = 0; c < found_count; c++) {
+                    int a = found[2 * c], b = found[2 * c + 1];
+                    double d = found_distances[c];
+                    if (d <= distance(px, py, pz, a, b)) addPending(a, b, d); // note: a failed neighbour sample (NaN) drops the candidate
+                }
+            }
+            return conjunctions;
+        }
+
+        // sample time of a step (samples outside the window are only neighbours, closest approaches out of it are dropped)
+        private long time(int k) {
+            return start + k * step;
+        }
+
+        // propagate the batch (positions of failed propagations are NaN)
+        private void propagate(long time) {
+            batch.propagate(time);
+            for (int i = 0; i < n; i++) {
+                if (SGP4.ERROR_NONE != batch.getError(i)) {
+                    x[i] = y[i] = z[i] = Double.NaN;
+                    continue;
+                }
+                batch.getPosition(i, r1);
+                x[i] = r1[0];
+                y[i] = r1[1];
+                z[i] = r1[2];
+            }
+        }
+
+        // hash current positions into the grid; pairs in neighbour cells under the cell size are found
+        private void sieve() {
+            Arrays.fill(heads, -1);
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(x[i])) continue;
+                long cx = (long) Math.floor(x[i] / cell), cy = (long) Math.floor(y[i] / cell), cz = (long) Math.floor(z[i] / cell);
+                // note: only earlier satellites are in the grid, so every pair is found once
+                for (long dx = -1; dx <= 1; dx++) {
+                    for (long dy = -1; dy <= 1; dy++) {
+                        for (long dz = -1; dz <= 1; dz++) {
+                            int slot = slot(key(cx + dx, cy + dy, cz + dz));
+                            for (int j = heads[slot]; -1 != j; j = next[j]) {
+                                double d = distance(x, y, z, i, j);
+                                if (d <= cell) addFound(j, i, d);
+                            }
+                        }
+                    }
+                }
+                long key = key(cx, cy, cz);
+                int slot = slot(key);
+                keys[slot] = key;
+                next[i] = heads[slot];
+                heads[slot] = i;
+            }
+        }
+
+        // grid slot of a cell key (its own slot, or the empty slot where it would be inserted)
+        private int slot(long key) {
+            int h = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (-1 != heads[h] && keys[h] != key) h = (h + 1) & mask;
+            return h;
+        }
+
+        // refine the closest approach of a pair around a sampled local minimum (golden section search)
+        private void refine(int i, int j, long sample, List<Conjunction> conjunctions) {
+            SGP4 p1 = batch.getPropagator(i), p2 = batch.getPropagator(j);
+            double g = (Math.sqrt(5.0) - 1.0) / 2.0;
+            long a = sample - step, b = sample + step;
+            long c = b - Math.round(g * (b - a)), d = a + Math.round(g * (b - a));
+            double fc = approach(p1, p2, c), fd = approach(p1, p2, d);
+            while (b - a > 2 * TOLERANCE) {
+                if (fc < fd) {
+                    b = d;
+                    d = c;
+                    fd = fc;
+                    c = b - Math.round(g * (b - a));
+                    fc = approach(p1, p2, c);
+                } else {
+                    a = c;
+                    c = d;
+                    fc = fd;
+                    d = a + Math.round(g * (b - a));
+                    fd = approach(p1, p2, d);
+                }
+            }
+            long tca = (a + b) / 2;
+            double miss = approach(p1, p2, tca);
+            if (!(miss <= threshold) || tca < start || tca > end) return;
+            // note: r1, v1, r2, v2 hold the states at tca (last approach call)
+            double dvx = v1[0] - v2[0], dvy = v1[1] - v2[1], dvz = v1[2] - v2[2];
+            Conjunction conjunction = new Conjunction();
+            boolean ordered = p1.getTLE().getNORAD_ID() < p2.getTLE().getNORAD_ID();
+            double gmst = Coordinates.gmst(tca);
+            Satellite s1 = satellite(p1, r1, gmst), s2 = satellite(p2, r2, gmst);
+            conjunction.setPrimary(ordered ? s1 : s2);
+            conjunction.setSecondary(ordered ? s2 : s1);
+            conjunction.setTca(tca);
+            conjunction.setMissDistance(miss);
+            conjunction.setRelativeSpeed(Math.sqrt(dvx * dvx + dvy * dvy + dvz * dvz));
+            conjunctions.add(conjunction);
+        }
+
+        // distance between two satellites at a time (NaN on propagation errors)
+        private double approach(SGP4 p1, SGP4 p2, long time) {
+            if (SGP4.ERROR_NONE != p1.propagateAt(time, r1, v1) || SGP4.ERROR_NONE != p2.propagateAt(time, r2, v2)) return Double.NaN;
+            double dx = r1[0] - r2[0], dy = r1[1] - r2[1], dz = r1[2] - r2[2];
+            return Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+
+        // swap current and previous positions
+        private void swap() {
+            double[] t = px; px = x; x = t;
+            t = py; py = y; y = t;
+            t = pz; pz = z; z = t;
+        }
+
+        private void addFound(int a, int b, double d) {
+            if (2 * found_count == found.length) {
+                found = Arrays.copyOf(found, 2 * found.length);
+                found_distances = Arrays.copyOf(found_distances, 2 * found_distances.length);
+            }
+            found[2 * found_count] = a;
+            found[2 * found_count + 1] = b;
+            found_distances[found_count++] = d;
+        }
+
+        private void addPending(int a, int b, double d) {
+            if (2 * pending_count == pending.length) {
+                pending = Arrays.copyOf(pending, 2 * pending.length);
+                pending_distances = Arrays.copyOf(pending_distances, 2 * pending_distances.length);
+            }
+            pending[2 * pending_count] = a;
+            pending[2 * pending_count + 1] = b;
+            pending_distances[pending_count++] = d;
+        }
+
+    }
+
+    // grid cell key (21 bits per coordinate)
+    private static long key(long cx, long cy, long cz) {
+        return ((cx & CELL_MASK) << 42) | ((cy & CELL_MASK) << 21) | (cz & CELL_MASK);
+    }
+
+    // distance between two satellites of position arrays (NaN if any position is NaN)
+    private static double distance(double[] x, double[] y, double[] z, int i, int j) {
+        double dx = x[i] - x[j], dy = y[i] - y[j], dz = z[i] - z[j];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    // satellite model at a position
+    private static Satellite satellite(SGP4 propagator, double[] r, double gmst) {
+        double[] lla = new double[3];
+        Coordinates.temeToGeodetic(r, gmst, lla);
+        Satellite satellite = new Satellite();
+        satellite.setNORAD_ID(String.valueOf(propagator.getTLE().getNORAD_ID()));
+        satellite.setShortname(propagator.getTLE().getName());
+        satellite.setLatitude(lla[0]);
+        satellite.setLongitude(lla[1]);
+        satellite.setAltitude(lla[2]);
+        return satellite;
+    }
+
+    // conjunctions order by time of closest approach
+    private static final Comparator<Conjunction> TCA_ORDER = new Comparator<Conjunction>() {
+        @Override
+        public int compare(Conjunction c1, Conjunction c2) {
+            return (c1.getTca() < c2.getTca()) ? -1 : ((c1.getTca() == c2.getTca()) ? 0 : 1);
+        }
+    };
+
+}
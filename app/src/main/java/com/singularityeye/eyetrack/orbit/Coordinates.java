@@ -0,0 +1,201 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+/**
+ * Coordinates helper.
+ * This class includes time and reference frame conversions (TEME, earth fixed and geodetic).
+ * All methods write results into caller provided arrays, so they do not allocate.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public final class Coordinates {
+
+    private static final double TWOPI = 2.0 * Math.PI;
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double RAD2DEG = 180.0 / Math.PI;
+
+    // wgs-84 ellipsoid
+    /**
+     * WGS-84 equatorial radius (km).
+     */
+    public static final double WGS84_A = 6378.137;
+    /**
+     * WGS-84 flattening.
+     */
+    public static final double WGS84_F = 1.0 / 298.257223563;
+    private static final double WGS84_E2 = WGS84_F * (2.0 - WGS84_F);
+
+    /**
+     * Earth rotation rate (rad/s).
+     */
+    public static final double EARTH_ROTATION = 7.292115e-5;
+
+    private Coordinates() {}
+
+    /**
+     * Get julian date for given time.
+     * @param timeMillis utc time (milliseconds since 1970-01-01)
+     * @return julian date
+     */
+    public static double julianDate(long timeMillis) {
+        return 2440587.5 + timeMillis / 86400000.0;
+    }
+
+    /**
+     * Get greenwich mean sidereal time (IAU-82 model).
+     * @param jdut1 julian date (ut1)
+     * @return radians (0 to 2pi)
+     */
+    public static double gmst(double jdut1) {
+        double tut1 = (jdut1 - 2451545.0) / 36525.0;
+        double temp = -6.2e-6 * tut1 * tut1 * tut1 + 0.093104 * tut1 * tut1
+                + (876600.0 * 3600.0 + 8640184.812866) * tut1 + 67310.54841; // seconds
+        temp = (temp * DEG2RAD / 240.0) % TWOPI; // 360/86400 = 1/240, to deg, to rad
+        if (temp < 0.0) temp += TWOPI;
+        return temp;
+    }
+
+    /**
+     * Get greenwich mean sidereal time (IAU-82 model).
+     * @param timeMillis utc time (milliseconds since 1970-01-01)
+     * @return radians (0 to 2pi)
+     */
+    public static double gmst(long timeMillis) {
+        return gmst(julianDate(timeMillis));
+    }
+
+    /**
+     * Rotate a TEME vector into the earth fixed frame (polar motion is neglected).
+     * @param teme input vector (km)
+     * @param gmst greenwich mean sidereal time (radians)
+     * @param ecef output vector (km), could be the same array as input
+     */
+    public static void temeToEcef(double[] teme, double gmst, double[] ecef) {
+        double c = Math.cos(gmst), s = Math.sin(gmst);
+        double x = c * teme[0] + s * teme[1];
+        double y = -s * teme[0] + c * teme[1];
+        ecef[0] = x;
+        ecef[1] = y;
+        ecef[2] = teme[2];
+    }
+
+    /**
+     * Rotate a TEME velocity into the earth fixed frame, relative to the rotating earth (polar motion is neglected).
+     * @param r position (TEME, km)
+     * @param v velocity (TEME, km/s)
+     * @param gmst greenwich mean sidereal time (radians)
+     * @param ecef output velocity (earth fixed, km/s), must not be the position array
+     */
+    public static void temeToEcefVelocity(double[] r, double[] v, double gmst, double[] ecef) {
+        // note: velocity relative to earth fixed frame is v - we x r (same as the sub-satellite point)
+        double vx = v[0] + EARTH_ROTATION * r[1];
+        double vy = v[1] - EARTH_ROTATION * r[0];
+        double c = Math.cos(gmst), s = Math.sin(gmst);
+        ecef[0] = c * vx + s * vy;
+        ecef[1] = -s * vx + c * vy;
+        ecef[2] = v[2];
+    }
+
+    /**
+     * Convert an earth fixed position into geodetic coordinates (WGS-84).
+     * @param ecef input position (km)
+     * @param lla output latitude (degrees), longitude (degrees, -180 to 180) and altitude (km)
+     */
+    public static void ecefToGeodetic(double[] ecef, double[] lla) {
+        double x = ecef[0], y = ecef[1], z = ecef[2];
+        double p = Math.sqrt(x * x + y * y);
+        double lon = Math.atan2(y, x);
+        double lat = Math.atan2(z, p * (1.0 - WGS84_E2));
+        double n = WGS84_A;
+        // note: converges to sub-millimeter in a few iterations for orbital altitudes
+        for (int i = 0; i < 5; i++) {
+            double sinLat = Math.sin(lat);
+            n = WGS84_A / Math.sqrt(1.0 - WGS84_E2 * sinLat * sinLat);
+            lat = Math.atan2(z + n * WGS84_E2 * sinLat, p);
+        }
+        double alt;
+        double cosLat = Math.cos(lat);
+        if (Math.abs(cosLat) > 1.0e-10) {
+            alt = p / cosLat - n;
+        } else {
+            alt = Math.abs(z) - WGS84_A * Math.sqrt(1.0 - WGS84_E2); // polar
+        }
+        lla[0] = lat * RAD2DEG;
+        lla[1] = lon * RAD2DEG;
+        lla[2] = alt;
+    }
+
+    /**
+     * Convert a TEME position into geodetic coordinates (WGS-84).
+     * @param teme input position (km)
+     * @param gmst greenwich mean sidereal time (radians)
+     * @param lla output latitude (degrees), longitude (degrees) and altitude (km)
+     */
+    public static void temeToGeodetic(double[] teme, double gmst, double[] lla) {
+        double c = Math.cos(gmst), s = Math.sin(gmst);
+        double x = c * teme[0] + s * teme[1];
+        double y = -s * teme[0] + c * teme[1];
+        double z = teme[2];
+        // note: reuse output array as earth fixed buffer
+        lla[0] = x;
+        lla[1] = y;
+        lla[2] = z;
+        ecefToGeodetic(lla, lla);
+    }
+
+    /**
+     * Compute the angular velocity of the sub-satellite point (relative to the rotating earth).
+     * The sub-satellite point moves along the great circle normal to this vector.
+     * @param r position (TEME, km)
+     * @param v velocity (TEME, km/s)
+     * @param w output angular velocity (TEME axes, rad/s), rotate it with temeToEcef for earth fixed axes
+     * @return angular rate (rad/s)
+     */
+    public static double groundAngularVelocity(double[] r, double[] v, double[] w) {
+        // velocity relative to earth fixed frame: v - we x r
+        double vx = v[0] + EARTH_ROTATION * r[1];
+        double vy = v[1] - EARTH_ROTATION * r[0];
+        double vz = v[2];
+        double r2 = r[0] * r[0] + r[1] * r[1] + r[2] * r[2];
+        w[0] = (r[1] * vz - r[2] * vy) / r2;
+        w[1] = (r[2] * vx - r[0] * vz) / r2;
+        w[2] = (r[0] * vy - r[1] * vx) / r2;
+        return Math.sqrt(w[0] * w[0] + w[1] * w[1] + w[2] * w[2]);
+    }
+
+    /**
+     * Convert geodetic coordinates (WGS-84) into an earth fixed position.
+     * @param latitude degrees
+     * @param longitude degrees
+     * @param altitude km
+     * @param ecef output position (km)
+     */
+    public static void geodeticToEcef(double latitude, double longitude, double altitude, double[] ecef) {
+        double lat = latitude * DEG2RAD, lon = longitude * DEG2RAD;
+        double sinLat = Math.sin(lat), cosLat = Math.cos(lat);
+        double n = WGS84_A / Math.sqrt(1.0 - WGS84_E2 * sinLat * sinLat);
+        ecef[0] = (n + altitude) * cosLat * Math.cos(lon);
+        ecef[1] = (n + altitude) * cosLat * Math.sin(lon);
+        ecef[2] = (n * (1.0 - WGS84_E2) + altitude) * sinLat;
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+/**
+ * Ground track model.
+ * This class holds sub-satellite points sampled on a fixed time grid over a sliding window (past and future of current time).
+ * The window is advanced incrementally (forwards or backwards, e.g. simulation clock): expired samples are dropped
+ * and only new samples are propagated, so the whole orbit is never recomputed. Samples are kept in a bounded ring buffer.
+ * Note: not thread safe (one instance per thread).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class GroundTrack {
+
+    private static final int SAMPLES_PER_ORBIT = 90; // time grid resolution
+    private static final long MIN_STEP = 20000, MAX_STEP = 600000; // time grid bounds (milliseconds)
+
+    private final SGP4 propagator;
+    private final long past, future; // window (milliseconds before and after current time)
+    private final long step; // time grid step (milliseconds)
+
+    // samples ring buffer
+    private final double[] latitudes, longitudes, altitudes; // decimal degrees, kilometers
+    private final long[] times; // utc (milliseconds since 1970-01-01)
+    private int head, size;
+
+    private final double[] r = new double[3], v = new double[3], lla = new double[3]; // propagation buffers
+
+    /**
+     * Constructor method for a ground track.
+     * @param propagator satellite propagator
+     * @param past window before current time (milliseconds)
+     * @param future window after current time (milliseconds)
+     */
+    public GroundTrack(SGP4 propagator, long past, long future) {
+        this.propagator = propagator;
+        this.past = past;
+        this.future = future;
+        long period = (long) (2.0 * Math.PI / propagator.getTLE().getMeanMotion() * 60000.0); // milliseconds
+        this.step = Math.max(MIN_STEP, Math.min(MAX_STEP, period / SAMPLES_PER_ORBIT));
+        int capacity = (int) ((past + future) / step) + 3; // note: window ends are aligned to the time grid
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+        this.altitudes = new double[capacity];
+        this.times = new long[capacity];
+    }
+
+    /**
+     * Get the satellite propagator.
+     * @return satellite propagator
+     */
+    public SGP4 getPropagator() {
+        return propagator;
+    }
+
+    /**
+     * Move the window to the given time, forwards or backwards (drop expired samples, propagate new ones).
+     * If the time jumps out of the window, samples are computed again.
+     * @param now utc time (milliseconds since 1970-01-01)
+     * @return true if samples have changed
+     */
+    public boolean advance(long now) {
+        long first = floor(now - past), last = floor(now + future) + step;
+        boolean changed = false;
+        if (size > 0 && (times[index(size - 1)] < first || times[head] > last)) {
+            size = 0; // note: time jump, no sample can be reused
+            changed = true;
+        }
+        while (size > 0 && times[head] < first) {
+            head = (head + 1) % times.length;
+            size--;
+            changed = true;
+        }
+        while (size > 0 && times[index(size - 1)] > last) { // note: window moved backwards
+            size--;
+            changed = true;
+        }
+        // prepend samples (window moved backwards)
+        for (long t = times[head] - step; size > 0 && t >= first && size < times.length; t -= step) {
+            int i = (head + times.length - 1) % times.length;
+            if (!sample(t, i)) break;
+            head = i;
+            size++;
+            changed = true;
+        }
+        // append samples
+        long t = (0 == size) ? first : times[index(size - 1)] + step;
+        for (; t <= last && size < times.length; t += step) {
+            if (!sample(t, index(size))) break; // note: decayed, keep samples until error
+            size++;
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Get the number of samples.
+     * @return number of samples
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of samples.
+     * @return number of samples
+     */
+    public int capacity() {
+        return times.length;
+    }
+
+    /**
+     * Get the time of a sample (samples are sorted by time).
+     * @param index sample index
+     * @return utc time (milliseconds since 1970-01-01)
+     */
+    public long getTime(int index) {
+        return times[index(index)];
+    }
+
+    /**
+     * Get the latitude of a sample.
+     * @param index sample index
+     * @return decimal degrees
+     */
+    public double getLatitude(int index) {
+        return latitudes[index(index)];
+    }
+
+    /**
+     * Get the longitude of a sample.
+     * @param index sample index
+     * @return decimal degrees (-180 to 180)
+     */
+    public double getLongitude(int index) {
+        return longitudes[index(index)];
+    }
+
+    /**
+     * Get the altitude of a sample.
+     * @param index sample index
+     * @return kilometers
+     */
+    public double getAltitude(int index) {
+        return altitudes[index(index)];
+    }
+
+    // propagate a sample into a ring slot
+    // if propagation fails return false
+    private boolean sample(long t, int i) {
+        if (SGP4.ERROR_NONE != propagator.propagateAt(t, r, v)) return false;
+        Coordinates.temeToGeodetic(r, Coordinates.gmst(t), lla);
+        latitudes[i] = lla[0];
+        longitudes[i] = lla[1];
+        altitudes[i] = lla[2];
+        times[i] = t;
+        return true;
+    }
+
+    // ring buffer position of a sample
+    private int index(int index) {
+        return (head + index) % times.length;
+    }
+
+    // time grid point at or before given time
+    private long floor(long t) {
+        long k = t / step;
+        if (t < 0 && k * step != t) k--;
+        return k * step;
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Look angle stream model (antenna pointing).
+ * Samples azimuth, elevation, range, range rate and doppler shift of one platform for a ground observer
+ * from local propagation (SGP4), at a fixed rate on a dedicated thread. Sample times are on a fixed grid
+ * (start time plus a whole number of periods), so a late wake-up delays the delivery but never skews the samples;
+ * samples missed by more than one period are skipped (not delivered back to back).
+ * Note: no allocations per sample, observer earth fixed position and rotation are precomputed (see {@link Observer}).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class LookAngleStream {
+
+    /**
+     * Consumer model: it receives the samples on the stream thread (keep it short, a slow listener skips samples).
+     */
+    public interface Listener {
+        /**
+         * Receive a sample.
+         * @param time sample time, utc (milliseconds since 1970-01-01)
+         * @param azimuth degrees, clockwise from north
+         * @param elevation degrees
+         * @param range kilometers
+         * @param rangeRate km/s (positive when the range grows)
+         * @param doppler doppler shift of the downlink frequency (Hz)
+         */
+        void onSample(long time, double azimuth, double elevation, double range, double rangeRate, double doppler);
+    }
+
+    /**
+     * Speed of light (km/s).
+     */
+    public static final double SPEED_OF_LIGHT = 299792.458;
+    /**
+     * Minimum sampling rate (Hz).
+     */
+    public static final int MIN_RATE = 1;
+    /**
+     * Maximum sampling rate (Hz).
+     */
+    public static final int MAX_RATE = 50;
+
+    private static final long SPIN = 1000000; // nanoseconds before a deadline when the stream thread stops parking
+
+    private volatile SGP4 propagator;
+    private volatile Observer observer;
+    private volatile double frequency; // downlink frequency (Hz)
+    private volatile Thread thread; // stream thread, null if stopped
+    private volatile long skipped; // samples skipped (late wake-ups or propagation errors)
+
+    // sample buffers and last sample (stream thread, or caller of sample)
+    private final double[] r = new double[3], v = new double[3], ecef = new double[3], velocity = new double[3], aer = new double[3];
+    private double range_rate, doppler;
+
+    /**
+     * Constructor method for the stream.
+     * @param propagator platform propagator
+     * @param observer ground observer
+     * @param frequency downlink frequency (Hz), 0 without doppler
+     */
+    public LookAngleStream(SGP4 propagator, Observer observer, double frequency) {
+        this.propagator = propagator;
+        this.observer = observer;
+        this.frequency = frequency;
+    }
+
+    /**
+     * Replace the propagator (e.g. new orbital elements), from the next sample.
+     * @param propagator platform propagator
+     */
+    public void setPropagator(SGP4 propagator) {
+        this.propagator = propagator;
+    }
+
+    /**
+     * Get the propagator.
+     * @return platform propagator
+     */
+    public SGP4 getPropagator() {
+        return propagator;
+    }
+
+    /**
+     * Replace the observer, from the next sample.
+     * @param observer ground observer
+     */
+    public void setObserver(Observer observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Replace the downlink frequency, from the next sample.
+     * @param frequency Hz, 0 without doppler
+     */
+    public void setFrequency(double frequency) {
+        this.frequency = frequency;
+    }
+
+    /**
+     * Compute a sample (see getters); used by the stream thread, call it directly only while the stream is stopped.
+     * @param timeMillis utc time (milliseconds since 1970-01-01)
+     * @return true if the propagation succeeded
+     */
+    public boolean sample(long timeMillis) {
+        if (SGP4.ERROR_NONE != propagator.propagateAt(timeMillis, r, v)) return false;
+        double gmst = Coordinates.gmst(timeMillis);
+        Coordinates.temeToEcef(r, gmst, ecef);
+        Coordinates.temeToEcefVelocity(r, v, gmst, velocity);
+        Observer current = observer;
+        current.lookAngles(ecef, aer);
+        range_rate = current.rangeRate(ecef, velocity);
+        doppler = -frequency * range_rate / SPEED_OF_LIGHT;
+        return true;
+    }
+
+    /**
+     * Get the azimuth of the last sample.
+     * @return degrees, clockwise from north
+     */
+    public double getAzimuth() {
+        return aer[0];
+    }
+
+    /**
+     * Get the elevation of the last sample.
+     * @return degrees
+     */
+    public double getElevation() {
+        return aer[1];
+    }
+
+    /**
+     * Get the range of the last sample.
+     * @return kilometers
+     */
+    public double getRange() {
+        return aer[2];
+    }
+
+    /**
+     * Get the range rate of the last sample.
+     * @return km/s (positive when the range grows)
+     */
+    public double getRangeRate() {
+        return range_rate;
+    }
+
+    /**
+     * Get the doppler shift of the last sample.
+     * @return Hz (received frequency is the downlink frequency plus the shift)
+     */
+    public double getDoppler() {
+        return doppler;
+    }
+
+    /**
+     * Get the number of skipped samples since the stream was started.
+     * @return late wake-ups and propagation errors
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Check whether the stream is running.
+     * @return true if started and not stopped
+     */
+    public boolean isRunning() {
+        return null != thread;
+    }
+
+    /**
+     * Start sampling on a dedicated thread (a running stream is restarted).
+     * @param rate samples per second, clamped to MIN_RATE..MAX_RATE
+     * @param listener consumer (stream thread)
+     */
+    public synchronized void start(int rate, final Listener listener) {
+        stop();
+        final long period = TimeUnit.SECONDS.toNanos(1) / Math.max(MIN_RATE, Math.min(MAX_RATE, rate));
+        skipped = 0;
+        Thread stream = new Thread("LookAngleStream") {
+            @Override
+            public void run() {
+                // note: wall clock is read once, sample times advance on the monotonic clock
+                long origin = System.nanoTime();
+                long wall = System.currentTimeMillis();
+                long next = origin;
+                while (this == thread) { // note: a stopped (or restarted) stream replaces the thread
+                    long now = System.nanoTime();
+                    if (now < next) {
+                        // note: park until shortly before the deadline, then yield (timer slack would add jitter)
+                        if (next - now > SPIN) LockSupport.parkNanos(next - now - SPIN);
+                        else Thread.yield();
+                        continue; // note: spurious wake-ups and interrupts re-check
+                    }
+                    long late = (now - next) / period;
+                    if (late > 0) { // note: skip missed samples instead of delivering them back to back
+                        skipped += late;
+                        next += late * period;
+                    }
+                    long time = wall + TimeUnit.NANOSECONDS.toMillis(next - origin);
+                    if (sample(time)) listener.onSample(time, aer[0], aer[1], aer[2], range_rate, doppler);
+                    else skipped++;
+                    next += period;
+                }
+            }
+        };
+        stream.setDaemon(true);
+        stream.setPriority(Thread.MAX_PRIORITY);
+        thread = stream;
+        stream.start();
+    }
+
+    /**
+     * Stop sampling (waits for the sample in progress, unless called from the listener).
+     */
+    public void stop() {
+        Thread stream;
+        synchronized (this) {
+            stream = thread;
+            thread = null;
+        }
+        if (null == stream) return;
+        LockSupport.unpark(stream);
+        if (Thread.currentThread() == stream) return;
+        try {
+            stream.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+/**
+ * Ground observer model.
+ * This class holds the observer location and its precomputed earth fixed position and local (SEZ) rotation.
+ * Instances are immutable, so they can be shared between threads.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class Observer {
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double RAD2DEG = 180.0 / Math.PI;
+
+    private final double latitude; // decimal degrees
+    private final double longitude; // decimal degrees
+    private final double altitude; // kilometers
+    private final double[] ecef = new double[3]; // earth fixed position (km)
+    private final double sinLat, cosLat, sinLon, cosLon; // local rotation
+
+    /**
+     * Constructor method for an observer.
+     * @param latitude decimal degrees (WGS-84)
+     * @param longitude decimal degrees (WGS-84)
+     * @param altitude kilometers above the ellipsoid
+     */
+    public Observer(double latitude, double longitude, double altitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        Coordinates.geodeticToEcef(latitude, longitude, altitude, ecef);
+        this.sinLat = Math.sin(latitude * DEG2RAD);
+        this.cosLat = Math.cos(latitude * DEG2RAD);
+        this.sinLon = Math.sin(longitude * DEG2RAD);
+        this.cosLon = Math.cos(longitude * DEG2RAD);
+    }
+
+    /**
+     * Get latitude degrees for the observer.
+     * @return decimal number that represents latitude degrees
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Get longitude degrees for the observer.
+     * @return decimal number that represents longitude degrees
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Get kilometers for the altitude of the observer.
+     * @return decimal number that represents the altitude
+     */
+    public double getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * Compute look angles towards an earth fixed position.
+     * @param satEcef satellite earth fixed position (km)
+     * @param aer output azimuth (degrees, clockwise from north), elevation (degrees) and range (km)
+     */
+    public void lookAngles(double[] satEcef, double[] aer) {
+        double rx = satEcef[0] - ecef[0];
+        double ry = satEcef[1] - ecef[1];
+        double rz = satEcef[2] - ecef[2];
+        // topocentric horizon (south, east, zenith)
+        double south = sinLat * cosLon * rx + sinLat * sinLon * ry - cosLat * rz;
+        double east = -sinLon * rx + cosLon * ry;
+        double zenith = cosLat * cosLon * rx + cosLat * sinLon * ry + sinLat * rz;
+        double range = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        double azimuth = Math.atan2(east, -south) * RAD2DEG;
+        if (azimuth < 0.0) azimuth += 360.0;
+        aer[0] = azimuth;
+        aer[1] = Math.asin(zenith / range) * RAD2DEG;
+        aer[2] = range;
+    }
+
+    /**
+     * Compute the range rate towards an earth fixed position (positive when the range grows).
+     * @param satEcef satellite earth fixed position (km)
+     * @param satVelocity satellite earth fixed velocity, relative to the rotating earth (km/s)
+     * @return range rate (km/s)
+     */
+    public double rangeRate(double[] satEcef, double[] satVelocity) {
+        double rx = satEcef[0] - ecef[0];
+        double ry = satEcef[1] - ecef[1];
+        double rz = satEcef[2] - ecef[2];
+        // note: the observer is fixed in the earth frame, so the relative velocity is the satellite one
+        return (rx * satVelocity[0] + ry * satVelocity[1] + rz * satVelocity[2]) / Math.sqrt(rx * rx + ry * ry + rz * rz);
+    }
+
+    /**
+     * Compute the elevation towards an earth fixed position.
+     * @param satEcef satellite earth fixed position (km)
+     * @return elevation (degrees)
+     */
+    public double elevation(double[] satEcef) {
+        double rx = satEcef[0] - ecef[0];
+        double ry = satEcef[1] - ecef[1];
+        double rz = satEcef[2] - ecef[2];
+        double zenith = cosLat * cosLon * rx + cosLat * sinLon * ry + sinLat * rz;
+        return Math.asin(zenith / Math.sqrt(rx * rx + ry * ry + rz * rz)) * RAD2DEG;
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import com.singularityeye.eyetrack.model.Pass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Pass predictor model.
+ * It searches visibility windows (AOS, TCA, LOS) of satellites over an observer location.
+ * The search samples elevation with a coarse step (skipping ahead while the satellite is far below the horizon,
+ * using a bound of its elevation rate) and refines horizon crossings and maximum elevation by root/maximum search.
+ * Catalog searches run in parallel (fork-join), one satellite per leaf task.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PassPredictor {
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double RAD2DEG = 180.0 / Math.PI;
+    private static final double EARTH_SPEED = 0.5; // observer speed bound due to earth rotation (km/s)
+    private static final long MIN_STEP = 10000, MAX_STEP = 600000; // coarse step bounds (milliseconds)
+    private static final long MAX_SKIP = 3600000; // maximum step while far below the horizon (milliseconds)
+    private static final long TOLERANCE = 500; // refinement tolerance (milliseconds)
+    private static final double INCLINATION_MARGIN = 2.0 * DEG2RAD; // margin for deep space inclination changes
+    private static final int THRESHOLD = 8; // satellites per leaf task
+
+    private final Observer observer;
+    private final double minElevation; // decimal degrees
+
+    /**
+     * Constructor method for a pass predictor.
+     * @param observer ground observer
+     * @param minElevation elevation mask (decimal degrees)
+     */
+    public PassPredictor(Observer observer, double minElevation) {
+        this.observer = observer;
+        this.minElevation = minElevation;
+    }
+
+    /**
+     * Get the ground observer.
+     * @return ground observer
+     */
+    public Observer getObserver() {
+        return observer;
+    }
+
+    /**
+     * Get the elevation mask.
+     * @return decimal degrees
+     */
+    public double getMinElevation() {
+        return minElevation;
+    }
+
+    /**
+     * Predict passes of a satellite.
+     * Passes in progress at start or end of the window are clipped to the window.
+     * @param propagator satellite propagator
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @return passes sorted by AOS
+     */
+    public List<Pass> predict(SGP4 propagator, long start, long end) {
+        List<Pass> passes = new ArrayList<Pass>();
+        predict(propagator, start, end, passes);
+        return passes;
+    }
+
+    /**
+     * Predict passes of many satellites in parallel (shared fork-join pool, one worker per core).
+     * @param propagators satellite propagators
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @return passes sorted by AOS
+     */
+    public List<Pass> predictAll(Collection<SGP4> propagators, long start, long end) {
+        return predictAll(propagators, start, end, DefaultPool.POOL);
+    }
+
+    /**
+     * Predict passes of many satellites in parallel.
+     * @param propagators satellite propagators
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @param pool fork-join pool
+     * @return passes sorted by AOS
+     */
+    public List<Pass> predictAll(Collection<SGP4> propagators, long start, long end, ForkJoinPool pool) {
+        SGP4[] array = propagators.toArray(new SGP4[propagators.size()]);
+        List<Pass> passes = pool.invoke(new PredictTask(array, 0, array.length, start, end));
+        Collections.sort(passes, AOS_ORDER);
+        return passes;
+    }
+
+    /**
+     * Check whether a satellite could ever rise over the elevation mask (orbital geometry only).
+     * @param propagator satellite propagator
+     * @return false if the observer latitude is out of reach for the satellite
+     */
+    public boolean canBeVisible(SGP4 propagator) {
+        TLE tle = propagator.getTLE();
+        double n = tle.getMeanMotion() / 60.0; // rad/s
+        double a = Math.cbrt(SGP4.MU / (n * n)); // km
+        double apogee = a * (1.0 + tle.getEccentricity());
+        double mask = Math.max(0.0, minElevation) * DEG2RAD;
+        double ratio = SGP4.RADIUS_EARTH_KM * Math.cos(mask) / apogee;
+        if (ratio >= 1.0) return false; // never over the elevation mask
+        double lambda = Math.acos(ratio) - mask; // earth central angle of visibility circle
+        double inclination = tle.getInclination();
+        if (inclination > Math.PI / 2.0) inclination = Math.PI - inclination;
+        return Math.abs(observer.getLatitude() * DEG2RAD) <= inclination + lambda + INCLINATION_MARGIN;
+    }
+
+    // pass search for a single satellite (appends passes to given list)
+    private void predict(SGP4 propagator, long start, long end, List<Pass> passes) {
+        if (end <= start || !canBeVisible(propagator)) return;
+        Sampler sampler = new Sampler(propagator);
+
+        // coarse step and elevation rate bound from perigee geometry
+        TLE tle = propagator.getTLE();
+        double n = tle.getMeanMotion() / 60.0; // rad/s
+        double a = Math.cbrt(SGP4.MU / (n * n)); // km
+        double rp = Math.max(a * (1.0 - tle.getEccentricity()), SGP4.RADIUS_EARTH_KM + 80.0);
+        double vp = Math.sqrt(SGP4.MU * (2.0 / rp - 1.0 / a)) + EARTH_SPEED; // km/s
+        double horizon = Math.sqrt(rp * rp - SGP4.RADIUS_EARTH_KM * SGP4.RADIUS_EARTH_KM); // km
+        long step = Math.max(MIN_STEP, Math.min(MAX_STEP, (long) (200.0 * horizon / vp))); // 0.2 x shortest horizon crossing time
+        double maxRate = 1.5 * vp / horizon * RAD2DEG / 1000.0; // degrees per millisecond (with safety margin)
+
+        long t = start;
+        double f = sampler.elevation(t) - minElevation;
+        if (Double.isNaN(f)) return;
+        long aos = (f > 0.0) ? start : -1;
+
+        while (t < end) {
+            long dt = step;
+            if (f < 0.0) dt = Math.max(step, Math.min(MAX_SKIP, (long) (-f / maxRate))); // can not rise before
+            long tn = Math.min(end, t + dt);
+            double fn = sampler.elevation(tn) - minElevation;
+            if (Double.isNaN(fn)) break; // propagation error (decayed)
+
+            if (f <= 0.0 && fn > 0.0) {
+                aos = sampler.crossing(t, f, tn, fn, minElevation);
+            } else if (f > 0.0 && fn <= 0.0 && aos >= 0) {
+                passes.add(sampler.pass(aos, sampler.crossing(t, f, tn, fn, minElevation)));
+                aos = -1;
+            }
+            t = tn;
+            f = fn;
+        }
+        if (aos >= 0 && f > 0.0) passes.add(sampler.pass(aos, t)); // pass in progress at end
+    }
+
+    // elevation sampler for a single satellite (not thread safe, one instance per search)
+    private class Sampler {
+
+        private final SGP4 propagator;
+        private final double[] r = new double[3], v = new double[3], aer = new double[3];
+
+        Sampler(SGP4 propagator) {
+            this.propagator = propagator;
+        }
+
+        // elevation at given time (NaN on propagation error)
+        double elevation(long t) {
+            if (SGP4.ERROR_NONE != propagator.propagateAt(t, r, v)) return Double.NaN;
+            Coordinates.temeToEcef(r, Coordinates.gmst(t), r);
+            return observer.elevation(r);
+        }
+
+        // look angles at given time
+        void lookAngles(long t) {
+            propagator.propagateAt(t, r, v);
+            Coordinates.temeToEcef(r, Coordinates.gmst(t), r);
+            observer.lookAngles(r, aer);
+        }
+
+        // horizon crossing (illinois false position), f0 and f1 have different signs
+        long crossing(long t0, double f0, long t1, double f1, double mask) {
+            int side = 0;
+            while (t1 - t0 > TOLERANCE) {
+                long tm = t0 + Math.round((t1 - t0) * (f0 / (f0 - f1)));
+                if (tm <= t0 || tm >= t1) tm = t0 + (t1 - t0) / 2; // keep bracket strictly inside
+                double fm = elevation(tm) - mask;
+                if (Double.isNaN(fm)) break;
+                if ((fm > 0.0) == (f1 > 0.0)) {
+                    t1 = tm;
+                    f1 = fm;
+                    if (-1 == side) f0 *= 0.5;
+                    side = -1;
+                } else {
+                    t0 = tm;
+                    f0 = fm;
+                    if (1 == side) f1 *= 0.5;
+                    side = 1;
+                }
+            }
+            return (f0 > 0.0) ? t0 : t1; // first/last sample over the mask
+        }
+
+        // pass model with maximum elevation (golden section search)
+        Pass pass(long aos, long los) {
+            final double g = 0.6180339887498949;
+            long a = aos, b = los;
+            long c = b - Math.round(g * (b - a)), d = a + Math.round(g * (b - a));
+            double fc = elevation(c), fd = elevation(d);
+            while (b - a > 2 * TOLERANCE) {
+                if (fc > fd) {
+                    b = d;
+                    d = c;
+                    fd = fc;
+                    c = b - Math.round(g * (b - a));
+                    fc = elevation(c);
+                } else {
+                    a = c;
+                    c = d;
+                    fc = fd;
+                    d = a + Math.round(g * (b - a));
+                    fd = elevation(d);
+                }
+            }
+            long tca = (a + b) / 2;
+
+            Pass pass = new Pass();
+            pass.setNORAD_ID(String.valueOf(propagator.getTLE().getNORAD_ID()));
+            pass.setShortname(propagator.getTLE().getName());
+            pass.setAos(aos);
+            pass.setTca(tca);
+            pass.setLos(los);
+            lookAngles(aos);
+            pass.setAosAzimuth(aer[0]);
+            lookAngles(los);
+            pass.setLosAzimuth(aer[0]);
+            lookAngles(tca);
+            pass.setTcaAzimuth(aer[0]);
+            pass.setMaxElevation(aer[1]);
+            return pass;
+        }
+
+    }
+
+    // shared pool, lazily created on first catalog search
+    static class DefaultPool {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
+    // fork-join task: splits the catalog until a few satellites per task
+    private class PredictTask extends RecursiveTask<List<Pass>> {
+
+        private final SGP4[] propagators;
+        private final int from, to;
+        private final long start, end;
+
+        PredictTask(SGP4[] propagators, int from, int to, long start, long end) {
+            this.propagators = propagators;
+            this.from = from;
+            this.to = to;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<Pass> compute() {
+            if (to - from <= THRESHOLD) {
+                List<Pass> passes = new ArrayList<Pass>();
+                for (int i = from; i < to; i++) predict(propagators[i], start, end, passes);
+                return passes;
+            }
+            int middle = (from + to) >>> 1;
+            PredictTask left = new PredictTask(propagators, from, middle, start, end);
+            left.fork();
+            List<Pass> passes = new PredictTask(propagators, middle, to, start, end).compute();
+            passes.addAll(left.join());
+            return passes;
+        }
+
+    }
+
+    // passes order by acquisition of signal
+    static final Comparator<Pass> AOS_ORDER = new Comparator<Pass>() {
+        @Override
+        public int compare(Pass p1, Pass p2) {
+            return (p1.getAos() < p2.getAos()) ? -1 : ((p1.getAos() == p2.getAos()) ? 0 : 1);
+        }
+    };
+
+}
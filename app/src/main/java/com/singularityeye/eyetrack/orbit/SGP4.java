@@ -0,0 +1,895 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+/**
+ * SGP4/SDP4 orbit propagator.
+ * Port of the Vallado et al. revised model ("Revisiting Spacetrack Report #3", AIAA 2006-6753),
+ * WGS-72 gravity constants and improved operation mode.
+ * Output positions and velocities are expressed in the TEME frame (kilometers, kilometers per second).
+ * Instances are immutable after initialization, so they can be shared between threads.
+ * Deep space resonance integration always restarts from epoch, hence propagate calls do not allocate or keep state.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class SGP4 {
+
+    // wgs-72 constants
+    /**
+     * Earth equatorial radius (km).
+     */
+    public static final double RADIUS_EARTH_KM = 6378.135;
+    /**
+     * Earth gravitational parameter (km^3/s^2).
+     */
+    public static final double MU = 398600.8;
+    static final double XKE = 60.0 / Math.sqrt(RADIUS_EARTH_KM * RADIUS_EARTH_KM * RADIUS_EARTH_KM / MU); // note: shared with batch propagator
+    static final double J2 = 0.001082616;
+    private static final double J3 = -0.00000253881;
+    private static final double J4 = -0.00000165597;
+    private static final double J3OJ2 = J3 / J2;
+    static final double VKMPERSEC = RADIUS_EARTH_KM * XKE / 60.0;
+
+    private static final double PI = Math.PI;
+    private static final double TWOPI = 2.0 * Math.PI;
+    private static final double X2O3 = 2.0 / 3.0;
+    private static final double TEMP4 = 1.5e-12;
+
+    // deep space constants
+    private static final double ZNS = 1.19459e-5, ZES = 0.01675, ZNL = 1.5835218e-4, ZEL = 0.05490;
+    private static final double RPTIM = 4.37526908801129966e-3;
+
+    /**
+     * No error.
+     */
+    public static final int ERROR_NONE = 0;
+    /**
+     * Mean elements, eccentricity out of range.
+     */
+    public static final int ERROR_MEAN_ECCENTRICITY = 1;
+    /**
+     * Mean motion less than zero.
+     */
+    public static final int ERROR_MEAN_MOTION = 2;
+    /**
+     * Perturbed elements, eccentricity out of range.
+     */
+    public static final int ERROR_PERTURBED_ECCENTRICITY = 3;
+    /**
+     * Semi-latus rectum less than zero.
+     */
+    public static final int ERROR_SEMI_LATUS_RECTUM = 4;
+    /**
+     * Satellite has decayed (orbit radius below earth radius).
+     */
+    public static final int ERROR_DECAYED = 6;
+
+    private final TLE tle; // source elements
+    private final double epoch; // days since 1949-12-31 00:00 ut
+
+    // mean elements at epoch
+    private double bstar, ecco, argpo, inclo, mo, no, nodeo;
+
+    // near earth variables
+    private boolean isimp, deepSpace;
+    private double aycof, con41, cc1, cc4, cc5, d2, d3, d4, delmo, eta, argpdot, omgcof, sinmao,
+            t2cof, t3cof, t4cof, t5cof, x1mth2, x7thm1, mdot, nodedot, xlcof, xmcof, nodecf;
+
+    // deep space variables
+    private int irez;
+    private double d2201, d2211, d3210, d3222, d4410, d4422, d5220, d5232, d5421, d5433,
+            dedt, del1, del2, del3, didt, dmdt, dnodt, domdt, e3, ee2, peo, pgho, pho, pinco, plo,
+            se2, se3, sgh2, sgh3, sgh4, sh2, sh3, si2, si3, sl2, sl3, sl4, gsto, xfact,
+            xgh2, xgh3, xgh4, xh2, xh3, xi2, xi3, xl2, xl3, xl4, xlamo, zmol, zmos;
+
+    // dscom outputs only needed while initializing
+    private double sinim, cosim, emsq, s1, s2, s3, s4, s5, ss1, ss2, ss3, ss4, ss5,
+            sz1, sz3, sz11, sz13, sz21, sz23, sz31, sz33, z1, z3, z11, z13, z21, z23, z31, z33, nmInit, emInit;
+
+    /**
+     * Constructor method for the propagator.
+     * Initializes the model from the given element set.
+     * @param tle element set
+     * @throws IllegalArgumentException if elements can not be propagated
+     */
+    public SGP4(TLE tle) {
+        this.tle = tle;
+        this.epoch = tle.getEpochJD() - 2433281.5;
+        init();
+        // check propagation at epoch
+        double[] r = new double[3], v = new double[3];
+        int error = propagateMinutes(0.0, r, v);
+        if (ERROR_NONE != error) throw new IllegalArgumentException("Unable to propagate elements, sgp4 error " + error);
+    }
+
+    /**
+     * Get the element set used by this propagator.
+     * @return element set
+     */
+    public TLE getTLE() {
+        return tle;
+    }
+
+    /**
+     * Check whether the deep space (SDP4) branch is used.
+     * @return true if the orbital period is 225 minutes or more
+     */
+    public boolean isDeepSpace() {
+        return deepSpace;
+    }
+
+    /**
+     * Get the greenwich sidereal time at epoch.
+     * @return radians
+     */
+    public double getGsto() {
+        return gsto;
+    }
+
+    /**
+     * Propagate the satellite to the given utc time (see {@link #propagateMinutes}).
+     * @param timeMillis utc time (milliseconds since 1970-01-01)
+     * @param r output position (TEME, km), 3 elements
+     * @param v output velocity (TEME, km/s), 3 elements
+     * @return error code (ERROR_NONE on success)
+     */
+    public int propagateAt(long timeMillis, double[] r, double[] v) {
+        return propagateMinutes(tle.minutesSinceEpoch(timeMillis), r, v);
+    }
+
+    /**
+     * Propagate the satellite to the given time since element set epoch.
+     * @param tsince minutes since element set epoch
+     * @param r output position (TEME, km), 3 elements
+     * @param v output velocity (TEME, km/s), 3 elements
+     * @return error code (ERROR_NONE on success)
+     */
+    public int propagateMinutes(double tsince, double[] r, double[] v) {
+        final double t = tsince;
+
+        // update for secular gravity and atmospheric drag
+        double xmdf = mo + mdot * t;
+        double argpdf = argpo + argpdot * t;
+        double nodedf = nodeo + nodedot * t;
+        double argpm = argpdf;
+        double mm = xmdf;
+        double t2 = t * t;
+        double nodem = nodedf + nodecf * t2;
+        double tempa = 1.0 - cc1 * t;
+        double tempe = bstar * cc4 * t;
+        double templ = t2cof * t2;
+
+        if (!isimp) {
+            double delomg = omgcof * t;
+            double delmtemp = 1.0 + eta * Math.cos(xmdf);
+            double delm = xmcof * (delmtemp * delmtemp * delmtemp - delmo);
+            double temp = delomg + delm;
+            mm = xmdf + temp;
+            argpm = argpdf - temp;
+            double t3 = t2 * t;
+            double t4 = t3 * t;
+            tempa = tempa - d2 * t2 - d3 * t3 - d4 * t4;
+            tempe = tempe + bstar * cc5 * (Math.sin(mm) - sinmao);
+            templ = templ + t3cof * t3 + t4 * (t4cof + t * t5cof);
+        }
+
+        double nm = no;
+        double em = ecco;
+        double inclm = inclo;
+
+        if (deepSpace) {
+            // dspace: deep space secular effects and resonance integration
+            double theta = (gsto + t * RPTIM) % TWOPI;
+            em = em + dedt * t;
+            inclm = inclm + didt * t;
+            argpm = argpm + domdt * t;
+            nodem = nodem + dnodt * t;
+            mm = mm + dmdt * t;
+
+            if (0 != irez) {
+                // note: the integrator restarts from epoch on every call (stateless)
+                double atime = 0.0, xni = no, xli = xlamo;
+                double delt = (t > 0.0) ? 720.0 : -720.0;
+                double xndt, xldot, xnddt, ft;
+                while (true) {
+                    if (2 != irez) {
+                        // near synchronous
+                        xndt = del1 * Math.sin(xli - 0.13130908) + del2 * Math.sin(2.0 * (xli - 2.8843198))
+                                + del3 * Math.sin(3.0 * (xli - 0.37448087));
+                        xldot = xni + xfact;
+                        xnddt = del1 * Math.cos(xli - 0.13130908) + 2.0 * del2 * Math.cos(2.0 * (xli - 2.8843198))
+                                + 3.0 * del3 * Math.cos(3.0 * (xli - 0.37448087));
+                        xnddt = xnddt * xldot;
+                    } else {
+                        // near half-day
+                        double xomi = argpo + argpdot * atime;
+                        double x2omi = xomi + xomi;
+                        double x2li = xli + xli;
+                        xndt = d2201 * Math.sin(x2omi + xli - 5.7686396) + d2211 * Math.sin(xli - 5.7686396)
+                                + d3210 * Math.sin(xomi + xli - 0.95240898) + d3222 * Math.sin(-xomi + xli - 0.95240898)
+                                + d4410 * Math.sin(x2omi + x2li - 1.8014998) + d4422 * Math.sin(x2li - 1.8014998)
+                                + d5220 * Math.sin(xomi + xli - 1.0508330) + d5232 * Math.sin(-xomi + xli - 1.0508330)
+                                + d5421 * Math.sin(xomi + x2li - 4.4108898) + d5433 * Math.sin(-xomi + x2li - 4.4108898);
+                        xldot = xni + xfact;
+                        xnddt = d2201 * Math.cos(x2omi + xli - 5.7686396) + d2211 * Math.cos(xli - 5.7686396)
+                                + d3210 * Math.cos(xomi + xli - 0.95240898) + d3222 * Math.cos(-xomi + xli - 0.95240898)
+                                + d5220 * Math.cos(xomi + xli - 1.0508330) + d5232 * Math.cos(-xomi + xli - 1.0508330)
+                                + 2.0 * (d4410 * Math.cos(x2omi + x2li - 1.8014998) + d4422 * Math.cos(x2li - 1.8014998)
+                                + d5421 * Math.cos(xomi + x2li - 4.4108898) + d5433 * Math.cos(-xomi + x2li - 4.4108898));
+                        xnddt = xnddt * xldot;
+                    }
+                    if (Math.abs(t - atime) < 720.0) {
+                        ft = t - atime;
+                        break;
+                    }
+                    xli = xli + xldot * delt + xndt * 259200.0;
+                    xni = xni + xndt * delt + xnddt * 259200.0;
+                    atime = atime + delt;
+                }
+                nm = xni + xndt * ft + xnddt * ft * ft * 0.5;
+                double xl = xli + xldot * ft + xndt * ft * ft * 0.5;
+                if (1 != irez) mm = xl - 2.0 * nodem + 2.0 * theta;
+                else mm = xl - nodem - argpm + theta;
+            }
+        }
+
+        if (nm <= 0.0) return ERROR_MEAN_MOTION;
+
+        double am = Math.pow(XKE / nm, X2O3) * tempa * tempa;
+        nm = XKE / Math.pow(am, 1.5);
+        em = em - tempe;
+
+        if (em >= 1.0 || em < -0.001) return ERROR_MEAN_ECCENTRICITY;
+        if (em < 1.0e-6) em = 1.0e-6;
+
+        mm = mm + no * templ;
+        double xlm = mm + argpm + nodem;
+        nodem = nodem % TWOPI;
+        argpm = argpm % TWOPI;
+        xlm = xlm % TWOPI;
+        mm = (xlm - argpm - nodem) % TWOPI;
+
+        // compute extra mid-course periodics
+        double ep = em;
+        double xincp = inclm;
+        double argpp = argpm;
+        double nodep = nodem;
+        double mp = mm;
+        double sinip = Math.sin(inclm);
+        double cosip = Math.cos(inclm);
+        double xaycof = aycof, xxlcof = xlcof, xcon41 = con41, xx1mth2 = x1mth2, xx7thm1 = x7thm1;
+
+        if (deepSpace) {
+            // dpper: lunar-solar periodics
+            double zm = zmos + ZNS * t;
+            double zf = zm + 2.0 * ZES * Math.sin(zm);
+            double sinzf = Math.sin(zf);
+            double f2 = 0.5 * sinzf * sinzf - 0.25;
+            double f3 = -0.5 * sinzf * Math.cos(zf);
+            double ses = se2 * f2 + se3 * f3;
+            double sis = si2 * f2 + si3 * f3;
+            double sls = sl2 * f2 + sl3 * f3 + sl4 * sinzf;
+            double sghs = sgh2 * f2 + sgh3 * f3 + sgh4 * sinzf;
+            double shs = sh2 * f2 + sh3 * f3;
+            zm = zmol + ZNL * t;
+            zf = zm + 2.0 * ZEL * Math.sin(zm);
+            sinzf = Math.sin(zf);
+            f2 = 0.5 * sinzf * sinzf - 0.25;
+            f3 = -0.5 * sinzf * Math.cos(zf);
+            double sel = ee2 * f2 + e3 * f3;
+            double sil = xi2 * f2 + xi3 * f3;
+            double sll = xl2 * f2 + xl3 * f3 + xl4 * sinzf;
+            double sghl = xgh2 * f2 + xgh3 * f3 + xgh4 * sinzf;
+            double shll = xh2 * f2 + xh3 * f3;
+            double pe = ses + sel - peo;
+            double pinc = sis + sil - pinco;
+            double pl = sls + sll - plo;
+            double pgh = sghs + sghl - pgho;
+            double ph = shs + shll - pho;
+
+            xincp = xincp + pinc;
+            ep = ep + pe;
+            sinip = Math.sin(xincp);
+            cosip = Math.cos(xincp);
+
+            if (xincp >= 0.2) {
+                // apply periodics directly
+                ph = ph / sinip;
+                pgh = pgh - cosip * ph;
+                argpp = argpp + pgh;
+                nodep = nodep + ph;
+                mp = mp + pl;
+            } else {
+                // apply periodics with lyddane modification
+                double sinop = Math.sin(nodep);
+                double cosop = Math.cos(nodep);
+                double alfdp = sinip * sinop;
+                double betdp = sinip * cosop;
+                double dalf = ph * cosop + pinc * cosip * sinop;
+                double dbet = -ph * sinop + pinc * cosip * cosop;
+                alfdp = alfdp + dalf;
+                betdp = betdp + dbet;
+                nodep = nodep % TWOPI;
+                double xls = mp + argpp + cosip * nodep;
+                double dls = pl + pgh - pinc * nodep * sinip;
+                xls = xls + dls;
+                double xnoh = nodep;
+                nodep = Math.atan2(alfdp, betdp);
+                if (Math.abs(xnoh - nodep) > PI) {
+                    if (nodep < xnoh) nodep = nodep + TWOPI;
+                    else nodep = nodep - TWOPI;
+                }
+                mp = mp + pl;
+                argpp = xls - mp - cosip * nodep;
+            }
+
+            if (xincp < 0.0) {
+                xincp = -xincp;
+                nodep = nodep + PI;
+                argpp = argpp - PI;
+            }
+            if (ep < 0.0 || ep > 1.0) return ERROR_PERTURBED_ECCENTRICITY;
+
+            // long period periodics depend on perturbed inclination
+            sinip = Math.sin(xincp);
+            cosip = Math.cos(xincp);
+            xaycof = -0.5 * J3OJ2 * sinip;
+            if (Math.abs(cosip + 1.0) > 1.5e-12) xxlcof = -0.25 * J3OJ2 * sinip * (3.0 + 5.0 * cosip) / (1.0 + cosip);
+            else xxlcof = -0.25 * J3OJ2 * sinip * (3.0 + 5.0 * cosip) / TEMP4;
+        }
+
+        // long period periodics
+        double axnl = ep * Math.cos(argpp);
+        double temp = 1.0 / (am * (1.0 - ep * ep));
+        double aynl = ep * Math.sin(argpp) + temp * xaycof;
+        double xl = mp + argpp + nodep + temp * xxlcof * axnl;
+
+        // solve kepler's equation
+        double u = (xl - nodep) % TWOPI;
+        double eo1 = u;
+        double tem5 = 9999.9;
+        double sineo1 = 0.0, coseo1 = 0.0;
+        int ktr = 1;
+        while (Math.abs(tem5) >= 1.0e-12 && ktr <= 10) {
+            sineo1 = Math.sin(eo1);
+            coseo1 = Math.cos(eo1);
+            tem5 = 1.0 - coseo1 * axnl - sineo1 * aynl;
+            tem5 = (u - aynl * coseo1 + axnl * sineo1 - eo1) / tem5;
+            if (Math.abs(tem5) >= 0.95) tem5 = tem5 > 0.0 ? 0.95 : -0.95;
+            eo1 = eo1 + tem5;
+            ktr++;
+        }
+
+        // short period preliminary quantities
+        double ecose = axnl * coseo1 + aynl * sineo1;
+        double esine = axnl * sineo1 - aynl * coseo1;
+        double el2 = axnl * axnl + aynl * aynl;
+        double pl = am * (1.0 - el2);
+        if (pl < 0.0) return ERROR_SEMI_LATUS_RECTUM;
+
+        double rl = am * (1.0 - ecose);
+        double rdotl = Math.sqrt(am) * esine / rl;
+        double rvdotl = Math.sqrt(pl) / rl;
+        double betal = Math.sqrt(1.0 - el2);
+        temp = esine / (1.0 + betal);
+        double sinu = am / rl * (sineo1 - aynl - axnl * temp);
+        double cosu = am / rl * (coseo1 - axnl + aynl * temp);
+        double su = Math.atan2(sinu, cosu);
+        double sin2u = (cosu + cosu) * sinu;
+        double cos2u = 1.0 - 2.0 * sinu * sinu;
+        temp = 1.0 / pl;
+        double temp1 = 0.5 * J2 * temp;
+        double temp2 = temp1 * temp;
+
+        if (deepSpace) {
+            double cosisq = cosip * cosip;
+            xcon41 = 3.0 * cosisq - 1.0;
+            xx1mth2 = 1.0 - cosisq;
+            xx7thm1 = 7.0 * cosisq - 1.0;
+        }
+
+        // update for short period periodics
+        double mrt = rl * (1.0 - 1.5 * temp2 * betal * xcon41) + 0.5 * temp1 * xx1mth2 * cos2u;
+        su = su - 0.25 * temp2 * xx7thm1 * sin2u;
+        double xnode = nodep + 1.5 * temp2 * cosip * sin2u;
+        double xinc = xincp + 1.5 * temp2 * cosip * sinip * cos2u;
+        double mvt = rdotl - nm * temp1 * xx1mth2 * sin2u / XKE;
+        double rvdot = rvdotl + nm * temp1 * (xx1mth2 * cos2u + 1.5 * xcon41) / XKE;
+
+        // orientation vectors
+        double sinsu = Math.sin(su);
+        double cossu = Math.cos(su);
+        double snod = Math.sin(xnode);
+        double cnod = Math.cos(xnode);
+        double sini = Math.sin(xinc);
+        double cosi = Math.cos(xinc);
+        double xmx = -snod * cosi;
+        double xmy = cnod * cosi;
+        double ux = xmx * sinsu + cnod * cossu;
+        double uy = xmy * sinsu + snod * cossu;
+        double uz = sini * sinsu;
+        double vx = xmx * cossu - cnod * sinsu;
+        double vy = xmy * cossu - snod * sinsu;
+        double vz = sini * cossu;
+
+        // position and velocity (km and km/s)
+        r[0] = mrt * ux * RADIUS_EARTH_KM;
+        r[1] = mrt * uy * RADIUS_EARTH_KM;
+        r[2] = mrt * uz * RADIUS_EARTH_KM;
+        v[0] = (mvt * ux + rvdot * vx) * VKMPERSEC;
+        v[1] = (mvt * uy + rvdot * vy) * VKMPERSEC;
+        v[2] = (mvt * uz + rvdot * vz) * VKMPERSEC;
+
+        if (mrt < 1.0) return ERROR_DECAYED;
+        return ERROR_NONE;
+    }
+
+    /**
+     * Copy the near earth model constants (see {@link BatchPropagator} layout).
+     * Simplified model platforms get zero higher order drag terms, so the batch kernel does not branch.
+     * @param c output constants, BatchPropagator.COEFFICIENTS elements
+     */
+    void getNearEarthCoefficients(double[] c) {
+        boolean full = !isimp; // note: deep space platforms are not propagated by the batch kernel
+        c[BatchPropagator.MO] = mo;
+        c[BatchPropagator.MDOT] = mdot;
+        c[BatchPropagator.ARGPO] = argpo;
+        c[BatchPropagator.ARGPDOT] = argpdot;
+        c[BatchPropagator.NODEO] = nodeo;
+        c[BatchPropagator.NODEDOT] = nodedot;
+        c[BatchPropagator.NODECF] = nodecf;
+        c[BatchPropagator.CC1] = cc1;
+        c[BatchPropagator.BSTAR_CC4] = bstar * cc4;
+        c[BatchPropagator.T2COF] = t2cof;
+        c[BatchPropagator.OMGCOF] = full ? omgcof : 0.0;
+        c[BatchPropagator.ETA] = eta;
+        c[BatchPropagator.XMCOF] = full ? xmcof : 0.0;
+        c[BatchPropagator.DELMO] = delmo;
+        c[BatchPropagator.D2] = full ? d2 : 0.0;
+        c[BatchPropagator.D3] = full ? d3 : 0.0;
+        c[BatchPropagator.D4] = full ? d4 : 0.0;
+        c[BatchPropagator.BSTAR_CC5] = full ? bstar * cc5 : 0.0;
+        c[BatchPropagator.SINMAO] = sinmao;
+        c[BatchPropagator.T3COF] = full ? t3cof : 0.0;
+        c[BatchPropagator.T4COF] = full ? t4cof : 0.0;
+        c[BatchPropagator.T5COF] = full ? t5cof : 0.0;
+        c[BatchPropagator.NO] = no;
+        c[BatchPropagator.A0] = Math.pow(XKE / no, X2O3);
+        c[BatchPropagator.ECCO] = ecco;
+        c[BatchPropagator.INCLO] = inclo;
+        c[BatchPropagator.SINIO] = Math.sin(inclo);
+        c[BatchPropagator.COSIO] = Math.cos(inclo);
+        c[BatchPropagator.AYCOF] = aycof;
+        c[BatchPropagator.XLCOF] = xlcof;
+        c[BatchPropagator.CON41] = con41;
+        c[BatchPropagator.X1MTH2] = x1mth2;
+        c[BatchPropagator.X7THM1] = x7thm1;
+    }
+
+    // sgp4init: initialize near earth and deep space constants
+    private void init() {
+        bstar = tle.getBstar();
+        ecco = tle.getEccentricity();
+        argpo = tle.getArgPerigee();
+        inclo = tle.getInclination();
+        mo = tle.getMeanAnomaly();
+        no = tle.getMeanMotion();
+        nodeo = tle.getRaan();
+
+        double ss = 78.0 / RADIUS_EARTH_KM + 1.0;
+        double qzms2ttemp = (120.0 - 78.0) / RADIUS_EARTH_KM;
+        double qzms2t = qzms2ttemp * qzms2ttemp * qzms2ttemp * qzms2ttemp;
+
+        // initl: recover original mean motion (brouwer) and semimajor axis
+        double eccsq = ecco * ecco;
+        double omeosq = 1.0 - eccsq;
+        double rteosq = Math.sqrt(omeosq);
+        double cosio = Math.cos(inclo);
+        double cosio2 = cosio * cosio;
+        double ak = Math.pow(XKE / no, X2O3);
+        double d1 = 0.75 * J2 * (3.0 * cosio2 - 1.0) / (rteosq * omeosq);
+        double del = d1 / (ak * ak);
+        double adel = ak * (1.0 - del * del - del * (1.0 / 3.0 + 134.0 * del * del / 81.0));
+        del = d1 / (adel * adel);
+        no = no / (1.0 + del);
+        double ao = Math.pow(XKE / no, X2O3);
+        double sinio = Math.sin(inclo);
+        double po = ao * omeosq;
+        double con42 = 1.0 - 5.0 * cosio2;
+        con41 = -con42 - cosio2 - cosio2;
+        double posq = po * po;
+        double rp = ao * (1.0 - ecco);
+        gsto = Coordinates.gmst(epoch + 2433281.5);
+
+        if (omeosq < 0.0 && no < 0.0) return; // note: propagation at epoch reports the error
+
+        isimp = rp < (220.0 / RADIUS_EARTH_KM + 1.0);
+
+        // for perigees below 156 km, s and qoms2t are altered
+        double sfour = ss;
+        double qzms24 = qzms2t;
+        double perige = (rp - 1.0) * RADIUS_EARTH_KM;
+        if (perige < 156.0) {
+            sfour = perige - 78.0;
+            if (perige < 98.0) sfour = 20.0;
+            double qzms24temp = (120.0 - sfour) / RADIUS_EARTH_KM;
+            qzms24 = qzms24temp * qzms24temp * qzms24temp * qzms24temp;
+            sfour = sfour / RADIUS_EARTH_KM + 1.0;
+        }
+        double pinvsq = 1.0 / posq;
+
+        double tsi = 1.0 / (ao - sfour);
+        eta = ao * ecco * tsi;
+        double etasq = eta * eta;
+        double eeta = ecco * eta;
+        double psisq = Math.abs(1.0 - etasq);
+        double coef = qzms24 * Math.pow(tsi, 4.0);
+        double coef1 = coef / Math.pow(psisq, 3.5);
+        double cc2 = coef1 * no * (ao * (1.0 + 1.5 * etasq + eeta * (4.0 + etasq))
+                + 0.375 * J2 * tsi / psisq * con41 * (8.0 + 3.0 * etasq * (8.0 + etasq)));
+        cc1 = bstar * cc2;
+        double cc3 = 0.0;
+        if (ecco > 1.0e-4) cc3 = -2.0 * coef * tsi * J3OJ2 * no * sinio / ecco;
+        x1mth2 = 1.0 - cosio2;
+        cc4 = 2.0 * no * coef1 * ao * omeosq * (eta * (2.0 + 0.5 * etasq) + ecco * (0.5 + 2.0 * etasq)
+                - J2 * tsi / (ao * psisq) * (-3.0 * con41 * (1.0 - 2.0 * eeta + etasq * (1.5 - 0.5 * eeta))
+                + 0.75 * x1mth2 * (2.0 * etasq - eeta * (1.0 + etasq)) * Math.cos(2.0 * argpo)));
+        cc5 = 2.0 * coef1 * ao * omeosq * (1.0 + 2.75 * (etasq + eeta) + eeta * etasq);
+        double cosio4 = cosio2 * cosio2;
+        double temp1 = 1.5 * J2 * pinvsq * no;
+        double temp2 = 0.5 * temp1 * J2 * pinvsq;
+        double temp3 = -0.46875 * J4 * pinvsq * pinvsq * no;
+        mdot = no + 0.5 * temp1 * rteosq * con41 + 0.0625 * temp2 * rteosq * (13.0 - 78.0 * cosio2 + 137.0 * cosio4);
+        argpdot = -0.5 * temp1 * con42 + 0.0625 * temp2 * (7.0 - 114.0 * cosio2 + 395.0 * cosio4)
+                + temp3 * (3.0 - 36.0 * cosio2 + 49.0 * cosio4);
+        double xhdot1 = -temp1 * cosio;
+        nodedot = xhdot1 + (0.5 * temp2 * (4.0 - 19.0 * cosio2) + 2.0 * temp3 * (3.0 - 7.0 * cosio2)) * cosio;
+        double xpidot = argpdot + nodedot;
+        omgcof = bstar * cc3 * Math.cos(argpo);
+        xmcof = 0.0;
+        if (ecco > 1.0e-4) xmcof = -X2O3 * coef * bstar / eeta;
+        nodecf = 3.5 * omeosq * xhdot1 * cc1;
+        t2cof = 1.5 * cc1;
+        if (Math.abs(cosio + 1.0) > 1.5e-12) xlcof = -0.25 * J3OJ2 * sinio * (3.0 + 5.0 * cosio) / (1.0 + cosio);
+        else xlcof = -0.25 * J3OJ2 * sinio * (3.0 + 5.0 * cosio) / TEMP4;
+        aycof = -0.5 * J3OJ2 * sinio;
+        double delmotemp = 1.0 + eta * Math.cos(mo);
+        delmo = delmotemp * delmotemp * delmotemp;
+        sinmao = Math.sin(mo);
+        x7thm1 = 7.0 * cosio2 - 1.0;
+
+        // deep space initialization
+        if ((TWOPI / no) >= 225.0) {
+            deepSpace = true;
+            isimp = true;
+            dscom(0.0);
+            dsinit(0.0, eccsq, xpidot);
+        }
+
+        // set variables if not deep space
+        if (!isimp) {
+            double cc1sq = cc1 * cc1;
+            d2 = 4.0 * ao * tsi * cc1sq;
+            double temp = d2 * tsi * cc1 / 3.0;
+            d3 = (17.0 * ao + sfour) * temp;
+            d4 = 0.5 * temp * ao * tsi * (221.0 * ao + 31.0 * sfour) * cc1;
+            t3cof = d2 + 2.0 * cc1sq;
+            t4cof = 0.25 * (3.0 * d3 + cc1 * (12.0 * d2 + 10.0 * cc1sq));
+            t5cof = 0.2 * (3.0 * d4 + 12.0 * cc1 * d3 + 6.0 * d2 * d2 + 15.0 * cc1sq * (2.0 * d2 + cc1sq));
+        }
+    }
+
+    // dscom: deep space common items (lunar and solar terms)
+    private void dscom(double tc) {
+        final double c1ss = 2.9864797e-6, c1l = 4.7968065e-7, zsinis = 0.39785416, zcosis = 0.91744867,
+                zcosgs = 0.1945905, zsings = -0.98088458;
+
+        nmInit = no;
+        emInit = ecco;
+        double snodm = Math.sin(nodeo);
+        double cnodm = Math.cos(nodeo);
+        double sinomm = Math.sin(argpo);
+        double cosomm = Math.cos(argpo);
+        sinim = Math.sin(inclo);
+        cosim = Math.cos(inclo);
+        emsq = emInit * emInit;
+        double betasq = 1.0 - emsq;
+        double rtemsq = Math.sqrt(betasq);
+
+        // initialize lunar solar terms
+        peo = 0.0;
+        pinco = 0.0;
+        plo = 0.0;
+        pgho = 0.0;
+        pho = 0.0;
+        double day = epoch + 18261.5 + tc / 1440.0;
+        double xnodce = (4.5236020 - 9.2422029e-4 * day) % TWOPI;
+        double stem = Math.sin(xnodce);
+        double ctem = Math.cos(xnodce);
+        double zcosil = 0.91375164 - 0.03568096 * ctem;
+        double zsinil = Math.sqrt(1.0 - zcosil * zcosil);
+        double zsinhl = 0.089683511 * stem / zsinil;
+        double zcoshl = Math.sqrt(1.0 - zsinhl * zsinhl);
+        double gam = 5.8351514 + 0.0019443680 * day;
+        double zx = 0.39785416 * stem / zsinil;
+        double zy = zcoshl * ctem + 0.91744867 * zsinhl * stem;
+        zx = Math.atan2(zx, zy);
+        zx = gam + zx - xnodce;
+        double zcosgl = Math.cos(zx);
+        double zsingl = Math.sin(zx);
+
+        // do solar terms
+        double zcosg = zcosgs;
+        double zsing = zsings;
+        double zcosi = zcosis;
+        double zsini = zsinis;
+        double zcosh = cnodm;
+        double zsinh = snodm;
+        double cc = c1ss;
+        double xnoi = 1.0 / nmInit;
+
+        double s6 = 0, s7 = 0, z2 = 0, z12 = 0, z22 = 0, z32 = 0;
+        double ss6 = 0, ss7 = 0, sz2 = 0, sz12 = 0, sz22 = 0, sz32 = 0;
+
+        for (int lsflg = 1; lsflg <= 2; lsflg++) {
+            double a1 = zcosg * zcosh + zsing * zcosi * zsinh;
+            double a3 = -zsing * zcosh + zcosg * zcosi * zsinh;
+            double a7 = -zcosg * zsinh + zsing * zcosi * zcosh;
+            double a8 = zsing * zsini;
+            double a9 = zsing * zsinh + zcosg * zcosi * zcosh;
+            double a10 = zcosg * zsini;
+            double a2 = cosim * a7 + sinim * a8;
+            double a4 = cosim * a9 + sinim * a10;
+            double a5 = -sinim * a7 + cosim * a8;
+            double a6 = -sinim * a9 + cosim * a10;
+
+            double x1 = a1 * cosomm + a2 * sinomm;
+            double x2 = a3 * cosomm + a4 * sinomm;
+            double x3 = -a1 * sinomm + a2 * cosomm;
+            double x4 = -a3 * sinomm + a4 * cosomm;
+            double x5 = a5 * sinomm;
+            double x6 = a6 * sinomm;
+            double x7 = a5 * cosomm;
+            double x8 = a6 * cosomm;
+
+            z31 = 12.0 * x1 * x1 - 3.0 * x3 * x3;
+            z32 = 24.0 * x1 * x2 - 6.0 * x3 * x4;
+            z33 = 12.0 * x2 * x2 - 3.0 * x4 * x4;
+            z1 = 3.0 * (a1 * a1 + a2 * a2) + z31 * emsq;
+            z2 = 6.0 * (a1 * a3 + a2 * a4) + z32 * emsq;
+            z3 = 3.0 * (a3 * a3 + a4 * a4) + z33 * emsq;
+            z11 = -6.0 * a1 * a5 + emsq * (-24.0 * x1 * x7 - 6.0 * x3 * x5);
+            z12 = -6.0 * (a1 * a6 + a3 * a5) + emsq * (-24.0 * (x2 * x7 + x1 * x8) - 6.0 * (x3 * x6 + x4 * x5));
+            z13 = -6.0 * a3 * a6 + emsq * (-24.0 * x2 * x8 - 6.0 * x4 * x6);
+            z21 = 6.0 * a2 * a5 + emsq * (24.0 * x1 * x5 - 6.0 * x3 * x7);
+            z22 = 6.0 * (a4 * a5 + a2 * a6) + emsq * (24.0 * (x2 * x5 + x1 * x6) - 6.0 * (x4 * x7 + x3 * x8));
+            z23 = 6.0 * a4 * a6 + emsq * (24.0 * x2 * x6 - 6.0 * x4 * x8);
+            z1 = z1 + z1 + betasq * z31;
+            z2 = z2 + z2 + betasq * z32;
+            z3 = z3 + z3 + betasq * z33;
+            s3 = cc * xnoi;
+            s2 = -0.5 * s3 / rtemsq;
+            s4 = s3 * rtemsq;
+            s1 = -15.0 * emInit * s4;
+            s5 = x1 * x3 + x2 * x4;
+            s6 = x2 * x3 + x1 * x4;
+            s7 = x2 * x4 - x1 * x3;
+
+            // do lunar terms
+            if (1 == lsflg) {
+                ss1 = s1;
+                ss2 = s2;
+                ss3 = s3;
+                ss4 = s4;
+                ss5 = s5;
+                ss6 = s6;
+                ss7 = s7;
+                sz1 = z1;
+                sz2 = z2;
+                sz3 = z3;
+                sz11 = z11;
+                sz12 = z12;
+                sz13 = z13;
+                sz21 = z21;
+                sz22 = z22;
+                sz23 = z23;
+                sz31 = z31;
+                sz32 = z32;
+                sz33 = z33;
+                zcosg = zcosgl;
+                zsing = zsingl;
+                zcosi = zcosil;
+                zsini = zsinil;
+                zcosh = zcoshl * cnodm + zsinhl * snodm;
+                zsinh = snodm * zcoshl - cnodm * zsinhl;
+                cc = c1l;
+            }
+        }
+
+        zmol = (4.7199672 + 0.22997150 * day - gam) % TWOPI;
+        zmos = (6.2565837 + 0.017201977 * day) % TWOPI;
+
+        // do solar terms
+        se2 = 2.0 * ss1 * ss6;
+        se3 = 2.0 * ss1 * ss7;
+        si2 = 2.0 * ss2 * sz12;
+        si3 = 2.0 * ss2 * (sz13 - sz11);
+        sl2 = -2.0 * ss3 * sz2;
+        sl3 = -2.0 * ss3 * (sz3 - sz1);
+        sl4 = -2.0 * ss3 * (-21.0 - 9.0 * emsq) * ZES;
+        sgh2 = 2.0 * ss4 * sz32;
+        sgh3 = 2.0 * ss4 * (sz33 - sz31);
+        sgh4 = -18.0 * ss4 * ZES;
+        sh2 = -2.0 * ss2 * sz22;
+        sh3 = -2.0 * ss2 * (sz23 - sz21);
+
+        // do lunar terms
+        ee2 = 2.0 * s1 * s6;
+        e3 = 2.0 * s1 * s7;
+        xi2 = 2.0 * s2 * z12;
+        xi3 = 2.0 * s2 * (z13 - z11);
+        xl2 = -2.0 * s3 * z2;
+        xl3 = -2.0 * s3 * (z3 - z1);
+        xl4 = -2.0 * s3 * (-21.0 - 9.0 * emsq) * ZEL;
+        xgh2 = 2.0 * s4 * z32;
+        xgh3 = 2.0 * s4 * (z33 - z31);
+        xgh4 = -18.0 * s4 * ZEL;
+        xh2 = -2.0 * s2 * z22;
+        xh3 = -2.0 * s2 * (z23 - z21);
+    }
+
+    // dsinit: deep space secular rates and resonance terms
+    private void dsinit(double tc, double eccsq, double xpidot) {
+        final double q22 = 1.7891679e-6, q31 = 2.1460748e-6, q33 = 2.2123015e-7, root22 = 1.7891679e-6,
+                root44 = 7.3636953e-9, root54 = 2.1765803e-9, root32 = 3.7393792e-7, root52 = 1.1428639e-7;
+
+        double nm = nmInit;
+        double em = emInit;
+        double inclm = inclo;
+
+        // deep space initialization
+        irez = 0;
+        if (nm < 0.0052359877 && nm > 0.0034906585) irez = 1;
+        if (nm >= 8.26e-3 && nm <= 9.24e-3 && em >= 0.5) irez = 2;
+
+        // do solar terms
+        double ses = ss1 * ZNS * ss5;
+        double sis = ss2 * ZNS * (sz11 + sz13);
+        double sls = -ZNS * ss3 * (sz1 + sz3 - 14.0 - 6.0 * emsq);
+        double sghs = ss4 * ZNS * (sz31 + sz33 - 6.0);
+        double shs = -ZNS * ss2 * (sz21 + sz23);
+        if (inclm < 5.2359877e-2 || inclm > PI - 5.2359877e-2) shs = 0.0;
+        if (0.0 != sinim) shs = shs / sinim;
+        double sgs = sghs - cosim * shs;
+
+        // do lunar terms
+        dedt = ses + s1 * ZNL * s5;
+        didt = sis + s2 * ZNL * (z11 + z13);
+        dmdt = sls - ZNL * s3 * (z1 + z3 - 14.0 - 6.0 * emsq);
+        double sghl = s4 * ZNL * (z31 + z33 - 6.0);
+        double shll = -ZNL * s2 * (z21 + z23);
+        if (inclm < 5.2359877e-2 || inclm > PI - 5.2359877e-2) shll = 0.0;
+        domdt = sgs + sghl;
+        dnodt = shs;
+        if (0.0 != sinim) {
+            domdt = domdt - cosim / sinim * shll;
+            dnodt = dnodt + shll / sinim;
+        }
+
+        // calculate deep space resonance effects
+        double theta = (gsto + tc * RPTIM) % TWOPI;
+
+        // initialize the resonance terms
+        if (0 != irez) {
+            double aonv = Math.pow(nm / XKE, X2O3);
+
+            // geopotential resonance for 12 hour orbits
+            if (2 == irez) {
+                double cosisq = cosim * cosim;
+                em = ecco;
+                double emsqr = eccsq;
+                double eoc = em * emsqr;
+                double g201 = -0.306 - (em - 0.64) * 0.440;
+                double g211, g310, g322, g410, g422, g520, g533, g521, g532;
+                if (em <= 0.65) {
+                    g211 = 3.616 - 13.2470 * em + 16.2900 * emsqr;
+                    g310 = -19.302 + 117.3900 * em - 228.4190 * emsqr + 156.5910 * eoc;
+                    g322 = -18.9068 + 109.7927 * em - 214.6334 * emsqr + 146.5816 * eoc;
+                    g410 = -41.122 + 242.6940 * em - 471.0940 * emsqr + 313.9530 * eoc;
+                    g422 = -146.407 + 841.8800 * em - 1629.014 * emsqr + 1083.4350 * eoc;
+                    g520 = -532.114 + 3017.977 * em - 5740.032 * emsqr + 3708.2760 * eoc;
+                } else {
+                    g211 = -72.099 + 331.819 * em - 508.738 * emsqr + 266.724 * eoc;
+                    g310 = -346.844 + 1582.851 * em - 2415.925 * emsqr + 1246.113 * eoc;
+                    g322 = -342.585 + 1554.908 * em - 2366.899 * emsqr + 1215.972 * eoc;
+                    g410 = -1052.797 + 4758.686 * em - 7193.992 * emsqr + 3651.957 * eoc;
+                    g422 = -3581.690 + 16178.110 * em - 24462.770 * emsqr + 12422.520 * eoc;
+                    if (em > 0.715) g520 = -5149.66 + 29936.92 * em - 54087.36 * emsqr + 31324.56 * eoc;
+                    else g520 = 1464.74 - 4664.75 * em + 3763.64 * emsqr;
+                }
+                if (em < 0.7) {
+                    g533 = -919.22770 + 4988.6100 * em - 9064.7700 * emsqr + 5542.21 * eoc;
+                    g521 = -822.71072 + 4568.6173 * em - 8491.4146 * emsqr + 5337.524 * eoc;
+                    g532 = -853.66600 + 4690.2500 * em - 8624.7700 * emsqr + 5341.4 * eoc;
+                } else {
+                    g533 = -37995.780 + 161616.52 * em - 229838.20 * emsqr + 109377.94 * eoc;
+                    g521 = -51752.104 + 218913.95 * em - 309468.16 * emsqr + 146349.42 * eoc;
+                    g532 = -40023.880 + 170470.89 * em - 242699.48 * emsqr + 115605.82 * eoc;
+                }
+
+                double sini2 = sinim * sinim;
+                double f220 = 0.75 * (1.0 + 2.0 * cosim + cosisq);
+                double f221 = 1.5 * sini2;
+                double f321 = 1.875 * sinim * (1.0 - 2.0 * cosim - 3.0 * cosisq);
+                double f322 = -1.875 * sinim * (1.0 + 2.0 * cosim - 3.0 * cosisq);
+                double f441 = 35.0 * sini2 * f220;
+                double f442 = 39.3750 * sini2 * sini2;
+                double f522 = 9.84375 * sinim * (sini2 * (1.0 - 2.0 * cosim - 5.0 * cosisq)
+                        + 0.33333333 * (-2.0 + 4.0 * cosim + 6.0 * cosisq));
+                double f523 = sinim * (4.92187512 * sini2 * (-2.0 - 4.0 * cosim + 10.0 * cosisq)
+                        + 6.56250012 * (1.0 + 2.0 * cosim - 3.0 * cosisq));
+                double f542 = 29.53125 * sinim * (2.0 - 8.0 * cosim + cosisq * (-12.0 + 8.0 * cosim + 10.0 * cosisq));
+                double f543 = 29.53125 * sinim * (-2.0 - 8.0 * cosim + cosisq * (12.0 + 8.0 * cosim - 10.0 * cosisq));
+                double xno2 = nm * nm;
+                double ainv2 = aonv * aonv;
+                double temp1 = 3.0 * xno2 * ainv2;
+                double temp = temp1 * root22;
+                d2201 = temp * f220 * g201;
+                d2211 = temp * f221 * g211;
+                temp1 = temp1 * aonv;
+                temp = temp1 * root32;
+                d3210 = temp * f321 * g310;
+                d3222 = temp * f322 * g322;
+                temp1 = temp1 * aonv;
+                temp = 2.0 * temp1 * root44;
+                d4410 = temp * f441 * g410;
+                d4422 = temp * f442 * g422;
+                temp1 = temp1 * aonv;
+                temp = temp1 * root52;
+                d5220 = temp * f522 * g520;
+                d5232 = temp * f523 * g532;
+                temp = 2.0 * temp1 * root54;
+                d5421 = temp * f542 * g521;
+                d5433 = temp * f543 * g533;
+                xlamo = (mo + nodeo + nodeo - theta - theta) % TWOPI;
+                xfact = mdot + dmdt + 2.0 * (nodedot + dnodt - RPTIM) - no;
+            }
+
+            // synchronous resonance terms
+            if (1 == irez) {
+                double g200 = 1.0 + emsq * (-2.5 + 0.8125 * emsq);
+                double g310 = 1.0 + 2.0 * emsq;
+                double g300 = 1.0 + emsq * (-6.0 + 6.60937 * emsq);
+                double f220 = 0.75 * (1.0 + cosim) * (1.0 + cosim);
+                double f311 = 0.9375 * sinim * sinim * (1.0 + 3.0 * cosim) - 0.75 * (1.0 + cosim);
+                double f330 = 1.0 + cosim;
+                f330 = 1.875 * f330 * f330 * f330;
+                del1 = 3.0 * nm * nm * aonv * aonv;
+                del2 = 2.0 * del1 * f220 * g200 * q22;
+                del3 = 3.0 * del1 * f330 * g300 * q33 * aonv;
+                del1 = del1 * f311 * g310 * q31 * aonv;
+                xlamo = (mo + nodeo + argpo - theta) % TWOPI;
+                xfact = mdot + xpidot - RPTIM + dmdt + domdt + dnodt - no;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.orbit;
+
+/**
+ * Solar ephemeris and earth shadow utilities.
+ * Sun position is the low precision model of the Astronomical Almanac (about 0.01 degrees, 1950 to 2050),
+ * given in the true equator mean equinox frame of the propagator (the difference with the mean of date frame is negligible here).
+ * Earth shadow is a conical umbra/penumbra model (spherical earth), so illumination is a fraction of the solar disk.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public final class SolarEphemeris {
+
+    public static final double AU = 149597870.7; // astronomical unit (km)
+    public static final double SUN_RADIUS = 696000.0; // km
+
+    // illumination states (see state)
+    public static final int UMBRA = 0;
+    public static final int PENUMBRA = 1;
+    public static final int SUNLIT = 2;
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+
+    private SolarEphemeris() {}
+
+    /**
+     * Compute the sun position.
+     * @param timeMillis utc time (milliseconds since 1970-01-01)
+     * @param teme output position (km, TEME frame)
+     */
+    public static void sunPosition(long timeMillis, double[] teme) {
+        double t = (Coordinates.julianDate(timeMillis) - 2451545.0) / 36525.0; // julian centuries (note: ut1 ~ tdb here)
+        double meanLongitude = (280.460 + 36000.771 * t) * DEG2RAD;
+        double meanAnomaly = (357.5291092 + 35999.05034 * t) * DEG2RAD;
+        double longitude = meanLongitude + (1.914666471 * Math.sin(meanAnomaly) + 0.019994643 * Math.sin(2.0 * meanAnomaly)) * DEG2RAD; // ecliptic
+        double obliquity = (23.439291 - 0.0130042 * t) * DEG2RAD;
+        double distance = (1.000140612 - 0.016708617 * Math.cos(meanAnomaly) - 0.000139589 * Math.cos(2.0 * meanAnomaly)) * AU;
+        double sinLongitude = Math.sin(longitude);
+        teme[0] = distance * Math.cos(longitude);
+        teme[1] = distance * Math.cos(obliquity) * sinLongitude;
+        teme[2] = distance * Math.sin(obliquity) * sinLongitude;
+    }
+
+    /**
+     * Compute the illuminated fraction of the solar disk seen from a satellite (conical earth shadow).
+     * Both positions must be in the same frame (e.g. TEME, or earth fixed).
+     * @param sat satellite position (km)
+     * @param sun sun position (km)
+     * @return 1 sunlit, 0 umbra, in between penumbra (or annular eclipse)
+     */
+    public static double illumination(double[] sat, double[] sun) {
+        double sx = sun[0] - sat[0], sy = sun[1] - sat[1], sz = sun[2] - sat[2];
+        double sunDistance = Math.sqrt(sx * sx + sy * sy + sz * sz);
+        double earthDistance = Math.sqrt(sat[0] * sat[0] + sat[1] * sat[1] + sat[2] * sat[2]);
+        // note: cheap test first, satellites on the day side of the terminator plane are sunlit
+        double dot = -(sat[0] * sx + sat[1] * sy + sat[2] * sz); // earth direction . sun direction (scaled)
+        if (dot <= 0.0) return 1.0;
+        double a = Math.asin(Math.min(1.0, SUN_RADIUS / sunDistance)); // apparent sun radius
+        if (earthDistance <= Coordinates.WGS84_A) return 0.0; // note: under the surface (decayed)
+        double b = Math.asin(Coordinates.WGS84_A / earthDistance); // apparent earth radius
+        double c = Math.acos(Math.min(1.0, dot / (sunDistance * earthDistance))); // apparent separation
+        if (c >= a + b) return 1.0;
+        if (c <= b - a) return 0.0;
+        if (c <= a - b) return 1.0 - (b * b) / (a * a); // note: earth inside the solar disk (not for earth orbits)
+        // partial overlap of two disks
+        double x = (c * c + a * a - b * b) / (2.0 * c);
+        double y = Math.sqrt(Math.max(0.0, a * a - x * x));
+        double area = a * a * Math.acos(Math.max(-1.0, Math.min(1.0, x / a))) + b * b * Math.acos(Math.max(-1.0, Math.min(1.0, (c - x) / b))) - c * y;
+        return 1.0 - area / (Math.PI * a * a);
+    }
+
+    /**
+     * Get the illumination state for an illuminated fraction.
+     * @param illumination illuminated fraction (see illumination)
+     * @return UMBRA, PENUMBRA or SUNLIT
+     */
+    public static int state(double illumination) {
+        if (illumination <= 0.0) return UMBRA;
+        return (illumination >= 1.0) ? SUNLIT : PENUMBRA;
+    }
+
+}
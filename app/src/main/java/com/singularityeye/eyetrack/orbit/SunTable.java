@@ -0,0 +1,193 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.orbit;
+
+import java.util.Arrays;
+
+/**
+ * Sun table model.
+ * Sun positions (TEME) and sun elevations over an observer (twilight) on a fixed time grid, computed once
+ * and shared by every satellite of a batch (eclipse tests need the sun vector of each time step only).
+ * Between grid times values are interpolated linearly (the sun vector turns about 0.04 arc seconds per second in TEME).
+ * Note: immutable, it can be used from any thread.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class SunTable {
+
+    // twilight sun elevations (decimal degrees)
+    public static final double SUNSET = -0.833; // upper limb on the horizon (refraction)
+    public static final double CIVIL_TWILIGHT = -6.0;
+    public static final double NAUTICAL_TWILIGHT = -12.0;
+    public static final double ASTRONOMICAL_TWILIGHT = -18.0;
+
+    private final Observer observer;
+    private final long start; // utc time of first grid time (milliseconds since 1970-01-01)
+    private final long step; // milliseconds
+    private final int count; // grid times
+    private final double[] x, y, z; // sun positions (km, TEME)
+    private final double[] elevations; // sun elevations over the observer (decimal degrees)
+
+    /**
+     * Constructor method for a sun table.
+     * @param observer ground observer
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01), the last grid time is at or after it
+     * @param step grid step (milliseconds)
+     */
+    public SunTable(Observer observer, long start, long end, long step) {
+        if (step <= 0) throw new IllegalArgumentException("step " + step);
+        this.observer = observer;
+        this.start = start;
+        this.step = step;
+        this.count = (int) ((Math.max(start, end) - start + step - 1) / step) + 1;
+        this.x = new double[count];
+        this.y = new double[count];
+        this.z = new double[count];
+        this.elevations = new double[count];
+        double[] sun = new double[3], ecef = new double[3];
+        for (int i = 0; i < count; i++) {
+            long t = start + i * step;
+            SolarEphemeris.sunPosition(t, sun);
+            x[i] = sun[0];
+            y[i] = sun[1];
+            z[i] = sun[2];
+            Coordinates.temeToEcef(sun, Coordinates.gmst(t), ecef);
+            elevations[i] = observer.elevation(ecef); // note: no parallax correction needed at 1 AU
+        }
+    }
+
+    /**
+     * Get the ground observer.
+     * @return ground observer
+     */
+    public Observer getObserver() {
+        return observer;
+    }
+
+    /**
+     * Get the number of grid times.
+     * @return grid times
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the grid step.
+     * @return milliseconds
+     */
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Get a grid time.
+     * @param i grid index
+     * @return utc time (milliseconds since 1970-01-01)
+     */
+    public long getTime(int i) {
+        return start + i * step;
+    }
+
+    /**
+     * Get the last grid index at or before a time (clamped to the grid).
+     * @param time utc time (milliseconds since 1970-01-01)
+     * @return grid index
+     */
+    public int index(long time) {
+        if (time <= start) return 0;
+        return (int) Math.min(count - 1, (time - start) / step);
+    }
+
+    /**
+     * Get the sun position at a grid time.
+     * @param i grid index
+     * @param teme output position (km, TEME frame)
+     */
+    public void getSun(int i, double[] teme) {
+        teme[0] = x[i];
+        teme[1] = y[i];
+        teme[2] = z[i];
+    }
+
+    /**
+     * Get the sun position at any time of the grid range (linear interpolation).
+     * @param time utc time (milliseconds since 1970-01-01)
+     * @param teme output position (km, TEME frame)
+     */
+    public void getSun(long time, double[] teme) {
+        int i = Math.min(index(time), count - 2);
+        if (i < 0) {
+            getSun(0, teme); // note: single grid time
+            return;
+        }
+        double f = (time - getTime(i)) / (double) step;
+        teme[0] = x[i] + f * (x[i + 1] - x[i]);
+        teme[1] = y[i] + f * (y[i + 1] - y[i]);
+        teme[2] = z[i] + f * (z[i + 1] - z[i]);
+    }
+
+    /**
+     * Get the sun elevation over the observer at a grid time.
+     * @param i grid index
+     * @return decimal degrees
+     */
+    public double getSunElevation(int i) {
+        return elevations[i];
+    }
+
+    /**
+     * Get the sun elevation over the observer at any time of the grid range (linear interpolation).
+     * @param time utc time (milliseconds since 1970-01-01)
+     * @return decimal degrees
+     */
+    public double getSunElevation(long time) {
+        int i = Math.min(index(time), count - 2);
+        if (i < 0) return elevations[0];
+        double f = (time - getTime(i)) / (double) step;
+        return elevations[i] + f * (elevations[i + 1] - elevations[i]);
+    }
+
+    /**
+     * Get the dark windows of the observer: sun under a twilight elevation.
+     * Window bounds are grid times (a window starts at the first dark grid time and ends at the last one).
+     * @param twilight sun elevation (decimal degrees), e.g. CIVIL_TWILIGHT
+     * @return start and end utc times (milliseconds since 1970-01-01), in pairs
+     */
+    public long[] getDarkness(double twilight) {
+        long[] windows = new long[8];
+        int n = 0;
+        int first = -1;
+        for (int i = 0; i <= count; i++) {
+            boolean dark = i < count && elevations[i] <= twilight;
+            if (dark && -1 == first) first = i;
+            if (dark || -1 == first) continue;
+            if (n == windows.length) windows = Arrays.copyOf(windows, 2 * n);
+            windows[n++] = getTime(first);
+            windows[n++] = getTime(i - 1);
+            first = -1;
+        }
+        return Arrays.copyOf(windows, n);
+    }
+
+}
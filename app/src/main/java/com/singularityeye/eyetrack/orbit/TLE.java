@@ -0,0 +1,251 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import java.io.Serializable;
+
+/**
+ * Two-line element set (TLE) model.
+ * This class holds the mean orbital elements of a satellite as published by NORAD.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class TLE implements Serializable {
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double MINUTES_PER_DAY = 1440.0;
+    private static final double JD_UNIX_EPOCH = 2440587.5; // julian date for 1970-01-01 00:00 utc
+
+    private final String name; // platform name (line 0), could be null
+    private final String line1, line2; // raw element lines
+    private final int NORAD_ID; // catalog number
+    private final double epochJD; // julian date (utc)
+    private final double bstar; // drag term (1/earth radii)
+    private final double inclination; // radians
+    private final double raan; // right ascension of ascending node (radians)
+    private final double eccentricity;
+    private final double argPerigee; // radians
+    private final double meanAnomaly; // radians
+    private final double meanMotion; // radians per minute
+
+    private TLE(String name, String line1, String line2) {
+        this.name = (null == name) ? null : name.trim();
+        this.line1 = line1;
+        this.line2 = line2;
+
+        this.NORAD_ID = Integer.parseInt(line1.substring(2, 7).trim());
+
+        // epoch: two digits year (57-99 -> 19xx) and fractional day of year
+        int year = Integer.parseInt(line1.substring(18, 20).trim());
+        year += (year < 57) ? 2000 : 1900;
+        double day = Double.parseDouble(line1.substring(20, 32).trim());
+        this.epochJD = julianDateJan0(year) + day;
+
+        this.bstar = parseAssumedDecimal(line1.substring(53, 61));
+
+        this.inclination = Double.parseDouble(line2.substring(8, 16).trim()) * DEG2RAD;
+        this.raan = Double.parseDouble(line2.substring(17, 25).trim()) * DEG2RAD;
+        this.eccentricity = Double.parseDouble("0." + line2.substring(26, 33).trim());
+        this.argPerigee = Double.parseDouble(line2.substring(34, 42).trim()) * DEG2RAD;
+        this.meanAnomaly = Double.parseDouble(line2.substring(43, 51).trim()) * DEG2RAD;
+        this.meanMotion = Double.parseDouble(line2.substring(52, 63).trim()) * 2.0 * Math.PI / MINUTES_PER_DAY; // rev/day -> rad/min
+    }
+
+    /**
+     * Parse a two-line element set.
+     * Checksums are verified when present.
+     * @param name platform name (line 0), could be null
+     * @param line1 first element line
+     * @param line2 second element line
+     * @return parsed element set
+     * @throws IllegalArgumentException if lines are malformed
+     */
+    public static TLE parse(String name, String line1, String line2) {
+        if (null == line1 || null == line2) throw new IllegalArgumentException("Missing element lines");
+        line1 = trimRight(line1);
+        line2 = trimRight(line2);
+        if (line1.length() < 64 || line2.length() < 63 || '1' != line1.charAt(0) || '2' != line2.charAt(0)) {
+            throw new IllegalArgumentException("Malformed element lines");
+        }
+        if (!checksum(line1) || !checksum(line2)) throw new IllegalArgumentException("Element lines checksum mismatch");
+        try {
+            return new TLE(name, line1, line2);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed element lines: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get minutes elapsed from element set epoch to given time.
+     * @param timeMillis utc time (milliseconds since 1970-01-01)
+     * @return minutes since epoch (negative before epoch)
+     */
+    public double minutesSinceEpoch(long timeMillis) {
+        return (JD_UNIX_EPOCH + timeMillis / 86400000.0 - epochJD) * MINUTES_PER_DAY;
+    }
+
+    /**
+     * Get the platform name (line 0).
+     * @return string that holds the name of the satellite, could be null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the first element line.
+     * @return string that holds the first element line
+     */
+    public String getLine1() {
+        return line1;
+    }
+
+    /**
+     * Get the second element line.
+     * @return string that holds the second element line
+     */
+    public String getLine2() {
+        return line2;
+    }
+
+    /**
+     * Get the unique identifier for the satellite.
+     * @return NORAD catalog number
+     */
+    public int getNORAD_ID() {
+        return NORAD_ID;
+    }
+
+    /**
+     * Get the element set epoch.
+     * @return julian date (utc)
+     */
+    public double getEpochJD() {
+        return epochJD;
+    }
+
+    /**
+     * Get the element set epoch.
+     * @return utc time (milliseconds since 1970-01-01)
+     */
+    public long getEpochMillis() {
+        return Math.round((epochJD - JD_UNIX_EPOCH) * 86400000.0);
+    }
+
+    /**
+     * Get the drag term.
+     * @return bstar (1/earth radii)
+     */
+    public double getBstar() {
+        return bstar;
+    }
+
+    /**
+     * Get the inclination.
+     * @return radians
+     */
+    public double getInclination() {
+        return inclination;
+    }
+
+    /**
+     * Get the right ascension of the ascending node.
+     * @return radians
+     */
+    public double getRaan() {
+        return raan;
+    }
+
+    /**
+     * Get the eccentricity.
+     * @return eccentricity
+     */
+    public double getEccentricity() {
+        return eccentricity;
+    }
+
+    /**
+     * Get the argument of perigee.
+     * @return radians
+     */
+    public double getArgPerigee() {
+        return argPerigee;
+    }
+
+    /**
+     * Get the mean anomaly.
+     * @return radians
+     */
+    public double getMeanAnomaly() {
+        return meanAnomaly;
+    }
+
+    /**
+     * Get the (kozai) mean motion.
+     * @return radians per minute
+     */
+    public double getMeanMotion() {
+        return meanMotion;
+    }
+
+    // julian date for day zero of the given year (i.e. december 31st of previous year at 00:00)
+    private static double julianDateJan0(int year) {
+        // note: jday(year, 1, 1, 0, 0, 0) - 1, valid from 1901 to 2099
+        return 367.0 * year - Math.floor(7.0 * year * 0.25) + 30.0 + 1721013.5;
+    }
+
+    // parse fields like " 28098-4" as 0.28098e-4
+    private static double parseAssumedDecimal(String field) {
+        String s = field.trim();
+        if (s.isEmpty()) return 0.0;
+        int sign = 1;
+        if ('-' == s.charAt(0)) { sign = -1; s = s.substring(1); }
+        else if ('+' == s.charAt(0)) s = s.substring(1);
+        int exp = Math.max(s.lastIndexOf('-'), s.lastIndexOf('+'));
+        double mantissa, exponent = 0;
+        if (exp > 0) {
+            mantissa = Double.parseDouble("0." + s.substring(0, exp).trim());
+            exponent = Double.parseDouble(s.substring(exp));
+        } else {
+            mantissa = Double.parseDouble("0." + s);
+        }
+        return sign * mantissa * Math.pow(10.0, exponent);
+    }
+
+    // modulo 10 checksum (digits add their value, minus signs add one)
+    private static boolean checksum(String line) {
+        if (line.length() < 69 || !Character.isDigit(line.charAt(68))) return true; // no checksum available
+        int sum = 0;
+        for (int i = 0; i < 68; i++) {
+            char c = line.charAt(i);
+            if (Character.isDigit(c)) sum += c - '0';
+            else if ('-' == c) sum++;
+        }
+        return (sum % 10) == (line.charAt(68) - '0');
+    }
+
+    private static String trimRight(String s) {
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) <= ' ') end--;
+        return s.substring(0, end);
+    }
+
+}
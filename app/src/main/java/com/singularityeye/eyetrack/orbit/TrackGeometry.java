@@ -0,0 +1,200 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+/**
+ * Track geometry utilities (map polylines).
+ * Longitudes are unwrapped (continuous, no jumps of 360 degrees) before simplification,
+ * and lines are split at the antimeridian afterwards, adding the crossing point to both sides.
+ * Simplification is Douglas-Peucker on web mercator coordinates (decimal degrees scale), with caller buffers (no allocation).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public final class TrackGeometry {
+
+    private static final double DEG2RAD = Math.PI / 180.0;
+    private static final double RAD2DEG = 180.0 / Math.PI;
+    private static final double MAX_LATITUDE = 85.0; // web mercator bound (decimal degrees)
+    private static final double DEGREES_PER_DP = 360.0 / 256.0; // map scale at zoom 0 (256 dp tiles)
+
+    private TrackGeometry() {}
+
+    /**
+     * Get the simplification tolerance for a map zoom level.
+     * @param zoom zoom level (camera position)
+     * @param pixels allowed deviation (dp)
+     * @return decimal degrees (web mercator)
+     */
+    public static double tolerance(float zoom, double pixels) {
+        return pixels * DEGREES_PER_DP / Math.pow(2.0, zoom);
+    }
+
+    /**
+     * Make longitudes continuous (consecutive points differ less than 180 degrees).
+     * @param longitudes decimal degrees (modified)
+     * @param count number of points
+     */
+    public static void unwrap(double[] longitudes, int count) {
+        for (int i = 1; i < count; i++) {
+            double delta = longitudes[i] - longitudes[i - 1];
+            if (delta > 180.0) longitudes[i] -= 360.0 * Math.ceil((delta - 180.0) / 360.0);
+            else if (delta < -180.0) longitudes[i] += 360.0 * Math.ceil((-delta - 180.0) / 360.0);
+        }
+    }
+
+    /**
+     * Get the web mercator ordinate of a latitude (decimal degrees scale, same as longitudes).
+     * @param latitude decimal degrees
+     * @return decimal degrees
+     */
+    public static double mercator(double latitude) {
+        double lat = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)) * DEG2RAD;
+        return Math.log(Math.tan(Math.PI / 4.0 + lat / 2.0)) * RAD2DEG;
+    }
+
+    /**
+     * Simplify a line (Douglas-Peucker, iterative).
+     * @param x abscissas (unwrapped longitudes)
+     * @param y ordinates (web mercator, see {@link #mercator})
+     * @param count number of points
+     * @param tolerance allowed deviation (same units as coordinates)
+     * @param keep output: indexes of kept points, ascending (at least count elements)
+     * @param stack work buffer (at least 2 * count elements)
+     * @return number of kept points
+     */
+    public static int simplify(double[] x, double[] y, int count, double tolerance, int[] keep, int[] stack) {
+        if (count <= 2) {
+            for (int i = 0; i < count; i++) keep[i] = i;
+            return count;
+        }
+        // note: keep is used as a mark table first, then compacted
+        for (int i = 0; i < count; i++) keep[i] = 0;
+        keep[0] = 1;
+        keep[count - 1] = 1;
+        double tolerance2 = tolerance * tolerance;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int last = stack[--top], first = stack[--top];
+            double dx = x[last] - x[first], dy = y[last] - y[first];
+            double length2 = dx * dx + dy * dy;
+            double max = -1.0;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = distance2(x[i] - x[first], y[i] - y[first], dx, dy, length2);
+                if (d > max) {
+                    max = d;
+                    farthest = i;
+                }
+            }
+            if (farthest < 0 || max <= tolerance2) continue;
+            keep[farthest] = 1;
+            stack[top++] = first;
+            stack[top++] = farthest;
+            stack[top++] = farthest;
+            stack[top++] = last;
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) if (1 == keep[i]) keep[kept++] = i;
+        return kept;
+    }
+
+    /**
+     * Split a line at the antimeridian.
+     * Output points are wrapped to -180..180 degrees; segments are separated by a NaN point,
+     * crossing points are interpolated and added at the end of a segment and at the start of the next one.
+     * @param latitudes decimal degrees
+     * @param longitudes unwrapped longitudes (decimal degrees, see {@link #unwrap})
+     * @param indexes indexes of the points to use, ascending (see {@link #simplify})
+     * @param count number of indexes
+     * @param outLatitudes output: decimal degrees (at least 4 * count elements)
+     * @param outLongitudes output: decimal degrees (at least 4 * count elements)
+     * @return number of output points (including separators)
+     */
+    public static int split(double[] latitudes, double[] longitudes, int[] indexes, int count, double[] outLatitudes, double[] outLongitudes) {
+        int n = 0;
+        for (int k = 0; k < count; k++) {
+            int i = indexes[k];
+            double lon = longitudes[i];
+            if (k > 0) {
+                int j = indexes[k - 1];
+                double previous = longitudes[j];
+                double a = Math.floor((previous + 180.0) / 360.0), b = Math.floor((lon + 180.0) / 360.0); // 360 degrees bands
+                // note: one crossing per band boundary (a step longer than 360 degrees is not expected on ground tracks)
+                for (double band = a; band != b; band += (b > a) ? 1.0 : -1.0) {
+                    double boundary = 360.0 * ((b > a) ? band + 1.0 : band) - 180.0;
+                    double f = (boundary - previous) / (lon - previous);
+                    double lat = latitudes[j] + f * (latitudes[i] - latitudes[j]);
+                    double side = (b > a) ? 180.0 : -180.0;
+                    outLatitudes[n] = lat;
+                    outLongitudes[n++] = side;
+                    outLatitudes[n] = Double.NaN;
+                    outLongitudes[n++] = Double.NaN;
+                    outLatitudes[n] = lat;
+                    outLongitudes[n++] = -side;
+                }
+            }
+            outLatitudes[n] = latitudes[i];
+            outLongitudes[n++] = wrap(lon);
+        }
+        return n;
+    }
+
+    /**
+     * Compute the visibility footprint of a satellite (horizon circle, zero elevation) as a closed line.
+     * @param latitude sub-satellite latitude (decimal degrees)
+     * @param longitude sub-satellite longitude (decimal degrees)
+     * @param altitude kilometers
+     * @param count number of points (the last one closes the line)
+     * @param outLatitudes output: decimal degrees
+     * @param outLongitudes output: unwrapped longitudes (decimal degrees)
+     */
+    public static void footprint(double latitude, double longitude, double altitude, int count, double[] outLatitudes, double[] outLongitudes) {
+        double radius = Coordinates.WGS84_A; // note: spherical earth is enough for drawing
+        double angle = Math.acos(radius / (radius + Math.max(0.0, altitude))); // central angle
+        double lat = latitude * DEG2RAD, lon = longitude * DEG2RAD;
+        double sinLat = Math.sin(lat), cosLat = Math.cos(lat), sinAngle = Math.sin(angle), cosAngle = Math.cos(angle);
+        for (int i = 0; i < count; i++) {
+            double bearing = 2.0 * Math.PI * i / (count - 1);
+            double sinPoint = sinLat * cosAngle + cosLat * sinAngle * Math.cos(bearing);
+            double point = Math.asin(Math.max(-1.0, Math.min(1.0, sinPoint)));
+            double delta = Math.atan2(Math.sin(bearing) * sinAngle * cosLat, cosAngle - sinLat * sinPoint);
+            outLatitudes[i] = point * RAD2DEG;
+            outLongitudes[i] = (lon + delta) * RAD2DEG;
+        }
+        unwrap(outLongitudes, count);
+    }
+
+    // wrap a longitude to -180..180 degrees
+    private static double wrap(double longitude) {
+        return longitude - 360.0 * Math.floor((longitude + 180.0) / 360.0);
+    }
+
+    // squared distance from a point to a segment (both relative to the segment start)
+    private static double distance2(double px, double py, double dx, double dy, double length2) {
+        if (0.0 == length2) return px * px + py * py;
+        double t = Math.max(0.0, Math.min(1.0, (px * dx + py * dy) / length2));
+        double ex = px - t * dx, ey = py - t * dy;
+        return ex * ex + ey * ey;
+    }
+
+}
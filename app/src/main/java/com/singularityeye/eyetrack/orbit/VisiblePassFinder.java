@@ -0,0 +1,245 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.orbit;
+
+import com.singularityeye.eyetrack.model.Pass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Visible pass finder model.
+ * It annotates passes with illumination (earth shadow) and observer twilight, and finds visual passes:
+ * satellite sunlit while the observer is in darkness.
+ * Catalog searches build one sun table for the whole window (see {@link SunTable}), shared by every satellite,
+ * and search passes inside the dark windows of the observer only, so daylight hours cost nothing;
+ * passes are then sampled on the sun table grid (one propagation and one shadow test per sample).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class VisiblePassFinder {
+
+    public static final long DEFAULT_STEP = 20000; // sun table grid step (milliseconds)
+    private static final long TOLERANCE = 1000; // visibility bounds refinement tolerance (milliseconds)
+    private static final long SAMPLES_PER_ORBIT = 128; // pass sampling bound for high orbits
+    private static final int THRESHOLD = 8; // satellites per leaf task
+
+    private final PassPredictor predictor;
+    private final double twilight; // decimal degrees
+
+    /**
+     * Constructor method for a visible pass finder.
+     * @param predictor pass predictor (observer and elevation mask)
+     * @param twilight sun elevation over the observer for darkness (decimal degrees), e.g. {@link SunTable#CIVIL_TWILIGHT}
+     */
+    public VisiblePassFinder(PassPredictor predictor, double twilight) {
+        this.predictor = predictor;
+        this.twilight = twilight;
+    }
+
+    /**
+     * Get the pass predictor.
+     * @return pass predictor
+     */
+    public PassPredictor getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Get the sun elevation for darkness.
+     * @return decimal degrees
+     */
+    public double getTwilight() {
+        return twilight;
+    }
+
+    /**
+     * Build the sun table of a window for the observer of the predictor (grid of DEFAULT_STEP).
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @return sun table (shareable)
+     */
+    public SunTable sunTable(long start, long end) {
+        return new SunTable(predictor.getObserver(), start, end, DEFAULT_STEP);
+    }
+
+    /**
+     * Annotate a pass with illumination and twilight (visibility window, and sun elevation and illumination at TCA).
+     * @param pass predicted pass of the satellite (modified)
+     * @param propagator satellite propagator
+     * @param table sun table covering the pass (same observer)
+     */
+    public void annotate(Pass pass, SGP4 propagator, SunTable table) {
+        new Illuminator(propagator, table).annotate(pass);
+    }
+
+    /**
+     * Find visible passes of many satellites in parallel (shared fork-join pool, one worker per core).
+     * @param propagators satellite propagators
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @return annotated visible passes sorted by AOS
+     */
+    public List<Pass> findAll(Collection<SGP4> propagators, long start, long end) {
+        return findAll(propagators, start, end, PassPredictor.DefaultPool.POOL);
+    }
+
+    /**
+     * Find visible passes of many satellites in parallel.
+     * Passes are searched inside dark windows only (clipped to them, see {@link PassPredictor#predict}).
+     * @param propagators satellite propagators
+     * @param start utc time (milliseconds since 1970-01-01)
+     * @param end utc time (milliseconds since 1970-01-01)
+     * @param pool fork-join pool
+     * @return annotated visible passes sorted by AOS
+     */
+    public List<Pass> findAll(Collection<SGP4> propagators, long start, long end, ForkJoinPool pool) {
+        if (end <= start) return new ArrayList<Pass>();
+        SunTable table = sunTable(start, end);
+        long[] windows = table.getDarkness(twilight);
+        if (0 == windows.length) return new ArrayList<Pass>();
+        // note: one grid step of margin, darkness starts (or ends) between grid times
+        for (int i = 0; i < windows.length; i += 2) {
+            windows[i] = Math.max(start, windows[i] - table.getStep());
+            windows[i + 1] = Math.min(end, windows[i + 1] + table.getStep());
+        }
+        SGP4[] array = propagators.toArray(new SGP4[propagators.size()]);
+        List<Pass> passes = pool.invoke(new FindTask(array, 0, array.length, table, windows));
+        Collections.sort(passes, PassPredictor.AOS_ORDER);
+        return passes;
+    }
+
+    // visible passes of a single satellite (appends passes to given list)
+    private void find(SGP4 propagator, SunTable table, long[] windows, List<Pass> passes) {
+        if (!predictor.canBeVisible(propagator)) return;
+        Illuminator illuminator = null;
+        for (int i = 0; i < windows.length; i += 2) {
+            for (Pass pass : predictor.predict(propagator, windows[i], windows[i + 1])) {
+                if (null == illuminator) illuminator = new Illuminator(propagator, table);
+                illuminator.annotate(pass);
+                if (pass.isVisible()) passes.add(pass);
+            }
+        }
+    }
+
+    // illumination sampler for a single satellite (not thread safe, one instance per search)
+    private class Illuminator {
+
+        private final SGP4 propagator;
+        private final SunTable table;
+        private final double[] r = new double[3], v = new double[3], sun = new double[3];
+
+        Illuminator(SGP4 propagator, SunTable table) {
+            this.propagator = propagator;
+            this.table = table;
+        }
+
+        // illuminated fraction at given time (NaN on propagation error)
+        double illumination(long t) {
+            if (SGP4.ERROR_NONE != propagator.propagateAt(t, r, v)) return Double.NaN;
+            table.getSun(t, sun);
+            return SolarEphemeris.illumination(r, sun);
+        }
+
+        // satellite sunlit (even partially) while the observer is in darkness
+        boolean visible(long t) {
+            return table.getSunElevation(t) <= twilight && illumination(t) > 0.0; // note: false on NaN
+        }
+
+        // visibility change between a time where the satellite is not visible and one where it is (bisection)
+        long edge(long hidden, long shown) {
+            while (Math.abs(shown - hidden) > TOLERANCE) {
+                long middle = hidden + (shown - hidden) / 2;
+                if (visible(middle)) shown = middle;
+                else hidden = middle;
+            }
+            return shown;
+        }
+
+        // sample a pass on the sun table grid (plus AOS and LOS), refine visibility bounds
+        // note: a pass with several visible intervals (rare) gets one window from first to last visible time
+        void annotate(Pass pass) {
+            long aos = pass.getAos(), los = pass.getLos();
+            long origin = table.getTime(0), step = table.getStep();
+            // note: long passes (high orbits) are sampled every few grid steps, shadow crossings scale with the orbital period
+            long period = (long) (2.0 * Math.PI / propagator.getTLE().getMeanMotion() * 60000.0); // milliseconds
+            step *= Math.max(1, period / SAMPLES_PER_ORBIT / step);
+            long first = -1, last = -1;
+            long previous = aos;
+            boolean was = false;
+            for (long t = aos; ; ) {
+                boolean is = visible(t);
+                if (is && !was && -1 == first) first = (t == aos) ? aos : edge(previous, t);
+                if (!is && was) last = edge(t, previous);
+                was = is;
+                if (t >= los) break;
+                previous = t;
+                t = Math.min(los, origin + ((t - origin) / step + 1) * step); // next grid time
+            }
+            if (was) last = los;
+            pass.setIllumination(illumination(pass.getTca()));
+            pass.setSunElevation(table.getSunElevation(pass.getTca()));
+            pass.setVisible(-1 != first);
+            pass.setVisibleStart(first);
+            pass.setVisibleEnd(last);
+        }
+
+    }
+
+    // fork-join task: splits the catalog until a few satellites per task
+    private class FindTask extends RecursiveTask<List<Pass>> {
+
+        private final SGP4[] propagators;
+        private final int from, to;
+        private final SunTable table;
+        private final long[] windows;
+
+        FindTask(SGP4[] propagators, int from, int to, SunTable table, long[] windows) {
+            this.propagators = propagators;
+            this.from = from;
+            this.to = to;
+            this.table = table;
+            this.windows = windows;
+        }
+
+        @Override
+        protected List<Pass> compute() {
+            if (to - from <= THRESHOLD) {
+                List<Pass> passes = new ArrayList<Pass>();
+                for (int i = from; i < to; i++) find(propagators[i], table, windows, passes);
+                return passes;
+            }
+            int middle = (from + to) >>> 1;
+            FindTask left = new FindTask(propagators, from, middle, table, windows);
+            left.fork();
+            List<Pass> passes = new FindTask(propagators, middle, to, table, windows).compute();
+            passes.addAll(left.join());
+            return passes;
+        }
+
+    }
+
+}
@@ -0,0 +1,444 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.tracking;
+
+import com.singularityeye.eyetrack.cache.ElementsUpdater;
+import com.singularityeye.eyetrack.metrics.Metrics;
+import com.singularityeye.eyetrack.model.PositionBuffer;
+import com.singularityeye.eyetrack.model.PositionHistory;
+import com.singularityeye.eyetrack.model.Satellite;
+import com.singularityeye.eyetrack.orbit.BatchPropagator;
+import com.singularityeye.eyetrack.orbit.Coordinates;
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.SolarEphemeris;
+import com.singularityeye.eyetrack.orbit.TLE;
+import com.singularityeye.eyetrack.ws.PositionsClient;
+import com.singularityeye.eyetrack.ws.PositionsParser;
+import com.singularityeye.eyetrack.ws.SoapFaultException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracking pipeline (plain JVM): the tick of the bound service and the headless server.
+ * Each tick revalidates orbital elements in background ({@link ElementsUpdater}), propagates every tracked platform
+ * in one batch ({@link BatchPropagator}), falls back to soap requests for platforms without orbital elements
+ * (one round per request interval, a few at once), and fills the back buffer of a {@link PositionBuffer} in tracking order.
+ * Scheduling, clock and publication are left to the owner; steady state ticks (propagated positions) do not allocate.
+ * Note: {@link #update} is called from a single thread (the tick thread).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class TrackingPipeline {
+
+    /**
+     * Owner model: it is called back from the tick thread (positions) and from background requests (elements, soap).
+     */
+    public interface Listener {
+        /**
+         * A position has been propagated (tick thread; note: steady state, it should not allocate).
+         * @param id NORAD ID
+         * @param time utc time (milliseconds since 1970-01-01)
+         * @param latitude geodetic latitude (decimal degrees)
+         * @param longitude longitude (decimal degrees)
+         * @param altitude altitude (kilometers)
+         * @param angularVelocity ground track angular velocity (rad/s)
+         */
+        void onPropagated(String id, long time, double latitude, double longitude, double altitude, double angularVelocity);
+
+        /**
+         * A platform has no propagated position, its last soap position is used (tick thread, live ticks only).
+         * @param id NORAD ID
+         */
+        void onFallback(String id);
+
+        /**
+         * Get the history where every position of a soap response is streamed (soap request thread).
+         * @param id NORAD ID
+         * @return position history, null to keep the last position only
+         */
+        PositionHistory getHistory(String id);
+
+        /**
+         * New orbital elements have been cached, propagators are refreshed (orbital elements request thread).
+         * @param found number of new element sets
+         * @param saved true if the cache file has been saved
+         */
+        void onElementsChanged(int found, boolean saved);
+
+        /**
+         * A request or a propagation failed (any pipeline thread).
+         * @param message error name and detail
+         */
+        void onError(String message);
+    }
+
+    private static final long ELEMENTS_RETRY = 60000; // milliseconds between orbital elements checks (or failed requests)
+    private static final int MAX_REQUESTS = 4; // concurrent soap requests (one round per request interval)
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    private final ElementsUpdater elements; // propagators of tracked platforms (orbital elements stage)
+    private final PositionsClient soap_client; // soap positions client (fallback)
+    private final Metrics metrics;
+    private final PositionBuffer positions;
+    private final Listener listener;
+    private volatile String param_ip, param_seconds, param_key; // soap request params
+    private volatile long request_interval; // milliseconds between rounds of soap requests
+
+    private volatile String[] tracked = new String[0]; // tracked platforms snapshot (tick iterates it without allocating)
+    private String[] last_tracked; // snapshot of the last tick (tick only)
+    private long last_request; // nano time of the last round of soap requests (tick only)
+    private int fallback_index; // round robin index over platforms without orbital elements (tick only)
+
+    private final ExecutorService batch_executor = Executors.newFixedThreadPool(CORES); // parallel ranges of large batches
+    private final ExecutorService elements_executor = Executors.newSingleThreadExecutor(); // background orbital elements requests
+    private final ExecutorService soap_executor = Executors.newFixedThreadPool(MAX_REQUESTS); // background soap requests
+    private final AtomicBoolean elements_pending = new AtomicBoolean(); // orbital elements request in progress
+    private final AtomicInteger soap_pending = new AtomicInteger(); // soap requests in progress
+    private final AtomicBoolean soap_updated = new AtomicBoolean(); // new soap positions since last tick
+    private volatile long next_elements_request; // time (milliseconds) for next orbital elements check
+
+    private final Map<String, Satellite> last_eyes = new ConcurrentHashMap<String, Satellite>(); // last soap positions by NORAD ID
+    private BatchPropagator batch; // tracked platforms with orbital elements (tick only, rebuilt when propagators change)
+    private int[] batch_slots = new int[0]; // batch index by tracking order (-1 without orbital elements)
+    private final double[] r = new double[3], v = new double[3], w = new double[3]; // propagation buffers
+
+    /**
+     * Constructor method for the pipeline.
+     * @param elements orbital elements updater (its cache is loaded by {@link #load})
+     * @param soapClient soap positions client (fallback)
+     * @param metrics stage latencies and counters (shared with the owner)
+     * @param positions positions buffer (back buffer filled by {@link #update}, published by the owner)
+     * @param listener owner callbacks
+     */
+    public TrackingPipeline(ElementsUpdater elements, PositionsClient soapClient, Metrics metrics, PositionBuffer positions, Listener listener) {
+        this.elements = elements;
+        this.soap_client = soapClient;
+        this.metrics = metrics;
+        this.positions = positions;
+        this.listener = listener;
+    }
+
+    /**
+     * Set the soap request params (no soap requests without a license key).
+     * @param ip client ip
+     * @param seconds the last seconds for what we get the positions
+     * @param key soap web service license key
+     */
+    public void setParams(String ip, String seconds, String key) {
+        param_ip = ip;
+        param_seconds = seconds;
+        param_key = key;
+    }
+
+    /**
+     * Set the time between rounds of soap requests (a slow round delays the next one, never the tick).
+     * @param interval milliseconds between rounds
+     */
+    public void setRequestInterval(long interval) {
+        request_interval = interval;
+    }
+
+    /**
+     * Set the tracked platforms: propagators are created from cached orbital elements, missing ones are requested on next tick.
+     * @param ids NORAD IDs (normalized, tracking order; note: the array is kept, do not modify it)
+     */
+    public void setTracked(String[] ids) {
+        tracked = ids;
+        elements.setTracked(Arrays.asList(ids));
+        refreshPropagators();
+        next_elements_request = 0; // request missing orbital elements on next tick
+    }
+
+    /**
+     * Get the tracked platforms.
+     * @return NORAD IDs (tracking order; note: shared snapshot, do not modify it)
+     */
+    public String[] getTracked() {
+        return tracked;
+    }
+
+    /**
+     * Get the last soap position of a tracked platform.
+     * @param id NORAD ID
+     * @return last soap position, null if there is none
+     */
+    public Satellite getLastEye(String id) {
+        return last_eyes.get(id);
+    }
+
+    /**
+     * Load the orbital elements cache file (once) and create propagators for tracked platforms.
+     * @return true if it was loaded by this call
+     */
+    public boolean load() {
+        boolean loaded = elements.load();
+        refreshPropagators();
+        return loaded;
+    }
+
+    /**
+     * Run a tick: submit an orbital elements request in background when due, send a round of soap requests in background
+     * for platforms without orbital elements (round robin, a few at once, live ticks only), and fill the back buffer with
+     * every tracked platform (propagated in one batch, or last soap position).
+     * Note: no allocations while every platform has orbital elements (steady state).
+     * @param now propagation time, utc (milliseconds since 1970-01-01)
+     * @param rate clock time advance per wall time unit (see {@link PositionBuffer#getRate})
+     * @param live true if the propagation time is wall time (soap positions and requests are live only)
+     * @return true if positions have been updated (the back buffer can be published)
+     */
+    public boolean update(long now, double rate, boolean live) {
+        if (System.currentTimeMillis() >= next_elements_request) revalidateElements(); // get missing or stale orbital elements
+        String[] ids = tracked;
+        if (ids != last_tracked) {
+            last_eyes.keySet().retainAll(Arrays.asList(ids)); // forget untracked platforms
+            last_tracked = ids;
+        }
+        boolean updated = false;
+
+        // soap fallback (one round per request interval, a slow round delays the next one, never the tick)
+        int missing = 0;
+        for (String id : ids) if (null == elements.get(id)) missing++;
+        long elapsed = System.nanoTime();
+        if (live && missing > 0 && null != param_key && 0 == soap_pending.get() && elapsed - last_request >= TimeUnit.MILLISECONDS.toNanos(request_interval)) {
+            last_request = elapsed;
+            int requests = Math.min(missing, MAX_REQUESTS);
+            int first = fallback_index % missing;
+            fallback_index += requests;
+            int index = 0;
+            for (String id : ids) {
+                if (null != elements.get(id)) continue;
+                if ((index++ - first + missing) % missing < requests) submitRequest(id); // note: round robin window
+            }
+        }
+        if (soap_updated.getAndSet(false)) updated = true; // positions of finished soap requests
+
+        // positions (tracking order, propagated in one batch)
+        double gmst = Coordinates.gmst(now);
+        if (batchChanged(ids)) rebuildBatch(ids);
+        if (null != batch) {
+            long started = System.nanoTime();
+            if (!batch.propagate(now, batch_executor, CORES)) return false; // note: interrupted, pipeline is shutting down
+            metrics.record(Metrics.PROPAGATE, System.nanoTime() - started);
+        }
+        positions.clear(now, rate);
+        for (int k = 0; k < ids.length; k++) {
+            String id = ids[k];
+            int slot = batch_slots[k];
+            if (-1 != slot && propagated(id, slot, now, gmst, live)) {
+                updated = true;
+            } else if (live) { // note: soap positions are live only
+                listener.onFallback(id);
+                Satellite last_eye = last_eyes.get(id);
+                if (null != last_eye) {
+                    positions.add(Integer.parseInt(id), last_eye.getShortname(), last_eye.getLatitude(), last_eye.getLongitude(), last_eye.getAltitude(), null);
+                }
+            }
+        }
+        return updated && positions.pending() > 0;
+    }
+
+    /**
+     * Release the pipeline threads (pending requests are cancelled, the pipeline can not be used again).
+     */
+    public void shutdown() {
+        batch_executor.shutdownNow();
+        elements_executor.shutdownNow();
+        soap_executor.shutdownNow();
+    }
+
+    // create (or replace) propagators for tracked platforms from cached orbital elements
+    private void refreshPropagators() {
+        for (String id : elements.refresh(Arrays.asList(tracked), System.currentTimeMillis())) listener.onError("ElementsException: "+id);
+    }
+
+    // submit an orbital elements request in background (if none is in progress)
+    private void revalidateElements() {
+        if (!elements_pending.compareAndSet(false, true)) return;
+        next_elements_request = Long.MAX_VALUE; // set again by the request
+        try {
+            elements_executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sendElementsRequest();
+                    } finally {
+                        elements_pending.set(false);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            elements_pending.set(false); // note: rejected, pipeline is shutting down
+            throw e;
+        }
+    }
+
+    // send one orbital elements request for tracked platforms without cached or with stale orbital elements
+    // (active platforms group when more than one is needed, then single platform queries for the remaining ones)
+    private void sendElementsRequest() {
+        long now = System.currentTimeMillis();
+        List<String> stale = elements.getStale(Arrays.asList(tracked), now);
+        if (stale.isEmpty()) {
+            next_elements_request = now + ELEMENTS_RETRY; // check staleness later
+            return;
+        }
+        int found;
+        try {
+            found = elements.request(stale, now);
+        } catch (IOException e) {
+            metrics.increment(Metrics.ELEMENTS_FAILURES);
+            listener.onError("ElementsRequestException: "+e.getMessage());
+            next_elements_request = now + ELEMENTS_RETRY;
+            return;
+        }
+        if (found > 0) {
+            refreshPropagators();
+            boolean saved = elements.getStore().save();
+            if (!saved) listener.onError("Orbital elements cache not saved");
+            listener.onElementsChanged(found, saved);
+        }
+        next_elements_request = (found > 0) ? 0 : now + ELEMENTS_RETRY; // keep requesting while there are new orbital elements
+    }
+
+    // send a soap request in background (shared keep-alive connections, see HttpTransport)
+    private void submitRequest(final String id) {
+        soap_pending.incrementAndGet();
+        try {
+            soap_executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (sendRequest(id)) soap_updated.set(true);
+                    } finally {
+                        soap_pending.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            soap_pending.decrementAndGet(); // note: rejected, pipeline is shutting down
+            throw e;
+        }
+    }
+
+    // send soap request and set last eye position (every position of the response is streamed into the owner history, if any)
+    // if no response return false
+    private boolean sendRequest(String id) {
+        PositionHistory history = listener.getHistory(id);
+        PositionsParser parser = new PositionsParser();
+        long started = System.nanoTime();
+        try {
+            int found = soap_client.request(id, param_ip, param_seconds, param_key, parser, history);
+            metrics.record(Metrics.REQUEST, System.nanoTime() - started);
+            metrics.record(Metrics.PARSE, parser.getParseTime());
+            if (0 == found) return false;
+        } catch (SoapFaultException e) {
+            metrics.increment(Metrics.SOAP_FAULTS);
+            listener.onError("SoapFaultException: "+e.getMessage());
+            return false;
+        } catch (IOException e) {
+            metrics.increment(Metrics.REQUEST_FAILURES);
+            listener.onError("HTTPTransportException: "+e.getMessage());
+            return false;
+        }
+
+        // set last eye position (note: a new object, published to the tick through the concurrent map)
+        Satellite last_eye = new Satellite();
+        last_eye.setNORAD_ID(id);
+        last_eye.setShortname(parser.getName());
+        last_eye.setLatitude(parser.getLatitude());
+        last_eye.setLongitude(parser.getLongitude());
+        last_eye.setAltitude(parser.getAltitude());
+        if (0 != parser.getTime()) last_eye.setIllumination(illumination(parser.getTime(), last_eye.getLatitude(), last_eye.getLongitude(), last_eye.getAltitude()));
+        last_eyes.put(id, last_eye);
+        return true;
+    }
+
+    // sunlit fraction of a geodetic position at given time (earth fixed frame)
+    private static double illumination(long time, double latitude, double longitude, double altitude) {
+        double[] sat = new double[3], sun = new double[3];
+        Coordinates.geodeticToEcef(latitude, longitude, altitude, sat);
+        SolarEphemeris.sunPosition(time, sun);
+        Coordinates.temeToEcef(sun, Coordinates.gmst(time), sun);
+        return SolarEphemeris.illumination(sat, sun);
+    }
+
+    // check whether tracked platforms or their propagators differ from the batch ones
+    private boolean batchChanged(String[] ids) {
+        if (ids.length != batch_slots.length) return true;
+        for (int k = 0; k < ids.length; k++) {
+            SGP4 propagator = elements.get(ids[k]);
+            int slot = batch_slots[k];
+            if ((-1 == slot) ? null != propagator : batch.getPropagator(slot) != propagator) return true;
+        }
+        return false;
+    }
+
+    // rebuild the batch from current propagators of tracked platforms
+    private void rebuildBatch(String[] ids) {
+        List<SGP4> tracked_propagators = new ArrayList<SGP4>(ids.length);
+        for (String id : ids) {
+            SGP4 propagator = elements.get(id);
+            if (null != propagator) tracked_propagators.add(propagator);
+        }
+        batch = tracked_propagators.isEmpty() ? null : new BatchPropagator(tracked_propagators);
+        Map<Integer, Integer> indexes = new HashMap<Integer, Integer>();
+        if (null != batch) for (int i = 0; i < batch.size(); i++) indexes.put(batch.getId(i), i);
+        batch_slots = new int[ids.length];
+        for (int k = 0; k < ids.length; k++) {
+            Integer slot = indexes.get(Integer.parseInt(ids[k]));
+            batch_slots[k] = (null == elements.get(ids[k]) || null == slot) ? -1 : slot;
+        }
+    }
+
+    // append a propagated batch position to the back buffer
+    // if propagation failed return false (and go back to soap requests)
+    private boolean propagated(String id, int slot, long now, double gmst, boolean live) {
+        int error = batch.getError(slot);
+        if (SGP4.ERROR_NONE != error) {
+            metrics.increment(Metrics.PROPAGATION_ERRORS);
+            listener.onError("PropagationError: "+id+" "+error);
+            if (live) elements.remove(id); // note: batch is rebuilt on next tick (simulated times keep the propagator)
+            return false;
+        }
+        batch.getPosition(slot, r);
+        batch.getVelocity(slot, v);
+        double latitude = batch.getLatitude(slot);
+        double longitude = batch.getLongitude(slot);
+        double altitude = batch.getAltitude(slot);
+        double angularVelocity = Coordinates.groundAngularVelocity(r, v, w);
+        Coordinates.temeToEcef(w, gmst, w); // ground track direction for client interpolation
+        TLE tle = batch.getPropagator(slot).getTLE();
+        positions.add(tle.getNORAD_ID(), tle.getName(), latitude, longitude, altitude, w);
+        listener.onPropagated(id, now, latitude, longitude, altitude, angularVelocity);
+        return true;
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.ws;
+
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Orbital elements client.
+ * It requests plain text element sets (two or three lines format) over http (see {@link HttpTransport}).
+ * The url is given on every request, so any endpoint (e.g. a local stub) can be used.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ElementsClient {
+
+    private final HttpTransport transport;
+    private final HttpTransport.ResponseHandler<List<TLE>> handler = new HttpTransport.ResponseHandler<List<TLE>>() {
+        @Override
+        public List<TLE> handle(int code, InputStream in) throws IOException {
+            if (HttpURLConnection.HTTP_OK != code) throw new HttpTransport.StatusException(code);
+            return parse(new BufferedReader(new InputStreamReader(in, "US-ASCII")));
+        }
+    };
+
+    /**
+     * Constructor method for the client.
+     * @param transport http transport (shared)
+     */
+    public ElementsClient(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Request element sets.
+     * Malformed element sets are skipped.
+     * @param url endpoint url
+     * @return element sets found in the response
+     * @throws IOException if the request fails
+     */
+    public List<TLE> request(String url) throws IOException {
+        return transport.get(url, handler);
+    }
+
+    /**
+     * Parse element sets (two or three lines format).
+     * Malformed element sets are skipped.
+     * @param reader text source
+     * @return element sets
+     * @throws IOException if the source can not be read
+     */
+    public static List<TLE> parse(BufferedReader reader) throws IOException {
+        List<TLE> elements = new ArrayList<TLE>();
+        String name = null, line1 = null, line;
+        while (null != (line = reader.readLine())) {
+            if (line.startsWith("1 ")) {
+                line1 = line;
+            } else if (line.startsWith("2 ") && null != line1) {
+                try {
+                    elements.add(TLE.parse(name, line1, line));
+                } catch (IllegalArgumentException e) {
+                    // note: skip malformed element set
+                }
+                name = null;
+                line1 = null;
+            } else if (!line.trim().isEmpty()) {
+                name = line;
+            }
+        }
+        return elements;
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.ws;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Http transport shared by the web service clients.
+ * Connections are kept alive and reused (the platform connection pool): response bodies are read to the end and closed,
+ * connections are only disconnected after a failure. Responses are requested gzip compressed, requests have connect
+ * and read timeouts, and failed requests (network errors, server errors) are retried a bounded number of times
+ * with jittered exponential backoff. Client errors and soap faults are not retried.
+ * The url is given on every request, so any endpoint (e.g. an in-process stub server) can be used.
+ * Note: thread safe, requests can be executed concurrently.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class HttpTransport {
+
+    private static final int DRAIN = 64 * 1024; // maximum unread response bytes drained to keep a connection alive
+
+    /**
+     * Response model: it reads a response body.
+     * @param <T> result type
+     */
+    public interface ResponseHandler<T> {
+        /**
+         * Read a response.
+         * @param code http status code
+         * @param in response body (decompressed), never null
+         * @return result
+         * @throws IOException if the response is not valid (see {@link StatusException} for status errors)
+         */
+        T handle(int code, InputStream in) throws IOException;
+    }
+
+    /**
+     * Retry delay model: it waits between attempts (e.g. tests record the delays instead of sleeping).
+     */
+    public interface Sleeper {
+        /**
+         * Wait before the next attempt.
+         * @param millis retry delay (milliseconds)
+         * @throws InterruptedException if the calling thread is interrupted
+         */
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    // wall clock sleeper (default)
+    private static final Sleeper THREAD_SLEEPER = new Sleeper() {
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+    };
+
+    /**
+     * Http status exception: unexpected status code.
+     * Server errors (5xx) and too many requests (429) are retried.
+     */
+    public static class StatusException extends IOException {
+        private final int code;
+        /**
+         * Constructor method for the exception.
+         * @param code http status code
+         */
+        public StatusException(int code) {
+            super("HTTP " + code);
+            this.code = code;
+        }
+        /**
+         * Get the status code.
+         * @return http status code
+         */
+        public int getCode() {
+            return code;
+        }
+    }
+
+    private final int connect_timeout, read_timeout; // milliseconds
+    private final int retries; // retries after the first attempt
+    private final long backoff, max_backoff; // retry delay bounds (milliseconds)
+    private final Random random; // jitter
+    private final Sleeper sleeper; // retry delays
+
+    /**
+     * Constructor method for the transport.
+     * @param connectTimeout connect timeout (milliseconds)
+     * @param readTimeout read timeout (milliseconds)
+     * @param retries retries after a failed attempt
+     * @param backoff base retry delay (milliseconds), doubled on every retry and bounded to ten times its value
+     */
+    public HttpTransport(int connectTimeout, int readTimeout, int retries, long backoff) {
+        this(connectTimeout, readTimeout, retries, backoff, new Random(), THREAD_SLEEPER);
+    }
+
+    /**
+     * Constructor method for the transport with a given jitter source and sleeper (e.g. deterministic retry delays).
+     * @param connectTimeout connect timeout (milliseconds)
+     * @param readTimeout read timeout (milliseconds)
+     * @param retries retries after a failed attempt
+     * @param backoff base retry delay (milliseconds), doubled on every retry and bounded to ten times its value
+     * @param random jitter source
+     * @param sleeper retry delays
+     */
+    public HttpTransport(int connectTimeout, int readTimeout, int retries, long backoff, Random random, Sleeper sleeper) {
+        this.connect_timeout = connectTimeout;
+        this.read_timeout = readTimeout;
+        this.retries = retries;
+        this.backoff = backoff;
+        this.max_backoff = 10 * backoff;
+        this.random = random;
+        this.sleeper = sleeper;
+    }
+
+    /**
+     * Execute a get request.
+     * @param url endpoint url
+     * @param handler response handler
+     * @param <T> result type
+     * @return handler result
+     * @throws IOException if every attempt fails (last failure)
+     */
+    public <T> T get(String url, ResponseHandler<T> handler) throws IOException {
+        return execute(url, null, null, null, handler);
+    }
+
+    /**
+     * Execute a post request.
+     * @param url endpoint url
+     * @param contentType request content type
+     * @param action soap action header value, null if none
+     * @param body request body
+     * @param handler response handler
+     * @param <T> result type
+     * @return handler result
+     * @throws IOException if every attempt fails (last failure)
+     */
+    public <T> T post(String url, String contentType, String action, byte[] body, ResponseHandler<T> handler) throws IOException {
+        return execute(url, contentType, action, body, handler);
+    }
+
+    // execute a request with retries
+    private <T> T execute(String url, String contentType, String action, byte[] body, ResponseHandler<T> handler) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return exchange(url, contentType, action, body, handler);
+            } catch (IOException e) {
+                if (attempt >= retries || !retryable(e)) throw e;
+                // note: full jitter, clients failing together do not retry together
+                long delay = (long) (random.nextDouble() * Math.min(max_backoff, backoff << attempt));
+                try {
+                    sleeper.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("retry interrupted");
+                }
+            }
+        }
+    }
+
+    // execute one attempt
+    private <T> T exchange(String url, String contentType, String action, byte[] body, ResponseHandler<T> handler) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        boolean reusable = false;
+        try {
+            connection.setConnectTimeout(connect_timeout);
+            connection.setReadTimeout(read_timeout);
+            connection.setRequestProperty("Accept-Encoding", "gzip"); // note: explicit, so it is decompressed here on every platform
+            if (null != body) {
+                connection.setDoOutput(true);
+                connection.setRequestMethod("POST");
+                connection.setRequestProperty("Content-Type", contentType);
+                if (null != action) connection.setRequestProperty("SOAPAction", action);
+                connection.setFixedLengthStreamingMode(body.length);
+                OutputStream out = connection.getOutputStream();
+                try {
+                    out.write(body);
+                } finally {
+                    out.close();
+                }
+            }
+            int code = connection.getResponseCode();
+            InputStream raw = (code < HttpURLConnection.HTTP_BAD_REQUEST) ? connection.getInputStream() : connection.getErrorStream();
+            if (null == raw) throw new StatusException(code);
+            try {
+                InputStream in = "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(raw) : raw;
+                T result = handler.handle(code, in);
+                reusable = drain(in);
+                return result;
+            } finally {
+                raw.close();
+            }
+        } finally {
+            if (!reusable) connection.disconnect(); // note: a failed connection is not returned to the pool
+        }
+    }
+
+    // read the rest of a response body (a connection is only reused when its response was read to the end)
+    // if the body is too long return false
+    private static boolean drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        int drained = 0, read;
+        while (-1 != (read = in.read(buffer))) {
+            drained += read;
+            if (drained > DRAIN) return false;
+        }
+        return true;
+    }
+
+    // retry policy: network errors, server errors and too many requests
+    private static boolean retryable(IOException e) {
+        if (e instanceof SoapFaultException || e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) return false;
+        if (e instanceof StatusException) {
+            int code = ((StatusException) e).getCode();
+            return code >= HttpURLConnection.HTTP_INTERNAL_ERROR || 429 == code;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.ws;
+
+import com.singularityeye.eyetrack.model.PositionHistory;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * Satellite positions client (GetPositionsByIp soap web service).
+ * The request envelope is written directly (same message ksoap2 sends) and the response is streamed into a
+ * {@link PositionsParser}, so the response is never materialized: the cost of a request does not grow with
+ * the number of seconds asked for, except for the bytes transferred (gzip compressed, see {@link HttpTransport}).
+ * Note: thread safe, requests of several platforms can be sent concurrently (one parser per request).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PositionsClient {
+
+    private static final String NAMESPACE = "urn:satwsdl"; // soap web services namespace
+    private static final String METHOD_NAME = "GetPositionsByIp"; // soap web service method name
+    private static final String SOAP_ACTION = NAMESPACE + "/" + METHOD_NAME; // soap web services action
+
+    private final String url;
+    private final HttpTransport transport;
+
+    /**
+     * Constructor method for the client.
+     * @param url soap web services url
+     * @param transport http transport (shared)
+     */
+    public PositionsClient(String url, HttpTransport transport) {
+        this.url = url;
+        this.transport = transport;
+    }
+
+    /**
+     * Request the positions of a platform.
+     * @param id NORAD ID
+     * @param ip android device ip
+     * @param seconds the last seconds for what we get the positions
+     * @param license soap web service license key
+     * @param parser response parser (the last position is available from it)
+     * @param history history mode: every position is added to it (null to keep the last position only)
+     * @return number of positions in the response
+     * @throws IOException if the request fails, or the response is a soap fault ({@link SoapFaultException}) or is not well formed
+     */
+    public int request(String id, String ip, String seconds, String license, final PositionsParser parser, final PositionHistory history) throws IOException {
+        byte[] body = envelope(id, ip, seconds, license).getBytes("UTF-8");
+        return transport.post(url, "text/xml;charset=utf-8", SOAP_ACTION, body, new HttpTransport.ResponseHandler<Integer>() {
+            @Override
+            public Integer handle(int code, InputStream in) throws IOException {
+                try {
+                    XmlPullParser xml = new KXmlParser();
+                    xml.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+                    xml.setInput(in, null);
+                    // note: soap faults come with an error status, their body is parsed too
+                    int positions = parser.parse(xml, history);
+                    if (HttpURLConnection.HTTP_OK != code) throw new HttpTransport.StatusException(code);
+                    return positions;
+                } catch (XmlPullParserException e) {
+                    throw new IOException("XmlPullParserException: " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write the request envelope (soap 1.1, .net style parameters).
+     * @param id NORAD ID
+     * @param ip android device ip
+     * @param seconds the last seconds for what we get the positions
+     * @param license soap web service license key
+     * @return envelope
+     */
+    public static String envelope(String id, String ip, String seconds, String license) {
+        StringBuilder xml = new StringBuilder(512);
+        xml.append("<v:Envelope xmlns:i=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns:d=\"http://www.w3.org/2001/XMLSchema\"")
+                .append(" xmlns:c=\"http://schemas.xmlsoap.org/soap/encoding/\" xmlns:v=\"http://schemas.xmlsoap.org/soap/envelope/\">")
+                .append("<v:Header /><v:Body>")
+                .append('<').append(METHOD_NAME).append(" xmlns=\"").append(NAMESPACE).append("\">");
+        parameter(xml, "id", id);
+        parameter(xml, "ip", ip);
+        parameter(xml, "seconds", seconds);
+        parameter(xml, "license", license);
+        xml.append("</").append(METHOD_NAME).append('>')
+                .append("</v:Body></v:Envelope>");
+        return xml.toString();
+    }
+
+    // append a string parameter (escaped)
+    private static void parameter(StringBuilder xml, String name, String value) {
+        xml.append('<').append(name).append(" i:type=\"d:string\">");
+        if (null != value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '&': xml.append("&amp;"); break;
+                    case '<': xml.append("&lt;"); break;
+                    case '>': xml.append("&gt;"); break;
+                    case '"': xml.append("&quot;"); break;
+                    default: xml.append(c);
+                }
+            }
+        }
+        xml.append("</").append(name).append('>');
+    }
+
+}
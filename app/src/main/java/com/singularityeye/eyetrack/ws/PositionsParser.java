@@ -0,0 +1,321 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.ws;
+
+import com.singularityeye.eyetrack.model.PositionHistory;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+/**
+ * Satellite positions response parser (GetPositionsByIp soap response, streamed).
+ * The envelope is pulled event by event; no soap objects are built and numbers are parsed straight from the parser
+ * character buffer. Only the last position is kept (latest fix), unless a history is given (history mode):
+ * then every position is streamed into it. Memory does not depend on the number of positions in the response.
+ * Note: a parser is reused between responses (single thread).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PositionsParser {
+
+    // position fields
+    private static final int NONE = 0, ID = 1, NAME = 2, LATITUDE = 3, LONGITUDE = 4, ALTITUDE = 5, AZIMUTH = 6, ELEVATION = 7, TIME = 8, FAULT = 9;
+
+    private static final double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22}; // exact doubles
+    private static final long MAX_MANTISSA = 1L << 53; // exact integers in a double
+
+    // position being parsed
+    private int item_id;
+    private String item_name;
+    private long item_time;
+    private double item_latitude, item_longitude, item_altitude, item_azimuth, item_elevation;
+
+    // last position
+    private int id;
+    private String name;
+    private long time;
+    private double latitude, longitude, altitude, azimuth, elevation;
+
+    private final int[] holder = new int[2]; // text start and length
+    private long parse_time; // nanoseconds spent in the last parse (it includes reading the streamed response)
+
+    /**
+     * Parse a response.
+     * @param parser pull parser positioned at the start of the response (namespaces processed)
+     * @param history history mode: every position is added to it (null to keep the last position only)
+     * @return number of positions found (the last one is available from the getters)
+     * @throws XmlPullParserException if the response is not well formed
+     * @throws IOException if the response is a soap fault ({@link SoapFaultException}), or it can not be read
+     */
+    public int parse(XmlPullParser parser, PositionHistory history) throws XmlPullParserException, IOException {
+        long started = System.nanoTime();
+        try {
+            return parseResponse(parser, history);
+        } finally {
+            parse_time = System.nanoTime() - started;
+        }
+    }
+
+    /**
+     * Get the time spent in the last parse (the response is streamed, so it includes reading the response body).
+     * @return nanoseconds
+     */
+    public long getParseTime() {
+        return parse_time;
+    }
+
+    // parse a response (see parse)
+    private int parseResponse(XmlPullParser parser, PositionHistory history) throws XmlPullParserException, IOException {
+        int positions = 0;
+        boolean in_item = false;
+        int field = NONE;
+        String fault = null;
+        for (int event = parser.getEventType(); XmlPullParser.END_DOCUMENT != event; event = parser.next()) {
+            switch (event) {
+                case XmlPullParser.START_TAG:
+                    String tag = parser.getName();
+                    if ("item".equals(tag)) {
+                        in_item = true;
+                        startItem();
+                    } else if (in_item) {
+                        field = field(tag);
+                    } else if ("faultstring".equals(tag)) {
+                        field = FAULT;
+                        fault = "";
+                    }
+                    break;
+                case XmlPullParser.TEXT:
+                    if (NONE == field) break;
+                    char[] text = parser.getTextCharacters(holder);
+                    if (FAULT == field) fault = new String(text, holder[0], holder[1]).trim();
+                    else setField(field, text, holder[0], holder[1]);
+                    break;
+                case XmlPullParser.END_TAG:
+                    field = NONE;
+                    if (in_item && "item".equals(parser.getName())) {
+                        in_item = false;
+                        if (endItem(history)) positions++;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (null != fault) throw new SoapFaultException(fault);
+        return positions;
+    }
+
+    /**
+     * Get the NORAD ID of the last position.
+     * @return NORAD ID (0 if unknown)
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the platform name of the last position.
+     * @return short name, could be null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the time of the last position.
+     * @return utc (milliseconds since 1970-01-01), 0 if unknown
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Get the latitude of the last position.
+     * @return decimal degrees
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Get the longitude of the last position.
+     * @return decimal degrees
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Get the altitude of the last position.
+     * @return kilometers
+     */
+    public double getAltitude() {
+        return altitude;
+    }
+
+    /**
+     * Get the azimuth of the last position (observer of the request).
+     * @return decimal degrees, NaN if unknown
+     */
+    public double getAzimuth() {
+        return azimuth;
+    }
+
+    /**
+     * Get the elevation of the last position (observer of the request).
+     * @return decimal degrees, NaN if unknown
+     */
+    public double getElevation() {
+        return elevation;
+    }
+
+    // reset the position being parsed
+    private void startItem() {
+        item_id = 0;
+        item_name = null;
+        item_time = 0;
+        item_latitude = item_longitude = item_altitude = item_azimuth = item_elevation = Double.NaN;
+    }
+
+    // keep the parsed position as last position (and add it to history)
+    // if the position has no coordinates return false
+    private boolean endItem(PositionHistory history) {
+        if (Double.isNaN(item_latitude) || Double.isNaN(item_longitude) || Double.isNaN(item_altitude)) return false;
+        id = item_id;
+        name = item_name;
+        time = item_time;
+        latitude = item_latitude;
+        longitude = item_longitude;
+        altitude = item_altitude;
+        azimuth = item_azimuth;
+        elevation = item_elevation;
+        if (null != history && 0 != time) history.add(time, latitude, longitude, altitude);
+        return true;
+    }
+
+    // position field of a tag
+    private static int field(String tag) {
+        switch (tag) {
+            case "id": return ID; // note: SatPosition element names, as read by the former ksoap2 client
+            case "shortname": return NAME;
+            case "satlatitude": return LATITUDE;
+            case "satlongitude": return LONGITUDE;
+            case "sataltitude": return ALTITUDE;
+            case "azimuth": return AZIMUTH;
+            case "elevation": return ELEVATION;
+            case "timestamp": return TIME;
+            default: return NONE;
+        }
+    }
+
+    // set a field of the position being parsed from text characters
+    private void setField(int field, char[] text, int start, int length) {
+        switch (field) {
+            case ID: item_id = (int) parseDouble(text, start, length); break;
+            case NAME: item_name = name(text, start, length); break;
+            case LATITUDE: item_latitude = parseDouble(text, start, length); break;
+            case LONGITUDE: item_longitude = parseDouble(text, start, length); break;
+            case ALTITUDE: item_altitude = parseDouble(text, start, length); break;
+            case AZIMUTH: item_azimuth = parseDouble(text, start, length); break;
+            case ELEVATION: item_elevation = parseDouble(text, start, length); break;
+            case TIME: item_time = (long) parseDouble(text, start, length) * 1000L; break; // note: seconds
+            default: break;
+        }
+    }
+
+    // platform name (the previous name is reused if unchanged, no allocation)
+    private String name(char[] text, int start, int length) {
+        String previous = (null != item_name) ? item_name : name;
+        while (length > 0 && Character.isWhitespace(text[start])) { start++; length--; }
+        while (length > 0 && Character.isWhitespace(text[start + length - 1])) length--;
+        if (null != previous && previous.length() == length) {
+            int i = 0;
+            while (i < length && previous.charAt(i) == text[start + i]) i++;
+            if (i == length) return previous;
+        }
+        return new String(text, start, length);
+    }
+
+    /**
+     * Parse a decimal number from characters (no allocation for plain decimals of up to 15 significant digits).
+     * Other numbers (exponents out of range, more digits, NaN) fall back to {@link Double#parseDouble}.
+     * @param text characters
+     * @param start first character
+     * @param length number of characters
+     * @return number
+     * @throws NumberFormatException if the characters are not a number
+     */
+    static double parseDouble(char[] text, int start, int length) {
+        int i = start, end = start + length;
+        while (i < end && Character.isWhitespace(text[i])) i++;
+        while (end > i && Character.isWhitespace(text[end - 1])) end--;
+        int first = i;
+        boolean negative = false;
+        if (i < end && ('-' == text[i] || '+' == text[i])) negative = '-' == text[i++];
+        long mantissa = 0;
+        int exponent = 0, digits = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            char c = text[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa >= MAX_MANTISSA / 10) return fallback(text, first, end); // note: not exact any more
+                mantissa = 10 * mantissa + (c - '0');
+                if (dot) exponent--;
+                digits++;
+            } else if ('.' == c && !dot) {
+                dot = true;
+            } else if ('e' == c || 'E' == c) {
+                break;
+            } else {
+                return fallback(text, first, end);
+            }
+        }
+        if (0 == digits) return fallback(text, first, end);
+        if (i < end) { // exponent
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && ('-' == text[i] || '+' == text[i])) negativeExponent = '-' == text[i++];
+            int value = 0;
+            if (i == end) return fallback(text, first, end);
+            for (; i < end; i++) {
+                char c = text[i];
+                if (c < '0' || c > '9' || value > 1000) return fallback(text, first, end);
+                value = 10 * value + (c - '0');
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (exponent < -22 || exponent > 22) return fallback(text, first, end);
+        // note: exact mantissa and exact power of ten, so one correctly rounded operation
+        double value = (exponent < 0) ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+        return negative ? -value : value;
+    }
+
+    // parse a number with the standard parser
+    private static double fallback(char[] text, int start, int end) {
+        return Double.parseDouble(new String(text, start, end - start));
+    }
+
+}
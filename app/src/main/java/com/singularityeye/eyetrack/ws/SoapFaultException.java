@@ -0,0 +1,53 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.ws;
+
+import java.io.IOException;
+
+/**
+ * Soap fault exception: the web service answered with a fault (e.g. bad license key).
+ * It is not retried, the same request would fail again.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class SoapFaultException extends IOException {
+
+    private final String fault;
+
+    /**
+     * Constructor method for the exception.
+     * @param fault fault string
+     */
+    public SoapFaultException(String fault) {
+        super("SoapFault: " + fault);
+        this.fault = fault;
+    }
+
+    /**
+     * Get the fault string.
+     * @return fault string
+     */
+    public String getFault() {
+        return fault;
+    }
+
+}
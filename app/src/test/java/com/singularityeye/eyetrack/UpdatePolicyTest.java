@@ -0,0 +1,83 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+package com.singularityeye.eyetrack;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Update rate policy test: tick interval bounds, soap fallback and zoom changes between ticks.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class UpdatePolicyTest {
+
+    private static final double LOW_ORBIT_RATE = 2.0 * Math.PI / 5580.0 * 0.93; // rad/s (ground track of a 93 minutes orbit)
+
+    @Test
+    public void emptyTickIsMaximumInterval() {
+        UpdatePolicy policy = new UpdatePolicy();
+        policy.reset();
+        assertEquals(UpdatePolicy.MAX_INTERVAL, policy.interval());
+        policy.addFallback();
+        assertEquals(UpdatePolicy.DEFAULT_INTERVAL, policy.interval());
+    }
+
+    @Test
+    public void zoomInShortensIntervalBeforeNextTick() {
+        UpdatePolicy policy = new UpdatePolicy();
+        policy.setZoom(5.0f);
+        policy.reset();
+        policy.add(LOW_ORBIT_RATE, 0.0);
+        long interval = policy.interval();
+        assertTrue(interval > UpdatePolicy.MIN_INTERVAL && interval < UpdatePolicy.MAX_INTERVAL);
+
+        // note: no tick in between, speeds of the last tick are scaled to the new zoom
+        policy.setZoom(6.0f);
+        assertEquals(interval / 2.0, policy.interval(), 1.0);
+        policy.setZoom(4.0f);
+        assertEquals(interval * 2.0, policy.interval(), 1.0);
+        policy.setZoom(12.0f);
+        assertEquals(UpdatePolicy.MIN_INTERVAL, policy.interval());
+
+        // next tick at the new zoom: same interval as the scaled one
+        policy.reset();
+        policy.add(LOW_ORBIT_RATE, 0.0);
+        assertEquals(UpdatePolicy.MIN_INTERVAL, policy.interval());
+    }
+
+    @Test
+    public void clockRateShortensInterval() {
+        UpdatePolicy policy = new UpdatePolicy();
+        policy.setZoom(5.0f);
+        policy.reset(1.0);
+        policy.add(LOW_ORBIT_RATE, 0.0);
+        long live = policy.interval();
+        policy.reset(-2.0); // note: backwards replay, same speed
+        policy.add(LOW_ORBIT_RATE, 0.0);
+        assertEquals(live / 2.0, policy.interval(), 1.0);
+    }
+
+}
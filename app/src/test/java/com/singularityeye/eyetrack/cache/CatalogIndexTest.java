@@ -0,0 +1,143 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.cache;
+
+import com.singularityeye.eyetrack.orbit.TLE;
+import com.singularityeye.eyetrack.orbit.TestElements;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Catalog search index test: NORAD ID and name prefix queries, typos at edit distance 1 and 2,
+ * and search as you type latency on a catalog of the public catalog size order.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class CatalogIndexTest {
+
+    private static final String[] WORDS = {"STARLINK", "ONEWEB", "IRIDIUM", "GLOBALSTAR", "COSMOS", "METEOR", "FENGYUN",
+            "SENTINEL", "LANDSAT", "GALILEO", "BEIDOU", "INTELSAT", "ORBCOMM", "FLOCK", "LEMUR"};
+    private static final int LARGE = 20000; // platforms of the latency catalog
+    private static final long BUDGET = 1000000; // search as you type budget (nanoseconds)
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final int[] results = new int[16];
+
+    // write and index a catalog of named element sets
+    private CatalogIndex index(int[] ids, String[] names) throws IOException {
+        CatalogWriter writer = new CatalogWriter();
+        for (int i = 0; i < ids.length; i++) {
+            TLE tle = TestElements.onDay(ids[i], 289.5, TestElements.LOW_ORBIT);
+            writer.add(TLE.parse(names[i], tle.getLine1(), tle.getLine2()), tle.getEpochMillis());
+        }
+        File file = folder.newFile();
+        writer.write(file);
+        return CatalogIndex.build(Catalog.open(file));
+    }
+
+    private CatalogIndex small() throws IOException {
+        return index(new int[]{20580, 22675, 25544, 25994, 27424, 28654, 33591, 44238, 44239}, // note: ascending NORAD IDs
+                new String[]{"HST", "COSMOS 2251", "ISS (ZARYA)", "TERRA", "AQUA", "NOAA 18", "NOAA 19", "STARLINK-1007", "STARLINK-1008"});
+    }
+
+    // NORAD IDs of a query results, in result order
+    private List<Integer> search(CatalogIndex index, String query) {
+        int count = index.search(query, results);
+        List<Integer> ids = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++) ids.add(index.getNORAD_ID(results[i]));
+        return ids;
+    }
+
+    @Test
+    public void idQueries() throws IOException {
+        CatalogIndex index = small();
+        assertEquals(Arrays.asList(25544), search(index, "25544"));
+        assertEquals(Arrays.asList(44238, 44239), search(index, "4423")); // note: id prefix, ascending
+        assertEquals(-1, index.find(99999));
+        assertEquals(27424, index.getNORAD_ID(index.find(27424)));
+    }
+
+    @Test
+    public void prefixQueries() throws IOException {
+        CatalogIndex index = small();
+        assertEquals(Arrays.asList(28654, 33591), search(index, "noaa")); // note: alphabetical, "NOAA 18" first
+        assertEquals(Arrays.asList(33591, 28654), search(index, "NOAA 19")); // note: exact prefix first, then one typo
+        assertEquals(Arrays.asList(25544), search(index, "zarya")); // note: word start, punctuation ignored
+        assertEquals(Arrays.asList(44238, 44239), search(index, "starlink 100"));
+        assertEquals("ISS (ZARYA)", index.getName(index.find(25544)));
+    }
+
+    @Test
+    public void typosAtEditDistanceOne() throws IOException {
+        CatalogIndex index = small();
+        assertEquals(Arrays.asList(25994), search(index, "TERA")); // deletion
+        assertEquals(Arrays.asList(27424), search(index, "AQIA")); // substitution
+        assertEquals(Arrays.asList(27424), search(index, "AQAU")); // swapped chars
+        assertEquals(Arrays.asList(22675), search(index, "KOSMOS"));
+        assertTrue(search(index, "AKWA").isEmpty()); // note: 4 chars allow 1 edit only
+    }
+
+    @Test
+    public void typosAtEditDistanceTwo() throws IOException {
+        CatalogIndex index = small();
+        assertEquals(Arrays.asList(44238, 44239), search(index, "STRLNK")); // two deletions
+        assertEquals(Arrays.asList(44238, 44239), search(index, "SATRLNK-10")); // swapped chars and deletion, punctuation ignored
+        assertTrue(search(index, "STXXLNK").isEmpty()); // note: three edits
+    }
+
+    @Test
+    public void searchAsYouTypeLatency() throws IOException {
+        int[] ids = new int[LARGE];
+        String[] names = new String[LARGE];
+        for (int i = 0; i < LARGE; i++) {
+            ids[i] = 10000 + i;
+            names[i] = WORDS[i % WORDS.length] + "-" + i;
+        }
+        CatalogIndex index = index(ids, names);
+        String[] queries = {"1", "STAR", "ONEWEB-1", "STRLINK", "SENTINLE", "GLOBALSTR-12"};
+        for (int k = 0; k < 2000; k++) index.search(queries[k % queries.length], results); // note: warm-up (JIT compiler)
+        for (String query : queries) {
+            long[] times = new long[101];
+            for (int k = 0; k < times.length; k++) {
+                long started = System.nanoTime();
+                assertTrue(query, index.search(query, results) > 0);
+                times[k] = System.nanoTime() - started;
+            }
+            Arrays.sort(times);
+            long median = times[times.length / 2];
+            assertTrue(query + ": median " + median + " ns", median < BUDGET);
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.cache;
+
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static com.singularityeye.eyetrack.orbit.TestElements.HIGH_ORBIT;
+import static com.singularityeye.eyetrack.orbit.TestElements.LOW_ORBIT;
+import static com.singularityeye.eyetrack.orbit.TestElements.onDay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Orbital elements store test: staleness rules, epoch ordering, bounded save and crash recovery.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ElementStoreTest {
+
+    static final long HOUR = 3600000L;
+    static final long DAY = 24 * HOUR;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ElementStore store(int maxEntries) throws IOException {
+        return new ElementStore(new File(folder.getRoot(), "elements.bin"), maxEntries);
+    }
+
+    @Test
+    public void missingIsStale() throws IOException {
+        assertTrue(store(10).isStale(25544, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void lowOrbitRefreshedEverySixHours() throws IOException {
+        ElementStore store = store(10);
+        TLE tle = onDay(25544, 289.5, LOW_ORBIT);
+        long fetched = tle.getEpochMillis();
+        store.put(tle, fetched);
+        assertFalse(store.isStale(25544, fetched + 30 * 60000L)); // note: minimum interval between requests
+        assertFalse(store.isStale(25544, fetched + 5 * HOUR));
+        assertTrue(store.isStale(25544, fetched + 6 * HOUR));
+    }
+
+    @Test
+    public void highOrbitRefreshedEveryDay() throws IOException {
+        ElementStore store = store(10);
+        TLE tle = onDay(8195, 289.5, HIGH_ORBIT);
+        long fetched = tle.getEpochMillis();
+        store.put(tle, fetched);
+        assertFalse(store.isStale(8195, fetched + 6 * HOUR));
+        assertTrue(store.isStale(8195, fetched + DAY));
+    }
+
+    @Test
+    public void oldEpochIsRevalidated() throws IOException {
+        ElementStore store = store(10);
+        TLE tle = onDay(8195, 289.5, HIGH_ORBIT);
+        long fetched = tle.getEpochMillis() + 3 * DAY; // note: fetched recently, but the epoch is three days old
+        store.put(tle, fetched);
+        assertFalse(store.isStale(8195, fetched + 30 * 60000L));
+        assertTrue(store.isStale(8195, fetched + HOUR));
+    }
+
+    @Test
+    public void expiredEpochIsNotUsable() throws IOException {
+        ElementStore store = store(10);
+        TLE tle = onDay(25544, 289.5, LOW_ORBIT);
+        store.put(tle, tle.getEpochMillis());
+        assertNotNull(store.getUsable(25544, tle.getEpochMillis() + 29 * DAY));
+        assertNull(store.getUsable(25544, tle.getEpochMillis() + 30 * DAY));
+        assertTrue(store.save());
+        ElementStore loaded = store(10);
+        assertTrue(loaded.load());
+        assertNotNull(loaded.getUsable(25544, tle.getEpochMillis() + 29 * DAY));
+        assertNull(loaded.getUsable(25544, tle.getEpochMillis() + 30 * DAY));
+    }
+
+    @Test
+    public void olderEpochNeverReplacesNewer() throws IOException {
+        ElementStore store = store(10);
+        TLE newer = onDay(25544, 289.5, LOW_ORBIT), older = onDay(25544, 288.5, LOW_ORBIT);
+        store.put(newer, newer.getEpochMillis());
+        store.put(older, newer.getEpochMillis() + 7 * HOUR);
+        assertEquals(newer.getEpochJD(), store.get(25544).getEpochJD(), 0.0);
+        assertFalse(store.isStale(25544, newer.getEpochMillis() + 8 * HOUR)); // note: fetch time is still updated
+
+        // persisted element set
+        assertTrue(store.save());
+        ElementStore loaded = store(10);
+        assertTrue(loaded.load());
+        loaded.put(older, newer.getEpochMillis() + 9 * HOUR);
+        assertEquals(newer.getEpochJD(), loaded.get(25544).getEpochJD(), 0.0);
+    }
+
+    @Test
+    public void saveDropsLeastRecentlyFetched() throws IOException {
+        ElementStore store = store(2);
+        long now = onDay(1, 289.5, LOW_ORBIT).getEpochMillis();
+        store.put(onDay(3, 289.5, LOW_ORBIT), now - 3 * HOUR);
+        store.put(onDay(1, 289.5, LOW_ORBIT), now - HOUR);
+        assertTrue(store.save());
+        store.put(onDay(2, 289.5, LOW_ORBIT), now); // note: one persisted and one received element set are dropped together
+        store.put(onDay(4, 289.5, LOW_ORBIT), now - 2 * HOUR);
+        assertTrue(store.save());
+
+        ElementStore loaded = store(2);
+        assertTrue(loaded.load());
+        assertEquals(2, loaded.size());
+        assertNotNull(loaded.get(1));
+        assertNotNull(loaded.get(2));
+        assertNull(loaded.get(3));
+        assertNull(loaded.get(4));
+    }
+
+    @Test
+    public void loadAfterCrashKeepsLastSavedCatalog() throws IOException {
+        ElementStore store = store(10);
+        TLE tle = onDay(25544, 289.5, LOW_ORBIT);
+        store.put(tle, tle.getEpochMillis());
+        assertTrue(store.save());
+
+        // crash while saving: a truncated temporary file is left behind, never renamed
+        File file = new File(folder.getRoot(), "elements.bin");
+        FileOutputStream out = new FileOutputStream(new File(file.getPath() + ".tmp"));
+        try {
+            out.write(new byte[]{'E', 'T', 0, 1, 2});
+        } finally {
+            out.close();
+        }
+
+        ElementStore loaded = store(10);
+        assertTrue(loaded.load());
+        assertEquals(1, loaded.size());
+        assertEquals(tle.getLine1(), loaded.get(25544).getLine1());
+        assertEquals(tle.getLine2(), loaded.get(25544).getLine2());
+
+        // the next save replaces the temporary file
+        loaded.put(onDay(20580, 289.5, LOW_ORBIT), tle.getEpochMillis());
+        assertTrue(loaded.save());
+        ElementStore reloaded = store(10);
+        assertTrue(reloaded.load());
+        assertEquals(2, reloaded.size());
+    }
+
+    @Test
+    public void loadWithoutFileAfterCrash() throws IOException {
+        File file = new File(folder.getRoot(), "elements.bin");
+        assertTrue(new File(file.getPath() + ".tmp").createNewFile()); // note: first save never completed
+        ElementStore store = store(10);
+        assertFalse(store.load());
+        assertEquals(0, store.size());
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.cache;
+
+import com.singularityeye.eyetrack.orbit.TLE;
+import com.singularityeye.eyetrack.orbit.TestElements;
+import com.singularityeye.eyetrack.ws.ElementsClient;
+import com.singularityeye.eyetrack.ws.HttpTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Orbital elements updater test against an in-process stub endpoint (active group and single platform queries).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ElementsUpdaterTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final Map<Integer, TLE> group = new LinkedHashMap<Integer, TLE>(); // active platforms group
+    private final Map<Integer, TLE> singles = new LinkedHashMap<Integer, TLE>(); // platforms out of the group
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<String>()); // received queries
+    private volatile int status = 200;
+    private ElementStore store;
+    private ElementsUpdater updater;
+    private long now;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/gp.php", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getQuery();
+                queries.add(query);
+                StringBuilder text = new StringBuilder();
+                if (query.endsWith("GROUP=active")) {
+                    for (TLE tle : group.values()) append(text, tle);
+                } else {
+                    int id = Integer.parseInt(query.substring(query.indexOf("CATNR=") + 6));
+                    TLE tle = group.containsKey(id) ? group.get(id) : singles.get(id);
+                    if (null != tle) append(text, tle);
+                }
+                byte[] body = text.toString().getBytes("US-ASCII");
+                exchange.sendResponseHeaders(status, (0 == body.length) ? -1 : body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/gp.php?FORMAT=TLE&";
+
+        for (int id : new int[]{25544, 20580, 43000}) group.put(id, TestElements.onDay(id, 289.5, TestElements.LOW_ORBIT));
+        singles.put(8195, TestElements.onDay(8195, 289.5, TestElements.HIGH_ORBIT));
+        now = group.get(25544).getEpochMillis() + ElementStoreTest.HOUR;
+
+        store = new ElementStore(new File(folder.getRoot(), "elements.bin"), 100);
+        updater = new ElementsUpdater(store, new ElementsClient(new HttpTransport(2000, 2000, 0, 10)), base + "CATNR=", base + "GROUP=active");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static void append(StringBuilder text, TLE tle) {
+        text.append(tle.getName()).append("\r\n").append(tle.getLine1()).append("\r\n").append(tle.getLine2()).append("\r\n");
+    }
+
+    @Test
+    public void groupFirstThenSingleQueries() throws IOException {
+        List<String> tracked = Arrays.asList("25544", "20580", "8195");
+        updater.setTracked(tracked);
+        List<String> stale = updater.getStale(tracked, now);
+        assertEquals(tracked, stale);
+
+        // active group: only tracked platforms are cached
+        assertEquals(2, updater.request(stale, now));
+        assertEquals(Collections.singletonList("FORMAT=TLE&GROUP=active"), queries);
+        assertNull(store.get(43000));
+
+        // remaining platform: single query
+        stale = updater.getStale(tracked, now);
+        assertEquals(Collections.singletonList("8195"), stale);
+        assertEquals(1, updater.request(stale, now));
+        assertEquals("FORMAT=TLE&CATNR=8195", queries.get(1));
+        assertTrue(updater.getStale(tracked, now).isEmpty());
+
+        // propagators from cached elements
+        assertTrue(updater.refresh(tracked, now).isEmpty());
+        for (String id : tracked) assertNotNull(updater.get(id));
+        for (String id : tracked) assertSame(updater.get(id), updater.get(Integer.parseInt(id))); // note: numeric lookup
+        assertEquals(3, updater.getPropagators().size());
+
+        // untracked platforms are dropped from both lookups
+        updater.setTracked(Collections.singletonList("8195"));
+        assertNull(updater.get(25544));
+        assertNull(updater.get(20580));
+        assertSame(updater.get("8195"), updater.get(8195));
+    }
+
+    @Test
+    public void groupOncePerTrackedSet() throws IOException {
+        List<String> tracked = Arrays.asList("25544", "20580", "8195");
+        updater.setTracked(tracked);
+        updater.request(Arrays.asList("8195", "20580"), now); // note: group, 8195 is not in it
+        updater.request(Arrays.asList("8195", "20580"), now);
+        assertEquals("FORMAT=TLE&GROUP=active", queries.get(0));
+        assertTrue(queries.get(1).startsWith("FORMAT=TLE&CATNR="));
+
+        updater.setTracked(Arrays.asList("25544", "20580"));
+        updater.request(Arrays.asList("25544", "20580"), now);
+        assertEquals("FORMAT=TLE&GROUP=active", queries.get(2));
+    }
+
+    @Test
+    public void staleAfterRefreshInterval() throws IOException {
+        List<String> tracked = Arrays.asList("25544", "8195");
+        updater.request(Collections.singletonList("25544"), now);
+        updater.request(Collections.singletonList("8195"), now);
+        assertTrue(updater.getStale(tracked, now + 5 * ElementStoreTest.HOUR).isEmpty());
+        assertEquals(Collections.singletonList("25544"), updater.getStale(tracked, now + 6 * ElementStoreTest.HOUR)); // note: low orbit
+        assertEquals(tracked, updater.getStale(tracked, now + ElementStoreTest.DAY));
+    }
+
+    @Test
+    public void newerEpochReplacesPropagator() throws IOException {
+        List<String> tracked = Collections.singletonList("25544");
+        updater.request(tracked, now);
+        updater.refresh(tracked, now);
+        double epoch = updater.get("25544").getTLE().getEpochJD();
+
+        group.put(25544, TestElements.onDay(25544, 290.5, TestElements.LOW_ORBIT));
+        updater.request(tracked, now + 7 * ElementStoreTest.HOUR);
+        updater.refresh(tracked, now + 7 * ElementStoreTest.HOUR);
+        assertEquals(epoch + 1.0, updater.get("25544").getTLE().getEpochJD(), 1e-9);
+        assertSame(updater.get("25544"), updater.get(25544));
+
+        // an older epoch from the endpoint is ignored
+        group.put(25544, TestElements.onDay(25544, 288.5, TestElements.LOW_ORBIT));
+        updater.request(tracked, now + 14 * ElementStoreTest.HOUR);
+        updater.refresh(tracked, now + 14 * ElementStoreTest.HOUR);
+        assertEquals(epoch + 1.0, updater.get("25544").getTLE().getEpochJD(), 1e-9);
+    }
+
+    @Test
+    public void serverErrorCachesNothing() {
+        status = 503;
+        try {
+            updater.request(Arrays.asList("25544", "20580"), now);
+            fail("server error");
+        } catch (HttpTransport.StatusException e) {
+            assertEquals(503, e.getCode());
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+        assertNull(store.get(25544));
+        assertEquals(0, store.size());
+    }
+
+}
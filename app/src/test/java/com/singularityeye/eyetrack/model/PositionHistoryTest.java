@@ -0,0 +1,140 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+package com.singularityeye.eyetrack.model;
+
+import com.singularityeye.eyetrack.orbit.Coordinates;
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Position history test: replay interpolation (great circle, antimeridian, poles, against a propagated ground track),
+ * sample filtering and ring buffer order.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PositionHistoryTest {
+
+    private static final double ANGLE_TOLERANCE = 1e-9; // decimal degrees (exact geometry)
+    private static final double TRACK_TOLERANCE = 0.01; // decimal degrees (about 1 km, 10 seconds between samples)
+
+    private final double[] lla = new double[3];
+
+    @Test
+    public void interpolatesAcrossTheAntimeridian() {
+        PositionHistory history = new PositionHistory(4);
+        history.add(0L, 0.0, 170.0, 400.0);
+        history.add(4000L, 0.0, -170.0, 420.0);
+        assertTrue(history.interpolate(1000L, lla));
+        assertEquals(0.0, lla[0], ANGLE_TOLERANCE);
+        assertEquals(175.0, lla[1], ANGLE_TOLERANCE); // note: not 85 (linear longitude)
+        assertEquals(405.0, lla[2], ANGLE_TOLERANCE);
+        assertTrue(history.interpolate(3000L, lla));
+        assertEquals(-175.0, lla[1], ANGLE_TOLERANCE);
+    }
+
+    @Test
+    public void interpolatesOverThePole() {
+        PositionHistory history = new PositionHistory(4);
+        history.add(0L, 80.0, 0.0, 400.0);
+        history.add(2000L, 80.0, 180.0, 400.0);
+        assertTrue(history.interpolate(1000L, lla));
+        assertEquals(90.0, lla[0], 1e-6);
+    }
+
+    @Test
+    public void outOfRangeAndExactSamples() {
+        PositionHistory history = new PositionHistory(4);
+        assertFalse(history.interpolate(0L, lla));
+        history.add(1000L, 10.0, 20.0, 400.0);
+        history.add(2000L, 11.0, 21.0, 401.0);
+        assertFalse(history.interpolate(999L, lla));
+        assertFalse(history.interpolate(2001L, lla));
+        assertTrue(history.interpolate(2000L, lla));
+        assertEquals(11.0, lla[0], 0.0);
+        assertEquals(21.0, lla[1], 0.0);
+        assertEquals(401.0, lla[2], 0.0);
+    }
+
+    @Test
+    public void replayMatchesPropagatedTrack() {
+        SGP4 propagator = new SGP4(TLE.parse("06251",
+                "1 06251U 62025E   06176.82412014  .00008885  00000-0  12808-3 0  3985",
+                "2 06251  58.0579  54.0425 0030035 139.1568 221.1854 15.56387291  6774"));
+        long start = propagator.getTLE().getEpochMillis();
+        PositionHistory history = new PositionHistory(1000, 10000);
+        double[] r = new double[3], v = new double[3], expected = new double[3];
+        for (long t = start; t <= start + 5400000L; t += 10000L) { // note: one orbit, one sample every 10 seconds
+            propagator.propagateAt(t, r, v);
+            Coordinates.temeToGeodetic(r, Coordinates.gmst(t), expected);
+            assertTrue(history.add(t, expected[0], expected[1], expected[2]));
+        }
+        for (long t = start + 5000L; t < start + 5400000L; t += 10000L) {
+            propagator.propagateAt(t, r, v);
+            Coordinates.temeToGeodetic(r, Coordinates.gmst(t), expected);
+            assertTrue(history.interpolate(t, lla));
+            assertEquals("latitude at " + t, expected[0], lla[0], TRACK_TOLERANCE);
+            double longitude = lla[1] - expected[1];
+            longitude -= 360.0 * Math.rint(longitude / 360.0); // note: -180 and 180 are the same meridian
+            assertEquals("longitude at " + t, 0.0, longitude * Math.cos(expected[0] * Math.PI / 180.0), TRACK_TOLERANCE);
+            assertEquals("altitude at " + t, expected[2], lla[2], 0.1);
+        }
+    }
+
+    @Test
+    public void velocityAlongTheEquator() {
+        PositionHistory history = new PositionHistory(4);
+        history.add(0L, 0.0, 10.0, 400.0);
+        history.add(2000L, 0.0, 12.0, 400.0);
+        double[] w = new double[3];
+        assertTrue(history.velocity(1000L, w));
+        assertEquals(0.0, w[0], 1e-12);
+        assertEquals(0.0, w[1], 1e-12);
+        assertEquals(Math.toRadians(1.0), w[2], 1e-12); // note: eastwards, one degree per second
+    }
+
+    @Test
+    public void filtersAndOverwritesOldest() {
+        PositionHistory history = new PositionHistory(3, 1000);
+        assertTrue(history.add(0L, 0.0, 0.0, 400.0));
+        assertFalse(history.add(500L, 0.0, 1.0, 400.0)); // note: closer than the minimum interval
+        assertFalse(history.add(0L, 0.0, 1.0, 400.0)); // note: not newer
+        assertTrue(history.add(1000L, 0.0, 1.0, 400.0));
+        assertTrue(history.add(2000L, 0.0, 2.0, 400.0));
+        assertTrue(history.add(3000L, 0.0, 3.0, 400.0)); // note: overwrites the sample at 0
+        assertEquals(3, history.size());
+        assertEquals(1000L, history.getStartTime());
+        assertEquals(3000L, history.getEndTime());
+        assertEquals(1, history.search(1500L));
+        assertEquals(3, history.search(3500L));
+        assertTrue(history.interpolate(2500L, lla));
+        assertEquals(2.5, lla[1], 1e-9);
+        assertFalse(history.interpolate(500L, lla));
+    }
+
+}
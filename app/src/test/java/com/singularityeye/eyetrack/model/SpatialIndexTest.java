@@ -0,0 +1,120 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+package com.singularityeye.eyetrack.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Spatial index test: viewport boxes (antimeridian, whole world), observer horizon and slot reuse across ticks.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class SpatialIndexTest {
+
+    private SpatialIndex index;
+    private final int[] out = new int[256];
+
+    @Before
+    public void setUp() {
+        index = new SpatialIndex(4);
+        index.begin();
+        put(1, 10.0, -179.5);
+        put(2, 10.0, -90.0);
+        put(3, 10.0, 0.0);
+        put(4, 10.0, 90.0);
+        put(5, 10.0, 179.5);
+        put(6, 10.0, 180.0); // note: indexed in the first column (same as -180)
+        put(7, -60.0, 45.0);
+        index.end();
+    }
+
+    private void put(int id, double latitude, double longitude) {
+        index.put(id, "SAT " + id, 0L, latitude, longitude, 400.0, null);
+    }
+
+    // NORAD IDs found by a box query (sorted)
+    private int[] box(double south, double west, double north, double east) {
+        int count = index.queryBox(south, west, north, east, out);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) ids[i] = index.getId(out[i]);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void boxInsideOneHemisphere() {
+        assertArrayEquals(new int[]{2, 3}, box(0.0, -100.0, 20.0, 10.0));
+        assertArrayEquals(new int[]{7}, box(-90.0, -180.0, 0.0, 180.0));
+    }
+
+    @Test
+    public void boxEndingAtTheAntimeridian() {
+        assertArrayEquals(new int[]{3, 4, 5, 6}, box(0.0, 0.0, 20.0, 180.0));
+        assertArrayEquals(new int[]{5, 6}, box(0.0, 179.0, 20.0, 180.0));
+    }
+
+    @Test
+    public void boxCrossingTheAntimeridian() {
+        assertArrayEquals(new int[]{1, 5, 6}, box(0.0, 170.0, 20.0, -170.0));
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6}, box(0.0, 0.5, 20.0, 0.2)); // note: almost the whole world
+    }
+
+    @Test
+    public void wholeWorld() {
+        assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6, 7}, box(-90.0, -180.0, 90.0, 180.0));
+        assertEquals(7, index.queryBox(-90.0, -180.0, 90.0, 180.0, new int[2])); // note: count beyond output length
+    }
+
+    @Test
+    public void horizon() {
+        assertEquals(1, index.queryHorizon(10.0, 0.0, 10.0, out));
+        assertEquals(3, index.getId(out[0]));
+        assertEquals(3, index.queryHorizon(10.0, 180.0, 10.0, out)); // note: across the antimeridian (ids 1, 5 and 6)
+    }
+
+    @Test
+    public void moveAndRemove() {
+        index.begin();
+        put(1, -60.0, 44.0); // note: moved to the cell of id 7
+        put(7, -60.0, 45.0);
+        for (int id = 100; id < 300; id++) put(id, 80.0, id - 200.0); // note: slot table and arrays grow
+        assertEquals(5, index.end());
+        assertEquals(202, index.size());
+        assertEquals(-1, index.find(3));
+        assertArrayEquals(new int[]{1, 7}, box(-90.0, -180.0, 0.0, 180.0));
+        assertEquals(0, box(0.0, -180.0, 20.0, 180.0).length);
+
+        index.begin();
+        for (int id = 100; id < 300; id += 2) put(id, 80.0, 0.0);
+        assertEquals(102, index.end());
+        for (int id = 100; id < 300; id++) assertEquals(0 == id % 2, -1 != index.find(id));
+        assertEquals(-1, index.find(1));
+        assertEquals(100, box(70.0, -1.0, 90.0, 1.0).length);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+package com.singularityeye.eyetrack.orbit;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Batch propagator test: the structure of arrays stages must reproduce the scalar propagator.
+ * The near earth verification vectors (Vallado et al., see {@link SGP4Test}) are propagated by the batch and by {@link SGP4}
+ * at the same utc times; deep space platforms are batched along to check the batch order (near earth first).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class BatchPropagatorTest {
+
+    private static final double POSITION_TOLERANCE = 1.0e-6; // km (batch against scalar)
+    private static final double VELOCITY_TOLERANCE = 1.0e-9; // km/s (batch against scalar)
+    private static final double VECTOR_POSITION_TOLERANCE = 1.0e-2; // km (batch against published vectors)
+    private static final double VECTOR_VELOCITY_TOLERANCE = 1.0e-5; // km/s (note: epoch rounded to the millisecond)
+    private static final double ANGLE_TOLERANCE = 1.0e-6; // decimal degrees (note: bowring closed form against iterations)
+    private static final double ALTITUDE_TOLERANCE = 1.0e-3; // km (note: high orbits, below 1 m)
+
+    private static final SGP4 VANGUARD = new SGP4(TLE.parse("00005",
+            "1 00005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753",
+            "2 00005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667"));
+    private static final SGP4 DELTA_DEBRIS = new SGP4(TLE.parse("06251",
+            "1 06251U 62025E   06176.82412014  .00008885  00000-0  12808-3 0  3985",
+            "2 06251  58.0579  54.0425 0030035 139.1568 221.1854 15.56387291  6774"));
+    private static final SGP4 XM2 = new SGP4(TLE.parse("28626",
+            "1 28626U 05008A   06176.46683397 -.00000205  00000-0  10000-3 0  2190",
+            "2 28626   0.0019 286.9433 0000335  13.7918  55.6504  1.00270176  4891"));
+    private static final SGP4 MOLNIYA = new SGP4(TLE.parse("08195",
+            "1 08195U 75081A   06176.33215444  .00000099  00000-0  11873-3 0   813",
+            "2 08195  64.1586 279.0717 6877146 264.7651  20.2257  2.00491383225656"));
+
+    // minutes since epoch, position (km) and velocity (km/s), tcppver.out
+    private static final double[][] VANGUARD_VECTORS = {
+            {0.0, 7022.46529266, -1400.08296755, 0.03995155, 1.893841015, 6.405893759, 4.534807250},
+            {360.0, -7154.03120202, -3783.17682504, -3536.19412294, 4.741887409, -4.151817765, -2.093935425},
+            {720.0, -7134.59340119, 6531.68641334, 3260.27186483, -4.113793027, -2.911922039, -2.557327851},
+            {1080.0, 5568.53901181, 4492.06992591, 3863.87641983, -4.209106476, 5.159719888, 2.744852980},
+            {1440.0, -938.55923943, -6268.18748831, -4294.02924751, 7.536105209, -0.427127707, 0.989878080},
+            {4320.0, -9060.47373569, 4658.70952502, 813.68673153, -2.232832783, -4.110453490, -3.157345433}
+    };
+    private static final double[][] DELTA_DEBRIS_VECTORS = {
+            {0.0, 3988.31022699, 5498.96657235, 0.90055879, -3.290032738, 2.357652820, 6.496623475},
+            {120.0, -3935.69800083, 409.10980837, 5471.33577327, -3.374784183, -6.635211043, -1.942056221},
+            {1440.0, -2777.14682335, -5663.16031708, -2462.54889123, 4.915493146, 0.123328992, -5.896495091},
+            {2880.0, 1159.27802897, 5056.60175495, 4353.49418579, -5.968060341, -2.314790406, 4.230722669}
+    };
+
+    // propagate a single platform batch at the published times and check it against the published vectors
+    private static void checkVectors(SGP4 propagator, double[][] vectors) {
+        BatchPropagator batch = new BatchPropagator(Arrays.asList(propagator));
+        long epoch = propagator.getTLE().getEpochMillis();
+        double[] r = new double[3], v = new double[3];
+        for (double[] vector : vectors) {
+            batch.propagate(epoch + Math.round(vector[0] * 60000.0));
+            assertEquals("propagation error at " + vector[0], SGP4.ERROR_NONE, batch.getError(0));
+            batch.getPosition(0, r);
+            batch.getVelocity(0, v);
+            for (int i = 0; i < 3; i++) {
+                assertEquals("r[" + i + "] at " + vector[0], vector[1 + i], r[i], VECTOR_POSITION_TOLERANCE);
+                assertEquals("v[" + i + "] at " + vector[0], vector[4 + i], v[i], VECTOR_VELOCITY_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void nearEarthVerificationVectors() {
+        checkVectors(VANGUARD, VANGUARD_VECTORS);
+        checkVectors(DELTA_DEBRIS, DELTA_DEBRIS_VECTORS);
+    }
+
+    @Test
+    public void batchMatchesScalar() {
+        BatchPropagator batch = new BatchPropagator(Arrays.asList(MOLNIYA, VANGUARD, XM2, DELTA_DEBRIS));
+        assertEquals(4, batch.size());
+        assertEquals(5, batch.getId(0)); // note: near earth platforms first, in collection order
+        assertEquals(6251, batch.getId(1));
+        assertEquals(8195, batch.getId(2));
+        assertEquals(28626, batch.getId(3));
+
+        double[] r = new double[3], v = new double[3], expectedR = new double[3], expectedV = new double[3], lla = new double[3];
+        long start = DELTA_DEBRIS.getTLE().getEpochMillis();
+        for (double[] vector : DELTA_DEBRIS_VECTORS) {
+            long time = start + Math.round(vector[0] * 60000.0);
+            batch.propagate(time);
+            double gmst = Coordinates.gmst(time);
+            for (int k = 0; k < batch.size(); k++) {
+                SGP4 propagator = batch.getPropagator(k);
+                String at = propagator.getTLE().getNORAD_ID() + " at " + vector[0];
+                assertEquals("propagation error of " + at, propagator.propagateAt(time, expectedR, expectedV), batch.getError(k));
+                batch.getPosition(k, r);
+                batch.getVelocity(k, v);
+                for (int i = 0; i < 3; i++) {
+                    assertEquals("r[" + i + "] of " + at, expectedR[i], r[i], POSITION_TOLERANCE);
+                    assertEquals("v[" + i + "] of " + at, expectedV[i], v[i], VELOCITY_TOLERANCE);
+                }
+                Coordinates.temeToGeodetic(expectedR, gmst, lla);
+                assertEquals("latitude of " + at, lla[0], batch.getLatitude(k), ANGLE_TOLERANCE);
+                assertEquals("longitude of " + at, lla[1], batch.getLongitude(k), ANGLE_TOLERANCE);
+                assertEquals("altitude of " + at, lla[2], batch.getAltitude(k), ALTITUDE_TOLERANCE);
+            }
+        }
+    }
+
+}
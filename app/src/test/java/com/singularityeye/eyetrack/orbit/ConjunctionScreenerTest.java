@@ -0,0 +1,128 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import com.singularityeye.eyetrack.model.Conjunction;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Conjunction screener test: close approaches of a synthetic catalog (one shell of low orbits, random planes and phases)
+ * against a brute force scan of every pair, sampled every second and refined every millisecond around local minima.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ConjunctionScreenerTest {
+
+    private static final long SECOND = 1000L, HOUR = 3600 * SECOND;
+    private static final long EPOCH = 1481760000000L; // 2016-12-15 00:00 utc
+    private static final int SIZE = 200; // satellites
+    private static final double THRESHOLD = 20.0; // miss distance (kilometers)
+    private static final double MAX_RELATIVE_SPEED = 16.0; // km/s (sampled minima are at most half a second away)
+    private static final long TIME_TOLERANCE = 100; // milliseconds
+    private static final double DISTANCE_TOLERANCE = 1e-3; // kilometers
+
+    // synthetic catalog: about 400 km altitude, random planes and phases (fixed seed)
+    private static List<SGP4> catalog() {
+        Random random = new Random(19);
+        List<SGP4> catalog = new ArrayList<SGP4>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            catalog.add(new SGP4(TestElements.atEpoch(10000 + i, EPOCH, 40.0 + 60.0 * random.nextDouble(),
+                    360.0 * random.nextDouble(), 360.0 * random.nextDouble(), 15.5 + 0.05 * random.nextDouble())));
+        }
+        return catalog;
+    }
+
+    // distance between two satellites at a time
+    private static double distance(SGP4 p1, SGP4 p2, long time, double[] r1, double[] r2, double[] v) {
+        assertEquals(SGP4.ERROR_NONE, p1.propagateAt(time, r1, v));
+        assertEquals(SGP4.ERROR_NONE, p2.propagateAt(time, r2, v));
+        double dx = r1[0] - r2[0], dy = r1[1] - r2[1], dz = r1[2] - r2[2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    @Test
+    public void matchesBruteForceScan() {
+        List<SGP4> catalog = catalog();
+        long start = EPOCH, end = EPOCH + HOUR;
+
+        // reference: every pair every second, local minima under the threshold plus the sampling bound
+        int steps = (int) ((end - start) / SECOND) + 1;
+        double[][] positions = new double[SIZE][3];
+        double[] r1 = new double[3], r2 = new double[3], v = new double[3];
+        int pairs = SIZE * (SIZE - 1) / 2;
+        double[] before = new double[pairs], previous = new double[pairs], current = new double[pairs];
+        List<long[]> expected = new ArrayList<long[]>(); // ids and tca
+        List<Double> misses = new ArrayList<Double>();
+        for (int k = 0; k < steps; k++) {
+            long t = start + k * SECOND;
+            for (int i = 0; i < SIZE; i++) assertEquals(SGP4.ERROR_NONE, catalog.get(i).propagateAt(t, positions[i], v));
+            double[] swap = before; before = previous; previous = current; current = swap;
+            for (int i = 0, p = 0; i < SIZE; i++) {
+                for (int j = i + 1; j < SIZE; j++, p++) {
+                    double dx = positions[i][0] - positions[j][0], dy = positions[i][1] - positions[j][1], dz = positions[i][2] - positions[j][2];
+                    current[p] = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    if (k < 2 || !(previous[p] < before[p] && previous[p] <= current[p])) continue;
+                    if (previous[p] > THRESHOLD + MAX_RELATIVE_SPEED / 2.0) continue;
+                    // refine: one millisecond scan within one second around the sampled minimum
+                    SGP4 p1 = catalog.get(i), p2 = catalog.get(j);
+                    long sample = t - SECOND, tca = sample;
+                    double miss = Double.MAX_VALUE;
+                    for (long s = sample - SECOND; s <= sample + SECOND; s++) {
+                        double d = distance(p1, p2, s, r1, r2, v);
+                        if (d < miss) {
+                            miss = d;
+                            tca = s;
+                        }
+                    }
+                    if (miss > THRESHOLD) continue;
+                    expected.add(new long[]{p1.getTLE().getNORAD_ID(), p2.getTLE().getNORAD_ID(), tca});
+                    misses.add(miss);
+                }
+            }
+        }
+        assertTrue("reference conjunctions " + expected.size(), expected.size() >= 3);
+
+        List<Conjunction> conjunctions = new ConjunctionScreener(THRESHOLD, ConjunctionScreener.DEFAULT_STEP).screen(catalog, start, end);
+        assertEquals(expected.size(), conjunctions.size());
+        for (int e = 0; e < expected.size(); e++) {
+            long[] pair = expected.get(e);
+            Conjunction match = null;
+            for (Conjunction conjunction : conjunctions) {
+                if (Integer.parseInt(conjunction.getPrimary().getNORAD_ID()) == pair[0]
+                        && Integer.parseInt(conjunction.getSecondary().getNORAD_ID()) == pair[1]
+                        && Math.abs(conjunction.getTca() - pair[2]) <= TIME_TOLERANCE) match = conjunction;
+            }
+            assertTrue("conjunction " + pair[0] + "/" + pair[1] + " at " + pair[2], null != match);
+            assertEquals(misses.get(e), match.getMissDistance(), DISTANCE_TOLERANCE);
+            assertTrue(match.getRelativeSpeed() > 0.0 && match.getRelativeSpeed() < MAX_RELATIVE_SPEED);
+        }
+        for (int c = 1; c < conjunctions.size(); c++) assertTrue(conjunctions.get(c - 1).getTca() <= conjunctions.get(c).getTca());
+    }
+
+}
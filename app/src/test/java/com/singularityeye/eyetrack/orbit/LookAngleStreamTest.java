@@ -0,0 +1,122 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+package com.singularityeye.eyetrack.orbit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Look angle stream test: samples against the observer geometry, range rate against a finite difference of ranges,
+ * doppler sign, and stream sample times on a fixed grid.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class LookAngleStreamTest {
+
+    private static final double FREQUENCY = 437.5e6; // downlink frequency (Hz)
+
+    // 06251 (Delta 1 debris), low orbit (Vallado et al. verification set)
+    private static final SGP4 PROPAGATOR = new SGP4(TLE.parse("06251",
+            "1 06251U 62025E   06176.82412014  .00008885  00000-0  12808-3 0  3985",
+            "2 06251  58.0579  54.0425 0030035 139.1568 221.1854 15.56387291  6774"));
+    private static final Observer OBSERVER = new Observer(40.4168, -3.7038, 0.65); // Madrid
+
+    @Test
+    public void sampleMatchesObserverGeometry() {
+        LookAngleStream stream = new LookAngleStream(PROPAGATOR, OBSERVER, FREQUENCY);
+        double[] r = new double[3], v = new double[3], aer = new double[3];
+        long start = PROPAGATOR.getTLE().getEpochMillis();
+        for (long t = start; t < start + 6 * 3600000L; t += 600000L) {
+            assertTrue(stream.sample(t));
+            PROPAGATOR.propagateAt(t, r, v);
+            Coordinates.temeToEcef(r, Coordinates.gmst(t), r);
+            OBSERVER.lookAngles(r, aer);
+            assertEquals(aer[0], stream.getAzimuth(), 1e-9);
+            assertEquals(aer[1], stream.getElevation(), 1e-9);
+            assertEquals(aer[2], stream.getRange(), 1e-9);
+        }
+    }
+
+    @Test
+    public void rangeRateMatchesRangeDifference() {
+        LookAngleStream stream = new LookAngleStream(PROPAGATOR, OBSERVER, FREQUENCY);
+        long start = PROPAGATOR.getTLE().getEpochMillis();
+        int approaching = 0, receding = 0;
+        for (long t = start; t < start + 6 * 3600000L; t += 300000L) {
+            stream.sample(t - 500);
+            double before = stream.getRange();
+            stream.sample(t + 500);
+            double after = stream.getRange();
+            stream.sample(t);
+            double rangeRate = stream.getRangeRate();
+            assertEquals("range rate at " + t, after - before, rangeRate, 1e-3); // km/s, over one second
+            assertEquals(-FREQUENCY * rangeRate / LookAngleStream.SPEED_OF_LIGHT, stream.getDoppler(), 1e-6);
+            if (rangeRate < 0.0) {
+                approaching++;
+                assertTrue(stream.getDoppler() > 0.0); // note: approaching platforms are received higher
+            } else {
+                receding++;
+            }
+        }
+        assertTrue(approaching > 0 && receding > 0);
+    }
+
+    @Test
+    public void streamSamplesOnFixedGrid() throws InterruptedException {
+        final int rate = 20, samples = 10;
+        final List<Long> times = Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch latch = new CountDownLatch(samples);
+        // note: the stream samples at wall clock time, element set epoch is now
+        LookAngleStream stream = new LookAngleStream(new SGP4(TestElements.atEpoch(25544, System.currentTimeMillis())), OBSERVER, FREQUENCY);
+        stream.start(rate, new LookAngleStream.Listener() {
+            @Override
+            public void onSample(long time, double azimuth, double elevation, double range, double rangeRate, double doppler) {
+                times.add(time);
+                latch.countDown();
+            }
+        });
+        try {
+            assertTrue("samples", latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            stream.stop();
+        }
+        assertFalse(stream.isRunning());
+        long period = 1000 / rate;
+        for (int i = 1; i < samples; i++) {
+            long step = times.get(i) - times.get(i - 1);
+            // note: late wake-ups skip whole periods, sample times never drift (millisecond rounding only)
+            assertTrue("step " + step, step >= period - 1);
+            assertEquals("step " + step, 0, Math.abs(((step + period / 2) % period) - period / 2), 1);
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+package com.singularityeye.eyetrack.orbit;
+
+import com.singularityeye.eyetrack.model.Pass;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pass predictor test: an overhead pass built from the ground track, and AOS, TCA and LOS of two days of passes
+ * against a dense one second elevation scan (same propagator and observer, no coarse steps nor root search).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PassPredictorTest {
+
+    private static final long SECOND = 1000L, MINUTE = 60 * SECOND, HOUR = 60 * MINUTE;
+    private static final double MASK = 10.0; // elevation mask (decimal degrees)
+    private static final long TIME_TOLERANCE = 1500; // milliseconds (refinement tolerance plus scan step)
+    private static final double ELEVATION_TOLERANCE = 0.01; // decimal degrees
+    private static final double HORIZON_TOLERANCE = 0.1; // decimal degrees (elevation change within the refinement tolerance)
+
+    // 06251 (Delta 1 debris), low orbit (Vallado et al. verification set)
+    private static final SGP4 PROPAGATOR = new SGP4(TLE.parse("06251",
+            "1 06251U 62025E   06176.82412014  .00008885  00000-0  12808-3 0  3985",
+            "2 06251  58.0579  54.0425 0030035 139.1568 221.1854 15.56387291  6774"));
+
+    // elevation of the platform (decimal degrees)
+    private static double elevation(Observer observer, long time) {
+        double[] r = new double[3], v = new double[3];
+        assertEquals(SGP4.ERROR_NONE, PROPAGATOR.propagateAt(time, r, v));
+        Coordinates.temeToEcef(r, Coordinates.gmst(time), r);
+        return observer.elevation(r);
+    }
+
+    @Test
+    public void overheadPass() {
+        long tca = PROPAGATOR.getTLE().getEpochMillis() + 3 * HOUR;
+        double[] r = new double[3], v = new double[3], lla = new double[3];
+        PROPAGATOR.propagateAt(tca, r, v);
+        Coordinates.temeToGeodetic(r, Coordinates.gmst(tca), lla);
+        Observer observer = new Observer(lla[0], lla[1], 0.0); // note: right below the platform at tca
+
+        List<Pass> passes = new PassPredictor(observer, MASK).predict(PROPAGATOR, tca - 30 * MINUTE, tca + 30 * MINUTE);
+        assertEquals(1, passes.size());
+        Pass pass = passes.get(0);
+        assertEquals(tca, pass.getTca(), TIME_TOLERANCE);
+        assertTrue("max elevation " + pass.getMaxElevation(), pass.getMaxElevation() > 89.0);
+        assertTrue(pass.getAos() < tca && pass.getLos() > tca);
+        long duration = pass.getLos() - pass.getAos();
+        assertTrue("duration " + duration, duration > 4 * MINUTE && duration < 10 * MINUTE); // note: about 340 km altitude
+        assertEquals(MASK, elevation(observer, pass.getAos()), HORIZON_TOLERANCE);
+        assertEquals(MASK, elevation(observer, pass.getLos()), HORIZON_TOLERANCE);
+    }
+
+    @Test
+    public void matchesDenseScan() {
+        Observer observer = new Observer(40.4168, -3.7038, 0.65); // Madrid
+        long start = PROPAGATOR.getTLE().getEpochMillis(), end = start + 48 * HOUR;
+
+        // reference: rising and setting crossings of the mask every second, maximum elevation in between
+        List<long[]> windows = new ArrayList<long[]>();
+        List<Double> maxima = new ArrayList<Double>();
+        boolean up = elevation(observer, start) > MASK;
+        long aos = up ? start : 0;
+        double max = -90.0;
+        for (long t = start + SECOND; t <= end; t += SECOND) {
+            double elevation = elevation(observer, t);
+            if (elevation > MASK && !up) {
+                up = true;
+                aos = t;
+                max = elevation;
+            } else if (up) {
+                max = Math.max(max, elevation);
+                if (elevation <= MASK) {
+                    up = false;
+                    windows.add(new long[]{aos, t});
+                    maxima.add(max);
+                }
+            }
+        }
+        assertTrue("reference passes " + windows.size(), windows.size() >= 4);
+
+        List<Pass> passes = new PassPredictor(observer, MASK).predict(PROPAGATOR, start, end);
+        assertEquals(windows.size(), passes.size());
+        for (int i = 0; i < passes.size(); i++) {
+            Pass pass = passes.get(i);
+            assertEquals("aos of pass " + i, windows.get(i)[0], pass.getAos(), TIME_TOLERANCE);
+            assertEquals("los of pass " + i, windows.get(i)[1], pass.getLos(), TIME_TOLERANCE);
+            assertEquals("max elevation of pass " + i, maxima.get(i), pass.getMaxElevation(), ELEVATION_TOLERANCE);
+            assertTrue(pass.getAos() <= pass.getTca() && pass.getTca() <= pass.getLos());
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.orbit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SGP4 verification test.
+ * TEME positions and velocities are checked against the published verification vectors
+ * (Vallado et al., "Revisiting Spacetrack Report #3", AIAA 2006-6753, tcppver.out, WGS-72 constants).
+ * Tolerance: 10 meters in position and 1 millimeter per second in velocity
+ * (the published values have 8 decimals; the implementation matches them to the last printed digit on the JVM).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class SGP4Test {
+
+    private static final double POSITION_TOLERANCE = 1.0e-2; // km
+    private static final double VELOCITY_TOLERANCE = 1.0e-6; // km/s
+
+    // minutes since epoch, position (km) and velocity (km/s)
+    private static void check(SGP4 propagator, double[][] vectors) {
+        double[] r = new double[3], v = new double[3];
+        for (double[] vector : vectors) {
+            assertEquals("propagation error at " + vector[0], SGP4.ERROR_NONE, propagator.propagateMinutes(vector[0], r, v));
+            for (int i = 0; i < 3; i++) {
+                assertEquals("r[" + i + "] at " + vector[0], vector[1 + i], r[i], POSITION_TOLERANCE);
+                assertEquals("v[" + i + "] at " + vector[0], vector[4 + i], v[i], VELOCITY_TOLERANCE);
+            }
+        }
+    }
+
+    /**
+     * 00005 (Vanguard 1): near earth, eccentric orbit (e = 0.186).
+     */
+    @Test
+    public void nearEarthEccentric() {
+        SGP4 propagator = new SGP4(TLE.parse("00005",
+                "1 00005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753",
+                "2 00005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667"));
+        assertFalse(propagator.isDeepSpace());
+        check(propagator, new double[][]{
+                {0.0, 7022.46529266, -1400.08296755, 0.03995155, 1.893841015, 6.405893759, 4.534807250},
+                {360.0, -7154.03120202, -3783.17682504, -3536.19412294, 4.741887409, -4.151817765, -2.093935425},
+                {720.0, -7134.59340119, 6531.68641334, 3260.27186483, -4.113793027, -2.911922039, -2.557327851},
+                {1080.0, 5568.53901181, 4492.06992591, 3863.87641983, -4.209106476, 5.159719888, 2.744852980},
+                {1440.0, -938.55923943, -6268.18748831, -4294.02924751, 7.536105209, -0.427127707, 0.989878080},
+                {4320.0, -9060.47373569, 4658.70952502, 813.68673153, -2.232832783, -4.110453490, -3.157345433}
+        });
+    }
+
+    /**
+     * 06251 (Delta 1 debris): near earth, low perigee with drag.
+     */
+    @Test
+    public void nearEarthDrag() {
+        SGP4 propagator = new SGP4(TLE.parse("06251",
+                "1 06251U 62025E   06176.82412014  .00008885  00000-0  12808-3 0  3985",
+                "2 06251  58.0579  54.0425 0030035 139.1568 221.1854 15.56387291  6774"));
+        assertFalse(propagator.isDeepSpace());
+        check(propagator, new double[][]{
+                {0.0, 3988.31022699, 5498.96657235, 0.90055879, -3.290032738, 2.357652820, 6.496623475},
+                {120.0, -3935.69800083, 409.10980837, 5471.33577327, -3.374784183, -6.635211043, -1.942056221},
+                {1440.0, -2777.14682335, -5663.16031708, -2462.54889123, 4.915493146, 0.123328992, -5.896495091},
+                {2880.0, 1159.27802897, 5056.60175495, 4353.49418579, -5.968060341, -2.314790406, 4.230722669}
+        });
+    }
+
+    /**
+     * 28626 (XM-2): deep space, geostationary (synchronous resonance).
+     */
+    @Test
+    public void deepSpaceSynchronous() {
+        SGP4 propagator = new SGP4(TLE.parse("28626",
+                "1 28626U 05008A   06176.46683397 -.00000205  00000-0  10000-3 0  2190",
+                "2 28626   0.0019 286.9433 0000335  13.7918  55.6504  1.00270176  4891"));
+        assertTrue(propagator.isDeepSpace());
+        check(propagator, new double[][]{
+                {0.0, 42080.71852213, -2646.86387436, 0.81851294, 0.193105177, 3.068688251, 0.000438449},
+                {120.0, 37740.00085593, 18802.76872802, 3.45512584, -1.371035206, 2.752105932, 0.000336883},
+                {1440.0, 42119.96263499, -1925.77567263, -0.19827433, 0.140521206, 3.071541613, 0.000179561}
+        });
+    }
+
+    /**
+     * 08195 (Molniya 2-14): deep space, 12 hour highly eccentric orbit (half day resonance).
+     */
+    @Test
+    public void deepSpaceMolniya() {
+        SGP4 propagator = new SGP4(TLE.parse("08195",
+                "1 08195U 75081A   06176.33215444  .00000099  00000-0  11873-3 0   813",
+                "2 08195  64.1586 279.0717 6877146 264.7651  20.2257  2.00491383225656"));
+        assertTrue(propagator.isDeepSpace());
+        check(propagator, new double[][]{
+                {0.0, 2349.89483350, -14785.93811562, 0.02119378, 2.721488096, -3.256811655, 4.498416672},
+                {120.0, 15223.91713658, -17852.95881713, 25280.39558224, 1.079041732, 0.875187372, 2.485682813},
+                {1440.0, 2890.80638268, -15446.43952300, 948.77010176, 2.654407490, -2.909344895, 4.486437362},
+                {2880.0, 3417.20931586, -16038.79510665, 1894.74934058, 2.585515864, -2.596818146, 4.456882556}
+        });
+    }
+
+}
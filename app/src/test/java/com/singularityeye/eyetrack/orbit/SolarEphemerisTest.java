@@ -0,0 +1,81 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Solar ephemeris test: sun position against a reference vector, and the illuminated fraction across the earth shadow
+ * boundary (umbra, penumbra and sunlit sides of the terminator).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class SolarEphemerisTest {
+
+    private static final double[] SUN = {SolarEphemeris.AU, 0.0, 0.0}; // sun on the +x axis
+    private static final double BEHIND = -7000.0; // km, satellite on the night side (about 620 km altitude)
+
+    @Test
+    public void sunPosition() {
+        // 2006-04-02 00:00 utc (Vallado, Fundamentals of Astrodynamics and Applications, example 5-1), mean of date frame
+        long time = 1143936000000L;
+        double[] sun = new double[3];
+        SolarEphemeris.sunPosition(time, sun);
+        assertEquals(0.9771945, sun[0] / SolarEphemeris.AU, 2e-4);
+        assertEquals(0.1924424, sun[1] / SolarEphemeris.AU, 2e-4);
+        assertEquals(0.0834308, sun[2] / SolarEphemeris.AU, 2e-4);
+    }
+
+    @Test
+    public void sunlitAndUmbra() {
+        assertEquals(1.0, SolarEphemeris.illumination(new double[]{7000.0, 0.0, 0.0}, SUN), 0.0); // day side
+        assertEquals(1.0, SolarEphemeris.illumination(new double[]{0.0, 7000.0, 0.0}, SUN), 0.0); // terminator plane
+        assertEquals(0.0, SolarEphemeris.illumination(new double[]{BEHIND, 0.0, 0.0}, SUN), 0.0); // shadow axis
+        assertEquals(0.0, SolarEphemeris.illumination(new double[]{-6000.0, 0.0, 0.0}, SUN), 0.0); // note: decayed
+        assertEquals(SolarEphemeris.UMBRA, SolarEphemeris.state(0.0));
+        assertEquals(SolarEphemeris.PENUMBRA, SolarEphemeris.state(0.5));
+        assertEquals(SolarEphemeris.SUNLIT, SolarEphemeris.state(1.0));
+    }
+
+    @Test
+    public void shadowBoundary() {
+        // note: conical shadow radii at this distance behind the earth (sun and earth radii, similar triangles)
+        double umbra = Coordinates.WGS84_A + BEHIND * (SolarEphemeris.SUN_RADIUS - Coordinates.WGS84_A) / SolarEphemeris.AU;
+        double penumbra = Coordinates.WGS84_A - BEHIND * (SolarEphemeris.SUN_RADIUS + Coordinates.WGS84_A) / SolarEphemeris.AU;
+        assertTrue(penumbra - umbra > 60.0); // note: about 65 km wide
+
+        // illumination grows monotonically from umbra to sunlit across the penumbra, half the disk in the middle
+        double previous = 0.0;
+        for (double y = umbra - 20.0; y <= penumbra + 20.0; y += 0.5) {
+            double illumination = SolarEphemeris.illumination(new double[]{BEHIND, y, 0.0}, SUN);
+            assertTrue("illumination at " + y, illumination >= previous);
+            if (y < umbra - 0.5) assertEquals("umbra at " + y, 0.0, illumination, 0.0);
+            else if (y > penumbra + 0.5) assertEquals("sunlit at " + y, 1.0, illumination, 0.0);
+            else if (y > umbra + 0.5 && y < penumbra - 0.5) assertEquals("penumbra at " + y, SolarEphemeris.PENUMBRA, SolarEphemeris.state(illumination));
+            previous = illumination;
+        }
+        assertEquals(0.5, SolarEphemeris.illumination(new double[]{BEHIND, (umbra + penumbra) / 2.0, 0.0}, SUN), 0.02);
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+package com.singularityeye.eyetrack.orbit;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Synthetic element sets for tests (valid checksums, near earth orbits).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public final class TestElements {
+
+    public static final double LOW_ORBIT = 15.5; // rev/day (refreshed every 6 hours)
+    public static final double HIGH_ORBIT = 2.0; // rev/day (refreshed every day)
+
+    private TestElements() {
+    }
+
+    /**
+     * Build an element set with epoch in 2016 (same orbital plane for every id).
+     * @param id NORAD ID
+     * @param day epoch day of year 2016 (fraction of day included)
+     * @param revsPerDay mean motion (rev/day)
+     * @return element set
+     */
+    public static TLE onDay(int id, double day, double revsPerDay) {
+        String line1 = String.format(Locale.ROOT, "1 %05dU 98067A   16%012.8f  .00000000  00000-0  10000-4 0  999", id, day);
+        String line2 = String.format(Locale.ROOT, "2 %05d %8.4f %8.4f %07d %8.4f %8.4f %11.8f%5d", id, 51.6, 120.0, 1000, 30.0, 60.0, revsPerDay, 1);
+        return TLE.parse("SAT " + id, checksum(line1), checksum(line2));
+    }
+
+    /**
+     * Build an element set with epoch at given time (low orbit, node and anomaly spread by id).
+     * @param id NORAD ID
+     * @param epoch utc time (milliseconds since 1970-01-01)
+     * @return element set
+     */
+    public static TLE atEpoch(int id, long epoch) {
+        return atEpoch(id, epoch, 51.6, (5.0 * id) % 360.0, (7.0 * id) % 360.0, LOW_ORBIT);
+    }
+
+    /**
+     * Build an element set with epoch at given time (near circular orbit).
+     * @param id NORAD ID
+     * @param epoch utc time (milliseconds since 1970-01-01)
+     * @param inclination decimal degrees
+     * @param node right ascension of the ascending node (decimal degrees)
+     * @param anomaly mean anomaly (decimal degrees)
+     * @param revsPerDay mean motion (rev/day)
+     * @return element set
+     */
+    public static TLE atEpoch(int id, long epoch, double inclination, double node, double anomaly, double revsPerDay) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        calendar.setTimeInMillis(epoch);
+        int year = calendar.get(Calendar.YEAR) % 100;
+        calendar.set(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        double day = 1.0 + (epoch - calendar.getTimeInMillis()) / 86400000.0;
+        String line1 = String.format(Locale.ROOT, "1 %05dU 98067A   %02d%012.8f  .00000000  00000-0  10000-4 0  999", id, year, day);
+        String line2 = String.format(Locale.ROOT, "2 %05d %8.4f %8.4f %07d %8.4f %8.4f %11.8f%5d", id, inclination, node, 1000, 30.0, anomaly, revsPerDay, 1);
+        return TLE.parse("SAT " + id, checksum(line1), checksum(line2));
+    }
+
+    /**
+     * Append the modulo 10 checksum to a 68 characters element line.
+     * @param line element line (without checksum)
+     * @return element line (69 characters)
+     */
+    public static String checksum(String line) {
+        int sum = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isDigit(c)) sum += c - '0';
+            else if ('-' == c) sum++;
+        }
+        return line + (sum % 10);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.orbit;
+
+import com.singularityeye.eyetrack.model.Pass;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Visible pass finder test: observer dark windows, and visible bounds of passes against a dense one second scan
+ * of sun elevation and earth shadow (direct solar ephemeris, no sun table interpolation nor bisection).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class VisiblePassFinderTest {
+
+    private static final long SECOND = 1000L, HOUR = 3600 * SECOND;
+    private static final double MASK = 10.0; // elevation mask (decimal degrees)
+    private static final long TIME_TOLERANCE = 2000; // milliseconds (refinement tolerance plus scan step)
+
+    private static final long EPOCH = 1481760000000L; // 2016-12-15 00:00 utc (long nights, passes cross the earth shadow)
+    private static final SGP4 PROPAGATOR = new SGP4(TestElements.atEpoch(25544, EPOCH));
+    private static final Observer OBSERVER = new Observer(40.4168, -3.7038, 0.65); // Madrid
+
+    private final double[] r = new double[3], v = new double[3], sun = new double[3], ecef = new double[3];
+
+    // sun elevation over the observer (decimal degrees)
+    private double sunElevation(long time) {
+        SolarEphemeris.sunPosition(time, sun);
+        Coordinates.temeToEcef(sun, Coordinates.gmst(time), ecef);
+        return OBSERVER.elevation(ecef);
+    }
+
+    // illuminated fraction of the solar disk seen from the satellite
+    private double illumination(long time) {
+        PROPAGATOR.propagateAt(time, r, v);
+        SolarEphemeris.sunPosition(time, sun);
+        return SolarEphemeris.illumination(r, sun);
+    }
+
+    @Test
+    public void darkWindows() {
+        long start = EPOCH;
+        SunTable table = new SunTable(OBSERVER, start, start + 48 * HOUR, VisiblePassFinder.DEFAULT_STEP);
+        long[] windows = table.getDarkness(SunTable.CIVIL_TWILIGHT);
+        assertTrue("windows " + windows.length / 2, windows.length >= 4);
+        for (int i = 0; i < windows.length; i += 2) {
+            for (long t = windows[i]; t <= windows[i + 1]; t += table.getStep()) {
+                assertTrue(table.getSunElevation(t) <= SunTable.CIVIL_TWILIGHT);
+            }
+            // note: grid times right outside a window are not dark (unless it is clamped to the table)
+            if (windows[i] > start) assertTrue(table.getSunElevation(windows[i] - table.getStep()) > SunTable.CIVIL_TWILIGHT);
+            assertEquals(sunElevation(windows[i]), table.getSunElevation(windows[i]), 1e-9);
+        }
+    }
+
+    @Test
+    public void visibleBoundsMatchDenseScan() {
+        VisiblePassFinder finder = new VisiblePassFinder(new PassPredictor(OBSERVER, MASK), SunTable.CIVIL_TWILIGHT);
+        long start = EPOCH, end = start + 72 * HOUR;
+        SunTable table = finder.sunTable(start, end);
+        List<Pass> visible = new ArrayList<Pass>();
+        int shadowed = 0;
+        for (Pass pass : finder.getPredictor().predict(PROPAGATOR, start, end)) {
+            finder.annotate(pass, PROPAGATOR, table);
+            // reference: satellite sunlit (even partially) while the observer is in darkness, every second
+            long first = -1, last = -1;
+            for (long t = pass.getAos(); t <= pass.getLos(); t += SECOND) {
+                if (sunElevation(t) <= SunTable.CIVIL_TWILIGHT && illumination(t) > 0.0) {
+                    if (-1 == first) first = t;
+                    last = t;
+                }
+            }
+            assertEquals("visible pass at " + pass.getAos(), -1 != first, pass.isVisible());
+            assertEquals(illumination(pass.getTca()), pass.getIllumination(), 0.01);
+            assertEquals(sunElevation(pass.getTca()), pass.getSunElevation(), 1e-3);
+            if (!pass.isVisible()) continue;
+            assertEquals("visible start of pass at " + pass.getAos(), first, pass.getVisibleStart(), TIME_TOLERANCE);
+            assertEquals("visible end of pass at " + pass.getAos(), last, pass.getVisibleEnd(), TIME_TOLERANCE);
+            // note: passes ending in the earth shadow, the boundary is the shadow entry (not los nor twilight)
+            if (pass.getLos() - pass.getVisibleEnd() > TIME_TOLERANCE && 0.0 == illumination(pass.getVisibleEnd() + TIME_TOLERANCE)) shadowed++;
+            visible.add(pass);
+        }
+        assertTrue("shadowed passes " + shadowed, shadowed >= 1);
+
+        // catalog search: same visible passes (searched inside dark windows only)
+        List<Pass> found = finder.findAll(Collections.singletonList(PROPAGATOR), start, end);
+        assertEquals(visible.size(), found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertTrue(found.get(i).isVisible());
+            assertEquals(visible.get(i).getVisibleStart(), found.get(i).getVisibleStart(), TIME_TOLERANCE);
+            assertEquals(visible.get(i).getVisibleEnd(), found.get(i).getVisibleEnd(), TIME_TOLERANCE);
+        }
+    }
+
+}
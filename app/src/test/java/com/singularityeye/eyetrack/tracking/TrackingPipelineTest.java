@@ -0,0 +1,196 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.tracking;
+
+import com.singularityeye.eyetrack.cache.ElementStore;
+import com.singularityeye.eyetrack.cache.ElementsUpdater;
+import com.singularityeye.eyetrack.metrics.Metrics;
+import com.singularityeye.eyetrack.model.PositionBuffer;
+import com.singularityeye.eyetrack.model.PositionHistory;
+import com.singularityeye.eyetrack.orbit.TLE;
+import com.singularityeye.eyetrack.orbit.TestElements;
+import com.singularityeye.eyetrack.ws.ElementsClient;
+import com.singularityeye.eyetrack.ws.HttpTransport;
+import com.singularityeye.eyetrack.ws.PositionsClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tracking pipeline test: steady state ticks (every platform propagated) and position buffer publish/read do not allocate.
+ * Allocations are measured per thread (com.sun.management.ThreadMXBean) after a warm-up long enough for the JIT compiler.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class TrackingPipelineTest {
+
+    private static final int PLATFORMS = 64; // note: below BatchPropagator.MIN_RANGE, ranges run on the tick thread
+    private static final int WARMUP = 20000; // ticks before measuring
+    private static final int TICKS = 10000; // measured ticks
+    private static final String UNREACHABLE = "http://127.0.0.1:1/"; // note: nothing is requested in steady state
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Metrics metrics = new Metrics();
+    private final PositionBuffer positions = new PositionBuffer(PLATFORMS);
+    private final String[] names = new String[PLATFORMS];
+    private TrackingPipeline pipeline;
+    private int propagated, errors; // listener calls
+
+    private final TrackingPipeline.Listener listener = new TrackingPipeline.Listener() {
+        @Override
+        public void onPropagated(String id, long time, double latitude, double longitude, double altitude, double angularVelocity) {
+            propagated++;
+        }
+
+        @Override
+        public void onFallback(String id) {
+        }
+
+        @Override
+        public PositionHistory getHistory(String id) {
+            return null;
+        }
+
+        @Override
+        public void onElementsChanged(int found, boolean saved) {
+        }
+
+        @Override
+        public void onError(String message) {
+            errors++;
+        }
+    };
+
+    // preallocated reader (sums latitudes, so reads are not optimized away)
+    private double latitudes;
+    private final PositionBuffer.Reader reader = new PositionBuffer.Reader() {
+        @Override
+        public void onPosition(int index, int id, String name, long time, double latitude, double longitude, double altitude, double[] w) {
+            latitudes += latitude;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        long now = System.currentTimeMillis();
+        ElementStore store = new ElementStore(new File(folder.getRoot(), "elements.bin"), PLATFORMS);
+        String[] ids = new String[PLATFORMS];
+        for (int i = 0; i < PLATFORMS; i++) {
+            TLE tle = TestElements.atEpoch(10000 + i, now);
+            store.put(tle, now); // note: just fetched, not stale
+            ids[i] = String.valueOf(tle.getNORAD_ID());
+            names[i] = tle.getName();
+        }
+        HttpTransport transport = new HttpTransport(1000, 1000, 0, 0);
+        ElementsUpdater elements = new ElementsUpdater(store, new ElementsClient(transport), UNREACHABLE, UNREACHABLE);
+        pipeline = new TrackingPipeline(elements, new PositionsClient(UNREACHABLE, transport), metrics, positions, listener);
+        pipeline.setRequestInterval(0);
+        pipeline.setTracked(ids);
+        pipeline.load();
+        assertTrue(pipeline.update(now, 1.0, true)); // note: first tick builds the batch and checks staleness in background
+        Thread.sleep(200);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void steadyTickPropagatesEveryPlatform() {
+        propagated = 0;
+        assertTrue(pipeline.update(System.currentTimeMillis(), 1.0, true));
+        positions.publish();
+        assertEquals(PLATFORMS, propagated);
+        assertEquals(PLATFORMS, positions.read(reader));
+        assertEquals(0, errors);
+    }
+
+    @Test
+    public void steadyTickDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = threadBean();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < WARMUP; i++) tick(start + i * 1000L);
+
+        long thread = Thread.currentThread().getId();
+        long overhead = threads.getThreadAllocatedBytes(thread);
+        overhead = threads.getThreadAllocatedBytes(thread) - overhead; // note: the measurement itself
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < TICKS; i++) tick(start + (WARMUP + i) * 1000L);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+
+        assertEquals("bytes allocated by " + TICKS + " ticks", 0, allocated);
+        assertEquals(0, errors);
+        assertTrue(latitudes != 0.0);
+    }
+
+    @Test
+    public void publishAndReadDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = threadBean();
+        for (int i = 0; i < WARMUP; i++) fill(i);
+
+        long thread = Thread.currentThread().getId();
+        long overhead = threads.getThreadAllocatedBytes(thread);
+        overhead = threads.getThreadAllocatedBytes(thread) - overhead;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < TICKS; i++) fill(WARMUP + i);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+
+        assertEquals("bytes allocated by " + TICKS + " publications", 0, allocated);
+    }
+
+    // one tick of the owner: update, publish and read the front buffer
+    private void tick(long time) {
+        if (pipeline.update(time, 1.0, true)) positions.publish();
+        positions.read(reader);
+    }
+
+    // fill, publish and read the buffer with every platform (names already interned)
+    private void fill(int i) {
+        positions.clear(i);
+        for (int k = 0; k < PLATFORMS; k++) positions.add(10000 + k, names[k], k, -k, 400.0 + i % 10, null);
+        positions.publish();
+        positions.read(reader);
+    }
+
+    // per thread allocation counter (skipped where the JVM does not support it)
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.ws;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Http transport test against local stub servers: keep-alive connection reuse, gzip decoding,
+ * retries with bounded jittered backoff on server and network errors, no retries on soap faults.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class HttpTransportTest {
+
+
+    private HttpServer server;
+    private String url;
+    private final List<Integer> ports = Collections.synchronizedList(new ArrayList<Integer>()); // client port of every request
+    private final AtomicInteger requests = new AtomicInteger(); // received requests
+    private final List<String> encodings = Collections.synchronizedList(new ArrayList<String>()); // accept-encoding of every request
+    private final AtomicInteger failures = new AtomicInteger(); // requests answered with a server error before succeeding
+    private volatile int status = 500; // server error status
+    private volatile boolean gzip; // compress responses
+
+    // reads a response body as text
+    private static final HttpTransport.ResponseHandler<String> TEXT = new HttpTransport.ResponseHandler<String>() {
+        @Override
+        public String handle(int code, InputStream in) throws IOException {
+            if (200 != code) throw new HttpTransport.StatusException(code);
+            return new String(read(in), "UTF-8");
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ports.add(exchange.getRemoteAddress().getPort());
+                requests.incrementAndGet();
+                encodings.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+                read(exchange.getRequestBody());
+                int code = 200;
+                byte[] body = "positions".getBytes("UTF-8");
+                if (failures.get() > 0) {
+                    failures.decrementAndGet();
+                    code = status;
+                    body = "error".getBytes("UTF-8");
+                } else if (gzip) {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    GZIPOutputStream out = new GZIPOutputStream(compressed);
+                    out.write(body);
+                    out.close();
+                    body = compressed.toByteArray();
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(code, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while (-1 != (read = in.read(buffer))) out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void keepAliveConnectionIsReused() throws IOException {
+        HttpTransport transport = new HttpTransport(2000, 2000, 0, 10);
+        for (int i = 0; i < 5; i++) assertEquals("positions", transport.get(url, TEXT));
+        transport.post(url, "text/xml", "action", "<request/>".getBytes("UTF-8"), TEXT);
+        assertEquals(6, ports.size());
+        assertEquals(1, new HashSet<Integer>(ports).size());
+    }
+
+    @Test
+    public void failedConnectionIsNotReused() throws IOException {
+        HttpTransport transport = new HttpTransport(2000, 2000, 0, 10);
+        transport.get(url, TEXT);
+        failures.set(1);
+        try {
+            transport.get(url, TEXT);
+            fail("server error");
+        } catch (HttpTransport.StatusException e) {
+            assertEquals(500, e.getCode());
+        }
+        transport.get(url, TEXT);
+        assertEquals(ports.get(0), ports.get(1));
+        assertTrue(!ports.get(1).equals(ports.get(2)));
+    }
+
+    @Test
+    public void gzipResponseIsDecoded() throws IOException {
+        gzip = true;
+        HttpTransport transport = new HttpTransport(2000, 2000, 0, 10);
+        assertEquals("positions", transport.get(url, TEXT));
+        assertEquals("positions", transport.post(url, "text/xml", null, "<request/>".getBytes("UTF-8"), TEXT));
+        for (String encoding : encodings) assertEquals("gzip", encoding);
+        assertEquals(1, new HashSet<Integer>(ports).size()); // note: compressed bodies are read to the end too
+    }
+
+    @Test
+    public void serverErrorsAreRetried() throws IOException {
+        failures.set(2);
+        status = 503;
+        HttpTransport transport = new HttpTransport(2000, 2000, 3, 20);
+        assertEquals("positions", transport.get(url, TEXT));
+        assertEquals(3, ports.size());
+
+        failures.set(1);
+        status = 429; // note: too many requests is retried too
+        assertEquals("positions", transport.get(url, TEXT));
+        assertEquals(5, ports.size());
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws IOException {
+        failures.set(1);
+        status = 404;
+        HttpTransport transport = new HttpTransport(2000, 2000, 3, 20);
+        try {
+            transport.get(url, TEXT);
+            fail("client error");
+        } catch (HttpTransport.StatusException e) {
+            assertEquals(404, e.getCode());
+        }
+        assertEquals(1, ports.size());
+    }
+
+    @Test
+    public void retryDelaysAreJitteredAndBounded() throws IOException {
+        long backoff = 20;
+        int retries = 6;
+        failures.set(retries + 1); // note: every attempt fails
+        final List<Long> delays = new ArrayList<Long>();
+        HttpTransport transport = new HttpTransport(2000, 2000, retries, backoff, new Random(42), new HttpTransport.Sleeper() {
+            @Override
+            public void sleep(long millis) {
+                delays.add(millis); // note: recorded, not slept
+            }
+        });
+        try {
+            transport.get(url, TEXT);
+            fail("server error");
+        } catch (HttpTransport.StatusException e) {
+            assertEquals(500, e.getCode());
+        }
+        assertEquals(retries + 1, requests.get());
+        assertEquals(retries, delays.size());
+        Random jitter = new Random(42); // note: same sequence as the transport
+        for (int i = 0; i < retries; i++) {
+            long bound = Math.min(10 * backoff, backoff << i); // doubled on every retry, at most ten times the base delay
+            long delay = delays.get(i);
+            assertEquals("retry " + (i + 1) + " delay", (long) (jitter.nextDouble() * bound), delay); // full jitter
+            assertTrue("retry " + (i + 1) + " delay " + delay + " over " + bound, delay >= 0 && delay < bound);
+        }
+    }
+
+    @Test
+    public void soapFaultsAreNotRetried() throws IOException {
+        failures.set(1);
+        HttpTransport transport = new HttpTransport(2000, 2000, 3, 20);
+        try {
+            transport.post(url, "text/xml", "action", "<request/>".getBytes("UTF-8"), new HttpTransport.ResponseHandler<String>() {
+                @Override
+                public String handle(int code, InputStream in) throws IOException {
+                    if (500 == code) throw new SoapFaultException("Client: invalid license key");
+                    return new String(read(in), "UTF-8");
+                }
+            });
+            fail("soap fault");
+        } catch (SoapFaultException e) {
+            assertEquals("Client: invalid license key", e.getFault());
+        }
+        assertEquals(1, ports.size());
+    }
+
+    @Test
+    public void networkErrorsAreRetried() throws Exception {
+        // raw stub: the first connection is closed without a response, the second one gets a response
+        final ServerSocket socket = new ServerSocket(0, 8, InetAddress.getLoopbackAddress());
+        final AtomicInteger connections = new AtomicInteger();
+        Thread stub = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 2; i++) {
+                        Socket client = socket.accept();
+                        connections.incrementAndGet();
+                        readRequest(client.getInputStream());
+                        if (0 == i) {
+                            client.close();
+                            continue;
+                        }
+                        OutputStream out = client.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 9\r\nConnection: close\r\n\r\npositions".getBytes("US-ASCII"));
+                        out.flush();
+                        client.close();
+                    }
+                } catch (IOException e) {
+                    // note: test failure is reported by the client side
+                }
+            }
+        });
+        stub.start();
+        try {
+            // note: post requests are streamed, so the platform http client never retries them on its own
+            HttpTransport transport = new HttpTransport(2000, 2000, 1, 20);
+            String stubUrl = "http://127.0.0.1:" + socket.getLocalPort() + "/";
+            assertEquals("positions", transport.post(stubUrl, "text/xml", null, "<request/>".getBytes("UTF-8"), TEXT));
+            assertEquals(2, connections.get());
+        } finally {
+            socket.close();
+            stub.join(2000);
+        }
+    }
+
+    // read a request head and its fixed length body
+    private static void readRequest(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        int c;
+        while (-1 != (c = in.read())) {
+            head.append((char) c);
+            if (head.length() >= 4 && "\r\n\r\n".equals(head.substring(head.length() - 4))) break;
+        }
+        int length = 0;
+        for (String line : head.toString().split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) length = Integer.parseInt(line.substring(15).trim());
+        }
+        for (int i = 0; i < length && -1 != in.read(); i++) ;
+    }
+
+}
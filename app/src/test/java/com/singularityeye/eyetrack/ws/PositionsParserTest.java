@@ -0,0 +1,127 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+
+package com.singularityeye.eyetrack.ws;
+
+import com.singularityeye.eyetrack.model.PositionHistory;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Positions response parser test: GetPositionsByIp responses in the rpc-encoded shape the former ksoap2 client read
+ * ({@code id}, {@code shortname}, {@code satlatitude}, {@code satlongitude}, {@code sataltitude} item elements).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PositionsParserTest {
+
+    private static final String ENVELOPE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<SOAP-ENV:Envelope SOAP-ENV:encodingStyle=\"http://schemas.xmlsoap.org/soap/encoding/\""
+            + " xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:ns1=\"urn:satwsdl\""
+            + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+            + " xmlns:SOAP-ENC=\"http://schemas.xmlsoap.org/soap/encoding/\"><SOAP-ENV:Body>%s</SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    // one SatPosition item
+    private static String item(int id, String name, double latitude, double longitude, double altitude, long timestamp) {
+        return "<item xsi:type=\"ns1:SatPosition\">"
+                + "<id xsi:type=\"xsd:int\">" + id + "</id>"
+                + "<shortname xsi:type=\"xsd:string\">" + name + "</shortname>"
+                + "<satlatitude xsi:type=\"xsd:double\">" + latitude + "</satlatitude>"
+                + "<satlongitude xsi:type=\"xsd:double\">" + longitude + "</satlongitude>"
+                + "<sataltitude xsi:type=\"xsd:double\">" + altitude + "</sataltitude>"
+                + "<azimuth xsi:type=\"xsd:double\">231.45</azimuth>"
+                + "<elevation xsi:type=\"xsd:double\">-38.12</elevation>"
+                + "<ra xsi:type=\"xsd:double\">201.123456</ra>"
+                + "<dec xsi:type=\"xsd:double\">-12.345678</dec>"
+                + "<timestamp xsi:type=\"xsd:int\">" + timestamp + "</timestamp>"
+                + "</item>";
+    }
+
+    private static String response(String... items) {
+        StringBuilder body = new StringBuilder("<ns1:GetPositionsByIpResponse><return SOAP-ENC:arrayType=\"ns1:SatPosition[")
+                .append(items.length).append("]\" xsi:type=\"SOAP-ENC:Array\">");
+        for (String item : items) body.append(item);
+        body.append("</return></ns1:GetPositionsByIpResponse>");
+        return String.format(ENVELOPE, body);
+    }
+
+    private static int parse(PositionsParser parser, String response, PositionHistory history) throws XmlPullParserException, IOException {
+        XmlPullParser xml = new KXmlParser();
+        xml.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        xml.setInput(new StringReader(response));
+        return parser.parse(xml, history);
+    }
+
+    @Test
+    public void lastPosition() throws XmlPullParserException, IOException {
+        PositionsParser parser = new PositionsParser();
+        String response = response(
+                item(27424, "AQUA", 12.3456, -45.6789, 705.123, 1476535720L),
+                item(27424, "AQUA", 12.4093, -45.6568, 705.134, 1476535721L));
+        assertEquals(2, parse(parser, response, null));
+        assertEquals(27424, parser.getId());
+        assertEquals("AQUA", parser.getName());
+        assertEquals(1476535721000L, parser.getTime());
+        assertEquals(12.4093, parser.getLatitude(), 1e-12);
+        assertEquals(-45.6568, parser.getLongitude(), 1e-12);
+        assertEquals(705.134, parser.getAltitude(), 1e-12);
+        assertEquals(231.45, parser.getAzimuth(), 1e-12);
+        assertEquals(-38.12, parser.getElevation(), 1e-12);
+    }
+
+    @Test
+    public void historyMode() throws XmlPullParserException, IOException {
+        PositionsParser parser = new PositionsParser();
+        PositionHistory history = new PositionHistory(8);
+        String response = response(
+                item(25544, "SPACE STATION", 51.0, 10.0, 408.0, 1476535720L),
+                item(25544, "SPACE STATION", 51.1, 10.5, 408.1, 1476535721L),
+                item(25544, "SPACE STATION", 51.2, 11.0, 408.2, 1476535722L));
+        assertEquals(3, parse(parser, response, history));
+        assertEquals(3, history.size());
+        assertEquals(1476535720000L, history.getStartTime());
+        assertEquals(51.2, history.getLatitude(2), 1e-12);
+        assertEquals(25544, parser.getId());
+    }
+
+    @Test
+    public void soapFault() throws XmlPullParserException, IOException {
+        String response = String.format(ENVELOPE, "<SOAP-ENV:Fault><faultcode>SOAP-ENV:Server</faultcode>"
+                + "<faultstring>Invalid license key</faultstring></SOAP-ENV:Fault>");
+        try {
+            parse(new PositionsParser(), response, null);
+            fail("soap fault");
+        } catch (SoapFaultException e) {
+            assertEquals("Invalid license key", e.getFault());
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.benchmark;
+
+import com.singularityeye.eyetrack.model.Satellite;
+
+import org.kxml2.io.KXmlParser;
+import org.ksoap2.SoapEnvelope;
+import org.ksoap2.serialization.SoapObject;
+import org.ksoap2.serialization.SoapSerializationEnvelope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soap envelope parsing benchmark (microseconds per response), baseline of {@link SoapParsingBenchmark}.
+ * The synthetic GetPositionsByIp response is parsed the way the former bound service did it:
+ * ksoap2 envelope over a kxml2 pull parser, then the last position is copied into a {@link Satellite}.
+ * Note: built with the ksoap2 profile only (ksoap2 is not published to maven central).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EnvelopeParsingBenchmark {
+
+    private byte[] response;
+
+    /**
+     * Load the synthetic response.
+     * @throws IOException if the fixture is missing
+     */
+    @Setup
+    public void setup() throws IOException {
+        response = Fixtures.resource(SoapParsingBenchmark.FIXTURE);
+    }
+
+    /**
+     * Parse the whole envelope into soap objects and take the last position (former service code path).
+     * @return last position
+     * @throws Exception if the response can not be parsed
+     */
+    @Benchmark
+    public Satellite envelope() throws Exception {
+        SoapSerializationEnvelope envelope = new SoapSerializationEnvelope(SoapEnvelope.VER11);
+        envelope.dotNet = true;
+        XmlPullParser parser = new KXmlParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new ByteArrayInputStream(response), null);
+        envelope.parse(parser);
+        @SuppressWarnings("unchecked")
+        Vector<SoapObject> positions = (Vector<SoapObject>) envelope.getResponse();
+        SoapObject last = positions.get(positions.size() - 1);
+        Satellite satellite = new Satellite();
+        satellite.setNORAD_ID("27424");
+        satellite.setShortname(last.getPrimitivePropertyAsString("shortname"));
+        satellite.setLatitude(Double.parseDouble(last.getPrimitivePropertyAsString("satlatitude")));
+        satellite.setLongitude(Double.parseDouble(last.getPrimitivePropertyAsString("satlongitude")));
+        satellite.setAltitude(Double.parseDouble(last.getPrimitivePropertyAsString("sataltitude")));
+        return satellite;
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Baseline comparator of JMH JSON results (continuous integration gate).
+ * Scores are matched by benchmark name and parameters; throughput scores regress when they drop,
+ * time scores (average, sample, single shot) regress when they grow, beyond the tolerance.
+ * Usage: BaselineComparator baseline.json results.json [tolerance percent, 10 by default]
+ * Exit status is 1 if any benchmark regressed, 2 on bad arguments or unreadable files.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class BaselineComparator {
+
+    private static final double TOLERANCE = 10.0; // percent
+
+    // benchmark score
+    private static class Score {
+        String mode;
+        double value;
+        String unit;
+    }
+
+    /**
+     * Compare results with a baseline.
+     * @param args baseline file, results file and tolerance (percent)
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineComparator <baseline.json> <results.json> [tolerance percent]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline, results;
+        double tolerance;
+        try {
+            baseline = read(new File(args[0]));
+            results = read(new File(args[1]));
+            tolerance = (args.length > 2) ? Double.parseDouble(args[2]) : TOLERANCE;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Exception: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : results.entrySet()) {
+            Score current = entry.getValue(), base = baseline.get(entry.getKey());
+            if (null == base) {
+                System.out.println(String.format("NEW        %s %.3f %s", entry.getKey(), current.value, current.unit));
+                continue;
+            }
+            double change = 100.0 * (current.value - base.value) / base.value; // percent
+            double loss = "thrpt".equals(current.mode) ? -change : change; // note: positive is worse
+            boolean regressed = loss > tolerance;
+            if (regressed) regressions++;
+            System.out.println(String.format("%-10s %s %.3f -> %.3f %s (%+.1f%%)", regressed ? "REGRESSED" : "OK",
+                    entry.getKey(), base.value, current.value, current.unit, change));
+        }
+        for (String key : baseline.keySet()) if (!results.containsKey(key)) System.out.println("MISSING    " + key);
+        System.exit((regressions > 0) ? 1 : 0);
+    }
+
+    // read scores of a JMH JSON results file by benchmark key (name and parameters)
+    @SuppressWarnings("unchecked")
+    private static Map<String, Score> read(File file) throws IOException {
+        String json = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+        Object root = new Parser(json).value();
+        if (!(root instanceof List)) throw new IllegalArgumentException(file + ": results array expected");
+        Map<String, Score> scores = new LinkedHashMap<String, Score>();
+        for (Object item : (List<Object>) root) {
+            Map<String, Object> run = (Map<String, Object>) item;
+            Map<String, Object> metric = (Map<String, Object>) run.get("primaryMetric");
+            StringBuilder key = new StringBuilder((String) run.get("benchmark"));
+            Object params = run.get("params");
+            if (params instanceof Map) {
+                // note: sorted, so keys do not depend on parameter order
+                for (Map.Entry<String, Object> param : new TreeMap<String, Object>((Map<String, Object>) params).entrySet()) {
+                    key.append(':').append(param.getKey()).append('=').append(param.getValue());
+                }
+            }
+            Score score = new Score();
+            score.mode = (String) run.get("mode");
+            score.value = ((Number) metric.get("score")).doubleValue();
+            score.unit = (String) metric.get("scoreUnit");
+            scores.put(key.toString(), score);
+        }
+        return scores;
+    }
+
+    // minimal JSON parser (objects as maps, arrays as lists, numbers as doubles)
+    private static class Parser {
+
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Object value() {
+            skip();
+            if (position >= text.length()) throw error("unexpected end");
+            char c = text.charAt(position);
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default: return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            position++;
+            skip();
+            if (peek('}')) return map;
+            do {
+                skip();
+                String key = string();
+                skip();
+                expect(':');
+                map.put(key, value());
+                skip();
+            } while (next(','));
+            expect('}');
+            return map;
+        }
+
+        private List<Object> array() {
+            List<Object> list = new ArrayList<Object>();
+            position++;
+            skip();
+            if (peek(']')) return list;
+            do {
+                list.add(value());
+                skip();
+            } while (next(','));
+            expect(']');
+            return list;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder builder = new StringBuilder();
+            while (true) {
+                if (position >= text.length()) throw error("unterminated string");
+                char c = text.charAt(position++);
+                if ('"' == c) return builder.toString();
+                if ('\\' != c) {
+                    builder.append(c);
+                    continue;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b': builder.append('\b'); break;
+                    case 'f': builder.append('\f'); break;
+                    case 'n': builder.append('\n'); break;
+                    case 'r': builder.append('\r'); break;
+                    case 't': builder.append('\t'); break;
+                    case 'u':
+                        builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default: builder.append(escaped);
+                }
+            }
+        }
+
+        private Object number() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) position++;
+            String token = text.substring(start, position);
+            if (token.isEmpty()) {
+                // note: JMH writes "NaN" for missing scores (quoted or not, depending on version)
+                if (text.startsWith("NaN", position)) {
+                    position += 3;
+                    return Double.NaN;
+                }
+                throw error("unexpected character");
+            }
+            return Double.valueOf(token);
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, position)) throw error("unexpected literal");
+            position += word.length();
+            return value;
+        }
+
+        private boolean peek(char c) {
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean next(char c) {
+            skip();
+            return peek(c);
+        }
+
+        private void expect(char c) {
+            if (!peek(c)) throw error("'" + c + "' expected");
+        }
+
+        private void skip() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("json: " + message + " at " + position);
+        }
+
+    }
+
+}
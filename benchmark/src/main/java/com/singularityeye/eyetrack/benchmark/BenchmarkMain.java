@@ -0,0 +1,64 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Benchmark runner (JSON results, see {@link BaselineComparator}).
+ * Usage: BenchmarkMain [include pattern] [results file]
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class BenchmarkMain {
+
+    private static final String INCLUDE = "com\\.singularityeye\\.eyetrack\\.benchmark\\..*";
+    private static final String RESULTS = "target/jmh/results.json";
+
+    /**
+     * Run the benchmarks.
+     * @param args include pattern (regular expression, all benchmarks by default) and results file
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = (args.length > 0) ? args[0] : INCLUDE;
+        String results = (args.length > 1) ? args[1] : RESULTS;
+        File parent = new File(results).getAbsoluteFile().getParentFile();
+        if (null != parent) parent.mkdirs();
+        Options options = new OptionsBuilder()
+                .include(include)
+                .forks(1)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .resultFormat(ResultFormatType.JSON)
+                .result(results)
+                .build();
+        new Runner(options).run();
+    }
+
+}
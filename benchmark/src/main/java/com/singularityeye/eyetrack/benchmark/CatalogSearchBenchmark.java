@@ -0,0 +1,120 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.benchmark;
+
+import com.singularityeye.eyetrack.cache.Catalog;
+import com.singularityeye.eyetrack.cache.CatalogIndex;
+import com.singularityeye.eyetrack.cache.CatalogWriter;
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalog search latency benchmark (microseconds per query, search as you type budget is one millisecond).
+ * A synthetic catalog with public catalog style names (constellations, debris, rocket bodies) is indexed once;
+ * queries cover NORAD ID prefixes, name prefixes, inner words and typos (fuzzy fallback).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CatalogSearchBenchmark {
+
+    private static final int SIZE = 30000;
+    private static final String[] WORDS = {"STARLINK", "ONEWEB", "IRIDIUM", "GLOBALSTAR", "COSMOS", "NOAA", "METEOR", "FENGYUN",
+            "YAOGAN", "SENTINEL", "LANDSAT", "GPS BIIR", "GALILEO", "BEIDOU", "INTELSAT", "ORBCOMM", "FLOCK", "LEMUR", "SL-16", "CZ-4B"};
+
+    @Param({"1", "STAR", "NOAA 1", "ZARYA", "STRLINK", "SENTINLE 3"})
+    public String query;
+
+    private File file;
+    private Catalog catalog;
+    private CatalogIndex index;
+    private final int[] results = new int[20];
+
+    /**
+     * Write, map and index the catalog.
+     * @throws IOException if the catalog file can not be written
+     */
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(SIZE);
+        CatalogWriter writer = new CatalogWriter();
+        for (TLE tle : Fixtures.catalog(SIZE, true)) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            String name;
+            switch (random.nextInt(4)) {
+                case 0: name = word + "-" + random.nextInt(6000); break;
+                case 1: name = word + " " + random.nextInt(100) + " DEB"; break;
+                case 2: name = word + " R/B"; break;
+                default: name = "ISS (ZARYA) " + word;
+            }
+            writer.add(TLE.parse(name, tle.getLine1(), tle.getLine2()), Fixtures.EPOCH);
+        }
+        file = File.createTempFile("catalog", ".bin");
+        writer.write(file);
+        catalog = Catalog.open(file);
+        index = CatalogIndex.build(catalog);
+    }
+
+    /**
+     * Delete the catalog file.
+     */
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * One search as you type query (first page of results).
+     * @return number of results
+     */
+    @Benchmark
+    public int search() {
+        return index.search(query, results);
+    }
+
+    /**
+     * Index build (lazy, first search after the catalog is loaded or saved).
+     * @return search index
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CatalogIndex build() {
+        return CatalogIndex.build(catalog);
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.benchmark;
+
+import com.singularityeye.eyetrack.model.Conjunction;
+import com.singularityeye.eyetrack.orbit.ConjunctionScreener;
+import com.singularityeye.eyetrack.orbit.SGP4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conjunction screening latency benchmark (milliseconds per screening).
+ * One hour of a mixed catalog is screened with a 5 km threshold and the default time step,
+ * so sieve, refinement and fork-join scaling regressions show up on the nightly catalog run.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConjunctionBenchmark {
+
+    private static final long HOUR = 3600000L;
+    private static final double THRESHOLD = 5.0; // kilometers
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private ConjunctionScreener screener;
+    private List<SGP4> catalog;
+
+    /**
+     * Create the screener and the catalog.
+     */
+    @Setup
+    public void setup() {
+        screener = new ConjunctionScreener(THRESHOLD, ConjunctionScreener.DEFAULT_STEP);
+        catalog = Fixtures.propagators(Fixtures.catalog(size, false));
+    }
+
+    /**
+     * Apogee/perigee filter only.
+     * @return screened satellites
+     */
+    @Benchmark
+    public List<SGP4> filter() {
+        return screener.filter(catalog);
+    }
+
+    /**
+     * One hour of the whole pipeline (shared fork-join pool).
+     * @return conjunctions sorted by TCA
+     */
+    @Benchmark
+    public List<Conjunction> screen() {
+        return screener.screen(catalog, Fixtures.EPOCH, Fixtures.EPOCH + HOUR);
+    }
+
+}
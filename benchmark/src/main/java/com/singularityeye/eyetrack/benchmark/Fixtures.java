@@ -0,0 +1,140 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.benchmark;
+
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.TLE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark fixtures.
+ * Synthetic catalogs are generated from a fixed seed, so every run (and every host) propagates the same platforms.
+ * The orbit mix follows the public catalog: mostly low earth orbits, some medium, highly elliptical and geostationary ones.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public final class Fixtures {
+
+    /**
+     * Element sets epoch (2016-10-15 12:48:40 utc).
+     */
+    public static final long EPOCH = 1476535720000L;
+
+    private static final long SEED = 20161015L;
+
+    private Fixtures() {}
+
+    /**
+     * Generate a synthetic catalog.
+     * @param size number of platforms
+     * @param nearEarthOnly only near earth orbits (period under 225 minutes)
+     * @return element sets (NORAD IDs ascending from 10000)
+     */
+    public static List<TLE> catalog(int size, boolean nearEarthOnly) {
+        Random random = new Random(SEED);
+        List<TLE> catalog = new ArrayList<TLE>(size);
+        for (int i = 0; i < size; i++) {
+            double kind = nearEarthOnly ? 0.0 : random.nextDouble();
+            double meanMotion, eccentricity, inclination;
+            if (kind < 0.85) { // low earth orbit
+                meanMotion = 13.0 + 3.0 * random.nextDouble();
+                eccentricity = 0.02 * random.nextDouble();
+                inclination = 180.0 * random.nextDouble();
+            } else if (kind < 0.92) { // medium earth orbit
+                meanMotion = 2.0 + 0.1 * random.nextDouble();
+                eccentricity = 0.01 * random.nextDouble();
+                inclination = 50.0 + 15.0 * random.nextDouble();
+            } else if (kind < 0.95) { // highly elliptical orbit
+                meanMotion = 2.0 + 0.01 * random.nextDouble();
+                eccentricity = 0.6 + 0.1 * random.nextDouble();
+                inclination = 63.4;
+            } else { // geostationary orbit
+                meanMotion = 1.0027 + 0.0001 * random.nextDouble();
+                eccentricity = 0.001 * random.nextDouble();
+                inclination = 0.1 * random.nextDouble();
+            }
+            int id = 10000 + i;
+            String line1 = String.format(Locale.ROOT, "1 %05dU 16001A   16289.53379630  .00000000  00000-0  %s 0  999", id,
+                    (0 == i % 2) ? "10000-4" : "50000-3");
+            String line2 = String.format(Locale.ROOT, "2 %05d %8.4f %8.4f %07d %8.4f %8.4f %11.8f%5d", id, inclination,
+                    360.0 * random.nextDouble(), (long) (eccentricity * 1.0e7), 360.0 * random.nextDouble(),
+                    360.0 * random.nextDouble(), meanMotion, 1);
+            catalog.add(TLE.parse("SAT " + id, checksum(line1), checksum(line2)));
+        }
+        return catalog;
+    }
+
+    /**
+     * Create propagators for a catalog (platforms that can not be propagated are skipped).
+     * @param catalog element sets
+     * @return propagators
+     */
+    public static List<SGP4> propagators(List<TLE> catalog) {
+        List<SGP4> propagators = new ArrayList<SGP4>(catalog.size());
+        for (TLE tle : catalog) {
+            try {
+                propagators.add(new SGP4(tle));
+            } catch (IllegalArgumentException e) {
+                // note: decayed synthetic orbit, not part of the fixture
+            }
+        }
+        return propagators;
+    }
+
+    /**
+     * Read a classpath resource (fixtures).
+     * @param name resource name
+     * @return resource bytes
+     * @throws IOException if the resource is missing
+     */
+    public static byte[] resource(String name) throws IOException {
+        InputStream in = Fixtures.class.getResourceAsStream(name);
+        if (null == in) throw new IOException("Missing fixture: " + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; -1 != (n = in.read(buffer)); ) out.write(buffer, 0, n);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    // complete an element line (68 characters) with its checksum
+    private static String checksum(String line) {
+        String padded = (line + "                    ").substring(0, 68);
+        int sum = 0;
+        for (int i = 0; i < 68; i++) {
+            char c = padded.charAt(i);
+            if (Character.isDigit(c)) sum += c - '0';
+            else if ('-' == c) sum++;
+        }
+        return padded + (sum % 10);
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.benchmark;
+
+import com.singularityeye.eyetrack.model.Pass;
+import com.singularityeye.eyetrack.orbit.Observer;
+import com.singularityeye.eyetrack.orbit.PassPredictor;
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.SunTable;
+import com.singularityeye.eyetrack.orbit.VisiblePassFinder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pass search latency benchmark (milliseconds per search).
+ * Passes over a fixed observer (Almeria, 10 degrees mask) are searched for one day, for one low earth orbit platform
+ * and for a small catalog (mixed orbits, the way the bound service predicts tracked platforms).
+ * Visible passes of the catalog (civil twilight) compare with the plain catalog search.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PassSearchBenchmark {
+
+    private static final long DAY = 86400000L;
+    private static final int CATALOG = 200;
+
+    private PassPredictor predictor;
+    private VisiblePassFinder finder;
+    private List<SGP4> catalog;
+    private SGP4 leo;
+
+    /**
+     * Create the observer and the catalog.
+     */
+    @Setup
+    public void setup() {
+        predictor = new PassPredictor(new Observer(36.723888, -2.177156, 0.0), 10.0);
+        finder = new VisiblePassFinder(predictor, SunTable.CIVIL_TWILIGHT);
+        catalog = Fixtures.propagators(Fixtures.catalog(CATALOG, false));
+        for (SGP4 propagator : catalog) {
+            if (!propagator.isDeepSpace()) {
+                leo = propagator;
+                break;
+            }
+        }
+    }
+
+    /**
+     * One day of passes of one low earth orbit platform.
+     * @return passes
+     */
+    @Benchmark
+    public List<Pass> single() {
+        return predictor.predict(leo, Fixtures.EPOCH, Fixtures.EPOCH + DAY);
+    }
+
+    /**
+     * One day of passes of every platform of the catalog.
+     * @return passes sorted by AOS
+     */
+    @Benchmark
+    public List<Pass> catalog() {
+        return predictor.predictAll(catalog, Fixtures.EPOCH, Fixtures.EPOCH + DAY);
+    }
+
+    /**
+     * One day of visible passes of every platform of the catalog.
+     * @return annotated visible passes sorted by AOS
+     */
+    @Benchmark
+    public List<Pass> visible() {
+        return finder.findAll(catalog, Fixtures.EPOCH, Fixtures.EPOCH + DAY);
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.benchmark;
+
+import com.singularityeye.eyetrack.orbit.BatchPropagator;
+import com.singularityeye.eyetrack.orbit.Coordinates;
+import com.singularityeye.eyetrack.orbit.SGP4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Propagation throughput benchmark (platforms per second).
+ * Scores are platforms propagated to geodetic coordinates per second: single threaded scores are per core,
+ * and the batch score must stay above {@link #TARGET} (near earth catalog).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PropagationBenchmark {
+
+    /**
+     * Throughput target of the batch propagator (near earth platforms per second and core).
+     */
+    public static final double TARGET = 1000000.0;
+
+    /**
+     * Catalog size.
+     */
+    public static final int SIZE = 20000;
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    private List<SGP4> propagators;
+    private BatchPropagator batch;
+    private ExecutorService executor;
+    private final double[] r = new double[3], v = new double[3], lla = new double[3];
+    private long time;
+
+    /**
+     * Create the near earth catalog, its batch and the parallel executor.
+     */
+    @Setup
+    public void setup() {
+        propagators = Fixtures.propagators(Fixtures.catalog(SIZE, true));
+        batch = new BatchPropagator(propagators);
+        executor = Executors.newFixedThreadPool(CORES);
+        time = Fixtures.EPOCH;
+    }
+
+    /**
+     * Stop the parallel executor.
+     */
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * One propagator call per platform (baseline).
+     * @param blackhole result sink
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void scalar(Blackhole blackhole) {
+        time += 1000;
+        double gmst = Coordinates.gmst(time);
+        for (SGP4 propagator : propagators) {
+            propagator.propagateAt(time, r, v);
+            Coordinates.temeToGeodetic(r, gmst, lla);
+        }
+        blackhole.consume(lla[0]);
+    }
+
+    /**
+     * Batch propagation on one core (structure of arrays).
+     * @param blackhole result sink
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void batch(Blackhole blackhole) {
+        time += 1000;
+        batch.propagate(time);
+        blackhole.consume(batch.getLatitude(batch.size() - 1));
+    }
+
+    /**
+     * Batch propagation partitioned across cores.
+     * @param blackhole result sink
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void batchParallel(Blackhole blackhole) {
+        time += 1000;
+        batch.propagate(time, executor, CORES);
+        blackhole.consume(batch.getLatitude(batch.size() - 1));
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.benchmark;
+
+import com.singularityeye.eyetrack.model.PositionBuffer;
+import com.singularityeye.eyetrack.model.Satellite;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Position serialization benchmark (microseconds per round trip: write and read back every position).
+ * {@link Satellite} java serialization is compared with a data stream encoding, fixed width binary records,
+ * and the double buffered primitive state handed to the map activity.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    private static final int RECORD_SIZE = 4 + 4 + 3 * 8; // NORAD ID, name index, latitude, longitude, altitude
+
+    /**
+     * Number of positions.
+     */
+    @Param({"60", "1000"})
+    public int size;
+
+    private List<Satellite> satellites;
+    private String[] names; // name side table of fixed width records
+    private ByteBuffer records;
+    private PositionBuffer buffer;
+    private final Sum sum = new Sum();
+
+    // position buffer reader (sums coordinates, so nothing is optimized away)
+    private static class Sum implements PositionBuffer.Reader {
+        double value;
+        @Override
+        public void onPosition(int index, int id, String name, long time, double latitude, double longitude, double altitude, double[] w) {
+            value += latitude + longitude + altitude;
+        }
+    }
+
+    /**
+     * Create the positions.
+     */
+    @Setup
+    public void setup() {
+        satellites = new ArrayList<Satellite>(size);
+        names = new String[size];
+        for (int i = 0; i < size; i++) {
+            Satellite satellite = new Satellite();
+            satellite.setNORAD_ID(String.valueOf(10000 + i));
+            satellite.setShortname("SAT " + (10000 + i));
+            satellite.setLatitude(-80.0 + 160.0 * i / size);
+            satellite.setLongitude(-180.0 + 360.0 * i / size);
+            satellite.setAltitude(400.0 + i);
+            satellites.add(satellite);
+            names[i] = satellite.getShortname();
+        }
+        records = ByteBuffer.allocate(size * RECORD_SIZE);
+        buffer = new PositionBuffer(size);
+    }
+
+    /**
+     * Java serialization of the satellite list (object streams).
+     * @return positions read back
+     * @throws Exception if serialization fails
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Satellite> javaSerialization() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(new ArrayList<Satellite>(satellites));
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return (List<Satellite>) in.readObject();
+    }
+
+    /**
+     * Data stream encoding of the satellite fields (strings and doubles).
+     * @return positions read back
+     * @throws IOException never (in memory streams)
+     */
+    @Benchmark
+    public List<Satellite> dataStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(satellites.size());
+        for (Satellite satellite : satellites) {
+            out.writeUTF(satellite.getNORAD_ID());
+            out.writeUTF(satellite.getShortname());
+            out.writeDouble(satellite.getLatitude());
+            out.writeDouble(satellite.getLongitude());
+            out.writeDouble(satellite.getAltitude());
+        }
+        out.close();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        int count = in.readInt();
+        List<Satellite> result = new ArrayList<Satellite>(count);
+        for (int i = 0; i < count; i++) {
+            Satellite satellite = new Satellite();
+            satellite.setNORAD_ID(in.readUTF());
+            satellite.setShortname(in.readUTF());
+            satellite.setLatitude(in.readDouble());
+            satellite.setLongitude(in.readDouble());
+            satellite.setAltitude(in.readDouble());
+            result.add(satellite);
+        }
+        return result;
+    }
+
+    /**
+     * Fixed width binary records with a name side table (same layout idea as the orbital elements catalog).
+     * @return coordinates sum read back
+     */
+    @Benchmark
+    public double fixedRecords() {
+        records.clear();
+        for (int i = 0; i < size; i++) {
+            Satellite satellite = satellites.get(i);
+            records.putInt(10000 + i);
+            records.putInt(i); // note: name index in the side table
+            records.putDouble(satellite.getLatitude());
+            records.putDouble(satellite.getLongitude());
+            records.putDouble(satellite.getAltitude());
+        }
+        double value = 0.0;
+        for (int i = 0; i < size; i++) {
+            int offset = i * RECORD_SIZE;
+            value += records.getInt(offset) + names[records.getInt(offset + 4)].length()
+                    + records.getDouble(offset + 8) + records.getDouble(offset + 16) + records.getDouble(offset + 24);
+        }
+        return value;
+    }
+
+    /**
+     * Double buffered primitive state (service to activity hand-off): fill, publish and read.
+     * @return coordinates sum read back
+     */
+    @Benchmark
+    public double positionBuffer() {
+        buffer.clear(0L);
+        for (int i = 0; i < size; i++) {
+            Satellite satellite = satellites.get(i);
+            buffer.add(10000 + i, names[i], satellite.getLatitude(), satellite.getLongitude(), satellite.getAltitude(), null);
+        }
+        buffer.publish();
+        sum.value = 0.0;
+        buffer.read(sum);
+        return sum.value;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package com.singularityeye.eyetrack.benchmark;
+
+import com.singularityeye.eyetrack.model.PositionHistory;
+import com.singularityeye.eyetrack.ws.PositionsParser;
+
+import org.kxml2.io.KXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soap response parsing benchmark (microseconds per response).
+ * A synthetic GetPositionsByIp response (60 positions, see benchmark README) is streamed with {@link PositionsParser}
+ * (last position only, and history mode); the former ksoap2 envelope code path is EnvelopeParsingBenchmark (ksoap2 profile).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SoapParsingBenchmark {
+
+    /**
+     * Synthetic response in the web service format (classpath resource).
+     */
+    public static final String FIXTURE = "/fixtures/GetPositionsByIp-27424-60s.xml";
+
+    private byte[] response;
+    private final PositionsParser parser = new PositionsParser();
+    private final PositionHistory history = new PositionHistory(3600);
+
+    /**
+     * Load the synthetic response.
+     * @throws IOException if the fixture is missing
+     */
+    @Setup
+    public void setup() throws IOException {
+        response = Fixtures.resource(FIXTURE);
+    }
+
+    /**
+     * Stream the response and keep the last position only (current service code path).
+     * @return last position latitude
+     * @throws Exception if the response can not be parsed
+     */
+    @Benchmark
+    public double streamed() throws Exception {
+        parser.parse(pull(), null);
+        return parser.getLatitude();
+    }
+
+    /**
+     * Stream every position of the response into a history (history mode).
+     * @return number of positions
+     * @throws Exception if the response can not be parsed
+     */
+    @Benchmark
+    public int streamedHistory() throws Exception {
+        history.clear(); // note: otherwise positions of the same response are ignored as duplicates
+        return parser.parse(pull(), history);
+    }
+
+    /**
+     * Tokenize the response with the pull parser only (lower bound of any parser built on it).
+     * @return number of parser events
+     * @throws Exception if the response can not be parsed
+     */
+    @Benchmark
+    public int tokenize() throws Exception {
+        XmlPullParser parser = pull();
+        int events = 0;
+        while (XmlPullParser.END_DOCUMENT != parser.next()) events++;
+        return events;
+    }
+
+    // pull parser over the synthetic response
+    private XmlPullParser pull() throws Exception {
+        XmlPullParser parser = new KXmlParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new ByteArrayInputStream(response), null);
+        return parser;
+    }
+
+}
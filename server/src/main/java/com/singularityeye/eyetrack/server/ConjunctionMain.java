@@ -0,0 +1,146 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.server;
+
+import com.singularityeye.eyetrack.cache.Catalog;
+import com.singularityeye.eyetrack.model.Conjunction;
+import com.singularityeye.eyetrack.orbit.ConjunctionScreener;
+import com.singularityeye.eyetrack.orbit.SGP4;
+import com.singularityeye.eyetrack.orbit.TLE;
+import com.singularityeye.eyetrack.ws.ElementsClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.logging.Logger;
+
+/**
+ * Conjunction screening command line (nightly full catalog runs): close approaches of every element set of
+ * an orbital elements cache (the file the tracking server keeps) or of a two/three lines element file.
+ * Usage: ConjunctionMain (--elements elements.bin | --tle catalog.txt) [--threshold 5] [--hours 24] [--step 20000] [--start utc ms]
+ * Output: one CSV line per conjunction sorted by TCA (tca, ids and names, miss distance in km, relative speed in km/s).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ConjunctionMain {
+
+    private static final Logger LOG = Logger.getLogger(ConjunctionMain.class.getName());
+    private static final String USAGE = "Usage: ConjunctionMain (--elements elements.bin | --tle catalog.txt) [--threshold 5] [--hours 24] [--step 20000] [--start utc ms]";
+    private static final long HOUR = 3600000L;
+
+    /**
+     * Screen a catalog and print its conjunctions.
+     * @param args options
+     * @throws IOException if the catalog can not be read
+     */
+    public static void main(String[] args) throws IOException {
+        String elements = option(args, "--elements", null), tle = option(args, "--tle", null);
+        if ((null == elements) == (null == tle)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        double threshold = Double.parseDouble(option(args, "--threshold", "5"));
+        long window = (long) (Double.parseDouble(option(args, "--hours", "24")) * HOUR);
+        long step = Long.parseLong(option(args, "--step", String.valueOf(ConjunctionScreener.DEFAULT_STEP)));
+        long start = Long.parseLong(option(args, "--start", String.valueOf(System.currentTimeMillis())));
+
+        List<TLE> catalog = (null != elements) ? readElements(new File(elements)) : readTle(new File(tle));
+        List<SGP4> propagators = new ArrayList<SGP4>(catalog.size());
+        for (TLE set : catalog) {
+            try {
+                propagators.add(new SGP4(set));
+            } catch (IllegalArgumentException e) {
+                LOG.fine("Skipped " + set.getNORAD_ID() + ": " + e.getMessage()); // note: decayed or invalid elements
+            }
+        }
+        long started = System.currentTimeMillis();
+        List<Conjunction> conjunctions = new ConjunctionScreener(threshold, step).screen(propagators, start, start + window);
+        LOG.info("Screened " + propagators.size() + " of " + catalog.size() + " element sets in " + (System.currentTimeMillis() - started)
+                + " ms: " + conjunctions.size() + " conjunctions under " + threshold + " km");
+        print(conjunctions, System.out);
+    }
+
+    /**
+     * Print conjunctions as CSV (header line first).
+     * @param conjunctions conjunctions
+     * @param out output
+     */
+    public static void print(List<Conjunction> conjunctions, PrintStream out) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        out.println("tca,primary,primary_name,secondary,secondary_name,miss_km,speed_kms");
+        for (Conjunction conjunction : conjunctions) {
+            out.println(format.format(conjunction.getTca()) + ',' + conjunction.getPrimary().getNORAD_ID() + ',' + csv(conjunction.getPrimary().getShortname())
+                    + ',' + conjunction.getSecondary().getNORAD_ID() + ',' + csv(conjunction.getSecondary().getShortname())
+                    + ',' + String.format(Locale.ROOT, "%.3f,%.3f", conjunction.getMissDistance(), conjunction.getRelativeSpeed()));
+        }
+        out.flush();
+    }
+
+    // element sets of an orbital elements cache file (malformed records are skipped)
+    private static List<TLE> readElements(File file) throws IOException {
+        Catalog catalog = Catalog.open(file);
+        List<TLE> elements = new ArrayList<TLE>(catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            int name = catalog.getNameIndex(i);
+            try {
+                elements.add(catalog.getTLE(i, (-1 == name) ? null : catalog.getName(name)));
+            } catch (IllegalArgumentException e) {
+                LOG.fine("Skipped record " + i + ": " + e.getMessage());
+            }
+        }
+        return elements;
+    }
+
+    // element sets of a two or three lines element file
+    private static List<TLE> readTle(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charset.forName("US-ASCII")));
+        try {
+            return ElementsClient.parse(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // CSV field (quoted if needed)
+    private static String csv(String value) {
+        if (null == value) return "";
+        value = value.trim();
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // value of a command line option
+    private static String option(String[] args, String name, String value) {
+        for (int i = 0; i < args.length - 1; i++) if (name.equals(args[i])) return args[i + 1];
+        return value;
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.server;
+
+import com.singularityeye.eyetrack.metrics.Metrics;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Push server: server-sent events over plain http, one selector thread (non-blocking sockets) for every client.
+ * Routes: GET /events (event stream, the latest frame first), GET /snapshot (latest JSON document), GET /metrics (text).
+ * Frames are encoded once and shared: each streaming client only holds a read-only view over the same bytes.
+ * A slow client never blocks the others: its queue is bounded and the oldest pending frames are dropped
+ * (positions are absolute, a newer frame supersedes the older ones).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class EventServer implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(EventServer.class.getName());
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int MAX_REQUEST = 4096; // request head size (bytes)
+    private static final int BACKLOG = 1024; // pending connections (bursts of subscribers)
+    private static final int MAX_QUEUED = 4; // pending frames per streaming client
+    private static final long HEARTBEAT = 15000; // milliseconds without frames before a comment line (keeps proxies open)
+    private static final byte[] EVENTS_HEAD = ("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\nCache-Control: no-cache\r\n"
+            + "Connection: keep-alive\r\nAccess-Control-Allow-Origin: *\r\n\r\nretry: 1000\n\n").getBytes(ASCII);
+    private static final byte[] COMMENT = ":\n\n".getBytes(ASCII);
+
+    // client connection model
+    private static class Client {
+        final SocketChannel channel;
+        final ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST);
+        final ArrayDeque<ByteBuffer> queue = new ArrayDeque<ByteBuffer>(); // pending writes (head could be partially written)
+        boolean streaming; // event stream client
+        boolean closing; // close once the queue is written
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final int port;
+    private final int max_clients;
+    private final Metrics metrics;
+    private Selector selector;
+    private ServerSocketChannel server;
+    private final List<SelectionKey> streams = new ArrayList<SelectionKey>(); // event stream clients (selector thread only)
+    private int clients; // open connections (selector thread only)
+    private final ConcurrentLinkedQueue<byte[]> frames = new ConcurrentLinkedQueue<byte[]>(); // frames to fan out
+    private volatile byte[] last_frame, last_json; // latest frame and document (new clients)
+    private long last_write; // wall time (milliseconds) of the last fan out
+    private long dropped; // frames dropped for slow clients (selector thread only)
+
+    /**
+     * Constructor method for the server.
+     * @param port listening port
+     * @param maxClients maximum open connections (new ones are refused)
+     * @param metrics fan out latencies (broadcast stage) and metrics route
+     */
+    public EventServer(int port, int maxClients, Metrics metrics) {
+        this.port = port;
+        this.max_clients = maxClients;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Open the listening socket.
+     * @throws IOException if the port can not be bound
+     */
+    public void open() throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.socket().setReuseAddress(true);
+        server.socket().bind(new InetSocketAddress(port), BACKLOG);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Get the listening port (the bound one when opened on port 0).
+     * @return port
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Push a new frame to every streaming client (any thread, it does not block).
+     * @param json JSON document (snapshot route)
+     * @param frame server-sent event frame
+     */
+    public void broadcast(byte[] json, byte[] frame) {
+        last_json = json;
+        last_frame = frame;
+        frames.offer(frame);
+        Selector current = selector;
+        if (null != current) current.wakeup();
+    }
+
+    /**
+     * Get the number of event stream clients.
+     * @return streaming clients
+     */
+    public synchronized int getStreams() {
+        return streams.size();
+    }
+
+    /**
+     * Stop the selector loop and close every connection.
+     */
+    public void close() {
+        try {
+            selector.close(); // note: the loop ends with ClosedSelectorException
+            server.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "IOException: "+e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Selector loop (call from a dedicated thread, after {@link #open}).
+     */
+    @Override
+    public void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select(HEARTBEAT);
+                fanOut();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                        }
+                    } catch (IOException e) {
+                        close(key); // note: client gone
+                    }
+                }
+                heartbeat();
+            }
+        } catch (ClosedSelectorException e) {
+            // note: closed
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "SelectorException: "+e.getMessage(), e); // note: no more clients are served
+        }
+    }
+
+    // accept pending connections (refused above the maximum)
+    private void accept() throws IOException {
+        for (SocketChannel channel = server.accept(); null != channel; channel = server.accept()) {
+            if (clients >= max_clients) {
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Client(channel));
+            clients++;
+        }
+    }
+
+    // read a request head and route it (streaming clients only read to detect the close)
+    private void read(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        if (client.streaming || client.closing) {
+            client.request.clear();
+            if (-1 == client.channel.read(client.request)) close(key);
+            return;
+        }
+        if (-1 == client.channel.read(client.request)) {
+            close(key);
+            return;
+        }
+        String head = new String(client.request.array(), 0, client.request.position(), ASCII);
+        if (head.indexOf("\r\n\r\n") < 0 && head.indexOf("\n\n") < 0) {
+            if (!client.request.hasRemaining()) respond(key, "431 Request Header Fields Too Large", "text/plain", null);
+            return;
+        }
+        int end = head.indexOf('\n');
+        String[] line = head.substring(0, end).trim().split(" ");
+        String path = (line.length > 1) ? line[1] : "";
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+        if (!"GET".equals(line[0])) {
+            respond(key, "405 Method Not Allowed", "text/plain", null);
+        } else if ("/events".equals(path)) {
+            client.streaming = true;
+            synchronized (this) {
+                streams.add(key);
+            }
+            enqueue(key, ByteBuffer.wrap(EVENTS_HEAD));
+            byte[] frame = last_frame;
+            if (null != frame) enqueue(key, ByteBuffer.wrap(frame).asReadOnlyBuffer());
+        } else if ("/snapshot".equals(path)) {
+            byte[] json = last_json;
+            respond(key, "200 OK", "application/json", (null == json) ? "{}".getBytes(ASCII) : json);
+        } else if ("/metrics".equals(path)) {
+            StringBuilder text = metrics.snapshot().format(new StringBuilder(1024));
+            text.append('\n').append("clients: ").append(clients).append(", streams: ").append(streams.size())
+                    .append(", dropped frames: ").append(dropped).append('\n');
+            respond(key, "200 OK", "text/plain", text.toString().getBytes(ASCII));
+        } else {
+            respond(key, "404 Not Found", "text/plain", null);
+        }
+    }
+
+    // queue a complete response and close the connection once it is written
+    private void respond(SelectionKey key, String status, String type, byte[] body) throws IOException {
+        Client client = (Client) key.attachment();
+        if (null == body) body = status.getBytes(ASCII);
+        String head = "HTTP/1.1 " + status + "\r\nContent-Type: " + type + "; charset=utf-8\r\nContent-Length: " + body.length
+                + "\r\nAccess-Control-Allow-Origin: *\r\nConnection: close\r\n\r\n";
+        enqueue(key, ByteBuffer.wrap(head.getBytes(ASCII)));
+        client.closing = true; // note: set before the body is queued, the connection is closed once the body is written
+        enqueue(key, ByteBuffer.wrap(body).asReadOnlyBuffer());
+    }
+
+    // fan out pending frames to every streaming client (only the newest one if several are pending)
+    private void fanOut() {
+        byte[] frame = null;
+        for (byte[] next = frames.poll(); null != next; next = frames.poll()) frame = next;
+        if (null == frame) return;
+        long started = System.nanoTime();
+        for (int i = streams.size() - 1; i >= 0; i--) {
+            SelectionKey key = streams.get(i);
+            try {
+                enqueue(key, ByteBuffer.wrap(frame).asReadOnlyBuffer()); // note: shared bytes, own position
+            } catch (IOException e) {
+                close(key);
+            }
+        }
+        last_write = System.currentTimeMillis();
+        metrics.record(Metrics.BROADCAST, System.nanoTime() - started);
+    }
+
+    // send a comment line to idle streams
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        if (now - last_write < HEARTBEAT) return;
+        last_write = now;
+        for (int i = streams.size() - 1; i >= 0; i--) {
+            SelectionKey key = streams.get(i);
+            try {
+                enqueue(key, ByteBuffer.wrap(COMMENT).asReadOnlyBuffer());
+            } catch (IOException e) {
+                close(key);
+            }
+        }
+    }
+
+    // queue a buffer (oldest frames are dropped above the bound) and write as much as the socket takes
+    private void enqueue(SelectionKey key, ByteBuffer buffer) throws IOException {
+        Client client = (Client) key.attachment();
+        ArrayDeque<ByteBuffer> queue = client.queue;
+        queue.addLast(buffer);
+        // note: frames are read-only views; the stream head and a frame in progress are never dropped
+        for (Iterator<ByteBuffer> buffers = queue.iterator(); queue.size() > MAX_QUEUED && buffers.hasNext(); ) {
+            ByteBuffer next = buffers.next();
+            if (next.isReadOnly() && 0 == next.position()) {
+                buffers.remove();
+                dropped++;
+            }
+        }
+        write(key);
+    }
+
+    // write queued buffers until the socket would block (then wait for it to be writable)
+    private void write(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        ArrayDeque<ByteBuffer> queue = client.queue;
+        while (!queue.isEmpty()) {
+            ByteBuffer head = queue.peekFirst();
+            client.channel.write(head);
+            if (head.hasRemaining()) break;
+            queue.pollFirst();
+        }
+        if (queue.isEmpty() && client.closing) {
+            close(key);
+            return;
+        }
+        key.interestOps(queue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    // close a connection
+    private void close(SelectionKey key) {
+        Client client = (Client) key.attachment();
+        if (!client.channel.isOpen()) return;
+        key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            // note: already closed
+        }
+        if (client.streaming) {
+            synchronized (this) {
+                streams.remove(key);
+            }
+        }
+        clients--;
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.server;
+
+import com.singularityeye.eyetrack.model.PositionBuffer;
+
+import java.nio.charset.Charset;
+
+/**
+ * Position encoder: the front buffer of a {@link PositionBuffer} is encoded once per publication,
+ * as a JSON document (snapshot) and as a server-sent event frame; every subscriber gets the same bytes.
+ * JSON: {"time": fix time (utc milliseconds), "rate": fix time rate, "positions": [{"id", "name", "latitude", "longitude",
+ * "altitude", "velocity": angular velocity of the sub-satellite point (earth fixed axes, rad/s)}]} in tracking order.
+ * Platforms without a finite position (degenerate propagations: decayed orbits, error paths) are skipped,
+ * other non finite numbers are written as null (NaN and Infinity are not valid JSON).
+ * Note: single thread (the text builder is reused).
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PositionEncoder implements PositionBuffer.Reader {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final StringBuilder json = new StringBuilder(4096);
+    private final StringBuilder frame = new StringBuilder(4096);
+    private byte[] json_bytes = new byte[0], frame_bytes = new byte[0];
+    private int written; // records of the document being encoded
+
+    /**
+     * Encode the front buffer.
+     * @param positions positions buffer
+     * @return number of encoded records (platforms without a finite position are not)
+     */
+    public int encode(PositionBuffer positions) {
+        json.setLength(0);
+        written = 0;
+        long version;
+        // note: read under the buffer lock, time and rate belong to the same publication as the records
+        synchronized (positions) {
+            version = positions.getVersion();
+            json.append("{\"time\":").append(positions.getTime()).append(",\"rate\":");
+            number(positions.getRate());
+            json.append(",\"positions\":[");
+            positions.read(this);
+        }
+        json.append("]}");
+        json_bytes = json.toString().getBytes(UTF8);
+        // note: a JSON document has no line breaks, so it is a single data line
+        frame.setLength(0);
+        frame.append("id: ").append(version).append('\n')
+                .append("event: positions\n")
+                .append("data: ").append(json).append("\n\n");
+        frame_bytes = frame.toString().getBytes(UTF8);
+        return written;
+    }
+
+    /**
+     * Get the last encoded JSON document.
+     * @return utf-8 bytes (shared, do not modify)
+     */
+    public byte[] getJson() {
+        return json_bytes;
+    }
+
+    /**
+     * Get the last encoded server-sent event frame.
+     * @return utf-8 bytes (shared, do not modify)
+     */
+    public byte[] getFrame() {
+        return frame_bytes;
+    }
+
+    @Override
+    public void onPosition(int index, int id, String name, long time, double latitude, double longitude, double altitude, double[] w) {
+        if (!isFinite(latitude) || !isFinite(longitude) || !isFinite(altitude)) return; // note: no position to show
+        if (written++ > 0) json.append(',');
+        json.append("{\"id\":").append(id).append(",\"name\":");
+        if (null == name) json.append("null");
+        else quote(name);
+        json.append(",\"latitude\":").append(latitude)
+                .append(",\"longitude\":").append(longitude)
+                .append(",\"altitude\":").append(altitude)
+                .append(",\"velocity\":[");
+        number(w[0]);
+        json.append(',');
+        number(w[1]);
+        json.append(',');
+        number(w[2]);
+        json.append("]}");
+    }
+
+    // append a JSON number (null if not finite)
+    private void number(double value) {
+        if (isFinite(value)) json.append(value);
+        else json.append("null");
+    }
+
+    // not NaN nor infinite (note: Double.isFinite is not available on every Android version)
+    private static boolean isFinite(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    // append a JSON string (escaped)
+    private void quote(String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.server;
+
+import com.singularityeye.eyetrack.cache.ElementStore;
+import com.singularityeye.eyetrack.cache.ElementsUpdater;
+import com.singularityeye.eyetrack.metrics.Metrics;
+import com.singularityeye.eyetrack.model.PositionBuffer;
+import com.singularityeye.eyetrack.ws.ElementsClient;
+import com.singularityeye.eyetrack.ws.HttpTransport;
+import com.singularityeye.eyetrack.ws.PositionsClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Headless tracking server: one {@link TrackingEngine} shared by every client, positions pushed as server-sent events ({@link EventServer}).
+ * Started from the command line ({@link #main}) or embedded ({@link #start}, {@link #stop}).
+ * Usage: ServerMain --ids 25544,20580 [--port 8080] [--interval 1000] [--elements elements.bin] [--max-clients 1000]
+ * [--key soap license key] [--ip client ip] [--seconds 60]
+ * Without a soap license key, platforms without orbital elements are not published.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ServerMain {
+
+    private static final Logger LOG = Logger.getLogger(ServerMain.class.getName());
+    private static final String URL = "http://www.n2yo.com/sat/satws.php"; // soap web services url
+    private static final int MAX_ELEMENTS = 50000; // orbital elements cache size (whole public catalog)
+
+    private final TrackingEngine engine;
+    private final EventServer server;
+    private final Thread selector; // event server loop
+
+    private ServerMain(TrackingEngine engine, EventServer server) {
+        this.engine = engine;
+        this.server = server;
+        this.selector = new Thread(server, "event-server");
+    }
+
+    /**
+     * Run the server (until the process is stopped).
+     * @param args options
+     * @throws IOException if the port can not be bound
+     * @throws InterruptedException if interrupted while serving
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (null == option(args, "--ids", null)) {
+            System.err.println("Usage: ServerMain --ids 25544,20580 [--port 8080] [--interval 1000] [--elements elements.bin] [--max-clients 1000] [--key key] [--ip ip] [--seconds 60]");
+            System.exit(2);
+        }
+        final ServerMain running = start(args);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                running.stop();
+            }
+        });
+        running.join();
+    }
+
+    /**
+     * Start the server: tracking engine ticks and event server loop, each one on its own thread.
+     * @param args options (see class description, port 0 binds any free port)
+     * @return running server
+     * @throws IOException if the port can not be bound
+     */
+    public static ServerMain start(String[] args) throws IOException {
+        String ids = option(args, "--ids", null);
+        if (null == ids) throw new IllegalArgumentException("--ids is required");
+        int port = Integer.parseInt(option(args, "--port", "8080"));
+        long interval = Long.parseLong(option(args, "--interval", "1000"));
+        int maxClients = Integer.parseInt(option(args, "--max-clients", "1000"));
+
+        HttpTransport transport = new HttpTransport(5000, 10000, 2, 500); // shared keep-alive connections
+        ElementStore store = new ElementStore(new File(option(args, "--elements", "elements.bin")), MAX_ELEMENTS);
+        Metrics metrics = new Metrics();
+        final TrackingEngine engine = new TrackingEngine(new ElementsUpdater(store, new ElementsClient(transport)), new PositionsClient(URL, transport), metrics);
+        engine.setParams(option(args, "--ip", "127.0.0.1"), option(args, "--seconds", "60"), option(args, "--key", null));
+        engine.setTrackedIds(Arrays.asList(ids.split(",")));
+
+        final EventServer server = new EventServer(port, maxClients, metrics);
+        server.open();
+        final PositionEncoder encoder = new PositionEncoder();
+        engine.setListener(new TrackingEngine.Listener() {
+            @Override
+            public void onPositions(PositionBuffer positions) {
+                encoder.encode(positions); // note: once per tick, whatever the number of clients
+                server.broadcast(encoder.getJson(), encoder.getFrame());
+            }
+        });
+        ServerMain running = new ServerMain(engine, server);
+        running.selector.start();
+        engine.start(interval);
+        LOG.info("Listening on " + server.getPort() + ", tracking " + engine.getTrackedIds());
+        return running;
+    }
+
+    /**
+     * Get the listening port.
+     * @return port
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * Get the tracking engine.
+     * @return tracking engine
+     */
+    public TrackingEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Stop ticking and close every connection (the event server loop ends).
+     */
+    public void stop() {
+        engine.stop();
+        server.close();
+    }
+
+    /**
+     * Wait for the event server loop to end.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void join() throws InterruptedException {
+        selector.join();
+    }
+
+    // value of a command line option
+    private static String option(String[] args, String name, String value) {
+        for (int i = 0; i < args.length - 1; i++) if (name.equals(args[i])) return args[i + 1];
+        return value;
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.server;
+
+import com.singularityeye.eyetrack.cache.ElementsUpdater;
+import com.singularityeye.eyetrack.metrics.Metrics;
+import com.singularityeye.eyetrack.model.PositionBuffer;
+import com.singularityeye.eyetrack.model.PositionHistory;
+import com.singularityeye.eyetrack.tracking.TrackingPipeline;
+import com.singularityeye.eyetrack.ws.PositionsClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless tracking engine (plain JVM): the bound service pipeline without android.
+ * Each tick runs the {@link TrackingPipeline} shared with the bound service: orbital elements are revalidated in background,
+ * every tracked platform is propagated in one batch, soap requests are the fallback for platforms without orbital elements
+ * (one round per interval, a few at once), and all positions are published in a double buffer ({@link PositionBuffer}).
+ * One computation per tracked platform is shared by every subscriber of the listener.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class TrackingEngine {
+
+    /**
+     * Listener model: it is notified on the tick thread when new positions are published.
+     */
+    public interface Listener {
+        /**
+         * New positions are published.
+         * @param positions positions buffer (read the front buffer, tracking order)
+         */
+        void onPositions(PositionBuffer positions);
+    }
+
+    private static final Logger LOG = Logger.getLogger(TrackingEngine.class.getName());
+
+    private final ElementsUpdater elements;
+    private final Metrics metrics;
+    private final PositionBuffer positions = new PositionBuffer(64);
+    private final TrackingPipeline pipeline;
+    private volatile Listener listener;
+
+    private long interval; // milliseconds between ticks
+    private long last_tick; // nano time of the last tick (task only)
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> poller;
+
+    // pipeline callbacks: no histories, no adaptive interval (live positions only)
+    private final TrackingPipeline.Listener pipeline_listener = new TrackingPipeline.Listener() {
+        @Override
+        public void onPropagated(String id, long time, double latitude, double longitude, double altitude, double angularVelocity) {
+        }
+
+        @Override
+        public void onFallback(String id) {
+        }
+
+        @Override
+        public PositionHistory getHistory(String id) {
+            return null;
+        }
+
+        @Override
+        public void onElementsChanged(int found, boolean saved) {
+            LOG.info("Orbital elements found: " + found);
+        }
+
+        @Override
+        public void onError(String message) {
+            LOG.warning(message); // note: failed requests are retried, propagation errors fall back to soap requests
+        }
+    };
+
+    private final Runnable tick_task = new Runnable() {
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            // note: ticks missed while a long tick runs are fired back to back; coalesce them
+            if (now - last_tick < TimeUnit.MILLISECONDS.toNanos(interval) / 2) {
+                metrics.increment(Metrics.DROPPED_TICKS);
+                return;
+            }
+            last_tick = now;
+            metrics.increment(Metrics.TICKS);
+            try {
+                if (pipeline.update(System.currentTimeMillis(), 1.0, true)) publish();
+            } catch (RuntimeException e) {
+                LOG.log(Level.SEVERE, "TickException: "+e.getMessage(), e); // note: an uncaught exception would cancel next ticks
+            }
+        }
+    };
+
+    /**
+     * Constructor method for the engine.
+     * @param elements orbital elements updater (its cache is loaded by the first tick)
+     * @param soapClient soap positions client (fallback)
+     * @param metrics stage latencies and counters (shared with the server)
+     */
+    public TrackingEngine(ElementsUpdater elements, PositionsClient soapClient, Metrics metrics) {
+        this.elements = elements;
+        this.metrics = metrics;
+        this.pipeline = new TrackingPipeline(elements, soapClient, metrics, positions, pipeline_listener);
+    }
+
+    /**
+     * Set the soap request params.
+     * @param ip client ip
+     * @param seconds the last seconds for what we get the positions
+     * @param key soap web service license key
+     */
+    public void setParams(String ip, String seconds, String key) {
+        pipeline.setParams(ip, seconds, key);
+    }
+
+    /**
+     * Set the listener.
+     * @param listener listener, null to remove it
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the tracked platforms (invalid NORAD IDs are ignored).
+     * @param ids strings that identify the platforms (tracking order)
+     */
+    public void setTrackedIds(Collection<String> ids) {
+        List<String> normalized = new ArrayList<String>(ids.size());
+        for (String id : ids) {
+            try {
+                String normalizedId = String.valueOf(Integer.parseInt(id.trim()));
+                if (!normalized.contains(normalizedId)) normalized.add(normalizedId);
+            } catch (NumberFormatException e) {
+                LOG.warning("Invalid NORAD ID: "+id);
+            }
+        }
+        pipeline.setTracked(normalized.toArray(new String[0]));
+    }
+
+    /**
+     * Get the tracked platforms.
+     * @return NORAD IDs (tracking order)
+     */
+    public List<String> getTrackedIds() {
+        return Arrays.asList(pipeline.getTracked().clone());
+    }
+
+    /**
+     * Get the positions buffer.
+     * @return positions buffer (read the front buffer)
+     */
+    public PositionBuffer getPositions() {
+        return positions;
+    }
+
+    /**
+     * Start ticking: the orbital elements cache is loaded first.
+     * @param interval milliseconds between ticks
+     */
+    public synchronized void start(long interval) {
+        if (null != poller) return;
+        this.interval = interval;
+        pipeline.setRequestInterval(interval / 2);
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (pipeline.load()) LOG.info("Orbital elements cached: " + elements.getStore().size());
+            }
+        });
+        poller = scheduler.scheduleAtFixedRate(tick_task, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop ticking and release threads (a tick in progress is completed, the engine can not be started again).
+     */
+    public synchronized void stop() {
+        if (null != poller) poller.cancel(false);
+        poller = null;
+        scheduler.shutdown();
+        pipeline.shutdown();
+    }
+
+    // publish the back buffer and notify the listener
+    private void publish() {
+        positions.publish();
+        Listener current = listener;
+        if (null != current) current.onPositions(positions);
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.server;
+
+import com.singularityeye.eyetrack.model.PositionBuffer;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Position encoder test: JSON document and event frame, degenerate propagations (NaN and infinite values) never
+ * reach the JSON output.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class PositionEncoderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void encodesDocumentAndFrame() {
+        PositionBuffer positions = new PositionBuffer(4);
+        positions.clear(1000L);
+        positions.add(25544, "ISS \"ZARYA\"", 10.5, -20.25, 420.0, new double[]{0.0, 0.5, -0.25});
+        positions.publish();
+        PositionEncoder encoder = new PositionEncoder();
+        assertEquals(1, encoder.encode(positions));
+        String json = "{\"time\":1000,\"rate\":1.0,\"positions\":[{\"id\":25544,\"name\":\"ISS \\\"ZARYA\\\"\","
+                + "\"latitude\":10.5,\"longitude\":-20.25,\"altitude\":420.0,\"velocity\":[0.0,0.5,-0.25]}]}";
+        assertEquals(json, new String(encoder.getJson(), UTF8));
+        assertEquals("id: 1\nevent: positions\ndata: " + json + "\n\n", new String(encoder.getFrame(), UTF8));
+    }
+
+    @Test
+    public void skipsDegeneratePositions() {
+        PositionBuffer positions = new PositionBuffer(8);
+        positions.clear(1000L, Double.NaN);
+        positions.add(1, null, Double.NaN, Double.NaN, Double.NaN, null); // note: decayed orbit
+        positions.add(2, "A", 10.0, 20.0, 400.0, new double[]{Double.NaN, Double.POSITIVE_INFINITY, 1.0});
+        positions.add(3, "B", 10.0, 20.0, Double.NEGATIVE_INFINITY, null);
+        positions.add(4, "C", 11.0, 21.0, 401.0, null);
+        positions.add(5, "D", 12.0, Double.POSITIVE_INFINITY, 402.0, null);
+        positions.publish();
+        PositionEncoder encoder = new PositionEncoder();
+        assertEquals(2, encoder.encode(positions));
+        String json = new String(encoder.getJson(), UTF8);
+        assertEquals("{\"time\":1000,\"rate\":null,\"positions\":["
+                + "{\"id\":2,\"name\":\"A\",\"latitude\":10.0,\"longitude\":20.0,\"altitude\":400.0,\"velocity\":[null,null,1.0]},"
+                + "{\"id\":4,\"name\":\"C\",\"latitude\":11.0,\"longitude\":21.0,\"altitude\":401.0,\"velocity\":[0.0,0.0,0.0]}]}", json);
+        assertFalse(json.contains("NaN"));
+        assertFalse(json.contains("Infinity"));
+        assertTrue(new String(encoder.getFrame(), UTF8).contains(json));
+    }
+
+}
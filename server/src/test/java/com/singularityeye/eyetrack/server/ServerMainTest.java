@@ -0,0 +1,104 @@
+/*
+    "Eye Track" is an Android Satellite Tracking App for Live Real Time Satellite Tracking and Predictions.
+    Copyright (C) 2016  Manuel Martín-González
+
+    This file is part of "Eye Track".
+
+    "Eye Track" is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    "Eye Track" is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with "Eye Track".  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.singularityeye.eyetrack.server;
+
+import com.singularityeye.eyetrack.cache.ElementStore;
+import com.singularityeye.eyetrack.orbit.TestElements;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Server smoke test: start on a free port with a cached elements file (no network), then read the snapshot
+ * and metrics routes over http.
+ * @author Manuel Martin-Gonzalez
+ * @version 1.0.0-alpha
+ */
+public class ServerMainTest {
+
+    private static final long TIMEOUT = 10000; // milliseconds
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    // GET a route, body as text
+    private static String get(int port, String path, String type) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+        connection.setConnectTimeout(2000);
+        connection.setReadTimeout(2000);
+        try {
+            assertEquals(path, 200, connection.getResponseCode());
+            assertTrue(connection.getContentType(), connection.getContentType().startsWith(type));
+            InputStream in = connection.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) != -1; ) body.write(buffer, 0, n);
+            return body.toString("UTF-8");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void servesSnapshotAndMetrics() throws Exception {
+        // note: fresh orbital elements, nothing to revalidate
+        File file = new File(folder.getRoot(), "elements.bin");
+        ElementStore store = new ElementStore(file, 10);
+        long now = System.currentTimeMillis();
+        store.put(TestElements.atEpoch(20580, now), now);
+        store.put(TestElements.atEpoch(25544, now), now);
+        assertTrue(store.save());
+
+        ServerMain server = ServerMain.start(new String[]{"--ids", "25544,20580", "--port", "0", "--interval", "100",
+                "--elements", file.getPath()});
+        try {
+            int port = server.getPort();
+            assertTrue(port > 0);
+            String snapshot = get(port, "/snapshot", "application/json");
+            for (long deadline = System.currentTimeMillis() + TIMEOUT; !snapshot.contains("\"id\":20580"); Thread.sleep(50)) {
+                assertTrue("snapshot " + snapshot, System.currentTimeMillis() < deadline);
+                snapshot = get(port, "/snapshot", "application/json");
+            }
+            assertTrue(snapshot, snapshot.startsWith("{\"time\":"));
+            assertTrue(snapshot, snapshot.contains("\"id\":25544"));
+            assertTrue(snapshot, snapshot.contains("\"name\":\"SAT 25544\""));
+
+            String metrics = get(port, "/metrics", "text/plain");
+            assertTrue(metrics, metrics.contains("propagate: n="));
+            assertTrue(metrics, metrics.contains("clients: "));
+        } finally {
+            server.stop();
+            server.join();
+        }
+    }
+
+}